@@ -1,33 +1,31 @@
 import array
 import encodings.idna
 import errno
-import jarray
 import logging
-import numbers
 import pprint
 import struct
 import sys
 import time
+import warnings
 import _google_ipaddr_r234
-from collections import namedtuple, Iterable
-from contextlib import contextmanager
+import _jysocket
+from collections import Iterable
 from functools import partial, wraps
-from itertools import chain
-from jythonlib import MapMaker, dict_builder
 from numbers import Number
 from StringIO import StringIO
 from threading import Condition, Lock
 from types import MethodType, NoneType
+from _jysocket import InboundHandler
 
 import java
 from java.io import IOException, InterruptedIOException
-from java.lang import Thread, ArrayIndexOutOfBoundsException, IllegalStateException
+from java.lang import Thread, IllegalStateException
 from java.net import InetAddress, InetSocketAddress
 from java.nio.channels import ClosedChannelException
 from java.security.cert import CertificateException
 from java.util import NoSuchElementException
 from java.util.concurrent import (
-    ArrayBlockingQueue, CopyOnWriteArrayList, CountDownLatch, LinkedBlockingQueue,
+    ArrayBlockingQueue, CountDownLatch,
     ExecutionException, RejectedExecutionException, ThreadFactory,
     TimeoutException, TimeUnit)
 from java.util.concurrent.atomic import AtomicBoolean, AtomicLong
@@ -37,7 +35,7 @@ try:
     # jarjar-ed version
     from org.python.netty.bootstrap import Bootstrap, ChannelFactory, ServerBootstrap
     from org.python.netty.buffer import PooledByteBufAllocator, Unpooled
-    from org.python.netty.channel import ChannelException as NettyChannelException, ChannelInboundHandlerAdapter, ChannelInitializer, ChannelOption
+    from org.python.netty.channel import ChannelException as NettyChannelException, ChannelInitializer, ChannelOption
     from org.python.netty.channel.nio import NioEventLoopGroup
     from org.python.netty.channel.socket import DatagramPacket
     from org.python.netty.channel.socket.nio import NioDatagramChannel, NioSocketChannel, NioServerSocketChannel
@@ -47,7 +45,7 @@ except ImportError:
     # dev version from extlibs
     from io.netty.bootstrap import Bootstrap, ChannelFactory, ServerBootstrap
     from io.netty.buffer import PooledByteBufAllocator, Unpooled
-    from io.netty.channel import ChannelException as NettyChannelException, ChannelInboundHandlerAdapter, ChannelInitializer, ChannelOption
+    from io.netty.channel import ChannelException as NettyChannelException, ChannelInitializer, ChannelOption
     from io.netty.channel.nio import NioEventLoopGroup
     from io.netty.channel.socket import DatagramPacket
     from io.netty.channel.socket.nio import NioDatagramChannel, NioSocketChannel, NioServerSocketChannel
@@ -179,6 +177,14 @@ POLLERR  = 8
 POLLHUP  = 16
 POLLNVAL = 32  # Polled when not open - no Netty channel
 
+EPOLLIN      = 0x1
+EPOLLPRI     = 0x2   # Ignored - not supportable on Java
+EPOLLOUT     = 0x4
+EPOLLERR     = 0x8
+EPOLLHUP     = 0x10
+EPOLLONESHOT = 1 << 30
+EPOLLET      = 1 << 31
+
 
 # Specific constants for socket-reboot:
 
@@ -187,14 +193,49 @@ POLLNVAL = 32  # Polled when not open - no Netty channel
 # duration and a specific unit, in this case TimeUnit.NANOSECONDS
 _TO_NANOSECONDS = 1000000000
 
-_PEER_CLOSED = object()
-
-
 # Event loop management
 #######################
 
 _NUM_THREADS = 10
 
+# The transport is Java NIO, unless the registry setting
+# python.socket.transport chooses Netty's native epoll transport on
+# Linux: "epoll" to require it (falling back with a warning), or "auto"
+# to use it when available. This needs netty-transport-native-epoll,
+# for the same version of Netty, on the class path, and in the same
+# package as the Netty in use: org.python.netty when Jython's Netty is
+# jarjar-ed, io.netty otherwise. Classes from the other package would
+# not work with ours, so are never used.
+
+def _epoll_transport():
+    netty = NioEventLoopGroup.__module__[:-len(".channel.nio")]
+    try:
+        epoll = __import__(netty + ".channel.epoll", fromlist=["Epoll"])
+        if epoll.Epoll.isAvailable():
+            return (epoll.EpollEventLoopGroup, epoll.EpollSocketChannel,
+                    epoll.EpollServerSocketChannel, epoll.EpollDatagramChannel), None
+        return None, epoll.Epoll.unavailabilityCause()
+    except (ImportError, AttributeError, java.lang.LinkageError) as e:
+        return None, e
+
+
+def _choose_transport(name):
+    name = name.strip().lower()
+    if name in ("epoll", "auto"):
+        classes, cause = _epoll_transport()
+        if classes is not None:
+            return "epoll", classes
+        if name == "epoll":
+            warnings.warn("Native epoll transport is not available, using NIO: %s" % (cause,),
+                          RuntimeWarning)
+    elif name != "nio":
+        warnings.warn("Unknown python.socket.transport %r, using NIO" % (name,), RuntimeWarning)
+    return "nio", (NioEventLoopGroup, NioSocketChannel, NioServerSocketChannel, NioDatagramChannel)
+
+
+_TRANSPORT, (_EventLoopGroup, _SocketChannel, _ServerSocketChannel, _DatagramChannel) = \
+    _choose_transport(sys.registry.getProperty("python.socket.transport", "nio"))
+
 # Use daemon threads for the event loop group. This is just fine
 # because these threads only handle ephemeral data, such as performing
 # SSL wrap/unwrap.
@@ -214,7 +255,7 @@ class DaemonThreadFactory(ThreadFactory):
         return t
 
 
-NIO_GROUP = NioEventLoopGroup(_NUM_THREADS, DaemonThreadFactory("Jython-Netty-Client-%s"))
+NIO_GROUP = _EventLoopGroup(_NUM_THREADS, DaemonThreadFactory("Jython-Netty-Client-%s"))
 
 
 def _check_threadpool_for_pending_threads(group):
@@ -408,226 +449,20 @@ def _fsdecode(name):
     return name
 
 
-# select support
-################
-
-class _Select(object):
-
-    def __init__(self, rlist, wlist, xlist):
-        self.cv = Condition()
-        self.rlist = frozenset(rlist)
-        self.wlist = frozenset(wlist)
-        self.xlist = frozenset(xlist)
-
-    def _normalize_sockets(self, socks):
-        # Get underlying socket, via fileno lookup
-        _socks = []
-        for sock in socks:
-            try:
-                _sock = sock.fileno()
-                _sock._register_selector  # double check our API requirements
-                _socks.append(_sock)
-            except AttributeError:
-                raise error(errno.EBADF, "Bad file descriptor: %s" % (sock,))
-        return _socks
-
-    def notify(self, sock, **_):
-        with self.cv:
-            self.cv.notify()
-
-    def __str__(self):
-        return "_Select(r={},w={},x={})".format(list(self.rlist), list(self.wlist), list(self.xlist))
-
-    @contextmanager
-    def _register_sockets(self, socks):
-        socks = self._normalize_sockets(socks)
-        for sock in socks:
-            sock._register_selector(self)
-        yield self
-        for sock in socks:
-            sock._unregister_selector(self)
-
-    def __call__(self, timeout):
-        started = time.time()
-        with self.cv, self._register_sockets(chain(self.rlist, self.wlist, self.xlist)):
-            while True:
-                # Checking if sockets are ready (readable OR writable)
-                # converts selection from detecting edges to detecting levels
-                selected_rlist = set(sock for sock in self.rlist if sock.fileno()._readable())
-                selected_wlist = set(sock for sock in self.wlist if sock.fileno()._writable())
-                # FIXME add support for exceptions
-                selected_xlist = []
-
-                # As usual with condition variables, we need to ensure
-                # there's not a spurious wakeup; this test also ensures
-                # shortcircuiting if the socket was in fact ready for
-                # reading/writing/exception before the select call
-                if selected_rlist or selected_wlist:
-                    completed = sorted(selected_rlist), sorted(selected_wlist), sorted(selected_xlist)
-                    log.debug("Completed select %s", completed, extra={"sock": "*"})
-                    return completed
-                elif timeout is not None and time.time() - started >= timeout:
-                    return [], [], []
-                self.cv.wait(timeout)
-
-
-# poll support
-##############
-
-_PollNotification = namedtuple(
-    "_PollNotification",
-    ["sock",  # the real socket
-     "fd",    # could be the real socket (as returned by fileno) or a wrapping socket object
-     "exception",
-     "hangup"])
-
-
-class poll(object):
-
-    def __init__(self):
-        self.queue = LinkedBlockingQueue()
-        self.registered = dict()  # fd -> eventmask
-        self.socks2fd = dict_builder(MapMaker().weakKeys().makeMap)()  # sock -> fd
-
-    def notify(self, sock, exception=None, hangup=False):
-        notification = _PollNotification(
-            sock=sock,
-            fd=self.socks2fd.get(sock),
-            exception=exception,
-            hangup=hangup)
-        log.debug("Notify %s", notification, extra={"sock": "*"})
-
-        self.queue.put(notification)
-
-    def register(self, fd, eventmask=POLLIN|POLLPRI|POLLOUT):
-        if not hasattr(fd, "fileno"):
-            raise TypeError("argument must have a fileno() method")
-        sock = fd.fileno()
-        log.debug("Register fd=%s eventmask=%s", fd, eventmask, extra={"sock": sock})
-        self.registered[fd] = eventmask
-        self.socks2fd[sock] = fd
-        sock._register_selector(self)
-        self.notify(sock)  # Ensure we get an initial notification
-
-    def modify(self, fd, eventmask):
-        if not hasattr(fd, "fileno"):
-            raise TypeError("argument must have a fileno() method")
-        if fd not in self.registered:
-            raise error(errno.ENOENT, "No such file or directory")
-        self.registered[fd] = eventmask
-
-    def unregister(self, fd):
-        if not hasattr(fd, "fileno"):
-            raise TypeError("argument must have a fileno() method")
-        log.debug("Unregister socket fd=%s", fd, extra={"sock": fd.fileno()})
-        del self.registered[fd]
-        sock = fd.fileno()
-        sock._unregister_selector(self)
-
-    def _event_test(self, notification):
-        # Performs standard edge vs event polling, except that we get
-        # edges around errors and hangup
-        if notification is None:
-            return None, 0
-        mask = self.registered.get(notification.fd, 0)   # handle if concurrently removed, by simply ignoring
-        log.debug("Testing notification=%s mask=%s", notification, mask, extra={"sock": "*"})
-        event = 0
-        if mask & POLLIN and notification.sock._readable():
-            event |= POLLIN
-        if mask & POLLOUT and notification.sock._writable():
-            event |= POLLOUT
-        if mask & POLLERR and notification.exception:
-            event |= POLLERR
-        if mask & POLLHUP and (notification.hangup or not notification.sock.channel):
-            event |= POLLHUP
-        if mask & POLLNVAL and not notification.sock.peer_closed:
-            event |= POLLNVAL
-        log.debug("Tested notification=%s event=%s", notification, event, extra={"sock": "*"})
-        return notification.fd, event
-
-    def _handle_poll(self, poller):
-        notification = poller()
-        if notification is None:
-            return []
-
-        # Pull as many outstanding notifications as possible out
-        # of the queue
-        notifications = [notification]
-        self.queue.drainTo(notifications)
-        log.debug("Got notification(s) %s", notifications, extra={"sock": "MODULE"})
-        result = []
-        socks = set()
-
-        # But given how we notify, it's possible to see possible
-        # multiple notifications. Just return one (fd, event) for a
-        # given socket
-        for notification in notifications:
-            if notification.sock not in socks:
-                fd, event = self._event_test(notification)
-                if event:
-                    result.append((fd, event))
-                    socks.add(notification.sock)
-
-        # Repump sockets to pick up a subsequent level change
-        for sock in socks:
-            self.notify(sock)
+# select and poll support
+#########################
 
-        return result
+# Implemented in Java by _jysocket, which is told by each socket (the
+# base of _realsocket) when it may have become ready. select itself is
+# defined below, with the other exported functions.
 
-    def poll(self, timeout=None):
-        if not (timeout is None or isinstance(timeout, numbers.Real)):
-            raise TypeError("timeout must be a number or None, got %r" % (timeout,))
-        if timeout < 0:
-            timeout = None
-        log.debug("Polling timeout=%s", timeout, extra={"sock": "*"})
-        if timeout is None:
-            return self._handle_poll(self.queue.take)
-        elif timeout == 0:
-            return self._handle_poll(self.queue.poll)
-        else:
-            timeout = float(timeout) / 1000.  # convert from milliseconds to seconds
-            while timeout > 0:
-                started = time.time()
-                timeout_in_ns = int(timeout * _TO_NANOSECONDS)
-                result = self._handle_poll(partial(self.queue.poll, timeout_in_ns, TimeUnit.NANOSECONDS))
-                if result:
-                    return result
-                timeout -= time.time() - started
-                log.debug("Spurious wakeup, retrying with timeout=%s", timeout, extra={"sock": "*"})
-            return []
+poll = _jysocket.poll
+epoll = _jysocket.epoll
 
 
 # integration with Netty
 ########################
 
-class PythonInboundHandler(ChannelInboundHandlerAdapter):
-
-    def __init__(self, sock):
-        self.sock = sock
-        log.debug("Initializing inbound handler", extra={"sock": self.sock})
-
-    def channelActive(self, ctx):
-        log.debug("Channel is active", extra={"sock": self.sock})
-        self.sock._notify_selectors()
-        ctx.fireChannelActive()
-
-    def channelRead(self, ctx, msg):
-        log.debug("Channel read message %s", msg, extra={"sock": self.sock})
-        msg.retain()  # bump ref count so it can be used in the blocking queue
-        self.sock.incoming.put(msg)
-        self.sock._notify_selectors()
-        ctx.fireChannelRead(msg)
-
-    def channelWritabilityChanged(self, ctx):
-        log.debug("Channel ready for write", extra={"sock": self.sock})
-        self.sock._notify_selectors()
-        ctx.fireChannelWritabilityChanged()
-
-    def exceptionCaught(self, ctx, cause):
-        log.debug("Channel caught exception %s", cause, extra={"sock": self.sock})
-        self.sock._notify_selectors(exception=cause)
-
-
 class ChildSocketHandler(ChannelInitializer):
 
     def __init__(self, parent_socket):
@@ -762,7 +597,7 @@ def _socktuple(addr):
 # actual socket support
 #######################
 
-class _realsocket(object):
+class _realsocket(_jysocket.socket):
 
     def __init__(self, family=None, type=None, proto=0):
         # FIXME verify args are correct
@@ -781,7 +616,6 @@ class _realsocket(object):
         self.timeout = _defaulttimeout
         self.channel = None
         self.bind_addr = _EPHEMERAL_ADDRESS
-        self.selectors = CopyOnWriteArrayList()
         self.options = {}  # deferred options until bootstrap
         self.peer_closed = False
         self.channel_closed = False
@@ -792,10 +626,7 @@ class _realsocket(object):
 
         if self.type == SOCK_DGRAM:
             self.socket_type = DATAGRAM_SOCKET
-            self.incoming = LinkedBlockingQueue()  # list of read buffers
-            self.incoming_head = None  # allows msg buffers to be broken up
-            self.python_inbound_handler = None
-            self._can_write = True
+            self.inbound_handler = None
         else:
             self.socket_type = UNKNOWN_SOCKET
 
@@ -806,41 +637,6 @@ class _realsocket(object):
     def _make_active(self):
         pass
 
-    def _register_selector(self, selector):
-        self._make_active()  # attempting to poll/select on a socket means waiting for wrap intent is done
-        self.selectors.addIfAbsent(selector)
-
-    def _unregister_selector(self, selector):
-        try:
-            return self.selectors.remove(selector)
-        except ValueError:
-            return None
-        except ArrayIndexOutOfBoundsException:
-            return None
-
-    def _notify_selectors(self, exception=None, hangup=False):
-        for selector in self.selectors:
-            selector.notify(self, exception=exception, hangup=hangup)
-
-    @raises_java_exception
-    def _handle_channel_future(self, future, reason):
-        # All differences between nonblocking vs blocking with optional timeouts
-        # is managed by this method.
-        #
-        # All sockets can be selected on, regardless of blocking/nonblocking state.
-        future.addListener(self._notify_selectors)
-        if self.timeout is None:
-            log.debug("Syncing on future %s for %s", future, reason, extra={"sock": self})
-            return future.sync()
-        elif self.timeout:
-            self._handle_timeout(future.await, reason)
-            if not future.isSuccess():
-                log.debug("Got this failure %s during %s", future.cause(), reason, extra={"sock": self})
-                raise future.cause()
-            return future
-        else:
-            return future
-
     def setblocking(self, flag):
         if flag:
             self.settimeout(None)
@@ -883,17 +679,15 @@ class _realsocket(object):
     def _init_client_mode(self, channel=None):
         # this is client socket specific
         self.socket_type = CLIENT_SOCKET
-        self.incoming = LinkedBlockingQueue()  # list of read buffers
-        self.incoming_head = None  # allows msg buffers to be broken up
-        self.python_inbound_handler = None
+        self.inbound_handler = None
         self._can_write = True
         self.connect_handlers = []
         self.connected = False
         if channel:
             log.debug("Setting up channel %s", channel, extra={"sock": self})
             self.channel = channel
-            self.python_inbound_handler = PythonInboundHandler(self)
-            self.connect_handlers = [self.python_inbound_handler]
+            self.inbound_handler = InboundHandler(self)
+            self.connect_handlers = [self.inbound_handler]
             self.connected = True
 
     def _connect(self, addr):
@@ -901,8 +695,8 @@ class _realsocket(object):
         addr = _get_jsockaddr(addr, self.family, self.type, self.proto, 0)
         self._init_client_mode()
         self.connected = True
-        self.python_inbound_handler = PythonInboundHandler(self)
-        bootstrap = Bootstrap().group(NIO_GROUP).channel(NioSocketChannel)
+        self.inbound_handler = InboundHandler(self)
+        bootstrap = Bootstrap().group(NIO_GROUP).channel(_SocketChannel)
         for option, value in self.options.iteritems():
             _set_option(bootstrap.option, option, value)
 
@@ -912,7 +706,7 @@ class _realsocket(object):
             for handler in self.connect_handlers:
                 bootstrap.handler(handler)
         else:
-            bootstrap.handler(self.python_inbound_handler)
+            bootstrap.handler(self.inbound_handler)
 
         if self.bind_addr:
             log.debug("Connect %s to %s", self.bind_addr, addr, extra={"sock": self})
@@ -931,16 +725,8 @@ class _realsocket(object):
         # otherwise the read adapter can race in seeing encrypted
         # messages from the peer
         if self.connect_handlers:
-            self.channel.pipeline().addLast(self.python_inbound_handler)
-
-        def _peer_closed(x):
-            log.debug("Peer closed channel %s", x, extra={"sock": self})
-            self.channel_closed = True
-            self.incoming.put(_PEER_CLOSED)
-            self._notify_selectors(hangup=True)
-
-        log.debug("Add _peer_closed to channel close", extra={"sock": self}) 
-        self.channel.closeFuture().addListener(_peer_closed)
+            self.channel.pipeline().addLast(self.inbound_handler)
+        self._watch_close()
 
     def connect(self, addr):
         # Unwrapped sockets can immediately perform the post-connect step
@@ -1001,12 +787,12 @@ class _realsocket(object):
 
         b = ServerBootstrap()
         try:
-            self.parent_group = NioEventLoopGroup(_NUM_THREADS, DaemonThreadFactory("Jython-Netty-Parent-%s"))
-            self.child_group = NioEventLoopGroup(_NUM_THREADS, DaemonThreadFactory("Jython-Netty-Child-%s"))
+            self.parent_group = _EventLoopGroup(_NUM_THREADS, DaemonThreadFactory("Jython-Netty-Parent-%s"))
+            self.child_group = _EventLoopGroup(_NUM_THREADS, DaemonThreadFactory("Jython-Netty-Child-%s"))
         except IllegalStateException:
             raise error(errno.EMFILE, "Cannot allocate thread pool for server socket")
         b.group(self.parent_group, self.child_group)
-        b.channel(NioServerSocketChannel)
+        b.channel(_ServerSocketChannel)
         b.option(ChannelOption.SO_BACKLOG, backlog)
         for option, value in self.options.iteritems():
             _set_option(b.option, option, value)
@@ -1051,9 +837,9 @@ class _realsocket(object):
         if not self.connected and self.socket_type == DATAGRAM_SOCKET:
             log.debug("Binding datagram socket to %s", self.bind_addr, extra={"sock": self})
             self.connected = True
-            self.python_inbound_handler = PythonInboundHandler(self)
-            bootstrap = Bootstrap().group(NIO_GROUP).channel(NioDatagramChannel)
-            bootstrap.handler(self.python_inbound_handler)
+            self.inbound_handler = InboundHandler(self)
+            bootstrap = Bootstrap().group(NIO_GROUP).channel(_DatagramChannel)
+            bootstrap.handler(self.inbound_handler)
             for option, value in self.options.iteritems():
                 _set_option(bootstrap.option, option, value)
 
@@ -1088,20 +874,6 @@ class _realsocket(object):
         self._handle_channel_future(future, "sendto")
         return len(string)
 
-    def recvfrom_into(self, buffer, nbytes=0, flags=0):
-        if nbytes == 0:
-            nbytes = len(buffer)
-        data, remote_addr = self.recvfrom(nbytes, flags)
-        buffer[0:len(data)] = data
-        return len(data), remote_addr
-
-    def recv_into(self, buffer, nbytes=0, flags=0):
-        if nbytes == 0:
-            nbytes = len(buffer)
-        data = self.recv(nbytes, flags)
-        buffer[0:len(data)] = data
-        return len(data)
-
     # GENERAL METHODS
 
     def close(self):
@@ -1129,11 +901,7 @@ class _realsocket(object):
                 log.debug("Closed child socket %s not yet accepted", child, extra={"sock": self})
                 child.close()
         else:
-            msgs = []
-            self.incoming.drainTo(msgs)
-            for msg in msgs:
-                if msg is not _PEER_CLOSED:
-                    msg.release()
+            self._release_incoming()
 
         log.debug("Closed socket", extra={"sock": self})
 
@@ -1142,7 +910,7 @@ class _realsocket(object):
         self._verify_channel()
         if how & SHUT_RD or how & SHUT_RDWR:
             try:
-                self.channel.pipeline().remove(self.python_inbound_handler)
+                self.channel.pipeline().remove(self.inbound_handler)
             except NoSuchElementException:
                 pass  # already removed, can safely ignore (presumably)
             except AttributeError:
@@ -1150,153 +918,6 @@ class _realsocket(object):
         if how & SHUT_WR or how & SHUT_RDWR:
             self._can_write = False
 
-    def _readable(self):
-        if self.socket_type == CLIENT_SOCKET or self.socket_type == DATAGRAM_SOCKET:
-            log.debug("Incoming head=%s queue=%s", self.incoming_head, self.incoming, extra={"sock": self})
-            return bool(
-                (self.incoming_head is not None and self.incoming_head.readableBytes()) or
-                self.incoming.peek())
-        elif self.socket_type == SERVER_SOCKET:
-            return bool(self.child_queue.peek())
-        else:
-            return False
-
-    def _pending(self):
-        # Used by ssl.py for an undocumented function used in tests
-        # and of course some user code. Note that with Netty,
-        # readableBytes() in incoming or incoming_head are guaranteed
-        # to be plaintext because of the way pipelines work.  However
-        # this is a terrible function to call because it's trying to
-        # do something synchronous in the async setting of sockets.
-        if self.socket_type == CLIENT_SOCKET or self.socket_type == DATAGRAM_SOCKET:
-            if self.incoming_head is not None:
-                pending = self.incoming_head.readableBytes()
-            else:
-                pending = 0
-            for msg in self.incoming:
-                pending += msg.readableBytes()
-            return pending
-        return 0
-
-    def _writable(self):
-        return self.channel_closed or (self.channel and self.channel.isActive() and self.channel.isWritable())
-
-    can_write = _writable
-
-    def _verify_channel(self):
-        if self.channel is None:
-            log.debug("Channel is not connected or setup", extra={"sock": self})
-            raise error(errno.ENOTCONN, "Socket is not connected")
-
-    @raises_java_exception
-    def send(self, data, flags=0):
-        # FIXME this almost certainly needs to chunk things
-        self._verify_channel()
-        if isinstance(data, memoryview):
-            data = data.tobytes()
-        data = str(data)  # FIXME temporary fix if data is of type buffer
-        log.debug("Sending data <<<{!r:.20}>>>".format(data), extra={"sock": self})
-
-        if self.socket_type == DATAGRAM_SOCKET:
-            packet = DatagramPacket(Unpooled.wrappedBuffer(data), self.channel.remoteAddress())
-            future = self.channel.writeAndFlush(packet)
-            self._handle_channel_future(future, "send")
-            return len(data)
-
-        if not self._can_write:
-            raise error(errno.ENOTCONN, 'Socket not connected')
-
-        bytes_writable = self.channel.bytesBeforeUnwritable()
-        if bytes_writable > len(data):
-            bytes_writable = len(data)
-
-        sent_data = data[:bytes_writable]
-
-        future = self.channel.writeAndFlush(Unpooled.wrappedBuffer(sent_data))
-        self._handle_channel_future(future, "send")
-        log.debug("Sent data <<<{!r:.20}>>>".format(sent_data), extra={"sock": self})
-
-        return len(sent_data)
-
-    sendall = send   # FIXME see note above!
-
-    def _get_incoming_msg(self, reason):
-        log.debug("head=%s incoming=%s" % (self.incoming_head, self.incoming), extra={"sock": self})
-        if self.incoming_head is None:
-            if self.timeout is None:
-                if self.peer_closed:
-                    return None
-                self.incoming_head = self.incoming.take()
-            elif self.timeout:
-                if self.peer_closed:
-                    return None
-                self.incoming_head = self._handle_timeout(self.incoming.poll, reason)
-            else:
-                self.incoming_head = self.incoming.poll()  # Could be None
-                if self.incoming_head is None:
-                    # FIXME FIXME C socket semantics return a '' after the first EAGAIN (not certain if this gets reset or not)
-                    log.debug("No data yet for socket", extra={"sock": self})
-                    raise error(errno.EAGAIN, "Resource temporarily unavailable")
-
-        msg = self.incoming_head
-        if msg is _PEER_CLOSED:
-            # Only return _PEER_CLOSED once
-            self.incoming_head = None
-            self.peer_closed = True
-        return msg
-
-    @raises_java_exception
-    def _get_message(self, bufsize, reason):
-        self._datagram_connect()
-        self._verify_channel()
-        msg = self._get_incoming_msg(reason)
-
-        if self.socket_type == DATAGRAM_SOCKET:
-            if msg is None:
-                return None, None
-            elif msg is _PEER_CLOSED:
-                return "", None
-        else:
-            if msg is None:
-                return None, self.channel.remoteAddress()
-            elif msg is _PEER_CLOSED:
-                return "", self.channel.remoteAddress()
-
-        if self.socket_type == DATAGRAM_SOCKET:
-            content = msg.content()
-            sender = msg.sender()
-        else:
-            content = msg
-            sender = self.channel.remoteAddress()
-        msg_length = content.readableBytes()
-        buf = jarray.zeros(min(msg_length, bufsize), "b")
-        content.readBytes(buf)
-        if content.readableBytes() == 0:
-            msg.release()  # return msg ByteBuf back to Netty's pool
-            self.incoming_head = None
-        return buf.tostring(), sender
-
-    def recv(self, bufsize, flags=0):
-        self._verify_channel()
-        log.debug("Waiting on recv", extra={"sock": self})
-        # For obvious reasons, concurrent reads on the same socket
-        # have to be locked; I don't believe it is the job of recv to
-        # do this; in particular this is the policy of SocketChannel,
-        # which underlies Netty's support for such channels.
-        data, _ = self._get_message(bufsize, "recv")
-        log.debug("Received <<<{!r:.20}>>>".format(data), extra={"sock": self})
-        return data
-
-    def recvfrom(self, bufsize, flags=0):
-        self._verify_channel()
-        data, sender = self._get_message(bufsize, "recvfrom")
-        remote_addr = sender.getHostString(), sender.getPort()
-        log.debug("Received from sender %s <<<{!r:20}>>>".format(data), remote_addr, extra={"sock": self})
-        return data, remote_addr
-
-    def fileno(self):
-        return self
-
     @raises_java_exception
     def setsockopt(self, level, optname, value):
         try:
@@ -1372,11 +993,11 @@ _socketmethods = (
 
 # All the method names that must be delegated to either the real socket
 # object or the _closedsocket object.
-# For socket-reboot, this also means anything used by _Select
+# For socket-reboot, this also means anything used by select
 
 _delegate_methods = (
-    "recv", "recvfrom", "recv_into", "recvfrom_into",
-    "send", "sendto", "fileno")
+    "recv", "recvfrom", "recv_into", "recvfrom_into", "recvmsg_into",
+    "send", "sendto", "sendmsg", "fileno")
 
 class _closedsocket(object):
 
@@ -1388,6 +1009,7 @@ class _closedsocket(object):
 
     # All _delegate_methods must also be initialized here.
     fileno = send = recv = recv_into = sendto = recvfrom = recvfrom_into = _dummy
+    recvmsg_into = sendmsg = _dummy
 
     __getattr__ = _dummy
 
@@ -1495,20 +1117,6 @@ class ChildSocket(_realsocket):
     # connected. These should be ops that send/receive/change
     # connection, not metadata.
 
-    def send(self, data):
-        self._make_active()
-        return super(ChildSocket, self).send(data)
-
-    sendall = send
-
-    def recv(self, bufsize, flags=0):
-        self._make_active()
-        return super(ChildSocket, self).recv(bufsize, flags)
-
-    def recvfrom(self, bufsize, flags=0):
-        self._make_active()
-        return super(ChildSocket, self).recvfrom(bufsize, flags)
-
     def setblocking(self, mode):
         self._make_active()
         return super(ChildSocket, self).setblocking(mode)
@@ -1550,7 +1158,7 @@ def select(rlist, wlist, xlist, timeout=None):
         raise TypeError("timeout must be a float or None")
     if timeout is not None and timeout < 0:
         raise error(errno.EINVAL, "Invalid argument")
-    return _Select(rlist, wlist, xlist)(timeout)
+    return _jysocket.select(rlist, wlist, xlist, timeout)
 
 
 def create_connection(address, timeout=_GLOBAL_DEFAULT_TIMEOUT,
@@ -0,0 +1,109 @@
+# -*- coding: utf-8 -*-
+from collections import OrderedDict
+from decimal import Decimal
+from StringIO import StringIO
+from json.tests import CTest, pyjson
+from test import test_support
+
+
+class Trickle(object):
+    """File-like object returning a few characters per read."""
+
+    def __init__(self, text, n=3):
+        self.text, self.n, self.pos = text, n, 0
+
+    def read(self, size=-1):
+        chunk = self.text[self.pos:self.pos + self.n]
+        self.pos += len(chunk)
+        return chunk
+
+
+class ReadAll(object):
+    """File-like object whose read() takes no size."""
+
+    def __init__(self, text):
+        self.text = text
+
+    def read(self):
+        return self.text
+
+
+class TestNativeDecoder(CTest):
+    # The Java decoder gives the same results as the Python one, and the
+    # same errors whether the document is given whole or read from a file
+
+    docs = [
+        '{"a": [1, 2.5, -3e2, 0, -0.0, 1E+2, 12345678901234567890], "b": {"c": null}}',
+        '  [true, false, "x\\"y\\\\z\\/\\b\\f\\n\\r\\t", "\\u00e9\\ud83d\\ude00", ""]  ',
+        '"caf\xc3\xa9"', u'{"k\xe9": [u"\U0001f600", "\U0001f600"]}'.replace('u"', '"'),
+        '[NaN, Infinity, -Infinity, 1e400]', '[{"a": 1, "a": 2}, {}, [], [[]]]',
+        '\n\n  {"x":\n [1,\n 2]}', '123', '-1.5e-3',
+    ]
+
+    bad = [
+        '', '  ', '[1, 2', '{"a" 1}', '{"a": 1,}', '[1,]', '{1: 2}', '"abc', '"\\x"',
+        '"\\u12"', '"\\ud800"', '"\\ud800\\u0041"', '"\\udc00"', '[1] x', '[1]\n\n  ]',
+        '\n{"a":\n  [1 2]}', '"\x01"', '[-]', '{"a": [1, {"b": 2}}', '1e',
+    ]
+
+    def streamed(self, doc, **kw):
+        return self.json.load(Trickle(doc), **kw)
+
+    def test_same_as_python(self):
+        for doc in self.docs:
+            expected = repr(pyjson.loads(doc))
+            self.assertEqual(repr(self.loads(doc)), expected)
+            self.assertEqual(repr(self.streamed(doc)), expected)
+            self.assertEqual(repr(self.json.load(StringIO(doc))), expected)
+            self.assertEqual(repr(self.json.load(ReadAll(doc))), expected)
+
+    def test_errors(self):
+        for doc in self.bad:
+            with self.assertRaises(ValueError) as cm:
+                self.json.decoder.JSONDecoder().decode(doc)
+            expected = str(cm.exception)
+            for decode in (self.loads, self.streamed, lambda doc: self.json.load(ReadAll(doc))):
+                with self.assertRaises(ValueError) as cm:
+                    decode(doc)
+                self.assertEqual(str(cm.exception), expected)
+
+    def test_hooks(self):
+        doc = '{"b": [1.10, 2], "a": {"c": 3}}'
+        for decode in (self.loads, self.streamed):
+            self.assertEqual(decode(doc, parse_float=Decimal), {'b': [Decimal('1.10'), 2], 'a': {'c': 3}})
+            self.assertEqual(decode(doc, parse_int=str), {'b': [1.1, '2'], 'a': {'c': '3'}})
+            self.assertEqual(decode('[NaN]', parse_constant=str), ['NaN'])
+            self.assertEqual(decode(doc, object_pairs_hook=OrderedDict).keys(), ['b', 'a'])
+            self.assertEqual(decode(doc, object_hook=len), 2)
+            self.assertEqual(decode('"\x01"', strict=False), u'\x01')
+            self.assertEqual(decode('"caf\xe9"', encoding='latin-1'), u'caf\xe9')
+
+    def test_keys_shared(self):
+        rows = self.loads('[{"name": 1}, {"name": 2}]')
+        self.assertIs(rows[0].keys()[0], rows[1].keys()[0])
+
+    def test_scan_once(self):
+        s = u'\U0001f600 [1, "\U0001f600"] x'
+        self.assertEqual(self.json.decoder.JSONDecoder().raw_decode(s, 2), ([1, u'\U0001f600'], 10))
+        self.assertEqual(pyjson.decoder.JSONDecoder().raw_decode(s, 2), ([1, u'\U0001f600'], 10))
+
+    def test_long_tokens_streamed(self):
+        doc = '["%s", %s]' % ('x' * 200000, '9' * 1000)
+        self.assertEqual(self.json.load(StringIO(doc)), ['x' * 200000, int('9' * 1000)])
+
+    def test_multibyte_split_between_reads(self):
+        # A character split by the end of a read is decoded whole
+        for n in 1, 2, 3, 4, 5:
+            doc = Trickle('["caf\xc3\xa9 \xf0\x9f\x98\x80"]', n)
+            self.assertEqual(self.json.load(doc), [u'caf\xe9 \U0001f600'])
+            doc = Trickle('"\xa4\xa2\\n\xa4\xa4"', n)
+            self.assertEqual(self.json.load(doc, encoding='euc-jp'), u'あ\nい')
+        doc = '["' + 'a' * 65533 + '\xc3\xa9"]'
+        self.assertEqual(self.json.load(StringIO(doc)), self.loads(doc))
+        with open(test_support.TESTFN, 'wb') as f:
+            f.write(doc)
+        try:
+            with open(test_support.TESTFN, 'rb') as f:
+                self.assertEqual(self.json.load(f), [u'a' * 65533 + u'\xe9'])
+        finally:
+            test_support.unlink(test_support.TESTFN)
@@ -0,0 +1,77 @@
+# -*- coding: utf-8 -*-
+from collections import OrderedDict
+from json.tests import CTest, pyjson
+
+
+class MyFloat(float):
+    def __repr__(self):
+        return '1.5e+00'
+
+
+class MyInt(int):
+    def __str__(self):
+        return '42'
+
+
+class Point(object):
+    def __init__(self, x, y):
+        self.x, self.y = x, y
+
+
+def default(o):
+    if isinstance(o, Point):
+        return [o.x, o.y]
+    raise TypeError(repr(o) + " is not JSON serializable")
+
+
+class TestNativeEncoder(CTest):
+    # The Java make_encoder gives the same results as the Python encoder
+
+    values = [
+        {'b': [1, 2.5, None], 'a': (True, False), u'c€': {'d': u'\U0001f600'}},
+        [0.1, 1e100, -0.0, 2L ** 70, -7, MyFloat(3.0), MyInt(7), 'tab\there'],
+        {3: 'x', 1.5: 'y', True: 'z', None: 'n', 2L: 'l'},
+        ['caf\xc3\xa9', '"quoted"\\', '\x00\x1f\x7f'],
+        [u'caf\xe9', u'\u2028"quoted"\\', u'\x00', 'ascii'],
+        OrderedDict([('z', 1), ('y', [Point(1, 2)])]),
+        [[], {}, [[]], {'': ''}],
+    ]
+
+    def check(self, obj, **kw):
+        expected = pyjson.dumps(obj, default=default, **kw)
+        actual = self.json.dumps(obj, default=default, **kw)
+        self.assertEqual(type(actual), type(expected))
+        self.assertEqual(actual, expected)
+
+    def test_same_as_python(self):
+        for obj in self.values:
+            for sort_keys in (False, True):
+                for ensure_ascii in (True, False):
+                    for separators in (None, (',', ':'), (' ,', ' : ')):
+                        self.check(obj, sort_keys=sort_keys, ensure_ascii=ensure_ascii,
+                                   separators=separators)
+        self.check(self.values[0], ensure_ascii=False, separators=(u'\u3001', u'\uff1a'))
+
+    def test_mixed_str_and_unicode(self):
+        # Non-ASCII str cannot be joined with unicode unless escaped
+        obj = ['caf\xc3\xa9', u'caf\xe9']
+        for json in (self.json, pyjson):
+            self.assertRaises(UnicodeDecodeError, json.dumps, obj, ensure_ascii=False)
+        self.check(['caf\xc3\xa9', 1], ensure_ascii=False)
+        self.check([u'caf\xe9', 'x'], ensure_ascii=False)
+
+    def test_errors(self):
+        self.assertRaises(ValueError, self.dumps, float('nan'), allow_nan=False)
+        self.assertRaises(TypeError, self.dumps, [object()])
+        self.assertRaises(TypeError, self.dumps, {(1, 2): 3})
+        self.assertEqual(self.dumps({(1, 2): 3, 'a': 4}, skipkeys=True), '{"a": 4}')
+        a = []
+        a.append(a)
+        self.assertRaises(ValueError, self.dumps, a)
+        d = {}
+        d['d'] = [d]
+        self.assertRaises(ValueError, self.dumps, d)
+        # Shared but not circular
+        b = [1]
+        self.assertEqual(self.dumps([b, b]), '[[1], [1]]')
+
@@ -252,7 +252,7 @@ def walk(top, topdown=True, onerror=None, followlinks=False):
     dirnames have already been generated by the time dirnames itself is
     generated.
 
-    By default errors from the os.listdir() call are ignored.  If
+    By default errors from the os.scandir() call are ignored.  If
     optional arg 'onerror' is specified, it should be a function; it
     will be called with one argument, an os.error instance.  It can
     report the error to continue with the walk, or raise the exception
@@ -280,7 +280,7 @@ def walk(top, topdown=True, onerror=None, followlinks=False):
             dirs.remove('CVS')  # don't visit CVS directories
     """
 
-    from os.path import join, isdir, islink
+    from os.path import join, islink
 
     # We may not have read permission for top, in which case we can't
     # get a list of the files the directory contains.  os.path.walk
@@ -288,26 +288,50 @@ def walk(top, topdown=True, onerror=None, followlinks=False):
     # minor reason when (say) a thousand readable directories are still
     # left to visit.  That logic is copied here.
     try:
-        # Note that listdir and error are globals in this module due
+        # Note that scandir and error are globals in this module due
         # to earlier import-*.
-        names = listdir(top)
+        entries = scandir(top)
     except error, err:
         if onerror is not None:
             onerror(err)
         return
 
-    dirs, nondirs = [], []
-    for name in names:
-        if isdir(join(top, name)):
-            dirs.append(name)
-        else:
-            nondirs.append(name)
+    # The entries know whether they are directories and links, mostly
+    # without a stat each.  Remember which directories are links, since
+    # the caller may only remove names from dirs before we recurse.  Only
+    # an error from reading the listing itself goes to onerror.
+    dirs, nondirs, links = [], [], {}
+    try:
+        with entries:
+            for entry in entries:
+                # If is_dir() fails (say the entry vanished, or has a
+                # stale stat), treat it as a non-directory, as
+                # os.path.isdir() would have.
+                try:
+                    is_dir = entry.is_dir()
+                except error:
+                    is_dir = False
+                if is_dir:
+                    dirs.append(entry.name)
+                    try:
+                        links[entry.name] = entry.is_symlink()
+                    except error:
+                        pass
+                else:
+                    nondirs.append(entry.name)
+    except error, err:
+        if onerror is not None:
+            onerror(err)
+        return
 
     if topdown:
         yield top, dirs, nondirs
     for name in dirs:
         path = join(top, name)
-        if followlinks or not islink(path):
+        is_link = links.get(name)
+        if is_link is None:
+            is_link = islink(path)
+        if followlinks or not is_link:
             for x in walk(path, topdown, onerror, followlinks):
                 yield x
     if not topdown:
@@ -7,8 +7,16 @@ from _socket import (
     POLLERR,
     POLLHUP,
     POLLNVAL,
+    EPOLLIN,
+    EPOLLPRI,
+    EPOLLOUT,
+    EPOLLERR,
+    EPOLLHUP,
+    EPOLLONESHOT,
+    EPOLLET,
     error,
     poll,
+    epoll,
     select)
 
 # backwards compatibility with Jython 2.5
@@ -16,4 +24,5 @@ cpython_compatible_select = select
 
 __all__ = [
     "POLLIN", "POLLOUT", "POLLPRI", "POLLERR", "POLLHUP", "POLLNVAL", 
-    "error", "poll", "select", "cpython_compatible_select"]
+    "EPOLLIN", "EPOLLPRI", "EPOLLOUT", "EPOLLERR", "EPOLLHUP", "EPOLLONESHOT", "EPOLLET",
+    "error", "poll", "epoll", "select", "cpython_compatible_select"]
@@ -439,6 +439,8 @@ elif jython:
     import java.nio.ByteBuffer
     import org.python.core.io.RawIOBase
     import org.python.core.io.StreamIO
+    import org.python.modules._subprocess.ProcessPump
+    import org.python.modules._subprocess.SpawnedProcess
     from org.python.core.Py import fileSystemDecode
 else:
     import select
@@ -803,6 +805,37 @@ if jython:
 
 
 if jython:
+    def _choose_launcher(name):
+        """Return whether to start processes with posix_spawn, given
+        the python.subprocess.launcher setting: 'processbuilder' for
+        java.lang.ProcessBuilder, or 'posix_spawn' where available
+        """
+        import warnings
+        if name == 'posix_spawn':
+            if org.python.modules._subprocess.SpawnedProcess.isAvailable():
+                return True
+            warnings.warn('posix_spawn is not available, using '
+                          'ProcessBuilder', RuntimeWarning, 2)
+        elif name != 'processbuilder':
+            warnings.warn('Unknown python.subprocess.launcher %r, using '
+                          'ProcessBuilder' % (name,), RuntimeWarning, 2)
+        return False
+
+    _posix_spawn = _choose_launcher(sys.registry.getProperty(
+            'python.subprocess.launcher', 'processbuilder'))
+
+    def _start_process(builder):
+        """Start the process the ProcessBuilder describes, with
+        posix_spawn if so configured and it can (which is not when the
+        working directory is other than the JVM's)
+        """
+        if _posix_spawn:
+            process = org.python.modules._subprocess.SpawnedProcess.start(
+                builder)
+            if process is not None:
+                return process
+        return builder.start()
+
     def _setup_env(env, builder_env):
         """Carefully merge env with ProcessBuilder's only
         overwriting key/values that differ
@@ -907,8 +940,8 @@ class Popen(object):
 
         if jython:
             self._stdin_thread = None
-            self._stdout_thread = None
-            self._stderr_thread = None
+            self._stdout_transfer = None
+            self._stderr_transfer = None
 
             # 'ct' is for _CouplerThread
             proc = self._process
@@ -920,7 +953,8 @@ class Popen(object):
 
             # Use the java.lang.Process streams for PIPE, otherwise
             # direct the desired file to/from the java.lang.Process
-            # streams in a separate thread
+            # streams: stdin in a separate thread, and stdout and
+            # stderr on the ProcessPump thread shared by all processes
             if p2cwrite == PIPE:
                 p2cwrite = ct2cwrite
             else:
@@ -944,10 +978,7 @@ class Popen(object):
                 if c2pwrite is None:
                     c2pwrite = org.python.core.io.StreamIO(
                         java.lang.System.out, False)
-                self._stdout_thread = self._coupler_thread('stdout',
-                                                           c2ctread.readinto,
-                                                           c2pwrite.write)
-                self._stdout_thread.start()
+                self._stdout_transfer = self._pump('stdout', c2pwrite)
 
             if errread == PIPE:
                 errread = cterrread
@@ -955,10 +986,7 @@ class Popen(object):
                 if errwrite is None:
                     errwrite = org.python.core.io.StreamIO(
                         java.lang.System.err, False)
-                self._stderr_thread = self._coupler_thread('stderr',
-                                                           cterrread.readinto,
-                                                           errwrite.write)
-                self._stderr_thread.start()
+                self._stderr_transfer = self._pump('stderr', errwrite)
 
         if p2cwrite is not None:
             self.stdin = os.fdopen(p2cwrite, 'wb', bufsize)
@@ -1025,9 +1053,9 @@ class Popen(object):
         return self._internal_poll()
 
 
-    if mswindows or jython:
+    if mswindows:
         #
-        # Windows and Jython shared methods
+        # Windows methods
         #
         def _readerthread(self, fh, buffer):
             buffer.append(fh.read())
@@ -1329,6 +1357,55 @@ class Popen(object):
             return _CouplerThread(*args, **kwargs)
 
 
+        def _pump(self, name, writer=None):
+            """Copy the child's stdout or stderr to the writer (a
+            RawIOBase), or if None, collect it, on the ProcessPump
+            thread. Return the ProcessPump.Transfer"""
+            proc = self._process
+            if name == 'stdout':
+                stream = proc.getInputStream()
+            else:
+                stream = proc.getErrorStream()
+            if writer is None:
+                return org.python.modules._subprocess.ProcessPump.collect(
+                    name, proc, stream)
+            return org.python.modules._subprocess.ProcessPump.copy(
+                name, proc, stream, writer)
+
+
+        def _communicate(self, input):
+            # Collect stdout and stderr on the ProcessPump thread,
+            # rather than in a thread each
+            stdout = None # Return
+            stderr = None # Return
+
+            if self.stdout:
+                stdout = self._pump('stdout')
+            if self.stderr:
+                stderr = self._pump('stderr')
+
+            if self.stdin:
+                if input is not None:
+                    self.stdin.write(input)
+                self.stdin.close()
+
+            if stdout is not None:
+                stdout.join()
+                stdout = stdout.getvalue()
+            if stderr is not None:
+                stderr.join()
+                stderr = stderr.getvalue()
+
+            if self.universal_newlines and hasattr(file, 'newlines'):
+                if stdout:
+                    stdout = self._translate_newlines(stdout)
+                if stderr:
+                    stderr = self._translate_newlines(stderr)
+
+            self.wait()
+            return (stdout, stderr)
+
+
 
 
         def _execute_child(self, args, executable, preexec_fn, close_fds,
@@ -1392,7 +1469,7 @@ class Popen(object):
                 builder.redirectErrorStream(True)
 
             try:
-                self._process = builder.start()
+                self._process = _start_process(builder)
             except (java.io.IOException,
                     java.lang.IllegalArgumentException), e:
                 msg = e.getMessage()
@@ -1473,9 +1550,9 @@ class Popen(object):
             attribute."""
             if self.returncode is None:
                 self.returncode = self._process.waitFor()
-            for coupler in (self._stdout_thread, self._stderr_thread):
-                if coupler:
-                    coupler.join()
+            for transfer in (self._stdout_transfer, self._stderr_transfer):
+                if transfer:
+                    transfer.join()
             if self._stdin_thread:
                 # The stdin thread may be blocked forever, forcibly
                 # stop it
@@ -1949,7 +2026,7 @@ def _os_system(command):
     builder.redirectError(java.lang.ProcessBuilder.Redirect.INHERIT)
     _setup_env(dict(os.environ), builder.environment())
     try:
-        return builder.start().waitFor()
+        return _start_process(builder).waitFor()
     except (java.io.IOException,
             java.lang.IllegalArgumentException), e:
         raise OSError(e.getMessage() or e)
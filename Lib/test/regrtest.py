@@ -1252,7 +1252,6 @@ _expectations = {
         test_linuxaudiodev
         test_macfs
         test_macostools
-        test_mmap
         test_modulefinder
         test_msilib
         test_multiprocessing
@@ -3,9 +3,11 @@
 Made for Jython.
 """
 import __builtin__
+import subprocess
 import sys
 import cPickle
 import pickle
+import threading
 import unittest
 from StringIO import StringIO
 from test import test_support
@@ -89,6 +91,88 @@ class CPickleTestCase(unittest.TestCase):
         finally:
             __builtin__.__import__ = original_import
 
+    def test_file_position(self):
+        # Pickles are read from a file in blocks, but each load leaves the
+        # file positioned just after the pickle it read.
+        data = [range(300), {'a': u'\u20ac' * 5000}, 'x' * 20000, None]
+        for mode in ('b', ''):
+            for proto in (0, 1, 2):
+                with open(test_support.TESTFN, 'w' + mode) as f:
+                    for obj in data:
+                        cPickle.dump(obj, f, proto)
+                        f.write('|')
+                try:
+                    with open(test_support.TESTFN, 'r' + mode) as f:
+                        for obj in data:
+                            self.assertEqual(cPickle.load(f), obj)
+                            self.assertEqual(f.read(1), '|')
+                        self.assertRaises(EOFError, cPickle.load, f)
+                        u = cPickle.Unpickler(f)
+                        f.seek(0)
+                        for obj in data:
+                            self.assertEqual(u.load(), obj)
+                            f.read(1)
+                finally:
+                    test_support.unlink(test_support.TESTFN)
+
+    def test_large_memo(self):
+        # Shared references beyond the range of BINGET, and LONG_BINPUT keys
+        # far from those the pickler assigns
+        items = [[i] for i in range(1000)]
+        data = [items, items[::-1]]
+        for proto in (0, 1, 2):
+            copy = cPickle.loads(cPickle.dumps(data, proto))
+            self.assertEqual(copy, data)
+            for a, b in zip(copy[0], reversed(copy[1])):
+                self.assertTrue(a is b)
+        s = (pickle.EMPTY_LIST + pickle.LONG_BINPUT + '\xff\xff\xff\x7f' +
+             pickle.LONG_BINGET + '\xff\xff\xff\x7f' + pickle.TUPLE2 + pickle.STOP)
+        a, b = cPickle.loads(s)
+        self.assertTrue(a is b)
+        self.assertRaises(cPickle.BadPickleGet, cPickle.loads,
+                          pickle.LONG_BINGET + '\x05\x00\x00\x00' + pickle.STOP)
+
+    def test_memo(self):
+        # The memo of BINPUT and LONG_BINPUT is visible by the string form of
+        # each key, and may be primed by the application
+        items = [[i] for i in range(200)]
+        u = cPickle.Unpickler(StringIO(cPickle.dumps([items, items], 2)))
+        data = u.load()
+        self.assertTrue(data[0] is data[1])
+        self.assertTrue(u.memo['1'] is data)
+        self.assertTrue(u.memo['150'] in items)
+        self.assertEqual(len(u.memo), len(set(u.memo.keys())))
+        self.assertTrue('150' in set(u.memo.keys()))
+        shared = object()
+        u = cPickle.Unpickler(StringIO(pickle.BINGET + '\x07' + pickle.STOP))
+        u.memo['7'] = shared
+        self.assertTrue(u.load() is shared)
+
+    def test_fifo(self):
+        # A FIFO cannot seek back, so is not read ahead
+        data = [range(300), 'x' * 20000]
+        try:
+            subprocess.check_call(['mkfifo', test_support.TESTFN])
+        except (OSError, subprocess.CalledProcessError):
+            self.skipTest('requires mkfifo')
+        try:
+            def write():
+                with open(test_support.TESTFN, 'wb') as f:
+                    for obj in data:
+                        cPickle.dump(obj, f, 2)
+                    f.write('|')
+            writer = threading.Thread(target=write)
+            writer.start()
+            try:
+                with open(test_support.TESTFN, 'rb') as f:
+                    for obj in data:
+                        self.assertEqual(cPickle.load(f), obj)
+                    self.assertEqual(f.read(1), '|')
+            finally:
+                writer.join()
+        finally:
+            test_support.unlink(test_support.TESTFN)
+
 
 
 def test_main():
@@ -5,7 +5,11 @@
 
 import csv
 import io
+import os
+import subprocess
 import sys
+import tempfile
+import threading
 from tempfile import TemporaryFile
 from test import test_support
 import unittest
@@ -81,12 +85,161 @@ class TestUnicode(unittest.TestCase):
                 self.assertEqual(fileobj.read().decode(), expected)
 
 
+class TestBulk(unittest.TestCase):
+    """readrows() on a file reads it in chunks, with the same results as iterating."""
+
+    samples = [
+        'a,b,c\r\n1,2,3\r\n',
+        'a,"b\r\nc",d\n"e ""f"" g",h\n\n,\n',
+        '"unterminated\nquote',
+        'x,y\nlast line without end',
+        'a,b\r\nc\rd\n',
+        'nul\0byte\nafter,the\nerror\n',
+        'bad"quote,"x"y\n1,2\n',
+        '\\,escaped\\\n,\n"in \\" quotes"\n',
+        ('%s,"%s"\r\n' % ('x' * 5000, 'y\n' * 300)) * 40,
+    ]
+    dialects = [{}, {'strict': True}, {'escapechar': '\\'}, {'quoting': csv.QUOTE_NONE},
+                {'delimiter': ';', 'skipinitialspace': True}, {'doublequote': False}]
+
+    def outcomes(self, next_row):
+        # The rows, errors and line numbers from calling next_row until the input is exhausted
+        result = []
+        while True:
+            try:
+                row = next_row()
+                if not row:
+                    break
+                result.extend(row)
+            except csv.Error as e:
+                result.append(str(e))
+            except StopIteration:
+                break
+        return result
+
+    def compare(self, data, **kwargs):
+        with TemporaryFile("w+b") as f:
+            f.write(data)
+            f.seek(0)
+            # Iterating over the lines of something other than a file
+            reader = csv.reader(iter(f.readline, ''), **kwargs)
+            expected = self.outcomes(lambda: [reader.next() + [reader.line_num]])
+            f.seek(0)
+            reader = csv.reader(f, **kwargs)
+            self.assertEqual(
+                self.outcomes(lambda: [r + [reader.line_num] for r in reader.readrows(1)]),
+                expected)
+            expected = [r[:-1] if isinstance(r, list) else r for r in expected]
+            for n in (7, -1):
+                f.seek(0)
+                reader = csv.reader(f, **kwargs)
+                self.assertEqual(self.outcomes(lambda: reader.readrows(n)), expected)
+
+    def test_same_as_iteration(self):
+        for data in self.samples:
+            for dialect in self.dialects:
+                self.compare(data, **dialect)
+
+    def test_line_num(self):
+        with TemporaryFile("w+b") as f:
+            f.write('a\n"b\nc"\nd\n')
+            f.seek(0)
+            reader = csv.reader(f)
+            self.assertEqual(reader.readrows(2), [['a'], ['b\nc']])
+            self.assertEqual(reader.line_num, 3)
+            self.assertEqual(reader.readrows(5), [['d']])
+            self.assertEqual(reader.line_num, 4)
+            self.assertEqual(reader.readrows(5), [])
+
+    def test_mixed_with_file(self):
+        # The file is left positioned after the last record read
+        data = ''.join('%d,%s\r\n' % (i, 'z' * (i % 100)) for i in range(20000))
+        with TemporaryFile("w+b") as f:
+            f.write(data)
+            f.seek(0)
+            reader = csv.reader(f)
+            self.assertEqual(reader.readrows(3), [['0', ''], ['1', 'z'], ['2', 'zz']])
+            self.assertEqual(f.readline(), '3,zzz\r\n')
+            self.assertEqual(reader.next(), ['4', 'zzzz'])
+            rows = reader.readrows(10000)
+            self.assertEqual(rows[-1], ['10004', 'zzzz'])
+            self.assertEqual(f.tell(), data.index('10005,'))
+            self.assertEqual(len(reader.readrows(-1)), 20000 - 10005)
+            self.assertEqual(f.read(), '')
+
+    def test_io_file(self):
+        fd, name = tempfile.mkstemp()
+        try:
+            os.write(fd, 'a,b\n1,2\n3,4\n')
+            os.close(fd)
+            with io.open(name, 'rb', buffering=0) as raw:
+                reader = csv.reader(raw)
+                self.assertEqual(reader.readrows(2), [['a', 'b'], ['1', '2']])
+                self.assertEqual(raw.tell(), 8)
+                self.assertEqual(list(reader), [['3', '4']])
+        finally:
+            os.remove(name)
+
+    def test_fifo(self):
+        # A FIFO cannot give back what was read ahead, so is read by lines
+        try:
+            subprocess.check_call(['mkfifo', test_support.TESTFN])
+        except (OSError, subprocess.CalledProcessError):
+            self.skipTest('requires mkfifo')
+        try:
+            def write():
+                with open(test_support.TESTFN, 'wb') as f:
+                    f.write(''.join('%d,x\n' % i for i in range(1000)))
+            writer = threading.Thread(target=write)
+            writer.start()
+            try:
+                with open(test_support.TESTFN, 'rb') as f:
+                    reader = csv.reader(f)
+                    self.assertEqual(reader.readrows(2), [['0', 'x'], ['1', 'x']])
+                    self.assertEqual(f.readline(), '2,x\n')
+                    self.assertEqual(len(reader.readrows(-1)), 997)
+            finally:
+                writer.join()
+        finally:
+            test_support.unlink(test_support.TESTFN)
+
+    def test_not_a_file(self):
+        reader = csv.reader(['a,b\r\n', '1,2\r\n', '3,4\r\n'])
+        self.assertEqual(reader.readrows(2), [['a', 'b'], ['1', '2']])
+        self.assertEqual(reader.readrows(2), [['3', '4']])
+        self.assertEqual(reader.readrows(2), [])
+
+    def test_writerows(self):
+        # Rows are written in batches, but all the rows before an error are written
+        rows = [[i, 'x' * (i % 50), 'q"uo,te', None, 1.5] for i in range(5000)]
+        with TemporaryFile("w+b") as f:
+            writer = csv.writer(f)
+            for row in rows:
+                writer.writerow(row)
+            f.seek(0)
+            expected = f.read()
+        writes = []
+        class Out(object):
+            def write(self, s):
+                writes.append(s)
+        writer = csv.writer(Out())
+        writer.writerows(rows)
+        self.assertEqual(''.join(writes), expected)
+        self.assertTrue(1 < len(writes) < 100)
+
+        del writes[:]
+        writer = csv.writer(Out(), quoting=csv.QUOTE_NONE)
+        self.assertRaises(csv.Error, writer.writerows, [['a', 'b'], ['c', 'd,e']])
+        self.assertEqual(writes, ['a,b\r\n'])
+
+
 def test_main():
     # We'll be enabling sys.setdefaultencoding so remember to disable
     had_set = hasattr(sys, "setdefaultencoding")
     try:
         test_support.run_unittest(
             TestUnicode,
+            TestBulk,
         )
     finally:
         if not had_set:
@@ -126,11 +126,72 @@ class TestSQL(unittest.TestCase):
         self.assertEqual(epoch % 3600, 180)  # 3 minutes
 
 
+class TestJavaHelpers(unittest.TestCase):
+    """The Java datetime types must agree with the proleptic Gregorian calendar."""
+
+    def test_ordinals(self):
+        from calendar import monthrange
+        n = 0
+        for y in (1, 2, 3, 4, 100, 399, 400, 401, 1900, 2000, 2004, 9999):
+            for m in range(1, 13):
+                for d in range(1, monthrange(y, m)[1] + 1):
+                    n = date(y, m, d).toordinal()
+                    self.assertEqual(date.fromordinal(n), date(y, m, d))
+        self.assertEqual(date.max.toordinal(), n)
+        self.assertEqual(date.fromordinal(1), date.min)
+        self.assertRaises(ValueError, date.fromordinal, 0)
+        self.assertRaises(ValueError, date, 2001, 2, 29)
+
+    def test_arithmetic(self):
+        t = datetime(2000, 2, 28, 23, 59, 59, 999999)
+        self.assertEqual(t + timedelta(microseconds=1), datetime(2000, 2, 29))
+        self.assertEqual(t + timedelta(days=367), datetime(2001, 3, 1, 23, 59, 59, 999999))
+        self.assertEqual(t - timedelta(days=730177), datetime(1, 1, 1, 23, 59, 59, 999999))
+        self.assertRaises(OverflowError, t.__sub__, timedelta(days=730178))
+        self.assertEqual(timedelta(-1, 1, -1), timedelta(microseconds=-86399000001))
+        self.assertEqual(timedelta(weeks=1, hours=-1, milliseconds=2),
+                         timedelta(6, 82800, 2000))
+        self.assertEqual(timedelta(1.5, 0.25), timedelta(1, 43200, 250000))
+        self.assertRaises(OverflowError, timedelta, 1000000000)
+
+    def test_field_errors(self):
+        self.assertRaises(ValueError, date, 2001, 2, 29)
+        self.assertRaises(ValueError, datetime, 2001, 1, 1, 24)
+        self.assertRaises(TypeError, date, 2001.0, 1, 1)
+        self.assertEqual(date(2001L, 1, 1), date(2001, 1, 1))
+        for year in (10000, 10**20):
+            with self.assertRaises(ValueError) as cm:
+                date(year, 1, 1)
+            self.assertEqual(cm.exception.args, ('year must be in 1..9999', year))
+
+    def test_java_time(self):
+        from java.time import LocalDate, LocalDateTime, LocalTime
+        self.assertEqual(date(2007, 1, 3).__tojava__(LocalDate), LocalDate.of(2007, 1, 3))
+        self.assertEqual(time(1, 3, 5, 7).__tojava__(LocalTime), LocalTime.of(1, 3, 5, 7000))
+        self.assertEqual(datetime(2007, 1, 3, 1, 3).__tojava__(LocalDateTime),
+                         LocalDateTime.of(2007, 1, 3, 1, 3))
+
+    def test_strptime(self):
+        from _strptime import _strptime
+        for s, f in (("2010-03-04 05:06:07.123", "%Y-%m-%d %H:%M:%S.%f"),
+                     ("2010-03-04T05:06:07", "%Y-%m-%dT%H:%M:%S"),
+                     ("4/3/2010", "%d/%m/%Y"),
+                     ("10%/12", "%S%%/%m"),
+                     ("20100304", "%Y%m%d"),
+                     ("2010-Mar-04", "%Y-%b-%d")):
+            struct, micros = _strptime(s, f)
+            self.assertEqual(datetime.strptime(s, f),
+                             datetime(*(struct[0:6] + (micros,))))
+        self.assertRaises(ValueError, datetime.strptime, "2010-13-01", "%Y-%m-%d")
+        self.assertRaises(ValueError, datetime.strptime, "2010-12-01x", "%Y-%m-%d")
+
+
 def test_main():
     test_support.run_unittest(
         TestCalendar,
         TestSQL,
-        TestTimezone)
+        TestTimezone,
+        TestJavaHelpers)
 
 
 if __name__ == '__main__':
@@ -2,7 +2,10 @@
 
 Made for Jython.
 """
+import array
+import mmap
 import os
+import threading
 import unittest
 from test import test_support
 from java.lang import System
@@ -64,9 +67,156 @@ class FileTestCase(unittest.TestCase):
         with open('/proc/{}/cmdline'.format(os.getpid())) as f:
             self.assertIn('jython', f.read())
 
+    def test_write_buffers(self):
+        # Objects with the buffer API are written without going via a str
+        with open(test_support.TESTFN, 'wb') as f:
+            f.write(bytearray('ab'))
+            f.write(memoryview('cd'))
+            f.write(array.array('b', 'ef'))
+            self.assertEqual(f.writev([bytearray('gh'), 'i', buffer('jk')]), 5)
+            self.assertEqual(f.writev([]), 0)
+            self.assertRaises(TypeError, f.writev, [u'unicode'])
+            self.assertRaises(TypeError, f.writev, 42)
+        with open(test_support.TESTFN, 'rb') as f:
+            self.assertEqual(f.read(), 'abcdefghijk')
+
+    def test_readinto_buffers(self):
+        with open(test_support.TESTFN, 'wb') as f:
+            f.write('first line\n0123456789abcdefghij')
+        with open(test_support.TESTFN, 'rb') as f:
+            # Drains the readahead of readline first
+            self.assertEqual(f.readline(), 'first line\n')
+            b = bytearray(4)
+            self.assertEqual(f.readinto(b), 4)
+            self.assertEqual(b, bytearray('0123'))
+            m = memoryview(bytearray(3))
+            self.assertEqual(f.readinto(m), 3)
+            self.assertEqual(m.tobytes(), '456')
+            a = array.array('b', [0] * 3)
+            self.assertEqual(f.readinto(a), 3)
+            self.assertEqual(a.tostring(), '789')
+            mm = mmap.mmap(-1, 4)
+            self.assertEqual(f.readinto(mm), 4)
+            self.assertEqual(mm[:], 'abcd')
+            self.assertRaises(TypeError, f.readinto, 'read-only')
+
+    def test_readv(self):
+        with open(test_support.TESTFN, 'wb') as f:
+            f.write('line\n0123456789')
+        with open(test_support.TESTFN, 'rb') as f:
+            self.assertEqual(f.readline(), 'line\n')
+            head, body = bytearray(2), array.array('b', [0] * 4)
+            self.assertEqual(f.readv([head, bytearray(), body]), 6)
+            self.assertEqual((head, body.tostring()), (bytearray('01'), '2345'))
+            # Short at EOF
+            head, body = bytearray(3), memoryview(bytearray(3))
+            self.assertEqual(f.readv([head, body]), 4)
+            self.assertEqual((head, body.tobytes()), (bytearray('678'), '9\0\0'))
+            self.assertEqual(f.readv([head]), 0)
+            self.assertRaises(TypeError, f.readv, [bytearray(1), 'read-only'])
+        with open(test_support.TESTFN, 'rU') as f:
+            # Text modes read through a str
+            b = bytearray(5)
+            self.assertEqual(f.readv([b]), 5)
+            self.assertEqual(b, bytearray('line\n'))
+
+
+
+class LineIterationTestCase(unittest.TestCase):
+
+    def setUp(self):
+        # Enough lines for several batches, with a long line in the middle
+        self.lines = ['line %d\n' % i for i in range(2000)]
+        self.lines[1000] = 'x' * 20000 + '\n'
+        self.lines[-1] = 'no newline'
+        with open(test_support.TESTFN, 'wb') as f:
+            f.writelines(self.lines)
+
+    def tearDown(self):
+        if os.path.exists(test_support.TESTFN):
+            os.remove(test_support.TESTFN)
+
+    def test_iteration(self):
+        for mode in 'r', 'rb', 'rU':
+            with open(test_support.TESTFN, mode) as f:
+                self.assertEqual(list(f), self.lines)
+                self.assertEqual(list(f), [])
+            with open(test_support.TESTFN, mode) as f:
+                self.assertEqual(f.readlines(), self.lines)
+
+    def test_iteration_unbuffered_stream(self):
+        # As for the pipes of a subprocess, where the raw stream reports
+        # EOF as -1
+        from java.io import ByteArrayInputStream
+        from org.python.core.io import StreamIO
+        for mode in 'rb', 'rU':
+            data = ''.join(self.lines)
+            f = os.fdopen(StreamIO(ByteArrayInputStream(data), True), mode, 0)
+            self.assertEqual(list(f), self.lines)
+            self.assertEqual(list(f), [])
+
+    def test_readlines_sizehint(self):
+        with open(test_support.TESTFN) as f:
+            lines = f.readlines(20)
+            self.assertEqual(lines, self.lines[:3])
+            self.assertEqual(f.readline(), self.lines[3])
+            self.assertEqual(f.readlines(), self.lines[4:])
+
+    def test_mixed_operations(self):
+        with open(test_support.TESTFN, 'rb+') as f:
+            self.assertEqual(next(f), self.lines[0])
+            self.assertEqual(f.tell(), len(self.lines[0]))
+            self.assertEqual(f.readline(), self.lines[1])
+            self.assertEqual(next(f), self.lines[2])
+            self.assertEqual(f.read(len(self.lines[3])), self.lines[3])
+            self.assertEqual(next(f), self.lines[4])
+            f.seek(0)
+            self.assertEqual(next(f), self.lines[0])
+            self.assertEqual(f.readlines(), self.lines[1:])
+            f.seek(0)
+            next(f)
+            f.seek(f.tell())
+            f.write('LINE')
+            f.seek(0)
+            self.assertEqual(f.readline(), self.lines[0])
+            self.assertEqual(next(f), 'LINE' + self.lines[1][4:])
+            f.close()
+            self.assertRaises(ValueError, next, f)
+
+    def test_universal_newlines(self):
+        # A CR at the end of one read and LF at the start of the next is one newline
+        data = 'a' * 8191 + '\r\nb\rc\nd\r\ne\r'
+        with open(test_support.TESTFN, 'wb') as f:
+            f.write(data)
+        with open(test_support.TESTFN, 'rU') as f:
+            self.assertEqual(list(f), ['a' * 8191 + '\n', 'b\n', 'c\n', 'd\n', 'e\n'])
+            self.assertEqual(f.newlines, ('\r', '\n', '\r\n'))
+        with open(test_support.TESTFN, 'rU') as f:
+            self.assertEqual(next(f), 'a' * 8191 + '\n')
+            self.assertEqual(f.read(1), 'b')
+            self.assertEqual(next(f), '\n')
+            self.assertEqual(f.readlines(), ['c\n', 'd\n', 'e\n'])
+        with open(test_support.TESTFN, 'rb') as f:
+            self.assertEqual(list(f), ['a' * 8191 + '\r\n', 'b\rc\n', 'd\r\n', 'e\r'])
+
+    def test_threads(self):
+        results = []
+        with open(test_support.TESTFN) as f:
+            def read():
+                results.append(list(f))
+            threads = [threading.Thread(target=read) for i in range(4)]
+            for t in threads:
+                t.start()
+            for t in threads:
+                t.join()
+        # Each line is returned to exactly one thread, in order
+        self.assertEqual(sorted(sum(results, [])), sorted(self.lines))
+        for lines in results:
+            self.assertEqual(lines, sorted(lines, key=self.lines.index))
+
 
 def test_main():
-    test_support.run_unittest(FileTestCase)
+    test_support.run_unittest(FileTestCase, LineIterationTestCase)
 
 
 if __name__ == '__main__':
@@ -4,8 +4,14 @@
 Made for Jython.
 """
 import hashlib
+import io
+import os
+import subprocess
+import tempfile
+import threading
 import unittest
 from array import array
+from StringIO import StringIO
 from test import test_support
 
 class HashlibTestCase(unittest.TestCase):
@@ -22,6 +28,85 @@ class HashlibTestCase(unittest.TestCase):
         self.assertEqual(hashlib.sha1(intarray).hexdigest(),
                          hashlib.sha1(intarray.tostring()).hexdigest())
 
+    def test_buffers(self):
+        data = ''.join(chr(i % 256) for i in xrange(20000))
+        expected = hashlib.sha256(data).hexdigest()
+        for obj in (bytearray(data), memoryview(data), buffer('xx' + data, 2),
+                    buffer(bytearray(data)), array('b', data)):
+            self.assertEqual(hashlib.sha256(obj).hexdigest(), expected)
+        self.assertRaises(TypeError, hashlib.md5, 1)
+
+    def test_builtin_modules(self):
+        import _md5, _sha, _sha256, _sha512
+        for new, name in ((_md5.new, 'md5'), (_md5.md5, 'md5'), (_sha.new, 'sha1'),
+                          (_sha256.sha224, 'sha224'), (_sha256.sha256, 'sha256'),
+                          (_sha512.sha384, 'sha384'), (_sha512.sha512, 'sha512')):
+            self.assertEqual(new('spam').digest(), hashlib.new(name, 'spam').digest())
+            self.assertEqual(new().digest(), hashlib.new(name).digest())
+        self.assertEqual(_md5.digest_size, 16)
+        self.assertEqual(_sha.digest_size, 20)
+
+    def test_file_digest(self):
+        data = os.urandom(700000)
+        fd, name = tempfile.mkstemp()
+        try:
+            os.write(fd, data)
+            os.close(fd)
+            with open(name, 'rb') as f:
+                self.assertEqual(f.read(10), data[:10])
+                h = hashlib.file_digest(f, 'sha1')
+                self.assertEqual(h.hexdigest(), hashlib.sha1(data[10:]).hexdigest())
+                self.assertEqual(f.tell(), len(data))
+                self.assertEqual(f.read(), '')
+            with io.open(name, 'rb', buffering=0) as f:
+                h = hashlib.file_digest(f, hashlib.md5)
+                self.assertEqual(h.digest(), hashlib.md5(data).digest())
+                self.assertEqual(f.tell(), len(data))
+            with io.open(name, 'rb') as f:
+                f.seek(5)
+                h = hashlib.file_digest(f, 'sha512')
+                self.assertEqual(h.digest(), hashlib.sha512(data[5:]).digest())
+        finally:
+            os.remove(name)
+        self.assertEqual(hashlib.file_digest(StringIO('spam'), 'md5').digest(),
+                         hashlib.md5('spam').digest())
+        self.assertRaises(ValueError, hashlib.file_digest, StringIO(''), 'spam')
+
+    def test_file_digest_pipe(self):
+        # A pipe or FIFO is read through the file object, not at a position
+        data = os.urandom(300000)
+        expected = hashlib.sha1(data).hexdigest()
+        def write(f):
+            try:
+                f.write(data)
+            finally:
+                f.close()
+        r, w = os.pipe()
+        writer = threading.Thread(target=write, args=(os.fdopen(w, 'wb'),))
+        writer.start()
+        try:
+            with os.fdopen(r, 'rb') as f:
+                self.assertEqual(hashlib.file_digest(f, 'sha1').hexdigest(), expected)
+        finally:
+            writer.join()
+        try:
+            subprocess.check_call(['mkfifo', test_support.TESTFN])
+        except (OSError, subprocess.CalledProcessError):
+            self.skipTest('requires mkfifo')
+        try:
+            for opener in (open, lambda name, mode: io.open(name, mode, buffering=0)):
+                writer = threading.Thread(
+                    target=lambda: write(opener(test_support.TESTFN, 'wb')))
+                writer.start()
+                try:
+                    with opener(test_support.TESTFN, 'rb') as f:
+                        self.assertEqual(hashlib.file_digest(f, 'sha1').hexdigest(),
+                                         expected)
+                finally:
+                    writer.join()
+        finally:
+            test_support.unlink(test_support.TESTFN)
+
 
 def test_main():
     test_support.run_unittest(HashlibTestCase)
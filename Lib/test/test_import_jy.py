@@ -234,6 +234,64 @@ class UnicodeNamesTestCase(unittest.TestCase):
         self.assertEqual(cm.exception.reason, "ordinal not in range(128)")
 
 
+class DirectoryCacheTestCase(unittest.TestCase):
+
+    def setUp(self):
+        self.dir = tempfile.mkdtemp()
+        self.orig_syspath = sys.path[:]
+        sys.path.insert(0, self.dir)
+        self.age()
+
+    def tearDown(self):
+        sys.path[:] = self.orig_syspath
+        sys.path_importer_cache.pop(self.dir, None)
+        for name in 'cached_absent', 'cached_pkg', 'cached_pkg.mod':
+            sys.modules.pop(name, None)
+        shutil.rmtree(self.dir)
+        imp.invalidate_caches()
+
+    def age(self, path=None):
+        # Old enough that import relies on the listing of the directory
+        t = os.stat(path or self.dir).st_mtime - 60
+        os.utime(path or self.dir, (t, t))
+        return t
+
+    def write(self, name, text):
+        with open(os.path.join(self.dir, name), 'w') as fp:
+            fp.write(text)
+
+    def test_module_added(self):
+        self.assertRaises(ImportError, __import__, 'cached_absent')
+        self.assertRaises(ImportError, imp.find_module, 'cached_absent')
+        self.assertIs(sys.path_importer_cache[self.dir], None)
+        # Adding a file changes the directory, so that it is listed again
+        self.write('cached_absent.py', 'x = 42\n')
+        self.assertEqual(__import__('cached_absent').x, 42)
+        self.assertEqual(imp.find_module('cached_absent')[1],
+                         os.path.join(self.dir, 'cached_absent.py'))
+
+    def test_package_added(self):
+        self.assertRaises(ImportError, __import__, 'cached_pkg.mod')
+        self.age()
+        pkg = os.path.join(self.dir, 'cached_pkg')
+        os.mkdir(pkg)
+        self.write(os.path.join('cached_pkg', '__init__.py'), '')
+        self.age(pkg)
+        self.assertRaises(ImportError, __import__, 'cached_pkg.mod')
+        self.write(os.path.join('cached_pkg', 'mod.py'), 'x = 42\n')
+        self.assertEqual(__import__('cached_pkg.mod').mod.x, 42)
+
+    def test_invalidate_caches(self):
+        self.assertRaises(ImportError, __import__, 'cached_absent')
+        # As if on a file system that does not keep the times of directories
+        t = os.stat(self.dir).st_mtime
+        self.write('cached_absent.py', 'x = 42\n')
+        os.utime(self.dir, (t, t))
+        self.assertRaises(ImportError, __import__, 'cached_absent')
+        imp.invalidate_caches()
+        self.assertEqual(__import__('cached_absent').x, 42)
+
+
 class MixedImportTestCase(unittest.TestCase):
     #
     # This test case depends on material in a file structure unpacked
@@ -451,6 +509,7 @@ def test_main():
             OverrideBuiltinsImportTestCase,
             ImpTestCase,
             UnicodeNamesTestCase,
+            DirectoryCacheTestCase,
             MixedImportTestCase
     )
 
@@ -1,8 +1,10 @@
 import unittest
 from test import test_support
 
+import array
 import io
 import _io
+import mmap
 
 from os import pipe
 
@@ -29,8 +31,29 @@ class PipeTestCase(unittest.TestCase):
         self.assertFalse(io.open(r).seekable())
 
 
+class FileIOTestCase(unittest.TestCase):
+
+    def tearDown(self):
+        test_support.unlink(test_support.TESTFN)
+
+    def test_readv_writev(self):
+        with _io.FileIO(test_support.TESTFN, 'w') as f:
+            self.assertEqual(f.writev([bytearray('head'), memoryview('body'), 'tail']), 12)
+            self.assertRaises(ValueError, f.readv, [bytearray(1)])
+        with _io.FileIO(test_support.TESTFN, 'r') as f:
+            head, body = bytearray(4), mmap.mmap(-1, 4)
+            self.assertEqual(f.readv([head, body]), 8)
+            self.assertEqual((head, body[:]), (bytearray('head'), 'body'))
+            tail = array.array('b', [0] * 8)
+            self.assertEqual(f.readv([tail]), 4)
+            self.assertEqual(tail.tostring(), 'tail\0\0\0\0')
+            self.assertEqual(f.readv([tail]), 0)
+            self.assertRaises(TypeError, f.readv, ['read-only'])
+            self.assertRaises(ValueError, f.writev, ['x'])
+
+
 def test_main():
-    test_support.run_unittest(NameTest, PipeTestCase)
+    test_support.run_unittest(NameTest, PipeTestCase, FileIOTestCase)
 
 
 if __name__ == "__main__":
@@ -0,0 +1,134 @@
+"""Tests of _jyaio, the asynchronous file I/O of Jython"""
+import unittest
+from test import test_support
+
+import array
+import errno
+import mmap
+import os
+import threading
+
+import _jyaio
+
+
+class AsyncFileTestCase(unittest.TestCase):
+
+    def setUp(self):
+        self.f = _jyaio.open(test_support.TESTFN, 'w+b')
+
+    def tearDown(self):
+        self.f.close()
+        test_support.unlink(test_support.TESTFN)
+
+    def test_write_read(self):
+        data = 'abcdefghij' * 10000
+        future = self.f.write(data, 0)
+        self.assertEqual(future.result(), len(data))
+        self.assertTrue(future.done())
+        self.assertFalse(future.running())
+        self.assertEqual(self.f.size(), len(data))
+        self.assertEqual(self.f.read(5, 10).result(), 'abcde')
+        self.assertEqual(self.f.read(len(data) + 10, 0).result(), data)
+        self.assertEqual(self.f.read(10, len(data)).result(), '')
+
+    def test_buffers(self):
+        self.f.write(bytearray('0123456789'), 0).result()
+        buf = bytearray(4)
+        self.assertEqual(self.f.readinto(buf, 2).result(), 4)
+        self.assertEqual(buf, bytearray('2345'))
+        a = array.array('b', [0] * 4)
+        self.assertEqual(self.f.readinto(a, 8).result(), 2)
+        self.assertEqual(a.tostring(), '89\0\0')
+        self.assertEqual(self.f.write(memoryview('XY'), 0).result(), 2)
+        self.assertEqual(self.f.read(4, 0).result(), 'XY23')
+        self.assertRaises(TypeError, self.f.readinto, 'read-only', 0)
+        self.assertRaises(TypeError, self.f.write, u'unicode', 0)
+
+    def test_mmap(self):
+        self.f.write('0123456789', 0).result()
+        with open(test_support.TESTFN, 'r+b') as g:
+            m = mmap.mmap(g.fileno(), 10)
+            try:
+                self.f.write('abc', 7).result()
+                self.assertEqual(m[:], '0123456abc')
+                m[:3] = 'XYZ'
+                self.assertEqual(self.f.write(m, 10).result(), 10)
+                self.assertEqual(self.f.read(20, 0).result(), 'XYZ3456abcXYZ3456abc')
+            finally:
+                m.close()
+
+    def test_many_in_flight(self):
+        futures = [self.f.write(chr(ord('a') + i) * 1000, i * 1000) for i in range(26)]
+        done, not_done = _jyaio.wait(futures)
+        self.assertEqual((len(done), not_done), (26, set()))
+        futures = dict((self.f.read(1000, i * 1000), i) for i in range(26))
+        seen = []
+        for future in _jyaio.as_completed(futures, timeout=60):
+            seen.append(futures[future])
+            self.assertEqual(future.result(), chr(ord('a') + futures[future]) * 1000)
+        self.assertEqual(sorted(seen), range(26))
+        done, _ = _jyaio.wait(futures, return_when=_jyaio.FIRST_COMPLETED)
+        self.assertTrue(done)
+        self.assertRaises(ValueError, _jyaio.wait, futures, return_when='NEVER')
+        self.assertRaises(TypeError, _jyaio.wait, [42])
+
+    def test_callbacks(self):
+        called = threading.Event()
+        results = []
+        def callback(future):
+            results.append(future.result())
+            called.set()
+        self.f.write('data', 0).add_done_callback(callback)
+        called.wait(60)
+        future = self.f.read(4, 0)
+        future.result()
+        # Called at once, when already done
+        future.add_done_callback(callback)
+        self.assertEqual(results, [4, 'data'])
+
+    def test_no_cancel(self):
+        future = self.f.write('data', 0)
+        self.assertFalse(future.cancel())
+        self.assertFalse(future.cancelled())
+        self.assertEqual(future.result(), 4)
+        self.assertIsNone(future.exception())
+        self.assertIn('state=finished returned int', repr(future))
+
+    def test_errors(self):
+        self.assertRaises(ValueError, self.f.read, -1, 0)
+        self.assertRaises(ValueError, self.f.read, 1, -1)
+        self.assertRaises(ValueError, self.f.write, 'x', -1)
+        self.f.write('data', 0).result()
+        self.f.truncate(2)
+        self.assertEqual(self.f.size(), 2)
+        self.f.fsync()
+        self.f.fsync(False)
+        self.f.close()
+        self.assertTrue(self.f.closed)
+        self.assertRaises(ValueError, self.f.read, 1, 0)
+        self.assertRaises(ValueError, self.f.write, 'x', 0)
+        self.assertRaises(ValueError, self.f.size)
+
+    def test_open(self):
+        self.f.close()
+        with _jyaio.open(test_support.TESTFN) as f:
+            self.assertEqual((f.name, f.mode), (test_support.TESTFN, 'r'))
+            self.assertRaises(ValueError, f.write, 'x', 0)
+        with _jyaio.open(test_support.TESTFN, 'w') as f:
+            self.assertRaises(ValueError, f.read, 1, 0)
+        for mode in 'a', 'rt', 'rU', 'x':
+            self.assertRaises(ValueError, _jyaio.open, test_support.TESTFN, mode)
+        with self.assertRaises(IOError) as cm:
+            _jyaio.open(test_support.TESTFN + '-missing')
+        self.assertEqual(cm.exception.errno, errno.ENOENT)
+        with self.assertRaises(IOError) as cm:
+            _jyaio.open(os.curdir)
+        self.assertEqual(cm.exception.errno, errno.EISDIR)
+
+
+def test_main():
+    test_support.run_unittest(AsyncFileTestCase)
+
+
+if __name__ == "__main__":
+    test_main()
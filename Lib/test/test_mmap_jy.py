@@ -0,0 +1,108 @@
+"""Misc mmap module tests
+
+Made for Jython.
+"""
+import mmap
+import os
+import re
+import struct
+import tempfile
+import unittest
+from test import test_support
+
+
+class MmapBufferTestCase(unittest.TestCase):
+
+    data = struct.pack('<4sIq', 'HEAD', 7, -2) + 'key=value\nother=thing\n'
+
+    def setUp(self):
+        fd, self.name = tempfile.mkstemp()
+        os.write(fd, self.data)
+        os.close(fd)
+        self.f = open(self.name, 'r+b')
+
+    def tearDown(self):
+        self.f.close()
+        os.remove(self.name)
+
+    def test_struct(self):
+        m = mmap.mmap(self.f.fileno(), 0, access=mmap.ACCESS_READ)
+        self.assertEqual(struct.unpack_from('<4sIq', m), ('HEAD', 7, -2))
+        self.assertEqual(struct.unpack_from('<I', m, 4), (7,))
+        m = mmap.mmap(self.f.fileno(), 0)
+        struct.pack_into('<I', m, 4, 99)
+        m.flush()
+        with open(self.name, 'rb') as f:
+            self.assertEqual(struct.unpack_from('<I', f.read(), 4), (99,))
+
+    def test_re(self):
+        # Matching reads the map in place, and groups are sliced from it
+        m = mmap.mmap(self.f.fileno(), 0, access=mmap.ACCESS_READ)
+        pat = re.compile(r'(\w+)=(\w+)\n')
+        match = pat.search(m)
+        self.assertIs(match.string, m)
+        self.assertEqual(match.groups(), ('key', 'value'))
+        self.assertEqual(match.span(), (16, 26))
+        self.assertEqual([x.group(1) for x in pat.finditer(m)], ['key', 'other'])
+        self.assertEqual(pat.match(m, 26).group(2), 'thing')
+        self.assertEqual(pat.findall(m), [('key', 'value'), ('other', 'thing')])
+        self.assertEqual(re.sub('thing', 'stuff', m)[-6:], 'stuff\n')
+
+    def test_memoryview(self):
+        m = mmap.mmap(self.f.fileno(), 0)
+        v = memoryview(m)
+        self.assertEqual(v[:4].tobytes(), 'HEAD')
+        v[0:4] = 'BODY'
+        self.assertEqual(m[:4], 'BODY')
+        self.assertEqual(str(buffer(m, 16, 3)), 'key')
+
+    def test_resize_exported(self):
+        # The map cannot change size while it exports a buffer
+        m = mmap.mmap(self.f.fileno(), 0)
+        v = memoryview(m)
+        self.assertRaises(BufferError, m.resize, 10)
+        v.release()
+        m.resize(10)
+        self.assertEqual(len(m), 10)
+        self.assertEqual(os.path.getsize(self.name), 10)
+
+    def test_readonly(self):
+        m = mmap.mmap(self.f.fileno(), 0, access=mmap.ACCESS_READ)
+        v = memoryview(m)
+        self.assertTrue(v.readonly)
+        def assign():
+            v[0] = 'x'
+        self.assertRaises(TypeError, assign)
+
+    def test_copy(self):
+        m = mmap.mmap(self.f.fileno(), 0, access=mmap.ACCESS_COPY)
+        memoryview(m)[0:4] = 'COPY'
+        self.assertEqual(m[:4], 'COPY')
+        with open(self.name, 'rb') as f:
+            self.assertEqual(f.read(4), 'HEAD')
+
+    def test_readline(self):
+        m = mmap.mmap(self.f.fileno(), 0)
+        m.seek(16)
+        self.assertEqual(m.readline(), 'key=value\n')
+        self.assertEqual(m.readline(), 'other=thing\n')
+        self.assertEqual(m.readline(), '')
+        self.assertEqual(list(m)[:4], list('HEAD'))
+
+    def test_closed_file(self):
+        # The map outlives the file it was made from
+        m = mmap.mmap(self.f.fileno(), 0)
+        self.f.close()
+        m[0:4] = 'SHUT'
+        m.flush()
+        self.assertEqual(m[:4], 'SHUT')
+        m.close()
+        self.assertRaises(ValueError, m.read, 1)
+
+
+def test_main():
+    test_support.run_unittest(MmapBufferTestCase)
+
+
+if __name__ == '__main__':
+    test_main()
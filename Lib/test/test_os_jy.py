@@ -9,12 +9,16 @@ import sys
 import glob
 import array
 import errno
+import shutil
+import socket
 import struct
 import unittest
 import subprocess
+import threading
 
 from test import test_support
 from java.io import File
+from java.lang import System
 
 
 class OSFileTestCase(unittest.TestCase):
@@ -534,6 +538,261 @@ class SymbolicLinkTestCase(unittest.TestCase):
             self.assertEqual(cm.exception.filename, nonexistent_file)
 
 
+class ScandirTestCase(unittest.TestCase):
+
+    def test_entries(self):
+        with test_support.temp_cwd() as new_cwd:
+            os.mkdir("sub")
+            with open("file", "w") as f:
+                f.write("FILE")
+            entries = dict((e.name, e) for e in os.scandir(new_cwd))
+            self.assertEqual(sorted(entries), ["file", "sub"])
+            sub, file = entries["sub"], entries["file"]
+            self.assertEqual(sub.path, os.path.join(new_cwd, "sub"))
+            self.assertTrue(sub.is_dir())
+            self.assertFalse(sub.is_file())
+            self.assertTrue(file.is_file())
+            self.assertFalse(file.is_dir(follow_symlinks=False))
+            self.assertFalse(file.is_symlink())
+            self.assertEqual(file.stat().st_size, 4)
+            self.assertEqual(file.inode(), os.stat(file.path).st_ino)
+            self.assertEqual(repr(file), "<DirEntry 'file'>")
+            # Relative to the path given, by default the current directory
+            self.assertEqual(sorted(e.path for e in os.scandir()),
+                             [os.path.join(".", "file"), os.path.join(".", "sub")])
+
+    @unittest.skipUnless(System.getProperty("sun.jnu.encoding") == "UTF-8",
+                         "Java cannot use non-ASCII file names here")
+    def test_unicode(self):
+        with test_support.temp_cwd() as new_cwd:
+            os.mkdir(u"d\u00e9j\u00e0")
+            [entry] = list(os.scandir(unicode(new_cwd)))
+            self.assertIsInstance(entry.name, unicode)
+            self.assertEqual(entry.name, u"d\u00e9j\u00e0")
+            [entry] = list(os.scandir(new_cwd))
+            self.assertIsInstance(entry.name, str)
+            self.assertEqual(entry.name, u"d\u00e9j\u00e0".encode("utf-8"))
+            self.assertTrue(entry.is_dir())
+
+    def test_close(self):
+        with test_support.temp_cwd() as new_cwd:
+            for name in "abc":
+                open(name, "w").close()
+            it = os.scandir(new_cwd)
+            next(it)
+            it.close()
+            self.assertEqual(list(it), [])
+            with os.scandir(new_cwd) as it:
+                self.assertEqual(len(list(it)), 3)
+
+    def test_errors(self):
+        with test_support.temp_cwd() as new_cwd:
+            open("file", "w").close()
+            with self.assertRaises(OSError) as cm:
+                os.scandir("nonexistent")
+            self.assertEqual(cm.exception.errno, errno.ENOENT)
+            with self.assertRaises(OSError) as cm:
+                os.scandir("file")
+            self.assertEqual(cm.exception.errno, errno.ENOTDIR)
+
+    @unittest.skipUnless(hasattr(os, 'symlink'), "symbolic link support not available")
+    def test_symlinks(self):
+        with test_support.temp_cwd() as new_cwd:
+            os.mkdir("sub")
+            # Jython's cwd is not the process's, so link by absolute paths
+            os.symlink(os.path.join(new_cwd, "sub"), os.path.join(new_cwd, "link"))
+            os.symlink(os.path.join(new_cwd, "nowhere"), os.path.join(new_cwd, "broken"))
+            entries = dict((e.name, e) for e in os.scandir(new_cwd))
+            link, broken = entries["link"], entries["broken"]
+            self.assertTrue(link.is_symlink())
+            self.assertTrue(link.is_dir())
+            self.assertFalse(link.is_dir(follow_symlinks=False))
+            self.assertEqual(link.stat().st_ino, os.stat("sub").st_ino)
+            self.assertEqual(link.stat(follow_symlinks=False).st_ino, os.lstat("link").st_ino)
+            self.assertTrue(broken.is_symlink())
+            self.assertFalse(broken.is_dir())
+            self.assertFalse(broken.is_file())
+            # walk lists the link, but does not go into it
+            self.assertEqual([(root, sorted(dirs)) for root, dirs, files in os.walk(new_cwd)],
+                             [(new_cwd, ["link", "sub"]), (os.path.join(new_cwd, "sub"), [])])
+            self.assertEqual(len(list(os.walk(new_cwd, followlinks=True))), 3)
+
+    @unittest.skipUnless(hasattr(os, 'symlink'), "symbolic link support not available")
+    def test_walk_entry_errors(self):
+        with test_support.temp_cwd() as new_cwd:
+            os.mkdir("sub")
+            loop = os.path.join(new_cwd, "loop")
+            os.symlink(loop, loop)
+            [entry] = [e for e in os.scandir(new_cwd) if e.name == "loop"]
+            self.assertRaises(OSError, entry.is_dir)
+            # An entry that cannot be stat'ed is a file to walk, not an error
+            errors = []
+            self.assertEqual(list(os.walk(new_cwd, onerror=errors.append)),
+                             [(new_cwd, ["sub"], ["loop"]),
+                              (os.path.join(new_cwd, "sub"), [], [])])
+            self.assertEqual(errors, [])
+
+
+class SendfileTestCase(unittest.TestCase):
+
+    data = "".join(chr(i % 256) for i in xrange(100000))
+
+    def setUp(self):
+        self.src = test_support.TESTFN
+        self.dst = test_support.TESTFN + "2"
+        with open(self.src, "wb") as f:
+            f.write(self.data)
+
+    def tearDown(self):
+        test_support.unlink(self.src)
+        test_support.unlink(self.dst)
+
+    def test_sendfile(self):
+        with open(self.src, "rb") as f, open(self.dst, "wb") as g:
+            # At an offset, the position of the source is unchanged
+            self.assertEqual(os.sendfile(g.fileno(), f.fileno(), 5, 10), 10)
+            self.assertEqual(f.tell(), 0)
+            # Otherwise from, and advancing, its position
+            self.assertEqual(os.sendfile(g.fileno(), f.fileno(), None, 7), 7)
+            self.assertEqual(os.sendfile(g.fileno(), f.fileno(), None, 7), 7)
+            self.assertEqual(f.read(3), self.data[14:17])
+            # At the end of the file, nothing
+            self.assertEqual(os.sendfile(g.fileno(), f.fileno(), len(self.data), 7), 0)
+        with open(self.dst, "rb") as g:
+            self.assertEqual(g.read(), self.data[5:15] + self.data[:14])
+
+    def test_sendfile_errors(self):
+        with open(self.src, "rb") as f, open(self.dst, "wb") as g:
+            with self.assertRaises(OSError) as cm:
+                os.sendfile(f.fileno(), f.fileno(), 0, 10)
+            self.assertEqual(cm.exception.errno, errno.EBADF)
+            with self.assertRaises(OSError) as cm:
+                os.sendfile(object(), f.fileno(), 0, 10)
+            self.assertEqual(cm.exception.errno, errno.EBADF)
+            with self.assertRaises(OSError) as cm:
+                os.sendfile(g.fileno(), f.fileno(), -1, 10)
+            self.assertEqual(cm.exception.errno, errno.EINVAL)
+
+    def test_copyfileobj(self):
+        # Buffered reads and writes either side are kept in order
+        with open(self.src, "rb") as f, open(self.dst, "wb") as g:
+            self.assertEqual(f.read(10), self.data[:10])
+            g.write("head")
+            shutil.copyfileobj(f, g)
+            g.write("tail")
+            self.assertEqual(f.read(), "")
+            self.assertEqual(f.tell(), len(self.data))
+        with open(self.dst, "rb") as g:
+            self.assertEqual(g.read(), "head" + self.data[10:] + "tail")
+
+    def test_copyfileobj_pipe(self):
+        # A source that cannot tell its position is copied by reading it
+        def write(f):
+            try:
+                f.write(self.data)
+            finally:
+                f.close()
+        r, w = os.pipe()
+        writer = threading.Thread(target=write, args=(os.fdopen(w, "wb"),))
+        writer.start()
+        try:
+            with os.fdopen(r, "rb") as f, open(self.dst, "wb") as g:
+                shutil.copyfileobj(f, g)
+        finally:
+            writer.join()
+        with open(self.dst, "rb") as g:
+            self.assertEqual(g.read(), self.data)
+        fifo = test_support.TESTFN + "fifo"
+        try:
+            subprocess.check_call(["mkfifo", fifo])
+        except (OSError, subprocess.CalledProcessError):
+            self.skipTest("requires mkfifo")
+        try:
+            writer = threading.Thread(target=lambda: write(open(fifo, "wb")))
+            writer.start()
+            try:
+                with open(fifo, "rb") as f, open(self.dst, "wb") as g:
+                    shutil.copyfileobj(f, g)
+            finally:
+                writer.join()
+        finally:
+            test_support.unlink(fifo)
+        with open(self.dst, "rb") as g:
+            self.assertEqual(g.read(), self.data)
+
+    def test_copyfileobj_socket(self):
+        server = socket.socket()
+        server.bind(("127.0.0.1", 0))
+        server.listen(1)
+        received = []
+        def receive():
+            conn, _ = server.accept()
+            chunks = []
+            while True:
+                chunk = conn.recv(65536)
+                if not chunk:
+                    break
+                chunks.append(chunk)
+            received.append("".join(chunks))
+            conn.close()
+        t = threading.Thread(target=receive)
+        t.start()
+        try:
+            sock = socket.create_connection(server.getsockname())
+            out = sock.makefile("wb")
+            out.write("head")
+            with open(self.src, "rb") as f:
+                shutil.copyfileobj(f, out)
+            out.close()
+            sock.close()
+        finally:
+            t.join()
+            server.close()
+        self.assertEqual(received, ["head" + self.data])
+
+    def _unread_connection(self):
+        """A connected socket, and the accepted peer, which never reads."""
+        server = socket.socket()
+        server.bind(("127.0.0.1", 0))
+        server.listen(1)
+        sock = socket.create_connection(server.getsockname())
+        conn, _ = server.accept()
+        self.addCleanup(server.close)
+        self.addCleanup(conn.close)
+        self.addCleanup(sock.close)
+        return sock
+
+    def _sendfile_until_error(self, sock, exc):
+        with open(self.src, "rb") as f:
+            with self.assertRaises(exc) as cm:
+                for i in xrange(1000):
+                    os.sendfile(sock.fileno(), f.fileno(), 0, len(self.data))
+        return cm.exception
+
+    def test_sendfile_socket_timeout(self):
+        sock = self._unread_connection()
+        sock.settimeout(0.5)
+        self._sendfile_until_error(sock, socket.timeout)
+
+    def test_sendfile_socket_nonblocking(self):
+        sock = self._unread_connection()
+        sock.setblocking(False)
+        with open(self.src, "rb") as f:
+            sent = os.sendfile(sock.fileno(), f.fileno(), None, len(self.data))
+            self.assertTrue(0 < sent < len(self.data))
+            self.assertEqual(f.tell(), sent)
+        err = self._sendfile_until_error(sock, socket.error)
+        self.assertEqual(err.errno, errno.EAGAIN)
+
+    def test_sendfile_socket_closed(self):
+        sock = self._unread_connection()
+        sock.shutdown(socket.SHUT_WR)
+        with open(self.src, "rb") as f:
+            with self.assertRaises(socket.error) as cm:
+                os.sendfile(sock.fileno(), f.fileno(), 0, 10)
+            self.assertEqual(cm.exception.errno, errno.ENOTCONN)
+
+
 def test_main():
     test_support.run_unittest(
         OSFileTestCase,
@@ -545,6 +804,8 @@ def test_main():
         SystemTestCase,
         LinkTestCase,
         SymbolicLinkTestCase,
+        ScandirTestCase,
+        SendfileTestCase,
     )
 
 if __name__ == '__main__':
@@ -43,7 +43,6 @@ class TestBasicOps(unittest.TestCase):
         self.assertRaises(TypeError, self.gen.seed, 1, 2)
         self.assertRaises(TypeError, type(self.gen), [])
 
-    @unittest.skip("FIXME: broken")
     def test_jumpahead(self):
         self.gen.seed()
         state1 = self.gen.getstate()
@@ -141,7 +140,6 @@ class TestBasicOps(unittest.TestCase):
         restoredseq = [newgen.random() for i in xrange(10)]
         self.assertEqual(origseq, restoredseq)
 
-    @unittest.skip("FIXME: broken")
     def test_bug_1727780(self):
         # verify that version-2-pickles can be loaded
         # fine, whether they are created on 32-bit or 64-bit
@@ -553,12 +551,6 @@ def test_main(verbose=None):
                       TestDistributions,
                       TestModule]
 
-    if test_support.is_jython:
-        del MersenneTwister_TestBasicOps.test_genrandbits
-        del MersenneTwister_TestBasicOps.test_referenceImplementation
-        del MersenneTwister_TestBasicOps.test_setstate_middle_arg
-        del MersenneTwister_TestBasicOps.test_strong_reference_implementation
-
     try:
         random.SystemRandom().random()
     except NotImplementedError:
@@ -0,0 +1,68 @@
+"""Misc random module tests
+
+Made for Jython.
+"""
+import random
+import threading
+import unittest
+from test import test_support
+
+
+class RandomTestCase(unittest.TestCase):
+
+    def test_randoms(self):
+        # randoms(n) is n calls to random() at once
+        r = random.Random(42)
+        expected = [r.random() for i in xrange(1000)]
+        r.seed(42)
+        self.assertEqual(r.randoms(600) + r.randoms(0) + r.randoms(400), expected)
+        self.assertRaises(ValueError, r.randoms, -1)
+
+    def test_getrandbits_words(self):
+        # Large values take words least significant first, as smaller ones do
+        r = random.Random(7)
+        words = [r.getrandbits(32) for i in xrange(4)] + [r.getrandbits(5)]
+        r.seed(7)
+        self.assertEqual(r.getrandbits(133),
+                         sum(w << (32 * i) for i, w in enumerate(words)))
+        self.assertRaises(ValueError, r.getrandbits, 0)
+
+    def test_perthread(self):
+        r = random.Random(1)
+        self.assertFalse(r.perthread)
+        shared = [r.random() for i in xrange(10)]
+        r.perthread = True
+        r.seed(1)
+        # This thread's generator is seeded from the instance's
+        mine = [r.random() for i in xrange(10)]
+        self.assertNotEqual(mine, shared)
+        r.seed(1)
+        self.assertEqual([r.random() for i in xrange(10)], mine)
+
+        results = {}
+        def draw(name):
+            results[name] = [r.random() for i in xrange(10000)] + [r.getrandbits(200)]
+        threads = [threading.Thread(target=draw, args=(i,)) for i in range(8)]
+        for t in threads:
+            t.start()
+        for t in threads:
+            t.join()
+        self.assertEqual(len(set(tuple(v) for v in results.values())), 8)
+        for values in results.values():
+            self.assertTrue(all(0.0 <= v < 1.0 for v in values[:-1]))
+
+        # The state is that of the instance's generator
+        r.seed(1)
+        state = r.getstate()
+        r.perthread = False
+        self.assertEqual([r.random() for i in xrange(10)], shared)
+        r.setstate(state)
+        self.assertEqual([r.random() for i in xrange(10)], shared)
+
+
+def test_main():
+    test_support.run_unittest(RandomTestCase)
+
+
+if __name__ == '__main__':
+    test_main()
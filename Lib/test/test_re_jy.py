@@ -1,5 +1,7 @@
+import os
 import re
 import sys
+import tempfile
 import unittest
 import test.test_support
 import unicodedata
@@ -81,9 +83,109 @@ class ReTest(unittest.TestCase):
         COMMENT_RE = re.compile(r'(^|\s)+#.*$')
         self.assertEqual(COMMENT_RE.sub('', '#'), '')
 
+    def test_subject_forms(self):
+        # The matcher reads str held as bytes, buffers and non-BMP unicode in place
+        pat = re.compile(r'(\w+)=([\x80-\xff]+)')
+        data = 'a=\xe9\xff b=\x80 c=x'
+        fd, name = tempfile.mkstemp()
+        try:
+            os.write(fd, data)
+            os.lseek(fd, 0, 0)
+            raw = os.read(fd, 100)
+        finally:
+            os.close(fd)
+            os.remove(name)
+        expected = [('a', '\xe9\xff'), ('b', '\x80')]
+        for subject in (data, raw, bytearray(data), buffer(data)):
+            self.assertEqual(pat.findall(subject), expected)
+            self.assertEqual(pat.search(subject, 3).span(), (5, 8))
+
+        u = u'\U00010000x=\xe9 \U0001f600y=\xff\U00010001'
+        m = re.compile(ur'(\w)=(.)', re.U).findall(u)
+        self.assertEqual(m, [(u'x', u'\xe9'), (u'y', u'\xff')])
+        self.assertEqual(re.search(u'y', u).start(), 6)
+        self.assertEqual(re.sub(u'.\U00010001', u'!', u), u'\U00010000x=\xe9 \U0001f600y=!')
+
+
+class CompiledPatternTest(unittest.TestCase):
+    """Patterns compiled to JVM classes behave exactly as when interpreted."""
+
+    patterns = [
+        r'(\S+) \S+ \S+ \[([^\]]+)\] "(\w+) ([^ "]+) [^"]*" (\d{3}) (\d+)',
+        r'[A-Za-z_][A-Za-z0-9_]*', r'\w+@\w+\.com', r'^\s*#.*$', r'(?m)^(\w+)=(.*)$',
+        r'a.*?b', r'a.*b', r'(a|bc|d)+x', r'(?:ab|a)c', r'(\w+)\s+\1', r'(?i)hello\s+WORLD',
+        r'(?i)[a-f]+', r'x{2,5}y', r'x{2,}?', r'(?=\d)\w+', r'(?<!a)b', r'\bfoo\b', r'\Bo',
+        r'[^\n]*\n', r'(?s).+', r'.+', r'[\u0100-\u01ff]+', r'[^\W\d]+', r'(a)?b(?(1)c|d)',
+        r'(?u)\w+', r'(\d+)(?:\.(\d+))?', r'$', r'', r'((a)|b)*', r'[-+]?\d*\.?\d+(?:[eE][-+]?\d+)?',
+        r'ERROR \[(\w+)\]', r'\d+ ms', r'(\w+)=(\d+)px', r'(?:ab|cd)xyz', r'a{2,3}bc', r'x\by',
+        r'[a-z]{1,4}@here', r'(?<=a)bc+d', r'\w(?:xx|y)z+the',
+    ]
+
+    subjects = [
+        '127.0.0.1 - - [10/Oct/2000:13:55:36 -0700] "GET /apache_pb.gif HTTP/1.0" 200 2326',
+        'key=value\nother = thing\n  # comment\nfoo bar foobar hello   world HELLO World',
+        'aXXb aYb ab axxxxxyy xxxy xy bcbcdx abcx abc ac the the 3.14 -2e10 +.5 1.',
+        u'\u0101\u0102 mixed \xe9t\xe9 caf\xe9 x@y.com me@here.com bd abc',
+        '', 'b', 'ab', '\n\n',
+        'INFO [a] ERROR [main] took 15 ms, 2 ms w=30px h=4px cdxyz abxyz aaabc abcd bcd xyzthe',
+    ]
+
+    def setUp(self):
+        from org.python.core import Options
+        self.threshold = Options.sreJitThreshold
+        self.prefilter = Options.srePrefilter
+
+    def tearDown(self):
+        from org.python.core import Options
+        Options.sreJitThreshold = self.threshold
+        Options.srePrefilter = self.prefilter
+        re.purge()
+
+    def results(self, threshold, prefilter=True):
+        from org.python.core import Options
+        Options.sreJitThreshold = threshold
+        Options.srePrefilter = prefilter
+        re.purge()
+        results = []
+        for p in self.patterns:
+            # Use each pattern enough times to pass the threshold before the calls we check.
+            c = re.compile(p)
+            c.match('')
+            for s in self.subjects:
+                m = c.match(s)
+                results.append(m and (m.span(), m.groups(), m.lastindex))
+                m = c.search(s, 3)
+                results.append(m and (m.span(), m.groups(), m.lastindex))
+                results.append(c.findall(s))
+                results.append([m.span() for m in c.finditer(s)])
+                results.append(c.subn('<\\g<0>>', s))
+                results.append(c.split(s))
+        return results
+
+    def test_compiled_same_as_interpreted(self):
+        interpreted = self.results(-1)
+        compiled = self.results(0)
+        self.assertEqual(len(interpreted), len(compiled))
+        for i, c in zip(interpreted, compiled):
+            self.assertEqual(i, c)
+
+    def test_prefilter_same_as_unfiltered(self):
+        # Skipping to required literal text does not change what is found
+        unfiltered = self.results(-1, False)
+        filtered = self.results(-1, True)
+        self.assertEqual(len(unfiltered), len(filtered))
+        for u, f in zip(unfiltered, filtered):
+            self.assertEqual(u, f)
+
+    def test_recursion_limit(self):
+        from org.python.core import Options
+        Options.sreJitThreshold = 0
+        re.purge()
+        self.assertRaises(RuntimeError, re.match, '(?:a|b)*?c', 'ab' * 10000)
+
 
 def test_main():
-    test.test_support.run_unittest(ReTest)
+    test.test_support.run_unittest(ReTest, CompiledPatternTest)
 
 if __name__ == "__main__":
     test_main()
@@ -1,5 +1,7 @@
+import array
 import errno
 import os
+import select
 import socket
 import ssl
 import threading
@@ -154,8 +156,170 @@ class SocketOptionsTest(unittest.TestCase):
         self.assertEqual(socket.SOL_TCP, socket.IPPROTO_TCP)
 
 
+class SocketBufferTest(unittest.TestCase):
+    # recv_into reads into the buffer of the object given; select and
+    # poll test readiness on the same state
+
+    def setUp(self):
+        self.serv = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+        self.serv.bind(("127.0.0.1", 0))
+        self.serv.listen(1)
+        self.cli = socket.create_connection(self.serv.getsockname())
+        self.conn, _ = self.serv.accept()
+
+    def tearDown(self):
+        self.conn.close()
+        self.cli.close()
+        self.serv.close()
+
+    def recv_exactly(self, n):
+        data = []
+        while n:
+            chunk = self.conn.recv(n)
+            self.assertTrue(chunk, "unexpected end of stream")
+            data.append(chunk)
+            n -= len(chunk)
+        return "".join(data)
+
+    def test_recv_into(self):
+        for buf in (bytearray(10), memoryview(bytearray(10))):
+            self.cli.sendall(b"0123456789")
+            self.assertEqual(self.conn.recv_into(buf), 10)
+            self.assertEqual(bytes(bytearray(buf)), b"0123456789")
+
+    def test_recv_into_nbytes(self):
+        buf = bytearray(b"-" * 8)
+        self.cli.sendall(b"abcdef")
+        self.assertEqual(self.conn.recv_into(buf, 4), 4)
+        self.assertEqual(self.conn.recv_into(memoryview(buf)[4:]), 2)
+        self.assertEqual(buf, bytearray(b"abcdef--"))
+        self.assertRaises(ValueError, self.conn.recv_into, buf, 9)
+        self.assertRaises(ValueError, self.conn.recv_into, buf, -1)
+
+    def test_sendmsg_recvmsg_into(self):
+        # Gathered from, and scattered into, the buffers of the objects
+        self.assertEqual(self.cli.sendmsg([b"head", bytearray(b"body"), memoryview(b"!")]), 9)
+        head, body = bytearray(4), array.array('b', [0] * 8)
+        n, ancdata, flags, addr = self.conn.recvmsg_into([head, body])
+        self.assertEqual((n, ancdata, flags, addr), (9, [], 0, None))
+        self.assertEqual((head, body.tostring()), (bytearray(b"head"), b"body!\0\0\0"))
+        self.assertRaises(TypeError, self.conn.recvmsg_into, [b"read-only"])
+        self.assertRaises(socket.error, self.cli.sendmsg, [b"x"], [(0, 0, b"")])
+
+    def test_recvfrom_into(self):
+        buf = bytearray(5)
+        self.cli.sendall(b"hello")
+        n, addr = self.conn.recvfrom_into(buf)
+        self.assertEqual((n, buf), (5, bytearray(b"hello")))
+        self.assertEqual(addr, self.cli.getsockname())
+
+    def test_recv_at_end_of_stream(self):
+        self.cli.sendall(b"last")
+        self.cli.close()
+        self.assertEqual(self.recv_exactly(4), b"last")
+        self.assertEqual(select.select([self.conn], [], [], 5)[0], [self.conn])
+        for i in range(3):
+            self.assertEqual(self.conn.recv(10), b"")
+        self.assertEqual(self.conn.recv_into(bytearray(4)), 0)
+
+    def test_sendall_large(self):
+        data = os.urandom(1 << 20)
+        received = []
+        def reader():
+            received.append(self.recv_exactly(len(data)))
+        t = threading.Thread(target=reader)
+        t.start()
+        self.assertIsNone(self.cli.sendall(data))
+        self.assertIsNone(self.cli.sendall(memoryview(b"!!")))
+        t.join()
+        self.assertEqual(received, [data])
+        self.assertEqual(self.recv_exactly(2), b"!!")
+
+    def test_select_keeps_order(self):
+        self.cli.sendall(b"x")
+        self.conn.sendall(b"y")
+        socks = [self.conn, self.cli]
+        r, w, x = select.select(socks, socks, [], 5)
+        self.assertEqual(w, socks)
+        while len(r) < 2:
+            r, _, _ = select.select(socks, [], [], 5)
+        self.assertEqual(r, socks)
+
+    def test_poll(self):
+        p = select.poll()
+        p.register(self.conn, select.POLLIN)
+        self.assertEqual(p.poll(0), [])
+        self.cli.sendall(b"ping")
+        self.assertEqual(p.poll(5000), [(self.conn, select.POLLIN)])
+        # Ready until read (levels, not edges)
+        self.assertEqual(p.poll(0), [(self.conn, select.POLLIN)])
+        self.recv_exactly(4)
+        self.assertEqual(p.poll(0), [])
+        p.unregister(self.conn)
+        self.assertRaises(KeyError, p.unregister, self.conn)
+
+    def test_epoll_transport_package(self):
+        # The epoll transport is only taken from the package of the Netty in use
+        import _socket
+        netty = _socket.NioEventLoopGroup.__module__[:-len(".channel.nio")]
+        classes, cause = _socket._epoll_transport()
+        if classes is None:
+            self.assertIsNotNone(cause)
+        else:
+            for cls in classes:
+                self.assertTrue(cls.__module__.startswith(netty + "."), cls)
+
+    def test_epoll(self):
+        ep = select.epoll()
+        ep.register(self.conn, select.EPOLLIN)
+        self.assertEqual(ep.poll(0), [])
+        self.cli.sendall(b"ping")
+        self.assertEqual(ep.poll(5), [(self.conn, select.EPOLLIN)])
+        self.assertEqual(ep.poll(0), [(self.conn, select.EPOLLIN)])
+        self.recv_exactly(4)
+        self.assertEqual(ep.poll(0), [])
+        self.assertRaises(IOError, ep.register, self.conn)
+        ep.unregister(self.conn)
+        self.assertRaises(IOError, ep.unregister, self.conn)
+        self.assertRaises(IOError, ep.modify, self.conn, select.EPOLLIN)
+        ep.close()
+        self.assertTrue(ep.closed)
+        self.assertRaises(ValueError, ep.poll)
+
+    def test_epoll_edge_and_oneshot(self):
+        ep = select.epoll()
+        ep.register(self.conn, select.EPOLLIN | select.EPOLLET)
+        self.cli.sendall(b"a")
+        self.assertEqual(ep.poll(5), [(self.conn, select.EPOLLIN)])
+        # Reported once until more arrives, although still readable
+        self.assertEqual(ep.poll(0.05), [])
+        self.cli.sendall(b"b")
+        self.assertEqual(ep.poll(5), [(self.conn, select.EPOLLIN)])
+        ep.modify(self.conn, select.EPOLLIN | select.EPOLLONESHOT)
+        self.assertEqual(ep.poll(5), [(self.conn, select.EPOLLIN)])
+        self.cli.sendall(b"c")
+        self.assertEqual(ep.poll(0.05), [])
+        ep.modify(self.conn, select.EPOLLIN)
+        self.assertEqual(ep.poll(5), [(self.conn, select.EPOLLIN)])
+        self.assertRaises(ValueError, ep.poll, 0, 0)
+        ep.close()
+
+    def test_epoll_hangup(self):
+        ep = select.epoll()
+        ep.register(self.conn, select.EPOLLIN)
+        self.cli.close()
+        events = 0
+        deadline = time.time() + 5
+        while not events & select.EPOLLHUP and time.time() < deadline:
+            for fd, events in ep.poll(5):
+                self.assertIs(fd, self.conn)
+        self.assertEqual(events, select.EPOLLIN | select.EPOLLHUP)
+        ep.close()
+
+
 def test_main():
-    test_support.run_unittest(SocketConnectTest, SSLSocketConnectTest, SocketOptionsTest)
+    test_support.run_unittest(SocketConnectTest, SSLSocketConnectTest, SocketOptionsTest,
+                              SocketBufferTest)
 
 
 if __name__ == "__main__":
@@ -169,8 +169,128 @@ class ParserTest(unittest.TestCase):
         self.assertEqual(ord(bar[1]), 92)
         self.assertEqual(ord(bar[2]), 110)
 
+class BytesBackedStrTest(unittest.TestCase):
+    """str read from binary files and arrays is held as bytes until needed as a String."""
+
+    data = ''.join(chr(i) for i in range(256)) * 40
+
+    def setUp(self):
+        with open(test_support.TESTFN, 'wb') as f:
+            f.write(self.data)
+
+    def tearDown(self):
+        test_support.unlink(test_support.TESTFN)
+
+    def check(self, s, expected):
+        self.assertIs(type(s), str)
+        self.assertEqual(len(s), len(expected))
+        self.assertEqual(memoryview(s).tobytes(), expected)
+        self.assertEqual(bytearray(s), bytearray(expected))
+        self.assertEqual(s, expected)
+        self.assertEqual(hash(s), hash(expected))
+        self.assertEqual(s[1:4], expected[1:4])
+
+    def test_file_read(self):
+        with open(test_support.TESTFN, 'rb') as f:
+            self.check(f.read(300), self.data[:300])
+            self.check(f.read(), self.data[300:])
+            self.check(f.read(10), '')
+
+    def test_os_read(self):
+        import os
+        fd = os.open(test_support.TESTFN, os.O_RDONLY)
+        try:
+            self.check(os.read(fd, 1000), self.data[:1000])
+        finally:
+            os.close(fd)
+
+    def test_io_read(self):
+        import io
+        with io.open(test_support.TESTFN, 'rb', buffering=0) as f:
+            self.check(f.read(700), self.data[:700])
+
+    def test_array_tostring(self):
+        import array
+        a = array.array('B', range(256))
+        self.check(a.tostring(), self.data[:256])
+
+    def test_java_interop(self):
+        with open(test_support.TESTFN, 'rb') as f:
+            s = f.read(5)
+        self.assertEqual(java.lang.StringBuilder(s).toString(), self.data[:5])
+        self.assertEqual(s.upper(), self.data[:5].upper())
+
+
+class ConcatenationTest(unittest.TestCase):
+    """Long results of + are built in a shared buffer, so repeated += is not quadratic."""
+
+    def check_loop(self, empty, piece):
+        s = empty
+        parts = []
+        for i in range(2000):
+            t = piece + str(i)
+            s += t
+            parts.append(t)
+        expected = empty.join(parts)
+        self.assertIs(type(s), type(empty))
+        self.assertEqual(len(s), len(expected))
+        self.assertEqual(s, expected)
+        self.assertEqual(hash(s), hash(expected))
+        self.assertEqual(s[-7:], expected[-7:])
+
+    def test_str_loop(self):
+        self.check_loop('', 'abc')
+
+    def test_unicode_loop(self):
+        self.check_loop(u'', u'\u20ac')
+
+    def test_branching(self):
+        # Appending to a value that is no longer the end of the shared buffer
+        base = 'x' * 2000
+        s1 = base + 'a'
+        s2 = s1 + 'b'
+        s3 = s1 + 'c'
+        s4 = s2 + 'd'
+        self.assertEqual(s1, base + 'a')
+        self.assertEqual(s2, base + 'ab')
+        self.assertEqual(s3, base + 'ac')
+        self.assertEqual(s4, base + 'abd')
+        self.assertEqual((len(s1), len(s2), len(s3), len(s4)), (2001, 2002, 2002, 2003))
+
+    def test_unicode_supplementary(self):
+        base = u'x' * 2000
+        s = base + u'\U0001f600'
+        self.assertEqual(len(s), 2001)
+        self.assertEqual(s[-1], u'\U0001f600')
+        s += u'y'
+        self.assertEqual(len(s), 2002)
+        self.assertEqual(s[-2:], u'\U0001f600y')
+
+    def test_pickle(self):
+        import cPickle, pickle
+        s = 'y' * 1500 + 'z'
+        for p in pickle, cPickle:
+            self.assertEqual(p.loads(p.dumps(s, 2)), 'y' * 1500 + 'z')
+        u = u'y' * 1500 + u'z'
+        self.assertEqual(pickle.loads(pickle.dumps(u)), u'y' * 1500 + u'z')
+
+    def test_java_serialization(self):
+        from java.io import ByteArrayInputStream, ByteArrayOutputStream
+        from org.python.util import PythonObjectInputStream
+        from java.io import ObjectOutputStream
+        s = 'q' * 1500 + 'r'
+        bout = ByteArrayOutputStream()
+        out = ObjectOutputStream(bout)
+        out.writeObject(s)
+        out.close()
+        inp = PythonObjectInputStream(ByteArrayInputStream(bout.toByteArray()))
+        self.assertEqual(inp.readObject(), 'q' * 1500 + 'r')
+
+
 def test_main():
     test_support.run_unittest(
+        ConcatenationTest,
+        BytesBackedStrTest,
         WrappedStrCmpTest,
         StrConstructorTest,
         StringSlicingTest,
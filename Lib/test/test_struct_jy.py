@@ -149,6 +149,43 @@ class StructTests(unittest.TestCase): # (format, argument, big-endian result, li
                                                  (fmt, res, rev, arg))
 
 
+    def test_pack_into_buffers(self):
+        for target in (bytearray(12), memoryview(bytearray(12))):
+            struct.pack_into('<hI', target, 2, -2, 0x01020304)
+            self.assertEqual(bytes(bytearray(target[:10])), '\0\0\xfe\xff\x04\x03\x02\x01\0\0')
+            struct.Struct('B').pack_into(target, -1, 7)
+            self.assertEqual(target[11], 7 if isinstance(target, bytearray) else '\x07')
+            self.assertRaises(struct.error, struct.pack_into, '<q', target, 8, 1)
+        self.assertRaises(BufferError, struct.pack_into, 'b', 'immutable', 0, 1)
+
+    def test_unpack_from_buffers(self):
+        data = 'xy' + struct.pack('>Hd', 513, 2.5)
+        for source in (data, bytearray(data), buffer(data), memoryview(data)):
+            self.assertEqual(struct.unpack_from('>Hd', source, 2), (513, 2.5))
+            self.assertEqual(struct.unpack_from('>Hd', source, offset=-10), (513, 2.5))
+            self.assertEqual(struct.Struct('>H').unpack_from(source, 2), (513,))
+            self.assertRaises(struct.error, struct.unpack_from, '>Hd', source, 3)
+            self.assertEqual(struct.unpack('>2sHd', source), ('xy', 513, 2.5))
+
+    def test_iter_unpack(self):
+        s = struct.Struct('<Hc')
+        data = s.pack(1, 'a') + s.pack(2, 'b') + s.pack(3, 'c')
+        expected = [(1, 'a'), (2, 'b'), (3, 'c')]
+        self.assertEqual(list(s.iter_unpack(data)), expected)
+        self.assertEqual(list(struct.iter_unpack('<Hc', bytearray(data))), expected)
+        self.assertEqual(list(s.iter_unpack('')), [])
+        self.assertRaises(struct.error, s.iter_unpack, data[:-1])
+        self.assertRaises(struct.error, struct.iter_unpack, '', data)
+
+    def test_format_cache(self):
+        # Bad formats are not cached, and the cache may be cleared at any time
+        for i in range(300):
+            self.assertEqual(struct.calcsize('%dB' % i), i)
+        self.assertRaises(struct.error, struct.calcsize, 'Z')
+        self.assertRaises(struct.error, struct.calcsize, 'Z')
+        struct._clearcache()
+        self.assertEqual(struct.unpack('', ''), ())
+        self.assertEqual(struct.pack('>i', 1), '\0\0\0\1')
 
 
 def test_main():
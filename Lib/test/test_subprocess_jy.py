@@ -5,8 +5,10 @@ import sys
 import signal
 import time
 import errno
+import tempfile
+import java.lang
 from test import test_support
-from subprocess import PIPE, Popen, _cmdline2list
+from subprocess import PIPE, STDOUT, Popen, _cmdline2list
 
 
 class TerminationAndSignalTest(unittest.TestCase):
@@ -153,15 +155,120 @@ class ExceptionsTestCase(unittest.TestCase):
             self.assertEquals(err.errno, errno.ENOENT)
 
 
+class PumpTest(unittest.TestCase):
+
+    # Output is collected and redirected on the thread shared by all
+    # processes (ProcessPump), not on a thread for each stream
+
+    launcher = 'processbuilder'
+
+    def setUp(self):
+        import subprocess
+        self.addCleanup(setattr, subprocess, '_posix_spawn',
+                        subprocess._posix_spawn)
+        subprocess._posix_spawn = self.launcher == 'posix_spawn'
+
+    def popen(self, script, **kwargs):
+        return Popen(['sh', '-c', script], **kwargs)
+
+    def test_communicate(self):
+        p = self.popen('cat; echo err >&2', stdin=PIPE, stdout=PIPE,
+                       stderr=PIPE)
+        self.assertEqual(p.communicate('data'), ('data', 'err\n'))
+        self.assertEqual(p.returncode, 0)
+
+    def test_communicate_large(self):
+        p = self.popen('head -c 1000000 /dev/zero; '
+                       'head -c 300000 /dev/zero >&2',
+                       stdout=PIPE, stderr=PIPE)
+        out, err = p.communicate()
+        self.assertEqual((len(out), len(err)), (1000000, 300000))
+
+    def test_communicate_no_threads(self):
+        from java.lang import Thread
+        Popen(['true'], stdout=PIPE, stderr=PIPE).communicate()
+        before = Thread.activeCount()
+        for i in range(10):
+            p = self.popen('echo out; echo err >&2', stdout=PIPE, stderr=PIPE)
+            self.assertEqual(p.communicate(), ('out\n', 'err\n'))
+        self.assertLessEqual(Thread.activeCount(), before)
+
+    def test_redirect_to_file(self):
+        with tempfile.TemporaryFile() as out:
+            out.write('first\n')
+            out.flush()
+            p = self.popen('seq 1 10000; echo err >&2', stdout=out,
+                           stderr=PIPE)
+            self.assertEqual(p.communicate(), (None, 'err\n'))
+            out.seek(0)
+            lines = out.readlines()
+        self.assertEqual(lines[0], 'first\n')
+        self.assertEqual(lines[1:], ['%d\n' % i for i in range(1, 10001)])
+
+    def test_stderr_to_stdout(self):
+        p = self.popen('echo a; echo b >&2', stdout=PIPE, stderr=STDOUT)
+        self.assertEqual(p.communicate(), ('a\nb\n', None))
+
+    def test_iterate_stdout(self):
+        p = self.popen('seq 1 3', stdout=PIPE)
+        self.assertEqual(list(p.stdout), ['1\n', '2\n', '3\n'])
+        self.assertEqual(p.wait(), 0)
+
+    def test_returncode(self):
+        self.assertEqual(self.popen('exit 3').wait(), 3)
+
+    def test_no_such_program(self):
+        with self.assertRaises(OSError) as cm:
+            Popen(['a-program-that-should-never-exist-subprocess-test'])
+        self.assertEqual(cm.exception.errno, errno.ENOENT)
+
+
+class SpawnTest(PumpTest):
+
+    launcher = 'posix_spawn'
+
+    def setUp(self):
+        from org.python.modules._subprocess import SpawnedProcess
+        if not SpawnedProcess.isAvailable():
+            self.skipTest('posix_spawn is not available')
+        PumpTest.setUp(self)
+        # Only a child of the JVM's own working directory is spawned
+        self.addCleanup(os.chdir, os.getcwd())
+        os.chdir(java.lang.System.getProperty('user.dir'))
+
+    def test_spawned(self):
+        from org.python.modules._subprocess import SpawnedProcess
+        p = self.popen('echo $$', stdout=PIPE)
+        self.assertIsInstance(p._process, SpawnedProcess)
+        self.assertEqual(int(p.communicate()[0]), p.pid)
+
+    def test_kill(self):
+        p = self.popen('sleep 10')
+        p.kill()
+        self.assertEqual(p.wait(), 128 + signal.SIGKILL)
+
+    def test_other_cwd(self):
+        # posix_spawn cannot change directory, so ProcessBuilder is used
+        from org.python.modules._subprocess import SpawnedProcess
+        cwd = tempfile.gettempdir()
+        p = Popen(['pwd'], stdout=PIPE, cwd=cwd)
+        self.assertNotIsInstance(p._process, SpawnedProcess)
+        self.assertEqual(os.path.realpath(p.communicate()[0].strip()),
+                         os.path.realpath(cwd))
+
+
 def test_main():
-    test_support.run_unittest(
+    tests = [
         TerminationAndSignalTest,
         PidTest,
         EnvironmentInheritanceTest,
         JythonOptsTest,
         Cmdline2ListTestCase,
         ExceptionsTestCase,
-    )
+    ]
+    if os._name != 'nt':
+        tests += [PumpTest, SpawnTest]
+    test_support.run_unittest(*tests)
 
 
 if __name__ == '__main__':
@@ -371,6 +371,55 @@ class UnicodeIndexMixTest(unittest.TestCase):
                 m.insert(t)
                 check_rfind_str(m, t)
 
+    def test_extended_slice(self):
+        # Test slices with a step pick out the right code points
+
+        def check_extended_slice(m):
+            for step in (2, 3, 7, -1, -2, -5):
+                exp = u''.join(m.ref[::step])
+                self.assertEqual(m.text[::step], exp)
+                exp = u''.join(m.ref[3:m.size-2:step])
+                self.assertEqual(m.text[3:m.size-2:step], exp)
+
+        for m in self.material:
+            check_extended_slice(m)
+
+    def test_index_count(self):
+        # Test index and rindex report code point indexes, and count counts code points
+
+        for m in self.material:
+            u = m.text
+            for c in set(m.ref):
+                i = u.index(c)
+                self.assertEqual(i, m.ref.index(c))
+                j = u.rindex(c)
+                self.assertEqual(j, m.size - 1 - m.ref[::-1].index(c))
+                self.assertEqual(u.count(c), m.ref.count(c))
+                self.assertEqual(u.count(c, i + 1), m.ref[i + 1:].count(c))
+
+        u = u"a\U00010041a\U00010041a\U00010041"
+        self.assertEqual(u.count(u"a\U00010041"), 3)
+        self.assertEqual(u.count(u"\U00010041a"), 2)
+        self.assertEqual(u.count(u""), 7)
+        self.assertEqual(u.count(u"a", 1, 4), 1)
+
+    def test_strip_split(self):
+        # Test strip and split on strings with supplementary characters
+        sp = u"\U00010041"
+        u = u" \t" + sp + u"x y" + sp + u"\n "
+        self.assertEqual(u.strip(), sp + u"x y" + sp)
+        self.assertEqual(u.lstrip(), sp + u"x y" + sp + u"\n ")
+        self.assertEqual(u.rstrip(), u" \t" + sp + u"x y" + sp)
+        self.assertEqual(u.strip(u" \t\n" + sp), u"x y")
+        self.assertEqual(u.lstrip(u" \t" + sp), u"x y" + sp + u"\n ")
+        self.assertEqual(u.rstrip(sp + u"\n "), u" \t" + sp + u"x y")
+        self.assertEqual((sp * 3).strip(sp), u"")
+        self.assertEqual(u.split(), [sp + u"x", u"y" + sp])
+        self.assertEqual(u.split(sp), [u" \t", u"x y", u"\n "])
+        self.assertEqual(u.split(u"y" + sp, 1), [u" \t" + sp + u"x ", u"\n "])
+        self.assertEqual(list(u), [c for c in u])
+        self.assertEqual(len(list(u)), 9)
+
     def test_surrogate_validation(self):
 
         from java.lang import StringBuilder
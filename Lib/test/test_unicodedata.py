@@ -331,6 +331,31 @@ class UnicodeMiscTest(UnicodeDatabaseTest):
                 self.assertEqual(len(lines), 1,
                                  r"\u%.4x should not be a linebreak" % i)
 
+    @unittest.skipUnless(test.test_support.is_jython, "Jython tables are built from ICU4J")
+    def test_tables_agree_with_icu(self):
+        try:
+            from org.python.icu.lang import UCharacter, UProperty
+        except ImportError:
+            from com.ibm.icu.lang import UCharacter, UProperty
+        db = self.db
+        for i in all_codepoints():
+            c = unichr(i)
+            self.assertEqual(db.combining(c), UCharacter.getCombiningClass(i))
+            self.assertEqual(db.mirrored(c), UCharacter.isMirrored(i))
+            self.assertEqual(db.digit(c, -1), UCharacter.digit(i))
+            n = UCharacter.getNumericValue(i)
+            self.assertEqual(db.decimal(c, -1), n if 0 <= n <= 9 else -1)
+        self.assertEqual(db.category(u'\U0001F600'), 'So')
+        self.assertEqual(db.east_asian_width(u'\U0001F600'), 'W')
+        self.assertEqual(db.bidirectional(u'\u0660'), 'An')
+        s = u'caf\xe9 \U0001F600'
+        self.assertIs(db.normalize('NFC', s), s)
+        self.assertEqual(db.normalize('NFD', s), u'cafe\u0301 \U0001F600')
+        self.assertEqual(db.normalize('NFKC', u'x\u2460'), u'x1')
+        self.assertRaises(ValueError, db.normalize, 'NFX', s)
+        self.assertRaises(TypeError, db.category, 'a')
+        self.assertRaises(TypeError, db.category, u'ab')
+
 def test_main():
     test.test_support.run_unittest(
         UnicodeMiscTest,
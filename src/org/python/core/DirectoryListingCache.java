@@ -0,0 +1,112 @@
+/* Copyright (c) Jython Developers */
+package org.python.core;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.python.core.util.PlatformUtil;
+
+/**
+ * The names in the directories searched by import (the entries of <code>sys.path</code> and of
+ * packages' <code>__path__</code>), in the manner of the <code>FileFinder</code> of CPython 3, so
+ * that a module absent from most of a long path costs one check of each directory, in place of
+ * several failed stats of candidate files in it.
+ * <p>
+ * The cache only answers that a name is certainly absent: where it may be present, the caller goes
+ * on to look for the file as before. A listing is used only while the modification time of its
+ * directory is unchanged, and not at all while that time is so recent that a change might not yet
+ * show in it (as git treats "racily clean" files), so that a module written and at once imported
+ * is found. {@link #invalidate()}, as <code>imp.invalidate_caches()</code>, discards all listings,
+ * for file systems that do not keep the times of directories, and {@link Options#importCache}
+ * turns the cache off.
+ */
+public final class DirectoryListingCache {
+
+    /**
+     * How long after a directory is modified before its listing may be relied on: the coarsest
+     * resolution of modification times (FAT) in milliseconds.
+     */
+    private static final long RACY_INTERVAL = 2000;
+
+    private static final boolean CASE_INSENSITIVE = PlatformUtil.isCaseInsensitive();
+
+    private static final ConcurrentMap<String, Listing> listings =
+            new ConcurrentHashMap<String, Listing>();
+
+    private DirectoryListingCache() {}
+
+    /** The names in a directory, at a modification time of the directory. */
+    private static class Listing {
+
+        final long mtime;
+        final Set<String> names;
+
+        Listing(long mtime, String[] names) {
+            this.mtime = mtime;
+            this.names = new HashSet<String>(names.length);
+            for (String name : names) {
+                this.names.add(key(name));
+            }
+        }
+    }
+
+    /** The name as listed, folded to lower case where the platform ignores case. */
+    private static String key(String name) {
+        return CASE_INSENSITIVE ? name.toLowerCase(Locale.ROOT) : name;
+    }
+
+    /**
+     * Whether the directory may contain a file or directory of any of the given names. This is
+     * <code>false</code> only if the cache is sure it does not, including when the directory does
+     * not exist.
+     *
+     * @param dirName an absolute path (resolved as by {@link PySystemState#getPath(String)})
+     * @param names of the files or directories sought
+     * @return whether to go on to look for them in the file system
+     */
+    public static boolean mayContain(String dirName, String... names) {
+        if (!Options.importCache) {
+            return true;
+        }
+        try {
+            File dir = new File(dirName);
+            long mtime = dir.lastModified();
+            if (mtime == 0L) {
+                // Absent (or its time is unknown: then so is whether it exists)
+                return dir.exists();
+            }
+            Listing listing = listings.get(dirName);
+            if (listing == null || listing.mtime != mtime) {
+                if (System.currentTimeMillis() - mtime < RACY_INTERVAL) {
+                    // Recently changed, and may be changing still
+                    listings.remove(dirName);
+                    return true;
+                }
+                String[] list = dir.list();
+                if (list == null) {
+                    // Not a directory (a jar, say), or unreadable: look as if uncached
+                    return true;
+                }
+                listing = new Listing(mtime, list);
+                listings.put(dirName, listing);
+            }
+            for (String name : names) {
+                if (listing.names.contains(key(name))) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (SecurityException e) {
+            return true;
+        }
+    }
+
+    /** Discard all the listings, so that each directory is listed again when next searched. */
+    public static void invalidate() {
+        listings.clear();
+    }
+}
@@ -112,6 +112,15 @@ public class Options {
      */
     public static boolean caseok = false;
 
+    /**
+     * Whether import keeps the listings of the directories it searches, to skip those without the
+     * module sought.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_IMPORT_CACHE
+     * @see org.python.core.DirectoryListingCache
+     */
+    public static boolean importCache = true;
+
     /**
      * If true, enable true division for the '/' operator.
      *
@@ -166,6 +175,39 @@ public class Options {
             "weakKeys,concurrencyLevel=4,maximumWeight=2621440,expireAfterAccess=30s";
     public static String sreCacheSpec = sreCacheSpecDefault;
 
+    /**
+     * The number of times a regular expression pattern is used before it is compiled to a JVM
+     * class specialised to it. Zero compiles patterns on first use, and a negative value never
+     * compiles them (the opcode interpreter is always used).
+     *
+     * @see org.python.core.RegistryKey#PYTHON_SRE_JIT
+     */
+    public static int sreJitThreshold = 200;
+
+    /**
+     * Whether a regular expression search first looks for literal text every match must contain,
+     * to skip positions where the pattern cannot match.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_SRE_PREFILTER
+     */
+    public static boolean srePrefilter = true;
+
+    /**
+     * Whether new instances of <code>random.Random</code> (including the one behind the module
+     * level functions) give each thread its own generator, rather than locking a shared one.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_RANDOM_PERTHREAD
+     */
+    public static boolean randomPerThread = false;
+
+    /**
+     * The number of threads that perform the reads and writes of <code>_jyaio</code> files, and
+     * complete their futures, however many are in flight.
+     *
+     * @see org.python.core.RegistryKey#PYTHON_AIO_THREADS
+     */
+    public static int aioThreads = 16;
+
     //
     // ####### END OF OPTIONS
     //
@@ -180,6 +222,18 @@ public class Options {
         return prop.equalsIgnoreCase("true") || prop.equalsIgnoreCase("yes");
     }
 
+    private static int getIntOption(String name, int defaultValue) {
+        String prop = PySystemState.registry.getProperty(name);
+        if (prop == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(prop.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     private static String getStringOption(String name, String defaultValue) {
         String prop = PySystemState.registry.getProperty(name);
         if (prop == null) {
@@ -206,11 +260,16 @@ public class Options {
         setLoggingFromRegistry();
 
         caseok = getBooleanOption(PYTHON_OPTIONS_CASE_OK, caseok);
+        importCache = getBooleanOption(PYTHON_IMPORT_CACHE, importCache);
         Qnew = getBooleanOption(PYTHON_OPTIONS_Q_NEW, Qnew);
 
         setDivisionWarningFromRegistry();
 
         sreCacheSpec = getStringOption(PYTHON_SRE_CACHESPEC, sreCacheSpec);
+        sreJitThreshold = getIntOption(PYTHON_SRE_JIT, sreJitThreshold);
+        srePrefilter = getBooleanOption(PYTHON_SRE_PREFILTER, srePrefilter);
+        randomPerThread = getBooleanOption(PYTHON_RANDOM_PERTHREAD, randomPerThread);
+        aioThreads = getIntOption(PYTHON_AIO_THREADS, aioThreads);
         inspect |= getStringOption(PYTHON_INSPECT, "").length() > 0;
         importSite = getBooleanOption(PYTHON_IMPORT_SITE, importSite);
         no_site = !importSite;
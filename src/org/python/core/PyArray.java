@@ -13,8 +13,8 @@ import java.lang.reflect.Array;
 import java.nio.ByteBuffer;
 
 import org.python.core.buffer.BaseBuffer;
-import org.python.core.buffer.SimpleBuffer;
 import org.python.core.buffer.SimpleStringBuffer;
+import org.python.core.buffer.SimpleWritableBuffer;
 import org.python.core.util.ByteSwapper;
 import org.python.core.util.StringUtil;
 import org.python.expose.ExposedGet;
@@ -1980,7 +1980,8 @@ public class PyArray extends PySequence implements Cloneable, BufferProtocol, Tr
 
     @ExposedMethod
     public final PyObject array_tostring() {
-        return new PyString(tostring());
+        // Made directly from the bytes, saving a String and the range check
+        return PyString.fromBytes(toByteArray());
     }
 
     /**
@@ -1989,13 +1990,21 @@ public class PyArray extends PySequence implements Cloneable, BufferProtocol, Tr
      * tofile()} method.)
      */
     public String tostring() {
+        return StringUtil.fromBytes(toByteArray());
+    }
+
+    /**
+     * Convert the array to an array of machine values, as by {@link #tostring()}, but returned as
+     * a new byte array.
+     */
+    private byte[] toByteArray() {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
             toStream(bos);
         } catch (IOException e) {
             throw Py.IOError(e);
         }
-        return StringUtil.fromBytes(bos.toByteArray());
+        return bos.toByteArray();
     }
 
     public String tounicode() {
@@ -2080,10 +2089,10 @@ public class PyArray extends PySequence implements Cloneable, BufferProtocol, Tr
             if (pybuf == null) {
                 // No existing export we can re-use: create a new one
                 if ("b".equals(typecode)) {
-                    // This is byte data, so we can export directly
+                    // This is byte data, so we can export directly (and writably, as for readinto)
                     byte[] storage = (byte[]) data;
                     int size = delegate.getSize();
-                    pybuf = new SimpleBuffer(flags, this, storage, 0, size);
+                    pybuf = new SimpleWritableBuffer(flags, this, storage, 0, size);
                 } else {
                     // As the client only intends to read, fake the answer with a String
                     pybuf = new SimpleStringBuffer(flags, this, tostring());
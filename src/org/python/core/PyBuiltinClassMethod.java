@@ -0,0 +1,24 @@
+package org.python.core;
+
+
+/**
+ * A builtin classmethod taking any arguments, positional or keyword.
+ */
+public abstract class PyBuiltinClassMethod extends PyBuiltinMethod {
+
+    protected PyBuiltinClassMethod(String name) {
+        super(name);
+    }
+
+    protected PyBuiltinClassMethod(PyObject self, Info info) {
+        super(self, info);
+    }
+
+    protected PyBuiltinClassMethod(PyType type, PyObject self, Info info) {
+        super(type, self, info);
+    }
+
+    public PyMethodDescr makeDescriptor(PyType t) {
+        return new PyClassMethodDescr(t, this);
+    }
+}
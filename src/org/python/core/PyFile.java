@@ -6,11 +6,15 @@ package org.python.core;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.python.core.finalization.FinalizableBuiltin;
 import org.python.core.finalization.FinalizeTrigger;
 import org.python.core.io.BinaryIOWrapper;
+import org.python.core.io.BufferSequence;
 import org.python.core.io.BufferedIOBase;
 import org.python.core.io.BufferedRandom;
 import org.python.core.io.BufferedReader;
@@ -79,6 +83,12 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     /** The underlying IO object */
     private TextIOBase file;
 
+    /** The most lines read ahead at once for iteration or readlines */
+    private static final int LINE_BATCH = 256;
+
+    /** Lines read ahead for iteration, or null */
+    private volatile LineBatch lineBatch;
+
     /** The file's closer object; ensures the file is closed at
      * shutdown */
     private Closer closer;
@@ -337,7 +347,8 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     @ExposedMethod(defaults = {"-1"}, doc = BuiltinDocs.file_read_doc)
     final synchronized PyString file_read(int size) {
         checkClosed();
-        return new PyString(file.read(size));
+        returnLines();
+        return file.readStr(size);
     }
 
     public PyString read(int size) {
@@ -351,6 +362,7 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     @ExposedMethod(doc = BuiltinDocs.file_readinto_doc)
     final synchronized int file_readinto(PyObject buf) {
         checkClosed();
+        returnLines();
         return file.readinto(buf);
     }
 
@@ -358,9 +370,25 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
         return file_readinto(buf);
     }
 
+    @ExposedMethod(doc = "readv(buffers) -> number of bytes read.\n\n"
+            + "Read into each of a sequence of writable buffers (bytearray, memoryview, mmap,\n"
+            + "array) in turn, directly, stopping at EOF or a short read.")
+    final synchronized long file_readv(PyObject buffers) {
+        checkClosed();
+        returnLines();
+        try (BufferSequence seq = new BufferSequence("readv", buffers, true)) {
+            return file.readinto(seq.buffers());
+        }
+    }
+
+    public long readv(PyObject buffers) {
+        return file_readv(buffers);
+    }
+
     @ExposedMethod(defaults = {"-1"}, doc = BuiltinDocs.file_readline_doc)
     final synchronized PyString file_readline(int max) {
         checkClosed();
+        returnLines();
         return new PyString(file.readline(max));
     }
 
@@ -375,19 +403,24 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     @ExposedMethod(defaults = {"0"}, doc = BuiltinDocs.file_readlines_doc)
     final synchronized PyObject file_readlines(int sizehint) {
         checkClosed();
-        PyList list = new PyList();
+        returnLines();
+        List<PyObject> list = new ArrayList<PyObject>();
+        PyObject[] lines = new PyObject[LINE_BATCH];
+        int[] ends = new int[LINE_BATCH];
         int count = 0;
         do {
-            String line = file.readline(-1);
-            int len = line.length();
-            if (len == 0) {
+            int n = file.readLines(lines, ends), i = 0;
+            if (n == 0) {
                 // EOF
                 break;
             }
-            count += len;
-            list.append(new PyString(line));
+            while (i < n && (sizehint <= 0 || count < sizehint)) {
+                count += ((PyString)lines[i]).__len__();
+                list.add(lines[i++]);
+            }
+            file.consumeLines(ends[i - 1]);
         } while (sizehint <= 0 || count < sizehint);
-        return list;
+        return PyList.fromList(list);
     }
 
     public PyObject readlines(int sizehint) {
@@ -403,13 +436,48 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
         return file___iternext__();
     }
 
-    final synchronized PyObject file___iternext__() {
+    final PyObject file___iternext__() {
+        // Take the next line of the current batch without locking, if there is one
+        LineBatch batch = lineBatch;
+        if (batch != null) {
+            int i = batch.next.getAndIncrement();
+            if (i < batch.count) {
+                return batch.lines[i];
+            }
+        }
+        return nextLineBatch();
+    }
+
+    /**
+     * Read the next batch of lines for iteration, returning the first of them, or null at EOF.
+     */
+    private synchronized PyObject nextLineBatch() {
         checkClosed();
-        String next = file.readline(-1);
-        if (next.length() == 0) {
+        returnLines();
+        LineBatch batch = new LineBatch();
+        batch.count = file.readLines(batch.lines, batch.ends);
+        if (batch.count == 0) {
             return null;
         }
-        return new PyString(next);
+        batch.next.set(1);
+        lineBatch = batch;
+        return batch.lines[0];
+    }
+
+    /**
+     * Give any lines of the current batch not yet returned by iteration back to the underlying
+     * IO object, so that the file is positioned after the last line returned. Called with the
+     * lock held, before any other operation on the underlying IO object.
+     */
+    private void returnLines() {
+        LineBatch batch = lineBatch;
+        if (batch != null) {
+            lineBatch = null;
+            int consumed = Math.min(batch.next.getAndSet(batch.count), batch.count);
+            if (consumed > 0) {
+                file.consumeLines(batch.ends[consumed - 1]);
+            }
+        }
     }
 
     @ExposedMethod(doc = BuiltinDocs.file_next_doc)
@@ -447,11 +515,17 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
 
     @ExposedMethod(doc = BuiltinDocs.file_write_doc)
     final void file_write(PyObject obj) {
-        file_write(asWritable(obj, null));
+        if (binary && obj instanceof BufferProtocol && !(obj instanceof PyString)) {
+            // Write the storage of a bytearray, memoryview, mmap, ... without making a String
+            writeBuffers("write", new PyTuple(obj));
+        } else {
+            file_write(asWritable(obj, null));
+        }
     }
 
     final synchronized void file_write(String string) {
         checkClosed();
+        returnLines();
         softspace = false;
         file.write(string);
     }
@@ -460,9 +534,29 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
         file_write(string);
     }
 
+    @ExposedMethod(doc = "writev(buffers) -> number of bytes written.\n\n"
+            + "Write the contents of each of a sequence of buffers in turn, directly.")
+    final long file_writev(PyObject buffers) {
+        return writeBuffers("writev", buffers);
+    }
+
+    private synchronized long writeBuffers(String method, PyObject buffers) {
+        checkClosed();
+        returnLines();
+        try (BufferSequence seq = new BufferSequence(method, buffers, false)) {
+            softspace = false;
+            return file.write(seq.buffers());
+        }
+    }
+
+    public long writev(PyObject buffers) {
+        return file_writev(buffers);
+    }
+
     @ExposedMethod(doc = BuiltinDocs.file_writelines_doc)
     final synchronized void file_writelines(PyObject lines) {
         checkClosed();
+        returnLines();
         PyObject iter = Py.iter(lines, "writelines() requires an iterable argument");
         for (PyObject item = null; (item = iter.__iternext__()) != null;) {
             checkClosed(); // ... in case a nasty iterable closed this file
@@ -517,6 +611,7 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     @ExposedMethod(doc = BuiltinDocs.file_tell_doc)
     final synchronized long file_tell() {
         checkClosed();
+        returnLines();
         return file.tell();
     }
 
@@ -527,6 +622,7 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     @ExposedMethod(defaults = {"0"}, doc = BuiltinDocs.file_seek_doc)
     final synchronized void file_seek(long pos, int how) {
         checkClosed();
+        returnLines();
         file.seek(pos, how);
     }
 
@@ -550,6 +646,7 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
 
     @ExposedMethod(doc = BuiltinDocs.file_close_doc)
     final synchronized void file_close() {
+        returnLines();
         if (closer != null) {
             closer.close();
             closer = null;
@@ -581,6 +678,7 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     }
 
     final synchronized void file_truncate(long position) {
+        returnLines();
         file.truncate(position);
     }
 
@@ -589,6 +687,7 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     }
 
     final synchronized void file_truncate() {
+        returnLines();
         file.truncate(file.tell());
     }
 
@@ -643,6 +742,21 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
         return file.closed();
     }
 
+    /**
+     * Return whether this is a binary file, without newline translation, over a seekable
+     * {@link FileIO}. A reader of such a file may read ahead of the data it uses, and seek back
+     * over the excess when done.
+     *
+     * @return true if the file may be read ahead and sought back
+     */
+    public boolean isSeekableBinary() {
+        if (mode == null || mode.indexOf('b') < 0 || mode.indexOf('U') >= 0) {
+            return false;
+        }
+        RawIOBase raw = file.fileno();
+        return raw instanceof FileIO && ((FileIO) raw).seekable();
+    }
+
     @ExposedGet(name = "newlines", doc = BuiltinDocs.file_newlines_doc)
     public PyObject getNewlines() {
         return file.getNewlines();
@@ -667,6 +781,11 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     @Override
     public Object __tojava__(Class<?> cls) {
         Object obj = null;
+        if (InputStream.class.isAssignableFrom(cls) || OutputStream.class.isAssignableFrom(cls)) {
+            synchronized (this) {
+                returnLines();
+            }
+        }
         if (InputStream.class.isAssignableFrom(cls)) {
             obj = file.asInputStream();
         } else if (OutputStream.class.isAssignableFrom(cls)) {
@@ -686,6 +805,24 @@ public class PyFile extends PyObject implements FinalizableBuiltin, Traverseproc
     }
 
 
+    /**
+     * Lines read ahead by {@link PyFile#nextLineBatch()} for iteration. Once published, only
+     * <code>next</code> changes, so that a line is taken from it with one atomic increment and
+     * without the lock.
+     */
+    private static class LineBatch {
+
+        final PyObject[] lines = new PyObject[LINE_BATCH];
+
+        /** The readahead position after each line */
+        final int[] ends = new int[LINE_BATCH];
+
+        int count;
+
+        /** The index of the next line to return (which may pass count) */
+        final AtomicInteger next = new AtomicInteger();
+    }
+
     /**
      * XXX update docs - A mechanism to make sure PyFiles are closed on exit. On creation Closer adds itself
      * to a list of Closers that will be run by PyFileCloser on JVM shutdown. When a
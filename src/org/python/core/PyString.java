@@ -12,6 +12,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.python.core.buffer.BaseBuffer;
+import org.python.core.buffer.SimpleBuffer;
 import org.python.core.buffer.SimpleStringBuffer;
 import org.python.core.stringlib.FieldNameIterator;
 import org.python.core.stringlib.FloatFormatter;
@@ -36,12 +37,151 @@ public class PyString extends PyBaseString implements BufferProtocol {
 
     public static final PyType TYPE = PyType.fromClass(PyString.class);
     protected String string; // cannot make final because of Python intern support
+    /**
+     * Storage of a <code>str</code> created from bytes by {@link #fromBytes(byte[])}, in place of
+     * {@link #string} until a <code>String</code> is first asked for. Once the <code>String</code>
+     * has been made, this is <code>null</code>. (Volatile so that a thread finding it
+     * <code>null</code> is sure also to see <code>string</code>.)
+     */
+    private volatile byte[] bytes;
+    /**
+     * Storage of a string made by concatenation (see {@link #str___add__(PyObject)}), in place of
+     * {@link #string} until a <code>String</code> is first asked for. Once the <code>String</code>
+     * has been made, this is <code>null</code>.
+     */
+    private transient volatile Concatenation concat;
     protected transient boolean interned = false;
     /** Supports the buffer API, see {@link #getBuffer(int)}. */
     private Reference<BaseBuffer> export;
 
+    /**
+     * Concatenation produces a deferred result (rather than a new <code>String</code>) when the
+     * result would be at least this long. Below this, copying is cheap and the
+     * <code>String</code> is likely to be wanted soon.
+     */
+    static final int CONCAT_DEFER_THRESHOLD = 1024;
+
     public String getString() {
-        return string;
+        String s = string;
+        return s != null ? s : materialiseString();
+    }
+
+    /**
+     * Create the <code>String</code> representation of a <code>str</code> made by
+     * {@link #fromBytes(byte[])} or by deferred concatenation, and release the deferred form.
+     */
+    private String materialiseString() {
+        byte[] b = bytes;
+        Concatenation c = concat;
+        String s;
+        if (b != null) {
+            s = StringUtil.fromBytes(b);
+        } else if (c != null) {
+            s = c.toString();
+        } else {
+            // Another thread has beaten us to it (and the volatile read makes string visible).
+            return string;
+        }
+        string = s;
+        bytes = null;
+        concat = null;
+        return s;
+    }
+
+    /**
+     * The length of the string in UTF-16 code units (<code>getString().length()</code>), found
+     * without making the <code>String</code> if it has not been made yet.
+     */
+    int stringLength() {
+        String s = string;
+        if (s == null) {
+            byte[] b = bytes;
+            if (b != null) {
+                return b.length;
+            }
+            Concatenation c = concat;
+            if (c != null) {
+                return c.length;
+            }
+            s = getString();
+        }
+        return s.length();
+    }
+
+    /** Ensure the <code>String</code> exists before serialisation, since that is what is saved. */
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+        getString();
+        out.defaultWriteObject();
+    }
+
+    /**
+     * The deferred value of a string made by concatenation: the first {@link #length} characters
+     * of a <code>StringBuilder</code> that may be shared with other strings. The strings made by
+     * successively appending to one result (as in <code>s += t</code> in a loop) all share the same
+     * buffer, since each append only extends it, so building a long string piecemeal takes time
+     * linear (not quadratic) in its final length. Appending to a string that is not the longest
+     * user of the buffer copies its part into a new buffer. So does an append that would grow the
+     * buffer: the shorter strings sharing it then keep only the full old buffer alive, not the
+     * larger new one, so no string holds much more than half as much again as its own length.
+     */
+    static final class Concatenation {
+
+        /** The buffer, of which this string is a prefix. Guarded by itself. */
+        private final StringBuilder buf;
+        /** Length of this string within {@link #buf}. */
+        final int length;
+
+        private Concatenation(StringBuilder buf, int length) {
+            this.buf = buf;
+            this.length = length;
+        }
+
+        /** Begin a concatenation with the two strings given. */
+        static Concatenation of(String a, String b) {
+            int n = a.length() + b.length();
+            StringBuilder buf = new StringBuilder(n + (n >> 1)).append(a).append(b);
+            return new Concatenation(buf, n);
+        }
+
+        /** Return the concatenation of this string and another, sharing the buffer if possible. */
+        Concatenation append(String s) {
+            StringBuilder b;
+            int n = length + s.length();
+            synchronized (buf) {
+                if (buf.length() == length && n <= buf.capacity()) {
+                    // This string is the whole buffer, and there is room: extend it in place.
+                    buf.append(s);
+                    return new Concatenation(buf, n);
+                }
+                // Another string has already extended the buffer beyond this one, or it is full.
+                b = new StringBuilder(n + (n >> 1)).append(buf, 0, length);
+            }
+            b.append(s);
+            return new Concatenation(b, b.length());
+        }
+
+        @Override
+        public String toString() {
+            synchronized (buf) {
+                return buf.substring(0, length);
+            }
+        }
+    }
+
+    /**
+     * Return the concatenation of this string and another (a <code>String</code> from which a
+     * result of the same type may be made), or <code>null</code> if the result is too short to be
+     * worth deferring (see {@link #CONCAT_DEFER_THRESHOLD}).
+     */
+    Concatenation deferredConcat(String other) {
+        Concatenation c = concat;
+        if (c != null) {
+            return c.append(other);
+        } else if (stringLength() + other.length() >= CONCAT_DEFER_THRESHOLD) {
+            return Concatenation.of(getString(), other);
+        } else {
+            return null;
+        }
     }
 
     // for PyJavaClass.init()
@@ -78,6 +218,42 @@ public class PyString extends PyBaseString implements BufferProtocol {
         this(TYPE, String.valueOf(c));
     }
 
+    /**
+     * Construct a <code>str</code> that adopts the given array as its storage. See
+     * {@link #fromBytes(byte[])}.
+     */
+    private PyString(byte[] storage) {
+        super(TYPE);
+        this.bytes = storage;
+    }
+
+    /**
+     * Create a <code>str</code> holding the given bytes, adopting the array itself as storage (no
+     * copy is made) so the caller must not modify it afterwards. Bytes read from files and sockets
+     * may become a <code>str</code> this way without being widened to a <code>String</code>: the
+     * length and the buffer interface (hence I/O and <code>bytearray</code>, <code>struct</code>,
+     * etc.) are served from the array, and a <code>String</code> is made only when some other
+     * operation needs one.
+     *
+     * @param storage the bytes of the new <code>str</code>
+     * @return <code>str</code> wrapping <code>storage</code>
+     */
+    public static PyString fromBytes(byte[] storage) {
+        if (storage == null) {
+            throw new IllegalArgumentException("Cannot create PyString from null");
+        }
+        return new PyString(storage);
+    }
+
+    /**
+     * Construct a <code>str</code> (or a sub-class) holding the result of a deferred
+     * concatenation.
+     */
+    PyString(PyType subType, Concatenation concat) {
+        super(subType);
+        this.concat = concat;
+    }
+
     PyString(StringBuilder buffer) {
         this(TYPE, buffer.toString());
     }
@@ -212,7 +388,13 @@ public class PyString extends PyBaseString implements BufferProtocol {
              * No existing export we can re-use. Return a buffer, but specialised to defer
              * construction of the buf object, and cache a soft reference to it.
              */
-            pybuf = new SimpleStringBuffer(flags, this, getString());
+            byte[] b = bytes;
+            if (b != null) {
+                // Still held as bytes: the buffer may simply share them.
+                pybuf = new SimpleBuffer(flags, this, b);
+            } else {
+                pybuf = new SimpleStringBuffer(flags, this, getString());
+            }
             export = new SoftReference<BaseBuffer>(pybuf);
         }
         return pybuf;
@@ -275,7 +457,7 @@ public class PyString extends PyBaseString implements BufferProtocol {
 
     @ExposedMethod(doc = BuiltinDocs.str___len___doc)
     final int str___len__() {
-        return getString().length();
+        return stringLength();
     }
 
     @Override
@@ -745,7 +927,19 @@ public class PyString extends PyBaseString implements BufferProtocol {
      *         byte contains the low-order bits of its corresponding char.
      */
     public byte[] toBytes() {
-        return StringUtil.toBytes(getString());
+        byte[] b = bytes;
+        return b != null ? b.clone() : StringUtil.toBytes(getString());
+    }
+
+    /**
+     * Return the array holding the bytes of a <code>str</code> made by {@link #fromBytes(byte[])}
+     * that has not yet needed a <code>String</code>, or <code>null</code> otherwise. This lets a
+     * client read the bytes in place: it must not modify the array.
+     *
+     * @return the storage array or <code>null</code>
+     */
+    public byte[] getHeldBytes() {
+        return bytes;
     }
 
     @Override
@@ -793,11 +987,12 @@ public class PyString extends PyBaseString implements BufferProtocol {
     @Override
     protected PyObject pyget(int i) {
         // Method is overridden in PyUnicode, so definitely a PyString
-        return Py.makeCharacter(string.charAt(i));
+        return Py.makeCharacter((char)getInt(i));
     }
 
     public int getInt(int i) {
-        return string.charAt(i);
+        byte[] b = bytes;
+        return b != null ? b[i] & 0xff : getString().charAt(i);
     }
 
     @Override
@@ -996,6 +1191,10 @@ public class PyString extends PyBaseString implements BufferProtocol {
         String otherStr = asU16BytesOrNull(other);
         if (otherStr != null) {
             // Yes it is: concatenate as strings, which are guaranteed byte-like.
+            Concatenation c = deferredConcat(otherStr);
+            if (c != null) {
+                return new PyString(TYPE, c);
+            }
             return new PyString(getString().concat(otherStr), true);
         } else if (other instanceof PyUnicode) {
             // Escalate the problem to PyUnicode
@@ -3441,7 +3640,7 @@ public class PyString extends PyBaseString implements BufferProtocol {
                 } else {
                     // It ought to be a bytes-like object.
                     String s = asU16BytesOrError(o);
-                    if (sliceLen >= s.length() && string.startsWith(s, start)) {
+                    if (sliceLen >= s.length() && getString().startsWith(s, start)) {
                         return true;
                     }
                 }
@@ -4319,17 +4518,17 @@ public class PyString extends PyBaseString implements BufferProtocol {
 
     @Override
     public char charAt(int index) {
-        return string.charAt(index);
+        return getString().charAt(index);
     }
 
     @Override
     public int length() {
-        return string.length();
+        return getString().length();
     }
 
     @Override
     public CharSequence subSequence(int start, int end) {
-        return string.subSequence(start, end);
+        return getString().subSequence(start, end);
     }
 
     /**
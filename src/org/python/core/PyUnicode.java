@@ -6,7 +6,8 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
 
 import org.python.core.stringlib.FieldNameIterator;
 import org.python.core.stringlib.MarkupIterator;
@@ -72,7 +73,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
 
     public PyUnicode(PyType subtype, PyString pystring) {
         this(subtype, //
-                pystring instanceof PyUnicode ? pystring.string : pystring.decode().toString(), //
+                pystring instanceof PyUnicode ? pystring.getString() : pystring.decode().toString(), //
                 pystring.isBasicPlane());
     }
 
@@ -123,13 +124,21 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         translator = isBasic ? BASIC : this.chooseIndexTranslator();
     }
 
+    /**
+     * Construct a PyUnicode holding the result of a deferred concatenation of basic plane strings.
+     */
+    private PyUnicode(Concatenation concat) {
+        super(TYPE, concat);
+        translator = BASIC;
+    }
+
     @Override
     public int[] toCodePoints() {
         int n = getCodePointCount();
         int[] codePoints = new int[n];
         int i = 0;
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext(); i++) {
-            codePoints[i] = iter.next();
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext(); i++) {
+            codePoints[i] = iter.nextInt();
         }
         return codePoints;
     }
@@ -194,318 +203,118 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     };
 
     /**
-     * A class of index translation that uses the cumulative count so far of supplementary
-     * characters, tabulated in blocks of a standard size. The count is then used as an offset
-     * between the code point index and the corresponding point in the UTF-16 representation.
+     * A class of index translation that works in constant time, from tables made in a single scan
+     * of the string. For each block of M code points, it records the number of supplementary
+     * characters before the block and a bit mask of which code points in the block are
+     * supplementary. The offset between a code point index and its UTF-16 index is then the count
+     * for its block, plus the number of bits set in the mask below it. The reverse translation uses
+     * a similar pair of tables over blocks of M UTF-16 code units, where the mask marks the lead
+     * surrogates. The tables together occupy about half a byte per code point.
      */
-    private final class Supplementary implements IndexTranslator {
-
-        /** Tabulates cumulative count so far of supplementary characters, by blocks of size M. */
-        final int[] count;
+    private static final class Supplementary implements IndexTranslator {
 
         /** Configure the block size M, as this power of 2. */
-        static final int LOG2M = 4;
-        /** The block size used for indexing (power of 2). */
+        static final int LOG2M = 5;
+        /** The block size used for indexing (power of 2, and the number of bits in a mask). */
         static final int M = 1 << LOG2M;
         /** A mask used to separate the block number and offset in the block. */
         static final int MASK = M - 1;
 
+        /** Element k is the number of supplementary characters before code point index k*M. */
+        final int[] count;
+        /** Bit j of element k is set if the code point at index k*M+j is supplementary. */
+        final int[] supp;
+        /** Element k is the number of lead surrogates before UTF-16 index k*M. */
+        final int[] leadCount;
+        /** Bit j of element k is set if the UTF-16 code unit at k*M+j is a lead surrogate. */
+        final int[] lead;
+        /** The total number of supplementary characters. */
+        final int total;
+
+        private Supplementary(int[] supp, int[] lead) {
+            int n = supp.length;
+            this.supp = supp;
+            this.lead = lead;
+            this.count = new int[n];
+            this.leadCount = new int[n];
+            for (int k = 1; k < n; k++) {
+                count[k] = count[k - 1] + Integer.bitCount(supp[k - 1]);
+                leadCount[k] = leadCount[k - 1] + Integer.bitCount(lead[k - 1]);
+            }
+            total = count[n - 1] + Integer.bitCount(supp[n - 1]);
+        }
+
         /**
-         * The constructor works on a count array prepared by
-         * {@link PyUnicode#getSupplementaryCounts(String)}.
+         * Make the tables for the given string, or return <code>null</code> if it contains no
+         * surrogates, in which case we'll use {@link #BASIC} as the translator. This method is
+         * sensitive to {@link #DEBUG_NON_BMP_METHODS} which if true will prevent it returning
+         * null, hence we will always use a {@link Supplementary} {@link #translator}.
+         *
+         * @param string to index
+         * @return the translator or null if basic plane
+         * @throws PyException {@code ValueError} if the string contains a lone surrogate.
          */
-        Supplementary(int[] count) {
-            this.count = count;
-        }
+        static Supplementary of(String string) throws PyException {
 
-        @Override
-        public int codePointIndex(int u) {
-            /*
-             * Let the desired result be j such that utf16Index(j) = u. As we have only a forward
-             * index of the string, we have to conduct a search. In principle, we bound j by a pair
-             * of values (j1,j2) such that j1<=j<j2, and in successive iterations, we shorten the
-             * range until a unique j is found. In the first part of the search, we work in terms of
-             * block numbers, that is, indexes into the count array. We have j<u, and so j<k2*M
-             * where:
-             */
-            int k2 = (u >> LOG2M) + 1;
-            // The count of supplementary characters before the start of block k2 is:
-            int c2 = count[k2 - 1];
-            /*
-             * Since the count array is non-decreasing, and j < k2*M, we have u-j <= count[k2-1].
-             * That is, j >= k1*M, where:
-             */
-            int k1 = Math.max(0, u - c2) >> LOG2M;
-            // The count of supplementary characters before the start of block k1 is:
-            int c1 = (k1 == 0) ? 0 : count[k1 - 1];
+            final int n = string.length();
+            int p; // Index of the current UTF-16 code unit.
 
-            /*
-             * Now, j (to be found) is in an unknown block k, where k1<=k<k2. We make a binary
-             * search, maintaining the inequalities, but moving the end points. When k2=k1+1, we
-             * know that j must be in block k1.
-             */
-            while (true) {
-                if (c2 == c1) {
-                    // We can stop: the region contains no supplementary characters so j is:
-                    return u - c1;
-                }
-                // Choose a candidate k in the middle of the range
-                int k = (k1 + k2) / 2;
-                if (k == k1) {
-                    // We must have k2=k1+1, so j is in block k1
+            // Scan to the first surrogate code unit, in a simple loop.
+            for (p = 0; p < n; p++) {
+                if (Character.isSurrogate(string.charAt(p))) {
                     break;
-                } else {
-                    // kx divides the range: is j<kx*M?
-                    int c = count[k - 1];
-                    if ((k << LOG2M) + c > u) {
-                        // k*M+c > u therefore j is not in block k but to its left.
-                        k2 = k;
-                        c2 = c;
-                    } else {
-                        // k*M+c <= u therefore j must be in block k, or to its right.
-                        k1 = k;
-                        c1 = c;
-                    }
                 }
             }
 
+            if (p == n && !DEBUG_NON_BMP_METHODS) {
+                // There are no supplementary characters so the 1:1 translator is fine.
+                return null;
+            }
+
             /*
-             * At this point, j is known to be in block k1 (and k2=k1+1). c1 is the number of
-             * supplementary characters to the left of code point index k1*M and c2 is the number of
-             * supplementary characters to the left of code point index (k1+1)*M. We have to search
-             * this block sequentially. The current position in the UTF-16 is:
+             * Code point indexes q and UTF-16 indexes p are both at most n, so the same number of
+             * blocks serves both tables. Up to the first surrogate, q = p and no bits are set.
              */
-            int p = (k1 << LOG2M) + c1;
-            while (p < u) {
-                if (Character.isHighSurrogate(string.charAt(p++))) {
-                    // c1 tracks the number of supplementary characters to the left of p
-                    c1 += 1;
-                    if (c1 == c2) {
-                        // We have found all supplementary characters in the block.
-                        break;
-                    }
-                    // Skip the trailing surrogate.
-                    p++;
+            int[] supp = new int[(n >> LOG2M) + 1];
+            int[] lead = new int[supp.length];
+
+            for (int q = p; p < n; q++) {
+                char c = string.charAt(p);
+                if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                    p += 1;
+                } else if (c < Character.MIN_LOW_SURROGATE && p + 1 < n
+                        && Character.isLowSurrogate(string.charAt(p + 1))) {
+                    // A lead surrogate with its required trailing surrogate: step over both.
+                    supp[q >> LOG2M] |= 1 << (q & MASK);
+                    lead[p >> LOG2M] |= 1 << (p & MASK);
+                    p += 2;
+                } else {
+                    // A lead surrogate without a trailing one, or a lone trailing surrogate.
+                    throw unpairedSurrogate(p, c);
                 }
             }
-            // c1 is the number of supplementary characters to the left of u, so the result j is:
-            return u - c1;
+
+            return new Supplementary(supp, lead);
+        }
+
+        @Override
+        public int codePointIndex(int u) {
+            // Subtract the lead surrogates before the block and those in the block before u.
+            int k = u >> LOG2M;
+            return u - leadCount[k] - Integer.bitCount(lead[k] & ((1 << (u & MASK)) - 1));
         }
 
         @Override
         public int utf16Index(int i) {
-            // The code point index i lies in the k-th block where:
+            // Add the supplementary characters before the block and those in the block before i.
             int k = i >> LOG2M;
-            // The offset for the code point index k*M is exactly
-            int d = (k == 0) ? 0 : count[k - 1];
-            // The offset for the code point index (k+1)*M is exactly
-            int e = count[k];
-            if (d == e) {
-                /*
-                 * The offset for the code point index (k+1)*M is the same, and since this is a
-                 * non-decreasing function of k, it is also the value for i.
-                 */
-                return i + d;
-            } else {
-                /*
-                 * The offset for the code point index (k+1)*M is different (higher). We must scan
-                 * along until we have found all the supplementary characters that precede i,
-                 * starting the scan at code point index k*M.
-                 */
-                for (int q = i & ~MASK; q < i; q++) {
-                    if (Character.isHighSurrogate(string.charAt(q + d))) {
-                        d += 1;
-                        if (d == e) {
-                            /*
-                             * We have found all the supplementary characters in this block, so we
-                             * must have found all those to the left of i.
-                             */
-                            break;
-                        }
-                    }
-                }
-
-                // d counts all the supplementary characters to the left of i.
-                return i + d;
-            }
+            return i + count[k] + Integer.bitCount(supp[k] & ((1 << (i & MASK)) - 1));
         }
 
         @Override
         public int suppCount() {
-            // The last element of the count array is the total number of supplementary characters.
-            return count[count.length - 1];
-        }
-    }
-
-    /**
-     * Generate the table that is used by the class {@link Supplementary} to accelerate access to
-     * the the implementation string. The method returns <code>null</code> if the string passed
-     * contains no surrogate pairs, in which case we'll use {@link #BASIC} as the translator. This
-     * method is sensitive to {@link #DEBUG_NON_BMP_METHODS} which if true will prevent it returning
-     * null, hance we will always use a {@link Supplementary} {@link #translator}.
-     *
-     * @param string to index
-     * @return the index (counts) or null if basic plane
-     */
-    private static int[] getSupplementaryCounts(final String string) {
-
-        final int n = string.length();
-        int p; // Index of the current UTF-16 code unit.
-
-        /*
-         * We scan to the first surrogate code unit, in a simple loop. If we hit the end before we
-         * find one, no count array will be necessary and we'll use BASIC. If we find a surrogate it
-         * may be half a supplementary character, or a lone surrogate: we'll find out later.
-         */
-        for (p = 0; p < n; p++) {
-            if (Character.isSurrogate(string.charAt(p))) {
-                break;
-            }
-        }
-
-        if (p == n && !DEBUG_NON_BMP_METHODS) {
-            // There are no supplementary characters so the 1:1 translator is fine.
-            return null;
-
-        } else {
-            /*
-             * We have to do this properly, using a scheme in which code point indexes are
-             * efficiently translatable to UTF-16 indexes through a table called here count[]. In
-             * this array, count[k] contains the total number of supplementary characters up to the
-             * end of the k.th block, that is, to the left of code point (k+1)M. We have to fill
-             * this array by scanning the string.
-             */
-            int q = p; // The current code point index (q = p+s).
-            int k = q >> Supplementary.LOG2M; // The block number k = q/M.
-
-            /*
-             * When addressing with a code point index q<=L (the length in code points) we will
-             * index the count array with k = q/M. We have q<=L<=n, therefore q/M <= n/M, the
-             * maximum valid k is 1 + n/M. A q>=L should raise IndexOutOfBoundsException, but it
-             * doesn't matter whether that's from indexing this array, or the string later.
-             */
-            int[] count = new int[1 + (n >> Supplementary.LOG2M)];
-
-            /*
-             * To get the generation of count[] going efficiently, we need to advance the next whole
-             * block. The next loop will complete processing of the block containing the first
-             * supplementary character. Note that in all these loops, if we exit because p reaches a
-             * limit, the count for the last partial block is known from p-q and we take care of
-             * that right at the end of this method. The limit of these loops is n-1, so if we spot
-             * a lead surrogate, the we may access the low-surrogate confident that p+1<n.
-             */
-            while (p < n - 1) {
-
-                // Catch supplementary characters and lone surrogate code units.
-                p += calcAdvance(string, p);
-                // Advance the code point index
-                q += 1;
-
-                // Was that the last in a block?
-                if ((q & Supplementary.MASK) == 0) {
-                    count[k++] = p - q;
-                    break;
-                }
-            }
-
-            /*
-             * If the string is long enough, we can work in whole blocks of M, and there are fewer
-             * things to track. We can't know the number of blocks in advance, but we know there is
-             * at least one whole block to go when p+2*M<n.
-             */
-            while (p + 2 * Supplementary.M < n) {
-
-                for (int i = 0; i < Supplementary.M; i++) {
-                    // Catch supplementary characters and lone surrogate code units.
-                    p += calcAdvance(string, p);
-                }
-
-                // Advance the code point index one whole block
-                q += Supplementary.M;
-
-                // The number of supplementary characters to the left of code point index k*M is:
-                count[k++] = p - q;
-            }
-
-            /*
-             * Process the remaining UTF-16 code units, except possibly the last.
-             */
-            while (p < n - 1) {
-
-                // Catch supplementary characters and lone surrogate code units.
-                p += calcAdvance(string, p);
-                // Advance the code point index
-                q += 1;
-
-                // Was that the last in a block?
-                if ((q & Supplementary.MASK) == 0) {
-                    count[k++] = p - q;
-                }
-            }
-
-            /*
-             * There may be just one UTF-16 unit left (if the last thing processed was not a
-             * surrogate pair).
-             */
-            if (p < n) {
-                // We are at the last UTF-16 unit in string. Any surrogate here is an error.
-                char c = string.charAt(p++);
-                if (Character.isSurrogate(c)) {
-                    throw unpairedSurrogate(p - 1, c);
-                }
-                // Advance the code point index
-                q += 1;
-            }
-
-            /*
-             * There may still be some elements of count[] we haven't set, so we fill to the end
-             * with the total count. This also takes care of an incomplete final block.
-             */
-            int total = p - q;
-            while (k < count.length) {
-                count[k++] = total;
-            }
-
-            return count;
-        }
-    }
-
-    /**
-     * Called at each code point index, returns 2 if this is a surrogate pair, 1 otherwise, and
-     * detects lone surrogates as an error. The return is the amount to advance the UTF-16 index. An
-     * exception is raised if at <code>p</code> we find a lead surrogate without a trailing one
-     * following, or a trailing surrogate directly. It should not be called on the final code unit,
-     * when <code>p==string.length()-1</code>, since it may check the next code unit as well.
-     *
-     * @param string of UTF-16 code units
-     * @param p index into that string
-     * @return 2 if a surrogate pair stands at <code>p</code>, 1 if not
-     * @throws PyException {@code ValueError} if a lone surrogate stands at <code>p</code>.
-     */
-    private static int calcAdvance(String string, int p) throws PyException {
-
-        // Catch supplementary characters and lone surrogate code units.
-        char c = string.charAt(p);
-
-        if (c >= Character.MIN_SURROGATE) {
-            if (c < Character.MIN_LOW_SURROGATE) {
-                // This is a lead surrogate.
-                if (Character.isLowSurrogate(string.charAt(p + 1))) {
-                    // Required trailing surrogate follows, so step over both.
-                    return 2;
-                } else {
-                    // Required trailing surrogate missing.
-                    throw unpairedSurrogate(p, c);
-                }
-
-            } else if (c <= Character.MAX_SURROGATE) {
-                // This is a lone trailing surrogate
-                throw unpairedSurrogate(p, c);
-
-            } // else this is a private use or special character in 0xE000 to 0xFFFF.
-
+            return total;
         }
-        return 1;
     }
 
     /**
@@ -528,12 +337,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
      * @return chosen <code>IndexTranslator</code>
      */
     private IndexTranslator chooseIndexTranslator() {
-        int[] count = getSupplementaryCounts(string);
-        if (DEBUG_NON_BMP_METHODS) {
-            return new Supplementary(count);
-        } else {
-            return count == null ? BASIC : new Supplementary(count);
-        }
+        Supplementary supp = Supplementary.of(string);
+        return supp == null ? BASIC : supp;
     }
 
     /**
@@ -591,7 +396,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     }
 
     public int getCodePointCount() {
-        return string.length() - translator.suppCount();
+        return stringLength() - translator.suppCount();
     }
 
     public static String checkEncoding(String s) {
@@ -720,9 +525,17 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
             stop = start;
         }
 
-        StringBuilder buffer = new StringBuilder(sliceLength(start, stop, step));
-        for (Iterator<Integer> iter = newSubsequenceIterator(start, stop, step); iter.hasNext();) {
-            buffer.appendCodePoint(iter.next());
+        String s = getString();
+        if (step == 1) {
+            return createInstance(
+                    s.substring(translator.utf16Index(start), translator.utf16Index(stop)));
+        }
+
+        // Index translation is constant time, so pick out each code point directly.
+        int n = sliceLength(start, stop, step);
+        StringBuilder buffer = new StringBuilder(n);
+        for (int i = 0, j = start; i < n; i++, j += step) {
+            buffer.appendCodePoint(s.codePointAt(translator.utf16Index(j)));
         }
         return createInstance(buffer.toString());
     }
@@ -862,9 +675,9 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         @Override
         protected int nextCodePoint() {
             int U;
-            int W1 = getString().charAt(k);
+            int W1 = chars.charAt(k);
             if (W1 >= 0xD800 && W1 < 0xDC00) {
-                int W2 = getString().charAt(k + 1);
+                int W2 = chars.charAt(k + 1);
                 U = (((W1 & 0x3FF) << 10) | (W2 & 0x3FF)) + 0x10000;
                 k += 2;
             } else {
@@ -877,11 +690,14 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     }
 
     /**
-     * An iterator returning code points from this array, for use when basic plane.
+     * An iterator returning code points from this array, for use when basic plane. As a
+     * {@link PrimitiveIterator.OfInt}, it may be consumed with {@link #nextInt()} to avoid boxing
+     * each code point.
      */
-    private class SubsequenceIteratorBasic implements Iterator<Integer> {
+    private class SubsequenceIteratorBasic implements PrimitiveIterator.OfInt {
 
         protected int current, stop, step; // Character indexes
+        protected final String chars = getString(); // UTF-16 implementation string
 
         SubsequenceIteratorBasic(int start, int stop, int step) {
             current = start;
@@ -899,7 +715,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         }
 
         @Override
-        public Integer next() {
+        public int nextInt() {
             int codePoint = nextCodePoint();
             for (int j = 1; j < step && hasNext(); j++) {
                 nextCodePoint();
@@ -907,8 +723,20 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
             return codePoint;
         }
 
+        @Override
+        public Integer next() {
+            return nextInt();
+        }
+
         protected int nextCodePoint() {
-            return getString().charAt(current++);
+            return chars.charAt(current++);
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            while (hasNext()) {
+                action.accept(nextInt());
+            }
         }
 
         @Override
@@ -970,6 +798,14 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     // XXX: Parameterize SubsequenceIteratorImpl and friends (and make them Iterable)
     /** Get an iterator over the code point sequence. */
     public Iterator<Integer> newSubsequenceIterator() {
+        return codePointIterator();
+    }
+
+    /**
+     * Get an iterator over the code point sequence that may be consumed without boxing, using
+     * {@link PrimitiveIterator.OfInt#nextInt()}.
+     */
+    public PrimitiveIterator.OfInt codePointIterator() {
         if (isBasicPlane()) {
             return new SubsequenceIteratorBasic();
         } else {
@@ -1170,7 +1006,17 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     final PyObject unicode___add__(PyObject other) {
         // Interpret other as a Java String
         String s = coerceToStringOrNull(other);
-        return s == null ? null : new PyUnicode(getString().concat(s));
+        if (s == null) {
+            return null;
+        } else if (isBasicPlane() && other instanceof PyUnicode
+                && ((PyUnicode) other).isBasicPlane()) {
+            // The result is known to be basic plane, so may be deferred.
+            Concatenation c = deferredConcat(s);
+            if (c != null) {
+                return new PyUnicode(c);
+            }
+        }
+        return new PyUnicode(getString().concat(s));
     }
 
     @ExposedMethod(doc = BuiltinDocs.unicode_lower_doc)
@@ -1187,8 +1033,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     final PyObject unicode_title() {
         StringBuilder buffer = new StringBuilder(getString().length());
         boolean previous_is_cased = false;
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            int codePoint = iter.next();
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            int codePoint = iter.nextInt();
             if (previous_is_cased) {
                 buffer.appendCodePoint(Character.toLowerCase(codePoint));
             } else {
@@ -1208,8 +1054,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     @ExposedMethod(doc = BuiltinDocs.unicode_swapcase_doc)
     final PyObject unicode_swapcase() {
         StringBuilder buffer = new StringBuilder(getString().length());
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            int codePoint = iter.next();
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            int codePoint = iter.nextInt();
             if (Character.isUpperCase(codePoint)) {
                 buffer.appendCodePoint(Character.toLowerCase(codePoint));
             } else if (Character.isLowerCase(codePoint)) {
@@ -1230,56 +1076,39 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
                 || ch == 0x180e; // MONGOLIAN VOWEL SEPARATOR (not a space in Java 9+ or Python 3)
     }
 
-    private static class StripIterator implements Iterator<Integer> {
-
-        private final Iterator<Integer> iter;
-        private int lookahead = -1;
-
-        public StripIterator(PyUnicode sep, Iterator<Integer> iter) {
-            this.iter = iter;
-            if (sep != null) {
-                Set<Integer> sepSet = Generic.set();
-                for (Iterator<Integer> sepIter = sep.newSubsequenceIterator(); sepIter.hasNext();) {
-                    sepSet.add(sepIter.next());
-                }
-                while (iter.hasNext()) {
-                    int codePoint = iter.next();
-                    if (!sepSet.contains(codePoint)) {
-                        lookahead = codePoint;
-                        return;
-                    }
-                }
-            } else {
-                while (iter.hasNext()) {
-                    int codePoint = iter.next();
-                    if (!isPythonSpace(codePoint)) {
-                        lookahead = codePoint;
-                        return;
-                    }
+    /**
+     * Strip code points in <code>sep</code> (or spaces if <code>sep==null</code>) from either or
+     * both ends of this string, working directly on the UTF-16 implementation string. This is for
+     * use when this string or <code>sep</code> is not basic plane.
+     *
+     * @param sep code points to strip, or <code>null</code> to strip spaces
+     * @param left strip from the left
+     * @param right strip from the right
+     * @return the stripped string
+     */
+    private PyUnicode stripCodePoints(PyUnicode sep, boolean left, boolean right) {
+        String s = getString();
+        String chars = sep == null ? null : sep.getString();
+        int begin = 0, end = s.length();
+        if (left) {
+            while (begin < end) {
+                int codePoint = s.codePointAt(begin);
+                if (chars == null ? !isPythonSpace(codePoint) : chars.indexOf(codePoint) < 0) {
+                    break;
                 }
+                begin += Character.charCount(codePoint);
             }
         }
-
-        @Override
-        public boolean hasNext() {
-            return lookahead != -1;
-        }
-
-        @Override
-        public Integer next() {
-            int old = lookahead;
-            if (iter.hasNext()) {
-                lookahead = iter.next();
-            } else {
-                lookahead = -1;
+        if (right) {
+            while (end > begin) {
+                int codePoint = s.codePointBefore(end);
+                if (chars == null ? !isPythonSpace(codePoint) : chars.indexOf(codePoint) < 0) {
+                    break;
+                }
+                end -= Character.charCount(codePoint);
             }
-            return old;
-        }
-
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException();
         }
+        return new PyUnicode(s.substring(begin, end));
     }
 
     // Compliance requires a bit of inconsistency with other coercions used.
@@ -1326,8 +1155,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         }
 
         // Not basic plane: have to do real Unicode
-        return new PyUnicode(new ReversedIterator<Integer>(new StripIterator(sep,
-                new ReversedIterator<>(new StripIterator(sep, newSubsequenceIterator())))));
+        return stripCodePoints(sep, true, true);
     }
 
     @ExposedMethod(defaults = "null", doc = BuiltinDocs.unicode_lstrip_doc)
@@ -1347,7 +1175,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         }
 
         // Not basic plane: have to do real Unicode
-        return new PyUnicode(new StripIterator(sep, newSubsequenceIterator()));
+        return stripCodePoints(sep, true, false);
     }
 
     @ExposedMethod(defaults = "null", doc = BuiltinDocs.unicode_rstrip_doc)
@@ -1367,8 +1195,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         }
 
         // Not basic plane: have to do real Unicode
-        return new PyUnicode(new ReversedIterator<Integer>(
-                new StripIterator(sep, new ReversedIterator<>(newSubsequenceIterator()))));
+        return stripCodePoints(sep, false, true);
     }
 
     /** {@inheritDoc} */
@@ -1408,7 +1235,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     private abstract class SplitIterator implements Iterator<PyUnicode> {
 
         protected final int maxsplit;
-        protected final Iterator<Integer> iter = newSubsequenceIterator();
+        protected final PrimitiveIterator.OfInt iter = codePointIterator();
         protected final LinkedList<Integer> lookahead = new LinkedList<Integer>();
         protected int numSplits = 0;
         protected boolean completeSeparator = false;
@@ -1453,7 +1280,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
             addLookahead(buffer);
             if (numSplits == maxsplit) {
                 while (iter.hasNext()) {
-                    buffer.appendCodePoint(iter.next());
+                    buffer.appendCodePoint(iter.nextInt());
                 }
                 return new PyUnicode(buffer);
             }
@@ -1462,7 +1289,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
             boolean atBeginning = numSplits == 0;
 
             while (iter.hasNext()) {
-                int codepoint = iter.next();
+                int codepoint = iter.nextInt();
                 if (isPythonSpace(codepoint)) {
                     completeSeparator = true;
                     if (!atBeginning) {
@@ -1606,7 +1433,7 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
             addLookahead(buffer);
             if (numSplits == maxsplit) {
                 while (iter.hasNext()) {
-                    buffer.appendCodePoint(iter.next());
+                    buffer.appendCodePoint(iter.nextInt());
                 }
                 return new PyUnicode(buffer);
             }
@@ -1615,9 +1442,9 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
             while (iter.hasNext()) {
                 // TODO: should cache the first codepoint
                 inSeparator = true;
-                for (Iterator<Integer> sepIter = sep.newSubsequenceIterator(); sepIter.hasNext();) {
-                    int codepoint = iter.next();
-                    if (codepoint != sepIter.next()) {
+                for (PrimitiveIterator.OfInt sepIter = sep.codePointIterator(); sepIter.hasNext();) {
+                    int codepoint = iter.nextInt();
+                    if (codepoint != sepIter.nextInt()) {
                         addLookahead(buffer);
                         buffer.appendCodePoint(codepoint);
                         inSeparator = false;
@@ -1817,39 +1644,21 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     final int unicode_index(PyObject subObj, PyObject start, PyObject end) {
         final String sub = coerceToString(subObj);
         // Now use the mechanics of the PyString on the UTF-16.
-        return checkIndex(_find(sub, start, end));
+        return translator.codePointIndex(checkIndex(_find(sub, start, end)));
     }
 
     @ExposedMethod(defaults = {"null", "null"}, doc = BuiltinDocs.unicode_index_doc)
     final int unicode_rindex(PyObject subObj, PyObject start, PyObject end) {
         final String sub = coerceToString(subObj);
         // Now use the mechanics of the PyString on the UTF-16.
-        return checkIndex(_rfind(sub, start, end));
+        return translator.codePointIndex(checkIndex(_rfind(sub, start, end)));
     }
 
     @ExposedMethod(defaults = {"null", "null"}, doc = BuiltinDocs.unicode_count_doc)
     final int unicode_count(PyObject subObj, PyObject start, PyObject end) {
         final PyUnicode sub = coerceToUnicode(subObj);
-        if (isBasicPlane()) {
-            return _count(sub.getString(), start, end);
-        }
-        int[] indices = super.translateIndices(start, end); // do not convert to utf-16 indices.
-        int count = 0;
-        for (Iterator<Integer> mainIter =
-                newSubsequenceIterator(indices[0], indices[1], 1); mainIter.hasNext();) {
-            int matched = sub.getCodePointCount();
-            for (Iterator<Integer> subIter = sub.newSubsequenceIterator(); mainIter.hasNext()
-                    && subIter.hasNext();) {
-                if (mainIter.next() != subIter.next()) {
-                    break;
-                }
-                matched--;
-            }
-            if (matched == 0) {
-                count++;
-            }
-        }
-        return count;
+        // Use the mechanics of the PyString on the UTF-16, where a match must be whole code points.
+        return _count(sub.getString(), start, end);
     }
 
     @ExposedMethod(defaults = {"null", "null"}, doc = BuiltinDocs.unicode_find_doc)
@@ -1929,8 +1738,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         int nzeros = width - n;
         boolean first = true;
         boolean leadingSign = false;
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            int codePoint = iter.next();
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            int codePoint = iter.nextInt();
             if (first) {
                 first = false;
                 if (codePoint == '+' || codePoint == '-') {
@@ -1967,12 +1776,12 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         }
         StringBuilder buffer = new StringBuilder(getString().length());
         boolean first = true;
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
             if (first) {
-                buffer.appendCodePoint(Character.toUpperCase(iter.next()));
+                buffer.appendCodePoint(Character.toUpperCase(iter.nextInt()));
                 first = false;
             } else {
-                buffer.appendCodePoint(Character.toLowerCase(iter.next()));
+                buffer.appendCodePoint(Character.toLowerCase(iter.nextInt()));
             }
         }
         return new PyUnicode(buffer);
@@ -1994,16 +1803,16 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
             StringBuilder buffer = new StringBuilder();
 
             if (oldPiece.getCodePointCount() == 0) {
-                Iterator<Integer> iter = newSubsequenceIterator();
+                PrimitiveIterator.OfInt iter = codePointIterator();
                 for (int i = 1; (count == -1 || i < count) && iter.hasNext(); i++) {
                     if (i == 1) {
                         buffer.append(newPiece.getString());
                     }
-                    buffer.appendCodePoint(iter.next());
+                    buffer.appendCodePoint(iter.nextInt());
                     buffer.append(newPiece.getString());
                 }
                 while (iter.hasNext()) {
-                    buffer.appendCodePoint(iter.next());
+                    buffer.appendCodePoint(iter.nextInt());
                 }
                 return new PyUnicode(buffer);
 
@@ -2129,8 +1938,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     @ExposedMethod(doc = BuiltinDocs.unicode_islower_doc)
     final boolean unicode_islower() {
         boolean cased = false;
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            int codepoint = iter.next();
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            int codepoint = iter.nextInt();
             if (Character.isUpperCase(codepoint) || Character.isTitleCase(codepoint)) {
                 return false;
             } else if (!cased && Character.isLowerCase(codepoint)) {
@@ -2143,8 +1952,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
     @ExposedMethod(doc = BuiltinDocs.unicode_isupper_doc)
     final boolean unicode_isupper() {
         boolean cased = false;
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            int codepoint = iter.next();
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            int codepoint = iter.nextInt();
             if (Character.isLowerCase(codepoint) || Character.isTitleCase(codepoint)) {
                 return false;
             } else if (!cased && Character.isUpperCase(codepoint)) {
@@ -2159,8 +1968,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         if (getCodePointCount() == 0) {
             return false;
         }
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            if (!Character.isLetter(iter.next())) {
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            if (!Character.isLetter(iter.nextInt())) {
                 return false;
             }
         }
@@ -2172,8 +1981,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         if (getCodePointCount() == 0) {
             return false;
         }
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            int codePoint = iter.next();
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            int codePoint = iter.nextInt();
             if (!(Character.isLetterOrDigit(codePoint) || //
                     Character.getType(codePoint) == Character.LETTER_NUMBER)) {
                 return false;
@@ -2187,8 +1996,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         if (getCodePointCount() == 0) {
             return false;
         }
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            if (Character.getType(iter.next()) != Character.DECIMAL_DIGIT_NUMBER) {
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            if (Character.getType(iter.nextInt()) != Character.DECIMAL_DIGIT_NUMBER) {
                 return false;
             }
         }
@@ -2200,8 +2009,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         if (getCodePointCount() == 0) {
             return false;
         }
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            if (!Character.isDigit(iter.next())) {
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            if (!Character.isDigit(iter.nextInt())) {
                 return false;
             }
         }
@@ -2213,8 +2022,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         if (getCodePointCount() == 0) {
             return false;
         }
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            int type = Character.getType(iter.next());
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            int type = Character.getType(iter.nextInt());
             if (type != Character.DECIMAL_DIGIT_NUMBER && type != Character.LETTER_NUMBER
                     && type != Character.OTHER_NUMBER) {
                 return false;
@@ -2230,8 +2039,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         }
         boolean cased = false;
         boolean previous_is_cased = false;
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            int codePoint = iter.next();
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            int codePoint = iter.nextInt();
             if (Character.isUpperCase(codePoint) || Character.isTitleCase(codePoint)) {
                 if (previous_is_cased) {
                     return false;
@@ -2256,8 +2065,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         if (getCodePointCount() == 0) {
             return false;
         }
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext();) {
-            if (!isPythonSpace(iter.next())) {
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext();) {
+            if (!isPythonSpace(iter.nextInt())) {
                 return false;
             }
         }
@@ -2356,8 +2165,8 @@ public class PyUnicode extends PyString implements Iterable<Integer> {
         int digit;
         StringBuilder sb = new StringBuilder();
         int i = 0;
-        for (Iterator<Integer> iter = newSubsequenceIterator(); iter.hasNext(); i++) {
-            int codePoint = iter.next();
+        for (PrimitiveIterator.OfInt iter = codePointIterator(); iter.hasNext(); i++) {
+            int codePoint = iter.nextInt();
             if (isPythonSpace(codePoint)) {
                 sb.append(' ');
                 continue;
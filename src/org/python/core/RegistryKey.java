@@ -157,6 +157,16 @@ public class RegistryKey {
      */
     public static final String PYTHON_OPTIONS_CASE_OK = "python.options.caseok";
 
+    /**
+     * {@code python.import.cache} keeps the listings of the directories searched by import, so that
+     * a module absent from a directory is known to be without a stat of each file it might be. A
+     * listing is used while the directory is unmodified. Set it false where the file system does not
+     * keep the modification times of directories.
+     * <p>
+     * Boolean.
+     */
+    public static final String PYTHON_IMPORT_CACHE = "python.import.cache";
+
     /**
      * {@code python.options.includeJavaStackInExceptions} controls whether exceptions raised from
      * Python code will include a Java stack trace in addition to the Python traceback. This can
@@ -254,6 +264,54 @@ public class RegistryKey {
      */
     public static final String PYTHON_SRE_CACHESPEC = "python.sre.cachespec";
 
+    /**
+     * {@code python.sre.jit} is the number of times a regular expression is used before it is
+     * compiled to a JVM class specialised to it, or a negative number to disable this.
+     * <p>
+     * Integer.
+     */
+    public static final String PYTHON_SRE_JIT = "python.sre.jit";
+
+    /**
+     * {@code python.sre.prefilter} enables a regular expression search to look first for literal
+     * text that every match must contain, skipping positions where the pattern cannot match.
+     * <p>
+     * Boolean.
+     */
+    public static final String PYTHON_SRE_PREFILTER = "python.sre.prefilter";
+
+    /**
+     * {@code python.random.perthread} makes each new {@code random.Random} give each thread its own
+     * generator, seeded from the instance's, instead of locking one generator shared by all.
+     * <p>
+     * Boolean.
+     */
+    public static final String PYTHON_RANDOM_PERTHREAD = "python.random.perthread";
+
+    /**
+     * {@code python.socket.transport} is the Netty transport of sockets: {@code nio} (the default),
+     * {@code epoll} for the native epoll transport on Linux, which needs
+     * {@code netty-transport-native-epoll} on the class path, or {@code auto} for epoll when it is
+     * available and NIO otherwise.
+     */
+    public static final String PYTHON_SOCKET_TRANSPORT = "python.socket.transport";
+
+    /**
+     * {@code python.subprocess.launcher} is how {@code subprocess} starts child processes:
+     * {@code processbuilder} (the default) for {@code java.lang.ProcessBuilder}, or
+     * {@code posix_spawn} to spawn them through the native POSIX support, where it is available
+     * and the child is to run in the working directory of the JVM.
+     */
+    public static final String PYTHON_SUBPROCESS_LAUNCHER = "python.subprocess.launcher";
+
+    /**
+     * {@code python.aio.threads} is the number of threads in the pool that performs the reads and
+     * writes of {@code _jyaio} files, and completes their futures.
+     * <p>
+     * Integer.
+     */
+    public static final String PYTHON_AIO_THREADS = "python.aio.threads";
+
     /**
      * {@code python.startup} is the name of a file to be run at the start of each interactive
      * session, but not when dropping in with the -i flag in after a script has run.
@@ -60,7 +60,8 @@ public class SyspathJavaLoader extends ClassLoader {
     private byte[] getBytesFromDir(String dir, String name) {
     	try {
     		File file = getFile(dir, name);
-	        if (file == null) {
+	        if (file == null
+	                || !DirectoryListingCache.mayContain(file.getParent(), file.getName())) {
 	            return null;
 	        }
 	        return getBytesFromInputStream(new FileInputStream(file), (int)file.length());
@@ -220,9 +221,14 @@ public class SyspathJavaLoader extends ClassLoader {
         }
 
         try {
+            String archiveName = sys.getPath(Py.fileSystemDecode(path));
+            if (SyspathArchive.getArchiveName(archiveName) == null) {
+                // A directory: not worth the exception the constructor would raise
+                return path;
+            }
             // this has the side effect of adding the jar to the PackageManager during the
             // initialization of the SyspathArchive
-            path = new SyspathArchive(sys.getPath(Py.fileSystemDecode(path)));
+            path = new SyspathArchive(archiveName);
         } catch (Exception e) {
             return path;
         }
@@ -707,14 +707,13 @@ public class imp {
             }
         }
 
-        if (importer != null) {
-            // We found an importer. Cache it for next time.
-            cache.__setitem__(p, importer);
-        } else {
+        if (importer == null) {
             // Caller will fall-back to built-in mechanisms.
             importer = Py.None;
         }
 
+        // Cache it for next time (even None, as CPython does, not to try every hook again).
+        cache.__setitem__(p, importer);
         return importer;
     }
 
@@ -857,6 +856,12 @@ public class imp {
              * loading in the second part of the process.
              */
             String dirName = sys.getPath(location);
+            String moduleName = name + ".py";
+            if (!DirectoryListingCache.mayContain(dirName, name, moduleName,
+                    makeCompiledFilename(moduleName))) {
+                // Neither package nor module is here: save the stats of each
+                return null;
+            }
             File dir = new File(dirName, name);
 
             if (dir.isDirectory()) {
@@ -2,7 +2,9 @@
 package org.python.core.io;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
+import org.python.core.PyString;
 import org.python.core.util.StringUtil;
 
 /**
@@ -24,12 +26,38 @@ public class BinaryIOWrapper extends TextIOBase {
 
     @Override
     public String read(int size) {
+        return StringUtil.fromBytes(readBuffer(size));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The <code>BinaryIOWrapper</code> implementation makes the <code>str</code> directly from
+     * the bytes read, without widening them to a String.
+     */
+    @Override
+    public PyString readStr(int size) {
+        return PyString.fromBytes(toArray(readBuffer(size)));
+    }
+
+    @Override
+    public String readall() {
+        return StringUtil.fromBytes(readallBuffer());
+    }
+
+    /**
+     * Read and return up to size bytes (all if size is negative), draining the readahead first.
+     *
+     * @param size the number of bytes to read
+     * @return a ByteBuffer containing the bytes read (from position to limit)
+     */
+    private ByteBuffer readBuffer(int size) {
         if (size < 0) {
-            return readall();
+            return readallBuffer();
         }
 
         if (!readahead.hasRemaining()) {
-            return StringUtil.fromBytes(bufferedIO.read(size));
+            return bufferedIO.read(size);
         }
 
         ByteBuffer data = ByteBuffer.allocate(size);
@@ -40,7 +68,7 @@ public class BinaryIOWrapper extends TextIOBase {
             data.put(readahead);
             readahead.limit(readaheadLimit);
             data.flip();
-            return StringUtil.fromBytes(data);
+            return data;
         }
 
         // Drain the readahead then request more from the buffer
@@ -48,13 +76,49 @@ public class BinaryIOWrapper extends TextIOBase {
         clearReadahead();
         bufferedIO.readinto(data);
         data.flip();
-        return StringUtil.fromBytes(data);
+        return data;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The <code>BinaryIOWrapper</code> implementation drains the readahead, then reads directly
+     * into the given buffers.
+     */
     @Override
-    public String readall() {
+    public long readinto(ByteBuffer[] bufs) {
+        long count = 0;
+        for (ByteBuffer buf : bufs) {
+            int size = buf.remaining();
+            if (size == 0) {
+                continue;
+            }
+
+            if (readahead.remaining() >= size) {
+                // Fulfill the read entirely from the readahead
+                int readaheadLimit = readahead.limit();
+                readahead.limit(readahead.position() + size);
+                buf.put(readahead);
+                readahead.limit(readaheadLimit);
+                count += size;
+                continue;
+            }
+
+            // Drain the readahead then request more from the buffer
+            count += readahead.remaining();
+            buf.put(readahead);
+            clearReadahead();
+            count += Math.max(bufferedIO.readinto(buf), 0);
+            if (buf.hasRemaining()) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    private ByteBuffer readallBuffer() {
         if (!readahead.hasRemaining()) {
-            return StringUtil.fromBytes(bufferedIO.readall());
+            return bufferedIO.readall();
         }
 
         ByteBuffer remaining = bufferedIO.readall();
@@ -63,7 +127,27 @@ public class BinaryIOWrapper extends TextIOBase {
         clearReadahead();
         all.put(remaining);
         all.flip();
-        return StringUtil.fromBytes(all);
+        return all;
+    }
+
+    /**
+     * Return the bytes of a buffer (position to limit) freshly allocated by a read, as an array,
+     * which is the backing array itself when the data fill it exactly.
+     */
+    private static byte[] toArray(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            byte[] array = buf.array();
+            int start = buf.arrayOffset() + buf.position();
+            int end = buf.arrayOffset() + buf.limit();
+            if (start == 0 && end == array.length) {
+                return array;
+            }
+            return Arrays.copyOfRange(array, start, end);
+        } else {
+            byte[] array = new byte[buf.remaining()];
+            buf.get(array);
+            return array;
+        }
     }
 
     @Override
@@ -117,4 +201,24 @@ public class BinaryIOWrapper extends TextIOBase {
         }
         return bufferedIO.write(ByteBuffer.wrap(StringUtil.toBytes(buf)));
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The <code>BinaryIOWrapper</code> implementation writes the buffers themselves.
+     */
+    @Override
+    public long write(ByteBuffer[] bufs) {
+        if (readahead.hasRemaining()) {
+            clearReadahead();
+        }
+        long count = 0;
+        for (ByteBuffer buf : bufs) {
+            count += buf.remaining();
+            while (buf.hasRemaining()) {
+                bufferedIO.write(buf);
+            }
+        }
+        return count;
+    }
 }
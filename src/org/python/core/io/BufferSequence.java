@@ -0,0 +1,93 @@
+/* Copyright (c) Jython Developers */
+package org.python.core.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.core.BufferProtocol;
+import org.python.core.Py;
+import org.python.core.PyBUF;
+import org.python.core.PyBuffer;
+import org.python.core.PyException;
+import org.python.core.PyObject;
+
+/**
+ * Views of a sequence of objects that export the buffer API (<code>bytearray</code>,
+ * <code>memoryview</code>, <code>mmap</code>, <code>array</code> and so on), as
+ * <code>ByteBuffer</code>s on their storage, for a scatter read into them or a gather write from
+ * them without copying. The views are held, so that the objects cannot be resized, until
+ * {@link #close()}.
+ */
+public class BufferSequence implements AutoCloseable {
+
+    private final PyBuffer[] views;
+    private final ByteBuffer[] buffers;
+
+    /**
+     * Get a view of each object in the sequence, raising <code>TypeError</code> if one does not
+     * export a one-dimensional contiguous buffer (and a writable one, if <code>writable</code>).
+     *
+     * @param method the name of the Python method, for messages
+     * @param objects an iterable of objects implementing the buffer API
+     * @param writable whether the buffers are to be read into
+     */
+    public BufferSequence(String method, PyObject objects, boolean writable) {
+        List<PyObject> items = new ArrayList<PyObject>();
+        PyObject iter = Py.iter(objects, method + "() argument must be a sequence");
+        for (PyObject item; (item = iter.__iternext__()) != null;) {
+            items.add(item);
+        }
+        views = new PyBuffer[items.size()];
+        buffers = new ByteBuffer[views.length];
+        try {
+            for (int i = 0; i < views.length; i++) {
+                views[i] = view(method, items.get(i), writable);
+                buffers[i] = views[i].getNIOByteBuffer();
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static PyBuffer view(String method, PyObject obj, boolean writable) {
+        try {
+            return ((BufferProtocol) obj).getBuffer(writable ? PyBUF.WRITABLE : PyBUF.SIMPLE);
+        } catch (PyException pye) {
+            if (!pye.match(Py.BufferError)) {
+                throw pye;
+            }
+            // Read-only, or not contiguous: say it is the wrong type
+        } catch (ClassCastException e) {
+            // Does not implement BufferProtocol (or is unicode)
+        }
+        String fmt = "%s() requires %s buffers, not %.200s";
+        throw Py.TypeError(String.format(fmt, method, writable ? "read-write" : "readable",
+                obj.getType().fastGetName()));
+    }
+
+    /** The buffers, positioned at the start of each object's data. */
+    public ByteBuffer[] buffers() {
+        return buffers;
+    }
+
+    /** The number of bytes the buffers hold in total. */
+    public long remaining() {
+        long n = 0;
+        for (ByteBuffer buf : buffers) {
+            n += buf.remaining();
+        }
+        return n;
+    }
+
+    /** Release the views. */
+    @Override
+    public void close() {
+        for (PyBuffer view : views) {
+            if (view != null) {
+                view.release();
+            }
+        }
+    }
+}
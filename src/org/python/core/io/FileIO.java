@@ -248,6 +248,21 @@ public class FileIO extends RawIOBase {
         }
     }
 
+    /**
+     * Return whether the file supports random access: a pipe or FIFO does not.
+     *
+     * @return true if the position of the file may be set
+     */
+    public boolean seekable() {
+        checkClosed();
+        try {
+            fileChannel.position();
+            return true;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
     @Override
     public int readinto(ByteBuffer buf) {
         checkClosed();
@@ -94,7 +94,8 @@ public abstract class RawIOBase extends IOBase {
     }
 
     /**
-     * Read bytes into each of the specified ByteBuffers.
+     * Read bytes into each of the specified ByteBuffers, stopping at a short read, which leaves
+     * the rest of a stream that is not a file (a pipe, say) for the next call to wait for.
      *
      * Returns number of bytes read (0 for EOF).
      *
@@ -108,10 +109,14 @@ public abstract class RawIOBase extends IOBase {
             if (!buf.hasRemaining()) {
                 continue;
             }
-            if ((bufCount = readinto(buf)) == 0) {
+            // A stream reports EOF as -1
+            if ((bufCount = readinto(buf)) <= 0) {
                 break;
             }
             count += bufCount;
+            if (buf.hasRemaining()) {
+                break;
+            }
         }
         return count;
     }
@@ -4,6 +4,7 @@ package org.python.core.io;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.python.core.BufferProtocol;
 import org.python.core.Py;
@@ -12,6 +13,7 @@ import org.python.core.PyBUF;
 import org.python.core.PyBuffer;
 import org.python.core.PyObject;
 import org.python.core.PyString;
+import org.python.core.util.StringUtil;
 
 /**
  * Base class for text I/O.
@@ -26,6 +28,9 @@ public abstract class TextIOBase extends IOBase {
     /** The size of chunks read for readline */
     public static final int CHUNK_SIZE = 300;
 
+    /** The size of the readahead when reading lines in batches */
+    public static final int BATCH_SIZE = IOBase.DEFAULT_BUFFER_SIZE;
+
     /** Byte representation of the Carriage Return character */
     protected static final byte CR_BYTE = 13;
 
@@ -70,6 +75,20 @@ public abstract class TextIOBase extends IOBase {
         return null;
     }
 
+    /**
+     * Read and return up to size bytes, contained in a <code>str</code>. An implementation that
+     * holds the data as bytes may override this to create the <code>str</code> without making a
+     * String (see {@link PyString#fromBytes(byte[])}).
+     *
+     * Returns an empty <code>str</code> on EOF
+     *
+     * @param size the number of bytes to read
+     * @return a <code>str</code> containing the bytes read
+     */
+    public PyString readStr(int size) {
+        return new PyString(read(size));
+    }
+
     /**
      * Read until EOF.
      *
@@ -93,6 +112,92 @@ public abstract class TextIOBase extends IOBase {
         return null;
     }
 
+    /**
+     * Read whole lines from the readahead, each as {@link #readline(int) readline(-1)} would
+     * return it, into <code>lines</code>, and in <code>ends</code> the readahead position after
+     * each. If the readahead holds no whole line, more is read into it first (at most one read of
+     * the underlying stream at a time, so as not to wait for data needlessly). At EOF, the data
+     * after the last newline is the last line.
+     * <p>
+     * The readahead position is not moved: the caller should call {@link #consumeLines(int)} with
+     * the end of the last line it uses, before any other operation on this object.
+     *
+     * @param lines to receive the lines, as <code>str</code>
+     * @param ends to receive the readahead position after each line
+     * @return the number of lines read, 0 at EOF
+     */
+    public int readLines(PyObject[] lines, int[] ends) {
+        int n = scanLines(lines, ends, false);
+        while (n == 0) {
+            boolean eof = readMore() <= 0;
+            n = scanLines(lines, ends, eof);
+            if (eof) {
+                break;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Move the readahead position to the end of a line read by {@link #readLines(PyObject[],
+     * int[])}, so that the lines up to it are consumed.
+     *
+     * @param end the readahead position after the last line consumed
+     */
+    public void consumeLines(int end) {
+        readahead.position(end);
+    }
+
+    /**
+     * Decode the whole lines from the readahead position for {@link #readLines(PyObject[],
+     * int[])}, as many as there are or <code>lines</code> will hold, without moving the position.
+     * This implementation ends lines at LF and does not translate newlines.
+     *
+     * @param lines to receive the lines, as <code>str</code>
+     * @param ends to receive the readahead position after each line
+     * @param eof whether the readahead holds the last of the data, so that a line without a
+     *            newline after the last is a line
+     * @return the number of lines
+     */
+    protected int scanLines(PyObject[] lines, int[] ends, boolean eof) {
+        byte[] array = readahead.array();
+        int start = readahead.position(), limit = readahead.limit(), n = 0;
+        for (int i = start; i < limit && n < lines.length; i++) {
+            if (array[i] == LF_BYTE) {
+                lines[n] = PyString.fromBytes(Arrays.copyOfRange(array, start, i + 1));
+                ends[n++] = start = i + 1;
+            }
+        }
+        if (eof && start < limit && n < lines.length) {
+            lines[n] = PyString.fromBytes(Arrays.copyOfRange(array, start, limit));
+            ends[n++] = limit;
+        }
+        return n;
+    }
+
+    /**
+     * Read more data after what remains in the readahead, making room for at least
+     * {@link #BATCH_SIZE} bytes (more if a line is longer), with one read of the underlying
+     * stream.
+     *
+     * @return the amount of data read, 0 or -1 at EOF (as the unbuffered raw stream reports it)
+     */
+    private int readMore() {
+        int remaining = readahead.remaining();
+        int size = Math.max(BATCH_SIZE, remaining * 2);
+        if (readahead.capacity() == size) {
+            readahead.compact();
+        } else {
+            // Grow for a long line, or shrink back after one
+            ByteBuffer old = readahead;
+            readahead = ByteBuffer.allocate(size);
+            readahead.put(old);
+        }
+        int n = bufferedIO.read1(readahead);
+        readahead.flip();
+        return n;
+    }
+
     /**
      * Read into the given PyObject that implements the Jython buffer API (with write access) or is
      * a PyArray.
@@ -102,12 +207,14 @@ public abstract class TextIOBase extends IOBase {
      */
     public int readinto(PyObject buf) {
 
-        // This is an inefficient version of readinto: but readinto is
-        // not recommended for use in Python 2.x anyway
-
         if (buf instanceof PyArray) {
             // PyArray has the buffer interface but it only works for bytes at present
             PyArray array = (PyArray)buf;
+            if ("b".equals(array.getTypecode())) {
+                try (PyBuffer view = array.getBuffer(PyBUF.WRITABLE)) {
+                    return (int)readinto(new ByteBuffer[] {view.getNIOByteBuffer()});
+                }
+            }
             String read = read(array.__len__());
             for (int i = 0; i < read.length(); i++) {
                 array.set(i, new PyString(read.charAt(i)));
@@ -119,6 +226,9 @@ public abstract class TextIOBase extends IOBase {
                 if (view.isReadonly()) {
                     // More helpful than falling through to CPython message
                     throw Py.TypeError("cannot read into read-only " + buf.getType().fastGetName());
+                } else if (view.isContiguous('A')) {
+                    // Directly into the storage of the object
+                    return (int)readinto(new ByteBuffer[] {view.getNIOByteBuffer()});
                 } else {
                     // Inefficiently, we have to go via a String
                     String read = read(view.getLen());
@@ -136,6 +246,35 @@ public abstract class TextIOBase extends IOBase {
                 + buf.getType().fastGetName());
     }
 
+    /**
+     * Read into each of the given ByteBuffers in turn, as much as one read of their combined
+     * size would return, so stopping at a short read.
+     *
+     * This implementation reads through {@link #read(int)}, for the sake of text modes that
+     * translate newlines.
+     *
+     * @param bufs the ByteBuffers to read into
+     * @return the amount of data read as a long (0 at EOF)
+     */
+    public long readinto(ByteBuffer[] bufs) {
+        long count = 0;
+        for (ByteBuffer buf : bufs) {
+            if (!buf.hasRemaining()) {
+                continue;
+            }
+            String read = read(buf.remaining());
+            int n = read.length();
+            for (int i = 0; i < n; i++) {
+                buf.put((byte)read.charAt(i));
+            }
+            count += n;
+            if (buf.hasRemaining()) {
+                break;
+            }
+        }
+        return count;
+    }
+
     /**
      * Write the given String to the IO stream.
      *
@@ -149,6 +288,24 @@ public abstract class TextIOBase extends IOBase {
         return -1;
     }
 
+    /**
+     * Write the bytes remaining in each of the given ByteBuffers, in order.
+     *
+     * This implementation writes each as a String, through {@link #write(String)}.
+     *
+     * @param bufs the ByteBuffers to write
+     * @return the number of bytes written as a long
+     */
+    public long write(ByteBuffer[] bufs) {
+        long count = 0;
+        for (ByteBuffer buf : bufs) {
+            byte[] bytes = new byte[buf.remaining()];
+            buf.get(bytes);
+            count += write(StringUtil.fromBytes(bytes));
+        }
+        return count;
+    }
+
     @Override
     public long truncate(long pos) {
         long initialPos = tell();
@@ -293,13 +450,13 @@ public abstract class TextIOBase extends IOBase {
      * Restore the readahead to its original size (CHUNK_SIZE) if it
      * was previously resized.
      *
-     * The readahead contents are preserved. This method assumes it
-     * contains a number of remaining elements less than or equal to
-     * CHUNK_SIZE.
+     * The readahead contents are preserved. The readahead is left as
+     * it is if it contains a number of remaining elements greater
+     * than CHUNK_SIZE (as it may after readLines).
      *
      */
     protected void packReadahead() {
-        if (readahead.capacity() > CHUNK_SIZE) {
+        if (readahead.capacity() > CHUNK_SIZE && readahead.remaining() <= CHUNK_SIZE) {
             ByteBuffer old = readahead;
             readahead = ByteBuffer.allocate(CHUNK_SIZE);
             readahead.put(old);
@@ -2,8 +2,12 @@
 package org.python.core.io;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.regex.Pattern;
 
+import org.python.core.PyObject;
+import org.python.core.PyString;
+
 /**
  * A Buffered text stream.
  *
@@ -252,6 +256,39 @@ public class TextIOWrapper extends BinaryIOWrapper {
         return drainBuilder();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Where the platform newline is not LF, a CRLF ending a line is translated to LF.
+     */
+    @Override
+    protected int scanLines(PyObject[] lines, int[] ends, boolean eof) {
+        if (newlineIsLF) {
+            return super.scanLines(lines, ends, eof);
+        }
+        byte[] array = readahead.array();
+        int start = readahead.position(), limit = readahead.limit(), n = 0;
+        for (int i = start; i < limit && n < lines.length; i++) {
+            if (array[i] == LF_BYTE) {
+                byte[] line;
+                if (i > start && array[i - 1] == CR_BYTE) {
+                    line = Arrays.copyOfRange(array, start, i);
+                    line[line.length - 1] = LF_BYTE;
+                } else {
+                    line = Arrays.copyOfRange(array, start, i + 1);
+                }
+                lines[n] = PyString.fromBytes(line);
+                ends[n++] = start = i + 1;
+            }
+        }
+        if (eof && start < limit && n < lines.length) {
+            // Don't translate CR at EOF
+            lines[n] = PyString.fromBytes(Arrays.copyOfRange(array, start, limit));
+            ends[n++] = limit;
+        }
+        return n;
+    }
+
     @Override
     public int write(String buf) {
         if (!newlineIsLF) {
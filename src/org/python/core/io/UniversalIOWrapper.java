@@ -2,6 +2,7 @@
 package org.python.core.io;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.EnumSet;
 
 import org.python.core.Py;
@@ -268,6 +269,64 @@ public class UniversalIOWrapper extends TextIOBase {
         return drainBuilder();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A line ends at CR, LF or CRLF, each translated to LF. A line ending CR at the end of the
+     * readahead ends the line at once, as in {@link #readline(int)}: an LF after it is skipped
+     * when next read.
+     */
+    @Override
+    protected int scanLines(PyObject[] lines, int[] ends, boolean eof) {
+        byte[] array = readahead.array();
+        int start = readahead.position(), limit = readahead.limit(), n = 0;
+        boolean skip = skipNextLF;
+        for (int i = start; i < limit && n < lines.length; i++) {
+            byte next = array[i];
+            if (next == LF_BYTE) {
+                if (skip) {
+                    // The LF of a CRLF at the start of a line
+                    skip = false;
+                    newlineTypes.add(Newline.CRLF);
+                    start = i + 1;
+                    continue;
+                }
+                newlineTypes.add(Newline.LF);
+                lines[n] = PyString.fromBytes(Arrays.copyOfRange(array, start, i + 1));
+                ends[n++] = start = i + 1;
+            } else {
+                if (skip) {
+                    skip = false;
+                    newlineTypes.add(Newline.CR);
+                }
+                if (next == CR_BYTE) {
+                    byte[] line = Arrays.copyOfRange(array, start, i + 1);
+                    line[line.length - 1] = LF_BYTE;
+                    lines[n] = PyString.fromBytes(line);
+                    ends[n++] = start = i + 1;
+                    skip = true;
+                }
+            }
+        }
+        if (eof && n < lines.length) {
+            if (start < limit) {
+                lines[n] = PyString.fromBytes(Arrays.copyOfRange(array, start, limit));
+                ends[n++] = limit;
+            } else if (skip) {
+                // A CR at EOF
+                newlineTypes.add(Newline.CR);
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public void consumeLines(int end) {
+        super.consumeLines(end);
+        // Skip an LF after a line ending CR
+        skipNextLF = end > 0 && readahead.get(end - 1) == CR_BYTE;
+    }
+
     @Override
     public int write(String buf) {
         // Universal newlines doesn't support writing; just raise the
@@ -10,6 +10,7 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.logging.Level;
 
+import org.python.core.DirectoryListingCache;
 import org.python.core.Py;
 import org.python.core.PyException;
 import org.python.core.PyJavaPackage;
@@ -49,7 +50,8 @@ public abstract class PathPackageManager extends CachedJarsPackageManager {
             if (dir != null) {
                 File f = new RelativeFile(dir, child);
                 try {
-                    if (f.isDirectory() && imp.caseok(f, name)) {
+                    if (DirectoryListingCache.mayContain(f.getParent(), name) && f.isDirectory()
+                            && imp.caseok(f, name)) {
                         /*
                          * f is a directory matching the package name. This directory is considered
                          * to define a package if it contains no Python (source or compiled), or
@@ -1,11 +1,10 @@
 /* Copyright (c) 2012 Jython Developers */
 package org.python.core.util;
 
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import org.python.core.BaseBytes;
-import org.python.core.Py;
 import org.python.core.PyBuffer;
 
 /**
@@ -22,12 +21,8 @@ public class StringUtil {
      * @return a byte array with one byte for each char in string
      */
     public static byte[] toBytes(String string) {
-        try {
-            return string.getBytes("ISO-8859-1");
-        } catch (UnsupportedEncodingException uee) {
-            // This JVM is whacked, it doesn't even have iso-8859-1
-            throw Py.SystemError("Java couldn't find the ISO-8859-1 encoding");
-        }
+        // Every JVM has ISO-8859-1 and (for compact strings) it is a straight copy.
+        return string.getBytes(StandardCharsets.ISO_8859_1);
     }
 
     /**
@@ -62,8 +57,7 @@ public class StringUtil {
      * @return a new String corresponding to the bytes in buf
      */
     public static String fromBytes(ByteBuffer buf) {
-        return fromBytes(buf.array(), buf.arrayOffset() + buf.position(),
-                buf.arrayOffset() + buf.limit());
+        return fromBytes(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
     }
 
     /**
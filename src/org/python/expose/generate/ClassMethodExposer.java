@@ -1,6 +1,7 @@
 package org.python.expose.generate;
 
 import org.objectweb.asm.Type;
+import org.python.core.PyBuiltinClassMethod;
 import org.python.core.PyBuiltinClassMethodNarrow;
 
 public class ClassMethodExposer extends MethodExposer {
@@ -22,9 +23,13 @@ public class ClassMethodExposer extends MethodExposer {
               typeName,
               asNames,
               defaults,
-              PyBuiltinClassMethodNarrow.class,
+              isWide(getArgs(onType, methodName, desc)) ? PyBuiltinClassMethod.class
+                      : PyBuiltinClassMethodNarrow.class,
               doc);
         actualArgs = Type.getArgumentTypes(desc);
+        if (isWide(args) && defaults.length > 0) {
+            throwInvalid("Can't have defaults on a method that takes PyObject[], String[]");
+        }
     }
 
     private static Type[] getArgs(Type onType, String methodName, String desc) {
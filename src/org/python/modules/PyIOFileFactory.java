@@ -1,5 +1,7 @@
 package org.python.modules;
 
+import java.nio.ByteBuffer;
+
 import org.python.core.Py;
 import org.python.core.PyFile;
 import org.python.core.PyInteger;
@@ -9,6 +11,8 @@ import org.python.core.PyType;
 import org.python.core.__builtin__;
 import org.python.core.Traverseproc;
 import org.python.core.Visitproc;
+import org.python.core.io.FileIO;
+import org.python.core.util.StringUtil;
 
 // XXX - add support for StringIO, not just cStringIO
 
@@ -60,36 +64,127 @@ public class PyIOFileFactory {
     }
 
 
-    // Use a PyFile as a file.
+    /**
+     * Use a PyFile as a file. Writes are collected in a buffer and passed to the file in blocks
+     * when it fills and on {@link #flush()}, rather than a call to <code>PyFile.write</code> for each
+     * opcode. When the file is binary and backed by a seekable {@link FileIO}, reads are also taken
+     * from the file a block at a time, and {@link #flush()} seeks back over any of the block not
+     * consumed, so that the position of the file is left just after the data a pickle or marshal
+     * load used. Other files (pipes, FIFOs and Java streams, say) cannot seek back, so are read only
+     * as needed.
+     */
     static class FileIOFile implements PyIOFile, Traverseproc {
 
+        static final int BUF_SIZE = 8192;
+
         PyFile file;
+        /** Data written and not yet passed to the file (in write mode). */
+        private ByteBuffer out;
+        /** Data read ahead from the file and not yet consumed (in read mode), or null. */
+        private final ByteBuffer in;
 
         FileIOFile(PyObject file) {
             this.file = (PyFile) file.__tojava__(PyFile.class);
             if (this.file.getClosed()) {
                 throw Py.ValueError("I/O operation on closed file");
             }
+            if (this.file.isSeekableBinary()) {
+                in = ByteBuffer.allocate(BUF_SIZE);
+                in.flip();
+            } else {
+                in = null;
+            }
+        }
+
+        private ByteBuffer out() {
+            if (out == null) {
+                out = ByteBuffer.allocate(BUF_SIZE);
+            } else if (!out.hasRemaining()) {
+                drain();
+            }
+            return out;
+        }
+
+        /** Pass to the file what has been written to the buffer. */
+        private void drain() {
+            if (out != null && out.position() > 0) {
+                file.write(StringUtil.fromBytes(out.array(), 0, out.position()));
+                out.clear();
+            }
         }
 
         public void write(String str) {
-            file.write(str);
+            int n = str.length();
+            if (n > BUF_SIZE / 2) {
+                drain();
+                file.write(str);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    out().put((byte) str.charAt(i));
+                }
+            }
         }
 
         public void write(char ch) {
-            file.write(cStringIO.getString(ch));
+            out().put((byte) ch);
         }
 
         public void flush() {
+            drain();
+            if (in != null && in.hasRemaining()) {
+                file.seek(-in.remaining(), 1);
+                in.limit(0);
+            }
+        }
+
+        /** Refill the read buffer from the file, returning false at end of file. */
+        private boolean fill() {
+            String s = file.read(BUF_SIZE).getString();
+            in.clear();
+            for (int i = 0; i < s.length(); i++) {
+                in.put((byte) s.charAt(i));
+            }
+            in.flip();
+            return in.hasRemaining();
         }
 
         public String read(int len) {
-            return file.read(len).toString();
+            if (in == null) {
+                return file.read(len).toString();
+            } else if (len == 1 && (in.hasRemaining() || fill())) {
+                return cStringIO.getString((char) (in.get() & 0xff));
+            }
+            StringBuilder buf = new StringBuilder(len);
+            while (len > 0 && (in.hasRemaining() || fill())) {
+                int n = Math.min(len, in.remaining());
+                buf.append(StringUtil.fromBytes(in.array(), in.position(), n));
+                in.position(in.position() + n);
+                len -= n;
+            }
+            return buf.toString();
         }
 
         public String readlineNoNl() {
-            String line = file.readline().toString();
-            return line.substring(0, line.length() - 1);
+            if (in == null) {
+                String line = file.readline().toString();
+                return line.substring(0, line.length() - 1);
+            }
+            StringBuilder buf = new StringBuilder();
+            while (in.hasRemaining() || fill()) {
+                byte[] a = in.array();
+                int start = in.position(), end = in.limit();
+                for (int i = start; i < end; i++) {
+                    if (a[i] == '\n') {
+                        buf.append(StringUtil.fromBytes(a, start, i - start));
+                        in.position(i + 1);
+                        return buf.toString();
+                    }
+                }
+                buf.append(StringUtil.fromBytes(a, start, end - start));
+                in.position(end);
+            }
+            // Like the substring of readline() that lacks a newline, short by one character
+            return buf.substring(0, buf.length() - 1);
         }
 
 
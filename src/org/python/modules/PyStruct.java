@@ -2,7 +2,6 @@ package org.python.modules;
 
 import org.python.core.ArgParser;
 import org.python.core.Py;
-import org.python.core.PyArray;
 import org.python.core.PyNewWrapper;
 import org.python.core.PyObject;
 import org.python.core.PyString;
@@ -25,7 +24,7 @@ public class PyStruct extends PyObject {
     @ExposedGet
     public final int size;
     
-    private final struct.FormatDef[] format_def;
+    private final struct.Plan plan;
 
     @ExposedGet(name = "__class__")
     @Override
@@ -40,8 +39,8 @@ public class PyStruct extends PyObject {
     public PyStruct(PyType type, PyString format) {
         super(type);
         this.format = format.toString();
-        this.format_def = struct.whichtable(this.format);
-        this.size = struct.calcsize(this.format, this.format_def);
+        this.plan = struct.plan(this.format);
+        this.size = plan.size;
     }
 
     @ExposedNew
@@ -59,35 +58,30 @@ public class PyStruct extends PyObject {
     }
 
     @ExposedMethod
-    public String pack(PyObject[] args, String[] kwds) {
-        return struct.pack(format, format_def, size, 0, args).toString();
+    public PyString pack(PyObject[] args, String[] kwds) {
+        return plan.pack(0, args).toPyString();
     }
-    
+
     @ExposedMethod
     final void pack_into(PyObject[] args, String[] kwds) {
-        struct.pack_into(format, format_def, size, 0, args);
+        if (args.length < 2) {
+            throw Py.TypeError("pack_into expected buffer argument");
+        }
+        plan.pack_into(args[0], args[1].asInt(), 2, args);
     }
-  
+
     @ExposedMethod
     public PyTuple unpack(PyObject source) {
-        String s;
-        if (source instanceof PyString)
-            s = source.toString();
-        else if (source instanceof PyArray) 
-            s = ((PyArray)source).tostring();
-        else
-            throw Py.TypeError("unpack of a str or array");
-        if (size != s.length()) 
-            throw struct.StructError("unpack str size does not match format");
-        return struct.unpack(format_def, size, format, new struct.ByteStream(s));
+        return struct.unpack(plan, source);
     }
-    
-    // xxx - also support byte[], java.nio.(Byte)Buffer at some point?
+
     @ExposedMethod(defaults = {"0"})
-    public PyTuple unpack_from(PyObject string, int offset) {
-        String s = string.toString();
-        if (size >= (s.length() - offset + 1))
-            throw struct.StructError("unpack_from str size does not match format");
-        return struct.unpack(format_def, size, format, new struct.ByteStream(s, offset));
+    public PyTuple unpack_from(PyObject buffer, int offset) {
+        return struct.unpack_from(plan, buffer, offset);
+    }
+
+    @ExposedMethod
+    public PyObject iter_unpack(PyObject buffer) {
+        return struct.iter_unpack(plan, buffer);
     }
 }
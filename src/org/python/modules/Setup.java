@@ -34,14 +34,21 @@ public class Setup
         "_csv:org.python.modules._csv._csv",
         "_functools:org.python.modules._functools._functools",
         "_hashlib",
+        "_jyaio:org.python.modules._jyaio._jyaio",
         "_jyio:org.python.modules._io._jyio",
         "_json:org.python.modules._json._json",
         "_jythonlib:org.python.modules._jythonlib._jythonlib",
+        "_jysocket:org.python.modules._socket._jysocket",
         "_marshal",
+        "_md5",
         "_py_compile",
         "_random:org.python.modules.random.RandomModule",
+        "_sha",
+        "_sha256",
+        "_sha512",
         "_sre",
         "_threading:org.python.modules._threading._threading",
+        "_unicodedata",
         "_weakref:org.python.modules._weakref.WeakrefModule",
         "array:org.python.modules.ArrayModule",
         "binascii",
@@ -49,6 +56,7 @@ public class Setup
         "cPickle",
         "cStringIO",
         "cmath",
+        "datetime:org.python.modules.datetime.DatetimeModule",
         "errno",
         "exceptions:org.python.core.exceptions",
         "gc",
@@ -58,6 +66,7 @@ public class Setup
         "jffi:org.python.modules.jffi.jffi",
         "_locale:org.python.modules._locale._locale",
         "math",
+        "mmap:org.python.modules.mmap.mmap",
         "operator",
         "struct",
         "synchronize",
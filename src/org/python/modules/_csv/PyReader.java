@@ -1,6 +1,8 @@
 /* Copyright (c) Jython Developers */
 package org.python.modules._csv;
 
+import org.python.core.PyException;
+import org.python.core.PyFile;
 import org.python.core.PyIterator;
 import org.python.core.PyList;
 import org.python.core.PyObject;
@@ -8,12 +10,21 @@ import org.python.core.PyString;
 import org.python.core.PyType;
 import org.python.core.Visitproc;
 import org.python.expose.ExposedGet;
+import org.python.expose.ExposedMethod;
 import org.python.expose.ExposedType;
+import org.python.modules._io.PyFileIO;
 
 /**
  * CSV file reader.
  *
  * Analogous to CPython's _csv.c::ReaderObj struct.
+ * <p>
+ * When the input is a binary <code>file</code> opened on a file in the file system, or a seekable
+ * <code>_io.FileIO</code>, {@link #readrows(int)} does not iterate over it line by line but reads
+ * it in large chunks, parsing records straight out of each chunk. Line numbers and errors are as
+ * if it had iterated, and before returning it seeks back to the end of the last record, so that
+ * the reader may be mixed with other uses of the file. Iteration always reads by lines, since it
+ * cannot know when to give back what it has read ahead.
  */
 @ExposedType(name = "_csv.reader", doc = PyReader.reader_doc)
 public class PyReader extends PyIterator {
@@ -37,6 +48,21 @@ public class PyReader extends PyIterator {
     /** The underlying input iterator. */
     private PyObject input_iter;
 
+    /** The same as {@link #input_iter} when it is a file to read in chunks, otherwise null. */
+    private PyObject input_file;
+
+    /** The current chunk of {@link #input_file}. */
+    private String chunk = "";
+
+    /** Index in {@link #chunk} of the next character to parse. */
+    private int chunk_pos = 0;
+
+    /** Whether the next character of {@link #chunk} begins a line. */
+    private boolean line_start = true;
+
+    /** Error met by {@link #readrows(int)} after some records, to raise on the next call. */
+    private PyException pending_error;
+
     /** Current CSV parse state. */
     private ParserState state = ParserState.START_RECORD;
 
@@ -44,7 +70,7 @@ public class PyReader extends PyIterator {
     private PyList fields = new PyList();
 
     /** Current field builder in here. */
-    private StringBuffer field = new StringBuffer(INITIAL_BUILDER_CAPACITY);
+    private StringBuilder field = new StringBuilder(INITIAL_BUILDER_CAPACITY);
 
     /** Whether the field should be treated as numeric. */
     private boolean numeric_field = false;
@@ -52,19 +78,96 @@ public class PyReader extends PyIterator {
     /** Initial capacity of the field StringBuilder. */
     private static final int INITIAL_BUILDER_CAPACITY = 4096;
 
+    /** Number of characters to read from {@link #input_file} at a time. */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
     public PyReader(PyObject input_iter, PyDialect dialect) {
         this.input_iter = input_iter;
         this.dialect = dialect;
+        this.input_file = chunk_source(input_iter);
+    }
+
+    /**
+     * Return the iterator if it is a file we may read in chunks rather than by lines, or null. The
+     * file must be seekable, so that we can give back what we read ahead, and binary, so that
+     * characters read correspond to bytes of the file. Subclasses are excluded, since they may
+     * redefine iteration.
+     */
+    private static PyObject chunk_source(PyObject input_iter) {
+        if (input_iter.getClass() == PyFile.class) {
+            return ((PyFile) input_iter).isSeekableBinary() ? input_iter : null;
+        } else if (input_iter.getClass() == PyFileIO.class) {
+            return ((PyFileIO) input_iter).seekable() ? input_iter : null;
+        }
+        return null;
+    }
+
+    public static final String readrows_doc =
+        "readrows(n) -> list\n" +
+        "\n" +
+        "Return a list of the next n records, fewer at the end of the input,\n" +
+        "or all the remaining records if n is negative. If reading a record\n" +
+        "fails, the records before it are returned and the error is raised\n" +
+        "by the next call.\n";
+
+    public PyList readrows(int n) {
+        return reader_readrows(n);
+    }
+
+    @ExposedMethod(doc = readrows_doc)
+    final synchronized PyList reader_readrows(int n) {
+        PyList rows = new PyList();
+        if (pending_error != null) {
+            PyException error = pending_error;
+            pending_error = null;
+            throw error;
+        }
+        try {
+            if (input_file == null) {
+                PyObject row;
+                while ((n < 0 || rows.size() < n) && (row = __iternext__()) != null) {
+                    rows.append(row);
+                }
+            } else {
+                read_records(rows, n);
+            }
+        } catch (PyException e) {
+            if (rows.size() == 0) {
+                throw e;
+            }
+            pending_error = e;
+        }
+        return rows;
+    }
+
+    /** Parse records from chunks of the input file into a list until it holds <code>n</code>. */
+    private void read_records(PyList rows, int n) {
+        boolean complete = false;
+        try {
+            PyObject row;
+            while ((n < 0 || rows.size() < n) && (row = read_record()) != null) {
+                rows.append(row);
+            }
+            complete = true;
+        } finally {
+            if (!complete && !line_start) {
+                // Iterating would have read the rest of the line in which parsing failed.
+                skip_line();
+            }
+            give_back();
+        }
     }
 
     public PyObject __iternext__() {
+        parse_reset();
+        return iterate_record();
+    }
+
+    /** Parse the next record from lines of the input iterator. */
+    private PyObject iterate_record() {
         PyObject lineobj;
-        PyObject fields;
         String line;
-        char c;
-        int linelen;
 
-        parse_reset();
         do {
             lineobj = input_iter.__iternext__();
             if (lineobj == null) {
@@ -82,21 +185,161 @@ public class PyReader extends PyIterator {
 
             line_num++;
             line = lineobj.toString();
-            linelen = line.length();
+            parse_chars(line, 0, line.length());
+            parse_process_char('\0');
+        } while (state != ParserState.START_RECORD);
 
-            for (int i = 0; i < linelen; i++) {
-                c = line.charAt(i);
-                if (c == '\0') {
-                    throw _csv.Error("line contains NULL byte");
+        return take_fields();
+    }
+
+    /**
+     * Parse the next record from chunks of the input file, treating each '\n' as the end of a
+     * line, exactly as if iterating over its lines.
+     */
+    private PyObject read_record() {
+        parse_reset();
+        for (;;) {
+            if (chunk_pos == chunk.length() && !read_chunk()) {
+                // End of input
+                if (!line_start) {
+                    // Final line without a line end
+                    line_start = true;
+                    parse_process_char('\0');
+                    if (state == ParserState.START_RECORD) {
+                        return take_fields();
+                    }
+                }
+                if (field.length() != 0 || state == ParserState.IN_QUOTED_FIELD) {
+                    if (dialect.strict) {
+                        throw _csv.Error("unexpected end of data");
+                    }
+                    parse_save_field();
+                    return take_fields();
+                }
+                return null;
+            }
+
+            int start = chunk_pos;
+            int end = line_end(start);
+            chunk_pos = end;
+            if (line_start) {
+                line_num++;
+                line_start = false;
+            }
+            parse_chars(chunk, start, end);
+            if (chunk.charAt(end - 1) == '\n') {
+                line_start = true;
+                parse_process_char('\0');
+                if (state == ParserState.START_RECORD) {
+                    return take_fields();
                 }
-                parse_process_char(c);
             }
-            parse_process_char('\0');
-        } while (state != ParserState.START_RECORD);
+        }
+    }
 
-        fields = this.fields;
-        this.fields = new PyList();
+    /** Return the index in {@link #chunk} after the end of the line containing <code>i</code>. */
+    private int line_end(int i) {
+        int end = chunk.indexOf('\n', i);
+        return end < 0 ? chunk.length() : end + 1;
+    }
+
+    /** Discard the rest of the current line of the input file, if it is not all parsed. */
+    private void skip_line() {
+        // The chunk is consumed to the end of the line (or chunk) before parsing the line.
+        boolean at_end = chunk_pos > 0 && chunk.charAt(chunk_pos - 1) == '\n';
+        while (!at_end && (chunk_pos < chunk.length() || read_chunk())) {
+            chunk_pos = line_end(chunk_pos);
+            at_end = chunk.charAt(chunk_pos - 1) == '\n';
+        }
+        line_start = true;
+    }
+
+    /** Seek the input file back to the first character not yet parsed, and drop the chunk. */
+    private void give_back() {
+        int remaining = chunk.length() - chunk_pos;
+        chunk = "";
+        chunk_pos = 0;
+        if (remaining > 0) {
+            if (input_file instanceof PyFile) {
+                ((PyFile) input_file).seek(-remaining, 1);
+            } else {
+                ((PyFileIO) input_file).seek(-remaining, 1);
+            }
+        }
+    }
+
+    /** Read the next chunk of the input file, returning false at the end of it. */
+    private boolean read_chunk() {
+        PyObject data;
+        if (input_file instanceof PyFile) {
+            data = ((PyFile) input_file).read(CHUNK_SIZE);
+        } else {
+            // None (a non-blocking file has nothing ready) ends the input, as for iteration.
+            data = ((PyFileIO) input_file).read(CHUNK_SIZE);
+        }
+        if (!(data instanceof PyString)) {
+            return false;
+        }
+        chunk = ((PyString) data).getString();
+        chunk_pos = 0;
+        return chunk.length() > 0;
+    }
 
+    /**
+     * Parse the characters <code>s[i:end]</code> of a line. Runs of characters that are simply
+     * part of the current field are added to it at once, without stepping the state machine.
+     */
+    private void parse_chars(String s, int i, int end) {
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == '\0') {
+                throw _csv.Error("line contains NULL byte");
+            }
+            if (state == ParserState.IN_FIELD || state == ParserState.IN_QUOTED_FIELD) {
+                int j = field_run_end(s, i, end);
+                if (j > i) {
+                    parse_add_chars(s, i, j);
+                    i = j;
+                    continue;
+                }
+            }
+            parse_process_char(c);
+            i++;
+        }
+    }
+
+    /**
+     * Return the index of the first character at or after <code>i</code> that
+     * {@link #parse_process_char(char)} would do anything with other than add to the field, in the
+     * current state (which is IN_FIELD or IN_QUOTED_FIELD).
+     */
+    private int field_run_end(String s, int i, int end) {
+        char escapechar = dialect.escapechar;
+        if (state == ParserState.IN_FIELD) {
+            char delimiter = dialect.delimiter;
+            for (; i < end; i++) {
+                char c = s.charAt(i);
+                if (c == delimiter || c == escapechar || c == '\n' || c == '\r' || c == '\0') {
+                    break;
+                }
+            }
+        } else {
+            // A quote character is ordinary only if nothing is quoted.
+            char quotechar = dialect.quoting != QuoteStyle.QUOTE_NONE ? dialect.quotechar : '\0';
+            for (; i < end; i++) {
+                char c = s.charAt(i);
+                if (c == quotechar || c == escapechar || c == '\0') {
+                    break;
+                }
+            }
+        }
+        return i;
+    }
+
+    /** Return the fields of the record just parsed. */
+    private PyObject take_fields() {
+        PyObject fields = this.fields;
+        this.fields = new PyList();
         return fields;
     }
 
@@ -239,6 +482,7 @@ public class PyReader extends PyIterator {
 
     private void parse_reset() {
         fields = new PyList();
+        field.setLength(0);
         state = ParserState.START_RECORD;
         numeric_field = false;
     }
@@ -252,9 +496,7 @@ public class PyReader extends PyIterator {
             field = field.__float__();
         }
         fields.append(field);
-
-        // XXX: fastest way to clear StringBuffer?
-        this.field = new StringBuffer(INITIAL_BUILDER_CAPACITY);
+        this.field.setLength(0);
     }
 
     private void parse_add_char(char c) {
@@ -266,6 +508,14 @@ public class PyReader extends PyIterator {
         field.append(c);
     }
 
+    private void parse_add_chars(String s, int start, int end) {
+        if (field.length() + (end - start) > _csv.field_limit) {
+            throw _csv.Error(String.format("field larger than field limit (%d)",
+                                           _csv.field_limit));
+        }
+        field.append(s, start, end);
+    }
+
     /**
      * State of the CSV reader.
      */
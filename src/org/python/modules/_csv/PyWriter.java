@@ -35,17 +35,8 @@ public class PyWriter extends PyObject implements Traverseproc {
     /** Output lines writer callable. */
     private PyObject writeline;
 
-    /** Buffer for parser.join. */
-    private StringBuffer rec;
-
-    /** Length of record. */
-    private int rec_len = 0;
-
-    /** Number of fields in record. */
-    private int num_fields = 0;
-
-    /** Whether field should be quoted during a join. */
-    private boolean quoted = false;
+    /** Number of characters of records writerows collects before writing them. */
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
 
     public PyWriter(PyObject writeline, PyDialect dialect) {
         this.writeline = writeline;
@@ -61,21 +52,37 @@ public class PyWriter extends PyObject implements Traverseproc {
         writer_writerows(seqseq);
     }
 
+    /**
+     * Write the records of a series of sequences. The records are joined into one buffer, and
+     * written in batches of {@link #WRITE_BUFFER_SIZE} characters or so rather than one at a time.
+     * The records before one that cannot be joined are still written.
+     */
     @ExposedMethod
     final void writer_writerows(PyObject seqseq) {
         PyObject row_iter;
         PyObject row_obj;
-        boolean result;
 
         row_iter = seqseq.__iter__();
         if (row_iter == null) {
             throw _csv.Error("writerows() argument must be iterable");
         }
 
-        while ((row_obj = row_iter.__iternext__()) != null) {
-            result = writerow(row_obj);
-            if (!result) {
-                break;
+        StringBuilder rec = new StringBuilder(WRITE_BUFFER_SIZE + 1024);
+        // Length of the complete records in rec
+        int rec_len = 0;
+        try {
+            while ((row_obj = row_iter.__iternext__()) != null) {
+                join_record(rec, row_obj);
+                rec_len = rec.length();
+                if (rec_len >= WRITE_BUFFER_SIZE) {
+                    rec_len = 0;
+                    write(rec);
+                }
+            }
+        } finally {
+            rec.setLength(rec_len);
+            if (rec_len > 0) {
+                write(rec);
             }
         }
     }
@@ -91,6 +98,21 @@ public class PyWriter extends PyObject implements Traverseproc {
 
     @ExposedMethod
     final boolean writer_writerow(PyObject seq) {
+        StringBuilder rec = new StringBuilder();
+        join_record(rec, seq);
+        write(rec);
+        return true;
+    }
+
+    /** Write and empty the buffer. */
+    private void write(StringBuilder rec) {
+        PyString data = new PyString(rec.toString());
+        rec.setLength(0);
+        writeline.__call__(data);
+    }
+
+    /** Append the record for a sequence of fields, and the line terminator, to the buffer. */
+    private void join_record(StringBuilder rec, PyObject seq) {
         int len;
         int i;
 
@@ -99,26 +121,17 @@ public class PyWriter extends PyObject implements Traverseproc {
         }
 
         len = seq.__len__();
-        if (len < 0) {
-            return false;
-        }
-
-        // Join all fields in internal buffer.
-        join_reset();
         for (i = 0; i < len; i++) {
             PyObject field;
-            boolean append_ok;
-            quoted = false;
+            boolean quoted;
 
             field = seq.__getitem__(i);
-            if (field == null) {
-                return false;
-            }
 
             switch (dialect.quoting) {
                 case QUOTE_NONNUMERIC:
                     try {
                         field.__float__();
+                        quoted = false;
                     } catch (PyException ex) {
                         quoted = true;
                     }
@@ -130,107 +143,65 @@ public class PyWriter extends PyObject implements Traverseproc {
                     quoted = false;
             }
 
+            // If this is not the first field we need a field separator.
+            if (i > 0) {
+                rec.append(dialect.delimiter);
+            }
+
+            String str;
             if (field instanceof PyUnicode) {
                 // Unicode fields get the default encoding (must yield U16 bytes).
-                append_ok = join_append(((PyString) field).encode(), len == 1);
+                str = ((PyString) field).encode();
             } else if (field instanceof PyString) {
                 // Not unicode, so must be U16 bytes.
-                append_ok = join_append(field.toString(), len == 1);
+                str = field.toString();
             } else if (field == Py.None) {
-                append_ok = join_append("", len == 1);
+                str = "";
             } else {
-                PyObject str;
                 // XXX: in 3.x this check can go away and we can just always use __str__
                 if (field.getClass() == PyFloat.class) {
-                    str = field.__repr__();
+                    str = field.__repr__().toString();
                 } else {
-                    str = field.__str__();
-                }
-
-                if (str == null) {
-                    return false;
+                    str = field.__str__().toString();
                 }
-
-                append_ok = join_append(str.toString(), len == 1);
-            }
-            if (!append_ok) {
-                return false;
             }
+            join_append(rec, str, quoted, len == 1);
         }
 
         // Add line terminator.
-        if (!join_append_lineterminator()) {
-            return false;
-        }
-
-        writeline.__call__(new PyString(rec.toString()));
-        return true;
-    }
-
-    private void join_reset() {
-        rec_len = 0;
-        num_fields = 0;
-        quoted = false;
-        rec = new StringBuffer();
-    }
-
-    private boolean join_append_lineterminator() {
         rec.append(dialect.lineterminator);
-        return true;
-    }
-
-    private boolean join_append(String field, boolean quote_empty) {
-        int rec_len;
-
-        rec_len = join_append_data(field, quote_empty, false);
-        if (rec_len < 0) {
-            return false;
-        }
-
-        this.rec_len = join_append_data(field, quote_empty, true);
-        num_fields++;
-
-        return true;
     }
 
     /**
-     * This method behaves differently depending on the value of copy_phase: if copy_phase is false,
-     * then the method determines the new record length. If copy_phase is true then the new field is
-     * appended to the record.
+     * Append a field to the record, escaping or doubling special characters in it, and quoting it
+     * if asked to or if it contains special characters that are not escaped.
      */
-    private int join_append_data(String field, boolean quote_empty, boolean copy_phase) {
+    private void join_append(StringBuilder rec, String field, boolean quoted,
+            boolean quote_empty) {
+        char delimiter = dialect.delimiter;
+        char escapechar = dialect.escapechar;
+        char quotechar = dialect.quotechar;
+        String lineterminator = dialect.lineterminator;
+        int start = rec.length();
+        int n = field.length();
         int i;
 
-        // If this is not the first field we need a field separator.
-        if (num_fields > 0) {
-            addChar(dialect.delimiter, copy_phase);
-        }
-
-        // Handle preceding quote
-        if (copy_phase && quoted) {
-            addChar(dialect.quotechar, copy_phase);
-        }
-
-        // parsing below is based on _csv.c which expects all strings to be terminated
-        // with a nul byte.
-        field += '\0';
-
-        // Copy/count field data.
-        for (i = 0;; i++) {
+        // The field ends at a nul character, if it contains one (as in _csv.c).
+        for (i = 0; i < n; i++) {
             char c = field.charAt(i);
             boolean want_escape = false;
 
             if (c == '\0') {
                 break;
             }
-            if (c == dialect.delimiter || c == dialect.escapechar || c == dialect.quotechar
-                    || dialect.lineterminator.indexOf(c) > -1) {
+            if (c == delimiter || c == escapechar || c == quotechar
+                    || lineterminator.indexOf(c) > -1) {
                 if (dialect.quoting == QuoteStyle.QUOTE_NONE) {
                     want_escape = true;
                 } else {
-                    if (c == dialect.quotechar) {
+                    if (c == quotechar) {
                         if (dialect.doublequote) {
-                            addChar(dialect.quotechar, copy_phase);
+                            rec.append(quotechar);
                         } else {
                             want_escape = true;
                         }
@@ -240,15 +211,15 @@ public class PyWriter extends PyObject implements Traverseproc {
                     }
                 }
                 if (want_escape) {
-                    if (dialect.escapechar == '\0') {
+                    if (escapechar == '\0') {
                         throw _csv.Error("need to escape, but no escapechar set");
                     }
-                    addChar(dialect.escapechar, copy_phase);
+                    rec.append(escapechar);
                 }
             }
 
             // Copy field character into record buffer.
-            addChar(c, copy_phase);
+            rec.append(c);
         }
 
         // If field is empty check if it needs to be quoted.
@@ -260,25 +231,11 @@ public class PyWriter extends PyObject implements Traverseproc {
             }
         }
 
-        // Handle final quote character on field.
+        // Only now do we know whether the field needs quotes round it.
         if (quoted) {
-            if (copy_phase) {
-                addChar(dialect.quotechar, copy_phase);
-            } else {
-                // Didn't know about leading quote until we found it necessary in field
-                // data - compensate for it now.
-                rec_len += 2;
-            }
-        }
-
-        return rec_len;
-    }
-
-    private void addChar(char c, boolean copy_phase) {
-        if (copy_phase) {
-            rec.append(c);
+            rec.insert(start, quotechar);
+            rec.append(quotechar);
         }
-        rec_len++;
     }
 
     /* Traverseproc implementation */
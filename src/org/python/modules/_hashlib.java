@@ -1,14 +1,21 @@
 /* Copyright (c) Jython Developers */
 package org.python.modules;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.python.core.BufferProtocol;
 import org.python.core.ClassDictInit;
 import org.python.core.Py;
-import org.python.core.PyArray;
+import org.python.core.PyBUF;
+import org.python.core.PyBuffer;
+import org.python.core.PyFile;
 import org.python.core.PyFrozenSet;
 import org.python.core.PyObject;
 import org.python.core.PyString;
@@ -16,7 +23,9 @@ import org.python.core.PyTuple;
 import org.python.core.PyType;
 import org.python.core.PyUnicode;
 import org.python.core.Untraversable;
+import org.python.core.io.FileIO;
 import org.python.core.util.StringUtil;
+import org.python.modules._io.PyFileIO;
 import org.python.expose.ExposedGet;
 import org.python.expose.ExposedMethod;
 import org.python.expose.ExposedType;
@@ -48,6 +57,7 @@ public class _hashlib implements ClassDictInit {
         dict.__setitem__("__name__", Py.newString("_hashlib"));
         dict.__setitem__("algorithmMap", null);
         dict.__setitem__("classDictInit", null);
+        dict.__setitem__("channelOf", null);
     }
 
     public static PyObject new$(String name) {
@@ -116,6 +126,74 @@ public class _hashlib implements ClassDictInit {
         return new$("sha512", obj);
     }
 
+    public static PyString __doc__file_digest = new PyString(
+        "file_digest(fileobj, digest) -> hash object\n\n" +
+        "Hash the contents of a binary file object, from its current position to\n" +
+        "the end, with a new hash object made by hashlib.new(digest), or by calling\n" +
+        "digest if it is not a string. The contents of a file in the file system\n" +
+        "are read and hashed without passing through Python objects.");
+
+    /** Number of bytes to read from a file at a time in {@link #file_digest(PyObject, PyObject)}. */
+    private static final int FILE_BUFFER_SIZE = 256 * 1024;
+
+    public static PyObject file_digest(PyObject fileobj, PyObject digest) {
+        PyObject hash;
+        if (digest instanceof PyString) {
+            hash = new$(digest.toString());
+        } else {
+            hash = digest.__call__();
+        }
+
+        FileChannel channel = channelOf(fileobj);
+        if (channel != null && hash instanceof Hash) {
+            // Read from the logical position (after any buffered data), then leave the file at
+            // the end, as if we had read it.
+            long pos = fileobj.invoke("tell").asLong();
+            ByteBuffer buf = ByteBuffer.allocateDirect(FILE_BUFFER_SIZE);
+            try {
+                for (int n; (n = channel.read(buf, pos)) >= 0; buf.clear()) {
+                    buf.flip();
+                    ((Hash) hash).update(buf);
+                    pos += n;
+                }
+            } catch (IOException ioe) {
+                throw Py.IOError(ioe);
+            }
+            fileobj.invoke("seek", Py.newLong(pos));
+        } else {
+            PyObject size = Py.newInteger(FILE_BUFFER_SIZE);
+            PyObject update = hash.__getattr__("update");
+            for (PyObject chunk; (chunk = fileobj.invoke("read", size)).__len__() > 0;) {
+                update.__call__(chunk);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Return the channel of a file object we may read directly: a binary <code>file</code> or an
+     * <code>_io.FileIO</code>, open for reading a seekable file in the file system, or null
+     * otherwise. A pipe or FIFO cannot be read at a position, so is read through the file object.
+     */
+    private static FileChannel channelOf(PyObject fileobj) {
+        if (fileobj.getClass() == PyFile.class) {
+            PyFile file = (PyFile) fileobj;
+            if (!file.isSeekableBinary()
+                    || (file.mode.indexOf('r') < 0 && file.mode.indexOf('+') < 0)) {
+                return null;
+            }
+        } else if (fileobj.getClass() == PyFileIO.class) {
+            PyFileIO file = (PyFileIO) fileobj;
+            if (!file.readable() || !file.seekable()) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        Object raw = fileobj.invoke("fileno").__tojava__(FileIO.class);
+        return raw instanceof FileIO ? ((FileIO) raw).getChannel() : null;
+    }
+
     /**
      * A generic wrapper around a MessageDigest.
      */
@@ -152,15 +230,39 @@ public class _hashlib implements ClassDictInit {
             this.digest = digest;
         }
 
+        /**
+         * A MessageDigest of each algorithm used so far, in its initial state, to clone: that is
+         * much quicker than looking the algorithm up again.
+         */
+        private static final Map<String, MessageDigest> prototypes =
+                new ConcurrentHashMap<String, MessageDigest>();
+
         private static final MessageDigest getDigest(String name) {
-            try {
-                // since sha 224 is not present in java.security
-                if (name.equals("sha-224")) {
-                    return new SHA224Digest();
+            MessageDigest prototype = prototypes.get(name);
+            if (prototype == null) {
+                try {
+                    // since sha 224 is not present in java.security
+                    if (name.equals("sha-224")) {
+                        prototype = new SHA224Digest();
+                    } else {
+                        prototype = MessageDigest.getInstance(name);
+                    }
+                } catch (NoSuchAlgorithmException nsae) {
+                    throw Py.ValueError("unsupported hash type");
+                }
+                try {
+                    // Keep our own instance as the prototype, but check it can be cloned.
+                    MessageDigest digest = (MessageDigest) prototype.clone();
+                    prototypes.put(name, prototype);
+                    return digest;
+                } catch (CloneNotSupportedException cnse) {
+                    return prototype;
                 }
-                return MessageDigest.getInstance(name);
-            } catch (NoSuchAlgorithmException nsae) {
-                throw Py.ValueError("unsupported hash type");
+            }
+            try {
+                return (MessageDigest) prototype.clone();
+            } catch (CloneNotSupportedException cnse) {
+                throw Py.RuntimeError(String.format("_hashlib.HASH (%s) internal error", name));
             }
         }
 
@@ -192,25 +294,51 @@ public class _hashlib implements ClassDictInit {
             HASH_update(obj);
         }
 
+        /** Size of the buffer in which characters of a <code>str</code> are passed as bytes. */
+        private static final int CHAR_BUFFER_SIZE = 8192;
+
+        /**
+         * Update the digest with the bytes of a <code>str</code>, the default encoding of a
+         * <code>unicode</code>, or the contents of any object supporting the buffer protocol. A
+         * <code>str</code> held as bytes, a <code>bytearray</code>, and similar objects are
+         * hashed where they lie, without being copied.
+         */
         @ExposedMethod
         final void HASH_update(PyObject obj) {
-            String string;
             if (obj instanceof PyUnicode) {
-                string = ((PyUnicode)obj).encode();
-            } else if (obj instanceof PyString) {
-                string = obj.toString();
-            } else if (obj instanceof PyArray) {
-                string = ((PyArray)obj).tostring();
+                update(((PyUnicode) obj).encode());
+            } else if (obj instanceof PyString && ((PyString) obj).getHeldBytes() == null) {
+                update(obj.toString());
+            } else if (obj instanceof BufferProtocol) {
+                try (PyBuffer buf = ((BufferProtocol) obj).getBuffer(PyBUF.SIMPLE)) {
+                    update(buf.getNIOByteBuffer());
+                }
             } else {
                 throw Py.TypeError("update() argument 1 must be string or read-only buffer, not "
                                    + obj.getType().fastGetName());
             }
-            byte[] input = StringUtil.toBytes(string);
+        }
+
+        /** Update the digest with the low byte of each character of a <code>String</code>. */
+        @SuppressWarnings("deprecation")
+        private void update(String string) {
+            int n = string.length();
+            byte[] input = new byte[Math.min(n, CHAR_BUFFER_SIZE)];
             synchronized (this) {
-                digest.update(input);
+                for (int i = 0; i < n; i += input.length) {
+                    int end = Math.min(n, i + input.length);
+                    // The deprecated method does exactly this: it takes the low byte of each char.
+                    string.getBytes(i, end, input, 0);
+                    digest.update(input, 0, end - i);
+                }
             }
         }
 
+        /** Update the digest with the remaining bytes of a buffer. */
+        private synchronized void update(ByteBuffer input) {
+            digest.update(input);
+        }
+
         public PyObject digest() {
             return HASH_digest();
         }
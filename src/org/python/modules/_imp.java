@@ -8,6 +8,7 @@ import java.io.InputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.python.core.DirectoryListingCache;
 import org.python.core.Py;
 import org.python.core.PyFile;
 import org.python.core.PyList;
@@ -87,6 +88,13 @@ public class _imp {
         // instead of /tmp/foo/bar.py)
         String displayDirName = entry.equals("") ? null : entry;
 
+        // Skip the stats of each candidate where the directory certainly has none of them
+        String[] candidates = findingPackage ? new String[] {sourceName, compiledName}
+                : new String[] {name, name + ".py", imp.makeCompiledFilename(name + ".py")};
+        if (!DirectoryListingCache.mayContain(directoryName, candidates)) {
+            return null;
+        }
+
         // First check for packages
         File dir = findingPackage ? new File(directoryName) : new File(directoryName, name);
         File sourceFile = new File(dir, sourceName);
@@ -330,6 +338,16 @@ public class _imp {
         return false;
     }
 
+    public static PyString __doc__invalidate_caches = new PyString(
+        "invalidate_caches()\n\n" +
+        "Discard the listings of directories kept by import, as after changing\n" +
+        "files in a directory whose modification time does not change.\n"
+    );
+
+    public static void invalidate_caches() {
+        DirectoryListingCache.invalidate();
+    }
+
     /**
      * Acquires the interpreter's import lock for the current thread.
      *
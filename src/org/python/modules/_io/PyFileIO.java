@@ -20,6 +20,7 @@ import org.python.core.PyString;
 import org.python.core.PyType;
 import org.python.core.PyUnicode;
 import org.python.core.Untraversable;
+import org.python.core.io.BufferSequence;
 import org.python.core.io.FileIO;
 import org.python.core.io.RawIOBase;
 import org.python.core.io.StreamIO;
@@ -297,6 +298,32 @@ public class PyFileIO extends PyRawIOBase {
         return new PyLong(count);
     }
 
+    @ExposedMethod(doc = readv_doc)
+    final long FileIO_readv(PyObject buffers) {
+        if (!readable) {            // ... (or closed)
+            throw tailoredValueError("read");
+        }
+        // Scatter read directly into the storage of each object
+        try (BufferSequence seq = new BufferSequence("readv", buffers, true)) {
+            synchronized (ioDelegate) {
+                return ioDelegate.readinto(seq.buffers());
+            }
+        }
+    }
+
+    @ExposedMethod(doc = writev_doc)
+    final long FileIO_writev(PyObject buffers) {
+        if (!writable) {            // ... (or closed)
+            throw tailoredValueError("writ");
+        }
+        // Gather write directly from the storage of each object
+        try (BufferSequence seq = new BufferSequence("writev", buffers, false)) {
+            synchronized (ioDelegate) {
+                return ioDelegate.write(seq.buffers());
+            }
+        }
+    }
+
     @Override
     public long seek(long pos, int whence) {
         return FileIO_seek(pos, whence);
@@ -513,4 +540,11 @@ public class PyFileIO extends PyRawIOBase {
         }
     }
 
+    static final String readv_doc = "readv(buffers) -> int.  Read into each of a sequence of\n"
+            + "writable buffers (bytearray, memoryview, mmap, array) in turn, stopping at EOF\n"
+            + "or a short read, and return the number of bytes read.";
+
+    static final String writev_doc = "writev(buffers) -> int.  Write the contents of each of a\n"
+            + "sequence of buffers in turn, and return the number of bytes written.";
+
 }
@@ -98,14 +98,10 @@ public class PyRawIOBase extends PyIOBase {
                 PyBuffer view = b.getBuffer(PyBUF.FULL_RO);
                 // We can forget view.release() as the bytearray b is garbage outside this method.
 
-                // Did we get all the bytes we expected?
-                if (count < n) {
-                    // No, so swap the view for a slice of just the data we actually read.
-                    view = view.getBufferSlice(PyBUF.FULL_RO, 0, count);
-                }
-
-                // Make a str from that view
-                return new PyString(view.toString());
+                // Make a str directly from the bytes actually read
+                byte[] data = new byte[count];
+                view.copyTo(0, data, 0, count);
+                return PyString.fromBytes(data);
 
             } else {
                 // It must have returned None (signalling a vacuous read of non-blocking stream)
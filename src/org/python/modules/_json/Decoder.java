@@ -0,0 +1,645 @@
+package org.python.modules._json;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.python.core.Py;
+import org.python.core.PyDictionary;
+import org.python.core.PyException;
+import org.python.core.PyFloat;
+import org.python.core.PyInteger;
+import org.python.core.PyList;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyTuple;
+import org.python.core.PyUnicode;
+import org.python.core.codecs;
+
+/**
+ * Parser for JSON text that builds the Python objects as it goes, in one pass over the
+ * <code>String</code> holding the text. It takes its options (hooks, encoding, strictness) from a
+ * {@link Scanner}, and reports errors with the same messages and positions as
+ * <code>json.decoder</code>. The text is either a <code>str</code> or <code>unicode</code> given
+ * whole, or read in blocks from a file-like object, so that a large document need not be held in
+ * memory as text as well as objects.
+ * <p>
+ * Names of the hooks and error messages follow {@link Scanner}, of which this is a replacement
+ * that does not create a <code>(value, end)</code> tuple or a substring for every token.
+ */
+final class Decoder {
+
+    /** Characters asked of <code>read()</code> at a time when streaming. */
+    static final int CHUNK = 65536;
+
+    private final Scanner scanner;
+    /** The document when given whole (for error messages), or null when reading a file. */
+    private final PyString doc;
+    /** Whether the text is <code>unicode</code> (otherwise string contents must be decoded). */
+    private final boolean unicode;
+    /** Whether indexes reported to Python must be converted to code point indexes. */
+    private final boolean surrogates;
+    /** Bound <code>read</code> method of the file, or null. */
+    private final PyObject read;
+    private boolean eof;
+
+    /** The text, or the part of it not yet discarded when reading a file. */
+    private String s;
+    /** Index in {@link #s} of the next character to read. */
+    private int pos;
+    /** Length of {@link #s}. */
+    private int limit;
+    /** Index in {@link #s} of the start of a number being read, which must not be discarded. */
+    private int mark = -1;
+    /** Number of characters discarded from the front of {@link #s} while streaming. */
+    private long offset;
+    /** Number of newlines in the discarded characters, and index just after the last of them. */
+    private int lines;
+    private long lineStart;
+
+    /** Object keys already made, so that each distinct key is one <code>unicode</code> object. */
+    private final Map<String, PyObject> keys = new HashMap<String, PyObject>();
+
+    /** Decoder for a complete document (in which <code>scan_once</code> may start anywhere). */
+    Decoder(Scanner scanner, PyString doc) {
+        this.scanner = scanner;
+        this.doc = doc;
+        this.read = null;
+        this.s = doc.getString();
+        this.limit = s.length();
+        this.unicode = doc instanceof PyUnicode;
+        this.surrogates = unicode && !((PyUnicode) doc).isBasicPlane();
+        this.eof = true;
+    }
+
+    /** Decoder reading a document from the <code>read</code> method of a file-like object. */
+    Decoder(Scanner scanner, PyObject read, PyObject first) {
+        this.scanner = scanner;
+        this.doc = null;
+        this.read = read;
+        this.unicode = first instanceof PyUnicode;
+        this.surrogates = false;
+        this.s = text(first);
+        this.limit = s.length();
+        this.eof = limit == 0;
+    }
+
+    private static String text(PyObject chunk) {
+        if (!(chunk instanceof PyString)) {
+            throw Py.TypeError(String.format("read() should return a string, not %.80s",
+                    chunk.getType().fastGetName()));
+        }
+        return ((PyString) chunk).getString();
+    }
+
+    /**
+     * Decode the value at index <code>idx</code> of the document, as <code>scan_once</code>
+     * does, returning it and the index after it.
+     */
+    PyTuple scanOnce(int idx) {
+        int length = doc.__len__();
+        if (idx < 0) {
+            idx += length;
+        }
+        if (idx < 0 || idx >= length) {
+            throw Py.StopIteration("");
+        }
+        pos = surrogates ? s.offsetByCodePoints(0, idx) : idx;
+        PyObject value = scan();
+        return new PyTuple(value, Py.newInteger(index(pos)));
+    }
+
+    /**
+     * Decode a whole document, allowing whitespace either side of the value, as
+     * <code>JSONDecoder.decode</code> does.
+     */
+    PyObject decode() {
+        skipWhitespace();
+        PyObject value;
+        try {
+            value = scan();
+        } catch (PyException e) {
+            if (e.match(Py.StopIteration)) {
+                throw Py.ValueError("No JSON object could be decoded");
+            }
+            throw e;
+        }
+        skipWhitespace();
+        if (have(1)) {
+            extraData();
+        }
+        return value;
+    }
+
+    /** Whether there are at least <code>n</code> characters after {@link #pos}. */
+    private boolean have(int n) {
+        while (pos + n > limit) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Read more of the file into {@link #s}, discarding what has been parsed. */
+    private boolean fill() {
+        if (eof) {
+            return false;
+        }
+        int keep = mark >= 0 ? mark : pos;
+        // Ask for at least as much as we keep, so that a long token is not copied repeatedly.
+        String more = text(read.__call__(Py.newInteger(Math.max(CHUNK, limit - keep))));
+        if (more.length() == 0) {
+            eof = true;
+            return false;
+        }
+        for (int i = 0; i < keep; i++) {
+            if (s.charAt(i) == '\n') {
+                lines += 1;
+                lineStart = offset + i + 1;
+            }
+        }
+        s = s.substring(keep).concat(more);
+        offset += keep;
+        pos -= keep;
+        if (mark >= 0) {
+            mark -= keep;
+        }
+        limit = s.length();
+        return true;
+    }
+
+    private PyObject scan() {
+        if (!have(1)) {
+            throw Py.StopIteration("");
+        }
+        switch (s.charAt(pos)) {
+            case '"':
+                pos++;
+                return new PyUnicode(string());
+            case '{':
+                pos++;
+                return object();
+            case '[':
+                pos++;
+                return array();
+            case 'n':
+                if (match("null")) {
+                    return Py.None;
+                }
+                break;
+            case 't':
+                if (match("true")) {
+                    return Py.True;
+                }
+                break;
+            case 'f':
+                if (match("false")) {
+                    return Py.False;
+                }
+                break;
+            case 'N':
+                if (match("NaN")) {
+                    return scanner.parse_constant.__call__(Py.newString("NaN"));
+                }
+                break;
+            case 'I':
+                if (match("Infinity")) {
+                    return scanner.parse_constant.__call__(Py.newString("Infinity"));
+                }
+                break;
+            case '-':
+                if (match("-Infinity")) {
+                    return scanner.parse_constant.__call__(Py.newString("-Infinity"));
+                }
+                break;
+        }
+        /* Didn't find a string, object, array, or named constant. Look for a number. */
+        return number();
+    }
+
+    private boolean match(String word) {
+        if (have(word.length()) && s.startsWith(word, pos)) {
+            pos += word.length();
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\r');
+    }
+
+    private void skipWhitespace() {
+        while (have(1) && isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private PyObject object() {
+        PyList pairs = scanner.pairs_hook != Py.None ? new PyList() : null;
+        PyDictionary dict = pairs == null ? new PyDictionary() : null;
+
+        skipWhitespace();
+        /* only loop if the object is non-empty */
+        if (have(1) && s.charAt(pos) != '}') {
+            while (have(1)) {
+                /* read key */
+                if (s.charAt(pos) != '"') {
+                    error("Expecting property name", pos);
+                }
+                pos++;
+                PyObject key = key(string());
+
+                /* skip whitespace between key and : delimiter, read :, skip whitespace */
+                skipWhitespace();
+                if (!have(1) || s.charAt(pos) != ':') {
+                    error("Expecting : delimiter", pos);
+                }
+                pos++;
+                skipWhitespace();
+
+                /* read any JSON data type */
+                PyObject val = scan();
+                if (dict != null) {
+                    dict.__setitem__(key, val);
+                } else {
+                    pairs.append(new PyTuple(key, val));
+                }
+
+                /* skip whitespace before } or , */
+                skipWhitespace();
+
+                /* bail if the object is closed or we didn't get the , delimiter */
+                if (!have(1) || s.charAt(pos) == '}') {
+                    break;
+                } else if (s.charAt(pos) != ',') {
+                    error("Expecting , delimiter", pos);
+                }
+                pos++;
+                skipWhitespace();
+            }
+        }
+        if (!have(1) || s.charAt(pos) != '}') {
+            errorAtEnd("Expecting object");
+        }
+        pos++;
+
+        if (pairs != null) {
+            return scanner.pairs_hook.__call__(pairs);
+        } else if (scanner.object_hook != Py.None) {
+            return scanner.object_hook.__call__(dict);
+        }
+        return dict;
+    }
+
+    private PyObject key(String text) {
+        PyObject key = keys.get(text);
+        if (key == null) {
+            key = new PyUnicode(text);
+            keys.put(text, key);
+        }
+        return key;
+    }
+
+    private PyObject array() {
+        PyList rval = new PyList();
+
+        skipWhitespace();
+        /* only loop if the array is non-empty */
+        if (have(1) && s.charAt(pos) != ']') {
+            while (have(1)) {
+                rval.append(scan());
+
+                /* skip whitespace between term and , */
+                skipWhitespace();
+
+                /* bail if the array is closed or we didn't get the , delimiter */
+                if (!have(1) || s.charAt(pos) == ']') {
+                    break;
+                } else if (s.charAt(pos) != ',') {
+                    error("Expecting , delimiter", pos);
+                }
+                pos++;
+                skipWhitespace();
+            }
+        }
+        if (!have(1) || s.charAt(pos) != ']') {
+            errorAtEnd("Expecting object");
+        }
+        pos++;
+        return rval;
+    }
+
+    /**
+     * Read the contents of a string, {@link #pos} being just after the opening quote, and return
+     * it decoded.
+     */
+    private String string() {
+        long begin = offset + pos - 1;
+        boolean strict = scanner.strict;
+        StringBuilder b = null;
+        /*
+         * The bytes of a str document read before a fill(), kept undecoded until the end of the
+         * run they are in, so that a multibyte character split between reads is decoded whole.
+         */
+        StringBuilder pending = null;
+        boolean pendingAscii = true;
+        while (true) {
+            /* Find the end of the string or the next escape */
+            int start = pos, i = pos, c = 0;
+            boolean ascii = true;
+            for (; i < limit; i++) {
+                c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    break;
+                } else if (c <= 0x1f) {
+                    if (strict) {
+                        error("Invalid control character at", i);
+                    }
+                } else if (c > 127) {
+                    ascii = false;
+                }
+            }
+            if (i == limit) {
+                // Keep what we have and read more of the file, if there is any.
+                if (unicode) {
+                    b = append(b, start, i, true);
+                } else {
+                    if (pending == null) {
+                        pending = new StringBuilder(Math.max(16, i - start + 16));
+                    }
+                    pending.append(s, start, i);
+                    pendingAscii &= ascii;
+                }
+                pos = i;
+                if (!fill()) {
+                    errorAt("Unterminated string starting at", begin);
+                }
+                continue;
+            }
+            pos = i + 1;
+            if (pending == null) {
+                if (c == '"' && b == null) {
+                    return chunk(start, i, ascii);
+                }
+                b = append(b, start, i, ascii);
+            } else {
+                String run = decode(pending.append(s, start, i).toString(), pendingAscii && ascii);
+                pending = null;
+                pendingAscii = true;
+                if (c == '"' && b == null) {
+                    return run;
+                }
+                b = (b == null ? new StringBuilder(run.length() + 16) : b).append(run);
+            }
+            if (c == '"') {
+                return b.toString();
+            }
+            escape(b, begin);
+        }
+    }
+
+    /** The characters <code>s[start:end]</code> decoded (if the document is a <code>str</code>). */
+    private String chunk(int start, int end, boolean ascii) {
+        return decode(s.substring(start, end), ascii);
+    }
+
+    /** The characters of a run of a string decoded (if the document is a <code>str</code>). */
+    private String decode(String run, boolean ascii) {
+        if (unicode || ascii) {
+            return run;
+        } else if ("utf-8".equals(scanner.encoding)) {
+            return codecs.PyUnicode_DecodeUTF8(run, null);
+        } else {
+            return codecs.decode(new PyString(run), scanner.encoding, null).toString();
+        }
+    }
+
+    private StringBuilder append(StringBuilder b, int start, int end, boolean ascii) {
+        if (b == null) {
+            b = new StringBuilder(Math.max(16, end - start + 16));
+        }
+        if (unicode || ascii) {
+            return b.append(s, start, end);
+        }
+        return b.append(chunk(start, end, ascii));
+    }
+
+    /** Decode the escape sequence after a backslash at {@link #pos}<code>-1</code>. */
+    private void escape(StringBuilder b, long begin) {
+        if (!have(1)) {
+            errorAt("Unterminated string starting at", begin);
+        }
+        int c = s.charAt(pos);
+        if (c != 'u') {
+            /* Non-unicode backslash escapes */
+            pos++;
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    break;
+                case 'b':
+                    c = '\b';
+                    break;
+                case 'f':
+                    c = '\f';
+                    break;
+                case 'n':
+                    c = '\n';
+                    break;
+                case 'r':
+                    c = '\r';
+                    break;
+                case 't':
+                    c = '\t';
+                    break;
+                default:
+                    error("Invalid \\escape", pos - 2);
+            }
+            b.append((char) c);
+            return;
+        }
+        /*
+         * The 4 hex digits, and a character after them, must be present. Errors are reported at
+         * the 'u', kept as an index in the document since reading more may move it in s.
+         */
+        long u = offset + pos++;
+        if (!have(5)) {
+            errorAt("Invalid \\uXXXX escape", u);
+        }
+        c = hex(u);
+        /* Surrogate pair */
+        if ((c & 0xfc00) == 0xd800) {
+            if (!have(11) || s.charAt(pos + 4) != '\\' || s.charAt(pos + 5) != 'u') {
+                errorAt("Unpaired high surrogate", u);
+            }
+            pos += 5;
+            long u2 = offset + pos++;
+            int c2 = hex(u2);
+            if ((c2 & 0xfc00) != 0xdc00) {
+                errorAt("Unpaired high surrogate", u2);
+            }
+            c = 0x10000 + (((c - 0xd800) << 10) | (c2 - 0xdc00));
+        } else if ((c & 0xfc00) == 0xdc00) {
+            errorAt("Unpaired low surrogate", u);
+        }
+        pos += 4;
+        b.appendCodePoint(c);
+    }
+
+    /** The value of 4 hex digits at {@link #pos}, the escape being at <code>u</code>. */
+    private int hex(long u) {
+        int c = 0;
+        for (int i = pos; i < pos + 4; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0 || s.charAt(i) > 'f') {
+                errorAt("Invalid \\uXXXX escape", u);
+            }
+            c = (c << 4) | digit;
+        }
+        return c;
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void digits() {
+        while (have(1) && isDigit(s.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private PyObject number() {
+        mark = pos;
+        boolean isFloat = false;
+
+        /* read a sign if it's there, make sure it's not the end of the string */
+        if (s.charAt(pos) == '-') {
+            pos++;
+            if (!have(1)) {
+                throw Py.StopIteration("");
+            }
+        }
+
+        /* read as many integer digits as we find as long as it doesn't start with 0 */
+        int c = s.charAt(pos);
+        if (c >= '1' && c <= '9') {
+            pos++;
+            digits();
+        } else if (c == '0') {
+            /* if it starts with 0 we only expect one integer digit */
+            pos++;
+        } else {
+            /* no integer digits, error */
+            throw Py.StopIteration("");
+        }
+
+        /* if the next char is '.' followed by a digit then read all float digits */
+        if (have(2) && s.charAt(pos) == '.' && isDigit(s.charAt(pos + 1))) {
+            isFloat = true;
+            pos += 2;
+            digits();
+        }
+
+        /* if the next char is 'e' or 'E' then maybe read the exponent (or backtrack) */
+        if (have(2) && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+            /* save the index of the 'e' or 'E' (in the document) in case we need to backtrack */
+            long e_start = offset + pos++;
+            if (s.charAt(pos) == '-' || s.charAt(pos) == '+') {
+                pos++;
+            }
+            digits();
+            /* if we got a digit, then parse as float. if not, backtrack */
+            if (isDigit(s.charAt(pos - 1))) {
+                isFloat = true;
+            } else {
+                pos = (int) (e_start - offset);
+            }
+        }
+
+        String numstr = s.substring(mark, pos);
+        mark = -1;
+        if (isFloat) {
+            if (scanner.parse_float == PyFloat.TYPE) {
+                return new PyFloat(Double.parseDouble(numstr));
+            }
+            return scanner.parse_float.__call__(pyString(numstr));
+        } else {
+            if (scanner.parse_int == PyInteger.TYPE) {
+                return numstr.length() <= 18 ? Py.newInteger(Long.parseLong(numstr))
+                        : Py.newLong(new BigInteger(numstr));
+            }
+            return scanner.parse_int.__call__(pyString(numstr));
+        }
+    }
+
+    private PyString pyString(String text) {
+        return unicode ? new PyUnicode(text) : new PyString(text);
+    }
+
+    /** The index in the document, as Python indexes it, of index <code>i</code> in {@link #s}. */
+    private int index(int i) {
+        return surrogates ? s.codePointCount(0, i) : i;
+    }
+
+    private void error(String msg, int i) {
+        if (doc != null) {
+            _json.raise_errmsg(msg, doc, index(i));
+        }
+        errorAt(msg, offset + i);
+    }
+
+    /** Raise an error at the last character of the document. */
+    private void errorAtEnd(String msg) {
+        if (doc != null) {
+            _json.raise_errmsg(msg, doc, doc.__len__() - 1);
+        }
+        while (fill()) {
+            pos = limit;
+        }
+        errorAt(msg, offset + limit - 1);
+    }
+
+    /** Raise an error at an index in a file not all of which is in {@link #s}. */
+    private void errorAt(String msg, long at) {
+        if (doc != null) {
+            _json.raise_errmsg(msg, doc, index((int) at));
+        }
+        throw Py.ValueError(String.format("%s: %s (char %d)", msg, lineCol(at), at));
+    }
+
+    /**
+     * Raise the error for data after the value, in the form <code>json.decoder.errmsg</code> gives
+     * for a range from here to the end of the document.
+     */
+    private void extraData() {
+        if (doc != null) {
+            _json.raise_errmsg("Extra data", doc, Py.newInteger(index(pos)),
+                    Py.newInteger(doc.__len__()));
+        }
+        long start = offset + pos;
+        String from = lineCol(start);
+        while (fill()) {
+            pos = limit;
+        }
+        long end = offset + limit;
+        throw Py.ValueError(String.format("Extra data: %s - %s (char %d - %d)", from,
+                lineCol(end), start, end));
+    }
+
+    /** Line and column of an absolute index not before the start of {@link #s}. */
+    private String lineCol(long at) {
+        int line = lines + 1;
+        long start = lineStart;
+        for (int i = 0; offset + i < at && i < limit; i++) {
+            if (s.charAt(i) == '\n') {
+                line++;
+                start = offset + i + 1;
+            }
+        }
+        return String.format("line %d column %d", line, at - start + 1);
+    }
+}
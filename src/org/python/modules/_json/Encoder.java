@@ -1,20 +1,30 @@
 package org.python.modules._json;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
 import org.python.core.AbstractDict;
 import org.python.core.ArgParser;
 import org.python.core.Py;
+import org.python.core.PyDictionary;
 import org.python.core.PyFloat;
 import org.python.core.PyInteger;
 import org.python.core.PyLong;
 import org.python.core.PyNewWrapper;
 import org.python.core.PyList;
 import org.python.core.PyObject;
+import org.python.core.PySequenceList;
 import org.python.core.PyString;
 import org.python.core.PyTuple;
 import org.python.core.PyType;
 import org.python.core.PyUnicode;
 import org.python.core.Traverseproc;
 import org.python.core.Visitproc;
+import org.python.core.stringlib.FloatFormatter;
+import org.python.core.stringlib.InternalFormat;
+import org.python.core.stringlib.InternalFormat.Spec;
 import org.python.expose.ExposedGet;
 import org.python.expose.ExposedNew;
 import org.python.expose.ExposedType;
@@ -73,13 +83,97 @@ public class Encoder extends PyObject implements Traverseproc {
         return __call__(obj, Py.Zero);
     }
 
+    /**
+     * Encode <code>obj</code>, returning a list of chunks to join, as the C version does. The
+     * representation is built in a single buffer, so the list normally has one element. It has
+     * more only where <code>str</code> with non-ASCII bytes meets <code>unicode</code>, so that
+     * <code>''.join</code> gives the result (or error) it would give for the separate chunks.
+     */
     public PyObject __call__(PyObject obj, PyObject indent_level) {
-        PyList rval = new PyList();
-        encode_obj(rval, obj, 0);
-        return rval;
+        Output out = new Output(markers != null);
+        encode_obj(out, obj, 0);
+        return out.chunks();
+    }
+
+    /** Format of <code>float.__repr__</code>. */
+    private static final Spec SPEC_REPR = InternalFormat.fromText(" >r");
+
+    /** The encoding in progress: the text so far and the objects being encoded. */
+    private static final class Output {
+
+        final StringBuilder buf = new StringBuilder(256);
+        /** Whether {@link #buf} holds <code>unicode</code> text. */
+        boolean unicode;
+        /** Whether {@link #buf} holds <code>str</code> text with bytes beyond ASCII. */
+        boolean bytes;
+        /** Chunks before the text in {@link #buf}, when it had to be split. */
+        PyList chunks;
+        /** Containers being encoded, by identity, if checking for circular references. */
+        final Set<PyObject> markers;
+        /** Formatter for floats, appending to {@link #buf}. */
+        final FloatFormatter floats;
+
+        Output(boolean checkCircular) {
+            markers = checkCircular
+                    ? Collections.newSetFromMap(new IdentityHashMap<PyObject, Boolean>()) : null;
+            floats = new FloatFormatter(buf, SPEC_REPR);
+        }
+
+        /** Append ASCII text. */
+        void append(String s) {
+            buf.append(s);
+        }
+
+        /** Append a chunk of JSON returned by a <code>str</code> encoder. */
+        void append(PyObject chunk) {
+            if (chunk instanceof PyUnicode) {
+                text(true, true);
+            } else if (chunk instanceof PyString) {
+                if (!_json.isAscii(((PyString) chunk).getString())) {
+                    text(false, true);
+                }
+            } else {
+                throw Py.TypeError(String.format("expected string, %.80s found",
+                        chunk.getType().fastGetName()));
+            }
+            buf.append(((PyString) chunk).getString());
+        }
+
+        /** Note that text of the given type is about to be appended. */
+        void text(boolean isUnicode, boolean nonAscii) {
+            if (isUnicode) {
+                if (bytes) {
+                    split();
+                }
+                unicode = true;
+            } else if (nonAscii) {
+                if (unicode) {
+                    split();
+                }
+                bytes = true;
+            }
+        }
+
+        private void split() {
+            if (chunks == null) {
+                chunks = new PyList();
+            }
+            chunks.append(unicode ? new PyUnicode(buf.toString()) : new PyString(buf.toString()));
+            buf.setLength(0);
+            unicode = bytes = false;
+        }
+
+        PyList chunks() {
+            PyObject last = unicode ? new PyUnicode(buf.toString()) : new PyString(buf.toString());
+            if (chunks == null) {
+                return new PyList(new PyObject[] {last});
+            }
+            chunks.append(last);
+            return chunks;
+        }
     }
 
-    private PyString encode_float(PyObject obj) {
+    private void encode_float(Output out, PyObject obj) {
         /* Return the JSON representation of a PyFloat */
         double i = obj.asDouble();
         if (Double.isInfinite(i) || Double.isNaN(i)) {
@@ -87,137 +181,177 @@ public class Encoder extends PyObject implements Traverseproc {
                 throw Py.ValueError("Out of range float values are not JSON compliant");
             }
             if (i == Double.POSITIVE_INFINITY) {
-                return new PyString("Infinity");
+                out.append("Infinity");
             } else if (i == Double.NEGATIVE_INFINITY) {
-                return new PyString("-Infinity");
+                out.append("-Infinity");
             } else {
-                return new PyString("NaN");
+                out.append("NaN");
             }
+        } else if (obj.getType() == PyFloat.TYPE) {
+            out.floats.format(i);
+        } else {
+            out.append(obj.__repr__().getString());
         }
-        /* Use a better float format here? */
-        return obj.__repr__();
     }
 
-    private PyString encode_string(PyObject obj) {
+    private void encode_string(Output out, PyObject obj) {
         /* Return the JSON representation of a string */
-        return (PyString) encoder.__call__(obj);
+        if (encoder instanceof _json.EncodeBasestringAsciiFunction) {
+            _json.encode_basestring_ascii(out.buf, obj);
+        } else if (encoder instanceof _json.EncodeBasestringFunction) {
+            boolean isUnicode = obj instanceof PyUnicode;
+            out.text(isUnicode, !isUnicode && !_json.isAscii(((PyString) obj).getString()));
+            _json.encode_basestring(out.buf, obj);
+        } else {
+            out.append(encoder.__call__(obj));
+        }
     }
 
-    private PyObject checkCircularReference(PyObject obj) {
-        PyObject ident = null;
-        if (markers != null) {
-            ident = Py.newInteger(Py.id(obj));
-            if (markers.__contains__(ident)) {
-                throw Py.ValueError("Circular reference detected");
-            }
-            markers.__setitem__(ident, obj);
+    private void encode_int(Output out, PyObject obj) {
+        PyType type = obj.getType();
+        if (type == PyInteger.TYPE) {
+            out.buf.append(((PyInteger) obj).getValue());
+        } else if (type == PyLong.TYPE) {
+            out.buf.append(((PyLong) obj).getValue());
+        } else {
+            out.append(obj.__str__().getString());
+        }
+    }
+
+    private void checkCircularReference(Output out, PyObject obj) {
+        if (out.markers != null && !out.markers.add(obj)) {
+            throw Py.ValueError("Circular reference detected");
+        }
+    }
+
+    private void endReference(Output out, PyObject obj) {
+        if (out.markers != null) {
+            out.markers.remove(obj);
         }
-        return ident;
     }
 
-    private void encode_obj(PyList rval, PyObject obj, int indent_level) {
-        /* Encode Python object obj to a JSON term, rval is a PyList */
+    private void encode_obj(Output out, PyObject obj, int indent_level) {
+        /* Encode Python object obj to a JSON term */
         if (obj == Py.None) {
-            rval.append(new PyString("null"));
+            out.append("null");
         } else if (obj == Py.True) {
-            rval.append(new PyString("true"));
+            out.append("true");
         } else if (obj == Py.False) {
-            rval.append(new PyString("false"));
+            out.append("false");
         } else if (obj instanceof PyString) {
-            rval.append(encode_string(obj));
+            encode_string(out, obj);
         } else if (obj instanceof PyInteger || obj instanceof PyLong) {
-            rval.append(obj.__str__());
+            encode_int(out, obj);
         } else if (obj instanceof PyFloat) {
-            rval.append(encode_float(obj));
+            encode_float(out, obj);
         } else if (obj instanceof PyList || obj instanceof PyTuple) {
-            encode_list(rval, obj, indent_level);
+            encode_list(out, (PySequenceList) obj, indent_level);
         } else if (obj instanceof AbstractDict) {
             /* Using AbstractDict instead of PyDictionary fixes http://bugs.jython.org/issue2622 */
-            encode_dict(rval, (AbstractDict) obj, indent_level);
+            encode_dict(out, (AbstractDict) obj, indent_level);
         } else {
-            PyObject ident = checkCircularReference(obj);
+            checkCircularReference(out, obj);
             if (defaultfn == Py.None) {
-                throw Py.TypeError(String.format(".80s is not JSON serializable", obj.__repr__()));
+                throw Py.TypeError(String.format("%.80s is not JSON serializable", obj.__repr__()));
             }
 
             PyObject newobj = defaultfn.__call__(obj);
-            encode_obj(rval, newobj, indent_level);
-            if (ident != null) {
-                markers.__delitem__(ident);
-            }
+            encode_obj(out, newobj, indent_level);
+            endReference(out, obj);
         }
     }
 
-    private void encode_dict(PyList rval, AbstractDict dct, int indent_level) {
+    private void encode_dict(Output out, AbstractDict dct, int indent_level) {
         /* Encode Python dict dct a JSON term */
         if (dct.__len__() == 0) {
-            rval.append(new PyString("{}"));
+            out.append("{}");
             return;
         }
 
-        PyObject ident = checkCircularReference(dct);
-        rval.append(new PyString("{"));
-
-        /* TODO: C speedup not implemented for sort_keys */
-
-        int idx = 0;
-        for (PyObject key : dct.asIterable()) {
-            PyString kstr;
-
-            if (key instanceof PyString || key instanceof PyUnicode) {
-                kstr = (PyString) key;
-            } else if (key instanceof PyFloat) {
-                kstr = encode_float(key);
-            } else if (key instanceof PyInteger || key instanceof PyLong) {
-                kstr = key.__str__();
-            } else if (key == Py.True) {
-                kstr = new PyString("true");
-            } else if (key == Py.False) {
-                kstr = new PyString("false");
-            } else if (key == Py.None) {
-                kstr = new PyString("null");
-            } else if (skipkeys) {
-                continue;
-            } else {
-                throw Py.TypeError(String.format("keys must be a string: %.80s", key.__repr__()));
-            }
+        checkCircularReference(out, dct);
+        out.append("{");
 
-            if (idx > 0) {
-                rval.append(item_separator);
+        boolean first = true;
+        if (sort_keys.__nonzero__()) {
+            PyList keys = new PyList(dct.asIterable().iterator());
+            keys.sort();
+            for (PyObject key : keys.asIterable()) {
+                first = encode_item(out, key, dct.__finditem__(key), first, indent_level);
+            }
+        } else if (dct.getType() == PyDictionary.TYPE) {
+            // Walk the map directly rather than look up each key again (not for subclasses,
+            // such as OrderedDict, that may iterate differently)
+            for (Map.Entry<PyObject, PyObject> entry : ((PyDictionary) dct).getMap().entrySet()) {
+                first = encode_item(out, entry.getKey(), entry.getValue(), first, indent_level);
+            }
+        } else {
+            for (PyObject key : dct.asIterable()) {
+                first = encode_item(out, key, dct.__getitem__(key), first, indent_level);
             }
+        }
+
+        endReference(out, dct);
+        out.append("}");
+    }
 
-            PyObject value = dct.__getitem__(key);
-            PyString encoded = encode_string(kstr);
-            rval.append(encoded);
-            rval.append(key_separator);
-            encode_obj(rval, value, indent_level);
-            idx += 1;
+    /**
+     * Encode one item of a dictionary, unless its key is to be skipped. Return whether the item
+     * was skipped and so the next is still the first.
+     */
+    private boolean encode_item(Output out, PyObject key, PyObject value, boolean first,
+            int indent_level) {
+        PyObject kstr;
+        if (key instanceof PyString) {
+            kstr = key;
+        } else if (key instanceof PyFloat) {
+            // Put the digits in the output, then remove them to encode them as a string.
+            int mark = out.buf.length();
+            encode_float(out, key);
+            kstr = new PyString(out.buf.substring(mark));
+            out.buf.setLength(mark);
+        } else if (key == Py.True) {
+            kstr = new PyString("true");
+        } else if (key == Py.False) {
+            kstr = new PyString("false");
+        } else if (key == Py.None) {
+            kstr = new PyString("null");
+        } else if (key instanceof PyInteger || key instanceof PyLong) {
+            kstr = key.__str__();
+        } else if (skipkeys) {
+            return first;
+        } else {
+            throw Py.TypeError(String.format("keys must be a string: %.80s", key.__repr__()));
         }
 
-        if (ident != null) {
-            markers.__delitem__(ident);
+        if (!first) {
+            out.append(item_separator);
         }
-        rval.append(new PyString("}"));
+        encode_string(out, kstr);
+        out.append(key_separator);
+        encode_obj(out, value, indent_level);
+        return false;
     }
 
 
-    private void encode_list(PyList rval, PyObject seq, int indent_level) {
-        PyObject ident = checkCircularReference(seq);
-        rval.append(new PyString("["));
+    private void encode_list(Output out, PySequenceList seq, int indent_level) {
+        if (seq.size() == 0) {
+            out.append("[]");
+            return;
+        }
+
+        checkCircularReference(out, seq);
+        out.append("[");
 
-        int i = 0;
-        for (PyObject obj : seq.asIterable()) {
+        // The size is read each time round, since default() may change the list.
+        for (int i = 0; i < seq.size(); i++) {
             if (i > 0) {
-                rval.append(item_separator);
+                out.append(item_separator);
             }
-            encode_obj(rval, obj, indent_level);
-            i++;
+            encode_obj(out, seq.pyget(i), indent_level);
         }
 
-        if (ident != null) {
-            markers.__delitem__(ident);
-        }
-        rval.append(new PyString("]"));
+        endReference(out, seq);
+        out.append("]");
     }
 
 
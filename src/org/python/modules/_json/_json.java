@@ -5,6 +5,7 @@ import org.python.core.ArgParser;
 import org.python.core.ClassDictInit;
 import org.python.core.Py;
 import org.python.core.PyBuiltinFunctionNarrow;
+import org.python.core.PyException;
 import org.python.core.PyList;
 import org.python.core.PyObject;
 import org.python.core.PyString;
@@ -14,8 +15,6 @@ import org.python.core.codecs;
 import org.python.core.Untraversable;
 import org.python.expose.ExposedGet;
 
-import java.util.Iterator;
-
 /**
  * This module is a nearly exact line by line port of _json.c to Java. Names and comments  are retained
  * to make it easy to follow, but classes and methods are modified to following Java calling conventions.
@@ -31,9 +30,12 @@ public class _json implements ClassDictInit {
         dict.__setitem__("__name__", new PyString("_json"));
         dict.__setitem__("__doc__", __doc__);
         dict.__setitem__("encode_basestring_ascii", new EncodeBasestringAsciiFunction());
+        dict.__setitem__("encode_basestring", new EncodeBasestringFunction());
         dict.__setitem__("make_encoder", Encoder.TYPE);
         dict.__setitem__("make_scanner", Scanner.TYPE);
         dict.__setitem__("scanstring", new ScanstringFunction());
+        dict.__setitem__("loads", new LoadsFunction());
+        dict.__setitem__("load", new LoadFunction());
         dict.__setitem__("__module__", new PyString("_json"));
 
         // ensure __module__ is set properly in these modules,
@@ -79,6 +81,73 @@ public class _json implements ClassDictInit {
         }
     }
 
+    /**
+     * The scanner of a <code>JSONDecoder</code>, whose options a {@link Decoder} uses: its
+     * <code>scan_once</code> if that is ours, or else a new one.
+     */
+    private static Scanner scannerOf(PyObject decoder) {
+        PyObject scan_once = decoder.__findattr__("scan_once");
+        return scan_once instanceof Scanner ? (Scanner) scan_once : new Scanner(decoder);
+    }
+
+    @Untraversable
+    static class LoadsFunction extends PyBuiltinFunctionNarrow {
+        LoadsFunction() {
+            super("loads", 2, 2, "loads(s, decoder) -> object\n\n"
+                    + "Decode the JSON document s as decoder.decode(s) does, using the options\n"
+                    + "of the JSONDecoder decoder.");
+        }
+
+        @Override
+        public PyObject getModule() {
+            return module;
+        }
+
+        @Override
+        public PyObject __call__(PyObject s, PyObject decoder) {
+            if (!(s instanceof PyString)) {
+                throw Py.TypeError(String.format("first argument must be a string, not %.80s",
+                        s.getType().fastGetName()));
+            }
+            return new Decoder(scannerOf(decoder), (PyString) s).decode();
+        }
+    }
+
+    @Untraversable
+    static class LoadFunction extends PyBuiltinFunctionNarrow {
+        LoadFunction() {
+            super("load", 2, 2, "load(fp, decoder) -> object\n\n"
+                    + "Decode the JSON document read from the file-like object fp, as\n"
+                    + "decoder.decode(fp.read()) does, but reading it in blocks.");
+        }
+
+        @Override
+        public PyObject getModule() {
+            return module;
+        }
+
+        @Override
+        public PyObject __call__(PyObject fp, PyObject decoder) {
+            PyObject read = fp.__getattr__("read");
+            PyObject first;
+            try {
+                first = read.__call__(Py.newInteger(Decoder.CHUNK));
+            } catch (PyException pye) {
+                if (!pye.match(Py.TypeError)) {
+                    throw pye;
+                }
+                // A read() that takes no size: decode all it returns, as json.load does
+                PyObject doc = read.__call__();
+                if (!(doc instanceof PyString)) {
+                    throw Py.TypeError(String.format("read() should return a string, not %.80s",
+                            doc.getType().fastGetName()));
+                }
+                return new Decoder(scannerOf(decoder), (PyString) doc).decode();
+            }
+            return new Decoder(scannerOf(decoder), read, first).decode();
+        }
+    }
+
     @Untraversable
     static class ScanstringFunction extends PyBuiltinFunctionNarrow {
         ScanstringFunction() {
@@ -325,10 +394,28 @@ public class _json implements ClassDictInit {
     }
 
     static PyString encode_basestring_ascii(PyObject pystr) {
+        StringBuilder rval = new StringBuilder(pystr.__len__() + 2);
+        encode_basestring_ascii(rval, pystr);
+        return new PyString(rval.toString());
+    }
+
+    /**
+     * Append the ASCII-only JSON representation of a <code>str</code> or <code>unicode</code> to a
+     * builder, as <code>encode_basestring_ascii</code> returns it.
+     */
+    static void encode_basestring_ascii(StringBuilder rval, PyObject pystr) {
         if (pystr instanceof PyUnicode) {
-            return ascii_escape((PyUnicode) pystr);
+            /*
+             * Escape UTF-16 code units rather than code points: a surrogate pair comes out as the
+             * two escapes that _ascii_escape_char would make of the code point.
+             */
+            ascii_escape(rval, ((PyUnicode) pystr).getString());
         } else if (pystr instanceof PyString) {
-            return ascii_escape((PyString) pystr);
+            String s = ((PyString) pystr).getString();
+            if (!isAscii(s)) {
+                s = codecs.PyUnicode_DecodeUTF8(s, null);
+            }
+            ascii_escape(rval, s);
         } else {
             throw Py.TypeError(String.format(
                     "first argument must be a string, not %.80s",
@@ -336,41 +423,83 @@ public class _json implements ClassDictInit {
         }
     }
 
-    private static PyString ascii_escape(PyUnicode pystr) {
-        StringBuilder rval = new StringBuilder(pystr.__len__());
-        rval.append("\"");
-        for (Iterator<Integer> iter = pystr.newSubsequenceIterator(); iter.hasNext(); ) {
-            _write_char(rval, iter.next());
+    private static void ascii_escape(StringBuilder rval, String s) {
+        int len = s.length();
+        rval.append('"');
+        for (int i = 0, run = 0; i <= len; i++) {
+            int c = i < len ? s.charAt(i) : -1;
+            if (c < ' ' || c > '~' || c == '\\' || c == '"') {
+                // Copy the run of characters needing no escape, then escape this one
+                rval.append(s, run, i);
+                run = i + 1;
+                if (c >= 0) {
+                    _ascii_escape_char(rval, c);
+                }
+            }
         }
-        rval.append("\"");
-        return new PyString(rval.toString());
+        rval.append('"');
     }
 
-    private static PyString ascii_escape(PyString pystr) {
-        int len = pystr.__len__();
-        String s = pystr.getString();
-        StringBuilder rval = new StringBuilder(len);
-        rval.append("\"");
-        for (int i = 0; i < len; i++) {
-            int c = s.charAt(i);
-            if (c > 127) {
-                return ascii_escape(new PyUnicode(codecs.PyUnicode_DecodeUTF8(s, null)));
+    @Untraversable
+    static class EncodeBasestringFunction extends PyBuiltinFunctionNarrow {
+        EncodeBasestringFunction() {
+            super("encode_basestring", 1, 1, "encode_basestring");
+        }
+
+        @Override
+        public PyObject getModule() {
+            return module;
+        }
+
+        @Override
+        public PyObject __call__(PyObject pystr) {
+            StringBuilder rval = new StringBuilder(pystr.__len__() + 2);
+            if (encode_basestring(rval, pystr)) {
+                return new PyUnicode(rval.toString());
+            } else {
+                return new PyString(rval.toString());
             }
-            _write_char(rval, c);
         }
-        rval.append("\"");
-        return new PyString(rval.toString());
     }
 
-    private static void _write_char(StringBuilder builder, int c) {
-        /* Escape unicode code point c to ASCII escape sequences
-        in char *output. output must have at least 12 bytes unused to
-        accommodate an escaped surrogate pair "\ u XXXX \ u XXXX" */
-        if (c >= ' ' && c <= '~' && c != '\\' & c != '"') {
-            builder.append((char) c);
-        } else {
-            _ascii_escape_char(builder, c);
+    /**
+     * Append the JSON representation of a <code>str</code> or <code>unicode</code> to a builder,
+     * escaping only the characters JSON requires, as <code>json.encoder.encode_basestring</code>
+     * does. The result has the type of the argument.
+     *
+     * @return true if the argument was <code>unicode</code>
+     */
+    static boolean encode_basestring(StringBuilder rval, PyObject pystr) {
+        if (!(pystr instanceof PyString)) {
+            throw Py.TypeError(String.format(
+                    "first argument must be a string, not %.80s",
+                    pystr.getType().fastGetName()));
+        }
+        String s = ((PyString) pystr).getString();
+        int len = s.length();
+        rval.append('"');
+        for (int i = 0, run = 0; i <= len; i++) {
+            int c = i < len ? s.charAt(i) : -1;
+            if (c < ' ' || c == '\\' || c == '"') {
+                rval.append(s, run, i);
+                run = i + 1;
+                if (c >= 0) {
+                    _ascii_escape_char(rval, c);
+                }
+            }
+        }
+        rval.append('"');
+        return pystr instanceof PyUnicode;
+    }
+
+    /** Whether a <code>String</code> contains only characters below 128. */
+    static boolean isAscii(String s) {
+        for (int i = 0, len = s.length(); i < len; i++) {
+            if (s.charAt(i) > 127) {
+                return false;
+            }
         }
+        return true;
     }
 
     private static void _write_hexchar(StringBuilder builder, int c) {
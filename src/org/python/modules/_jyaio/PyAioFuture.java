@@ -0,0 +1,193 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._jyaio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyObject;
+import org.python.core.PyType;
+import org.python.core.Untraversable;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedType;
+
+/**
+ * The result of a read or write of an {@link PyAsyncFile}, to come, with the methods of a
+ * <code>concurrent.futures.Future</code>. The operation is started when the future is made, and
+ * cannot then be withdrawn, so the future is never cancelled. Callbacks added before it completes
+ * are called by the thread that completes it, one of the pool of {@link _jyaio}.
+ */
+@Untraversable
+@ExposedType(name = "_jyaio.Future", isBaseType = false)
+public class PyAioFuture extends PyObject {
+
+    public static final PyType TYPE = PyType.fromClass(PyAioFuture.class);
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile PyObject result;
+    private volatile PyException exception;
+
+    /**
+     * Python callables and Java <code>Runnable</code>s to call on completion, or
+     * <code>null</code> once completed.
+     */
+    private List<Object> callbacks = new ArrayList<Object>();
+
+    PyAioFuture() {
+        super(TYPE);
+    }
+
+    /** Complete the future with the result of the operation. */
+    void setResult(PyObject result) {
+        this.result = result;
+        complete();
+    }
+
+    /** Complete the future with the exception the operation raised. */
+    void setException(PyException exception) {
+        this.exception = exception;
+        complete();
+    }
+
+    private void complete() {
+        List<Object> toCall;
+        synchronized (this) {
+            toCall = callbacks;
+            callbacks = null;
+            done.countDown();
+        }
+        for (Object callback : toCall) {
+            call(callback);
+        }
+    }
+
+    private void call(Object callback) {
+        if (callback instanceof Runnable) {
+            ((Runnable) callback).run();
+            return;
+        }
+        PyObject fn = (PyObject) callback;
+        try {
+            fn.__call__(this);
+        } catch (Throwable t) {
+            // As concurrent.futures does, report it and go on to the next
+            Py.writeUnraisable(t, fn);
+        }
+    }
+
+    /**
+     * Call <code>callback</code> when the future completes, or now if it has. Return whether it
+     * was added rather than called.
+     */
+    boolean addCallback(Object callback) {
+        synchronized (this) {
+            if (callbacks != null) {
+                callbacks.add(callback);
+                return true;
+            }
+        }
+        call(callback);
+        return false;
+    }
+
+    /** Stop calling <code>callback</code> on completion (if it has not happened). */
+    synchronized void removeCallback(Object callback) {
+        if (callbacks != null) {
+            callbacks.remove(callback);
+        }
+    }
+
+    boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    boolean hasException() {
+        return exception != null;
+    }
+
+    /** Wait as the timeout (in seconds, or <code>None</code>) allows, until done. */
+    private void await(PyObject timeout) throws InterruptedException {
+        if (timeout == null || timeout == Py.None) {
+            done.await();
+        } else if (!done.await((long) (timeout.asDouble() * 1e9), TimeUnit.NANOSECONDS)) {
+            throw new PyException(_jyaio.TimeoutError);
+        }
+    }
+
+    @ExposedMethod(doc = "cancel() -> False\n\n"
+            + "Attempt to cancel the operation. It cannot be, once started, so this is False.")
+    final boolean Future_cancel() {
+        return false;
+    }
+
+    @ExposedMethod(doc = "cancelled() -> False\n\nWhether the operation was cancelled.")
+    final boolean Future_cancelled() {
+        return false;
+    }
+
+    @ExposedMethod(doc = "running() -> bool\n\nWhether the operation is in progress.")
+    final boolean Future_running() {
+        return !isDone();
+    }
+
+    @ExposedMethod(doc = "done() -> bool\n\nWhether the operation has completed.")
+    final boolean Future_done() {
+        return isDone();
+    }
+
+    @ExposedMethod(defaults = {"null"},
+            doc = "result([timeout]) -> the result of the operation\n\n"
+                    + "Wait for at most timeout seconds (indefinitely if None or omitted) for\n"
+                    + "the operation to complete, and return its result or raise its exception.\n"
+                    + "Raise TimeoutError if it does not complete in time.")
+    final PyObject Future_result(PyObject timeout) throws InterruptedException {
+        await(timeout);
+        if (exception != null) {
+            throw exception;
+        }
+        return result;
+    }
+
+    @ExposedMethod(defaults = {"null"},
+            doc = "exception([timeout]) -> the exception raised, or None\n\n"
+                    + "Wait as result() does, and return the exception the operation raised,\n"
+                    + "or None if it succeeded.")
+    final PyObject Future_exception(PyObject timeout) throws InterruptedException {
+        await(timeout);
+        PyException e = exception;
+        if (e == null) {
+            return Py.None;
+        }
+        e.normalize();
+        return e.value;
+    }
+
+    @ExposedMethod(doc = "add_done_callback(fn)\n\n"
+            + "Call fn with the future when the operation completes, on the thread that\n"
+            + "completes it, or now if it has.")
+    final void Future_add_done_callback(PyObject fn) {
+        addCallback(fn);
+    }
+
+    @ExposedMethod(names = {"__repr__", "__str__"})
+    final String Future_toString() {
+        String state;
+        if (!isDone()) {
+            state = "running";
+        } else if (exception != null) {
+            exception.normalize();
+            state = "finished raised " + exception.type.__findattr__("__name__");
+        } else {
+            state = "finished returned " + result.getType().fastGetName();
+        }
+        return String.format("<_jyaio.Future at %s state=%s>", Py.idstr(this), state);
+    }
+
+    @Override
+    public String toString() {
+        return Future_toString();
+    }
+}
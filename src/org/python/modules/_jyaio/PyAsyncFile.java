@@ -0,0 +1,385 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._jyaio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+import jnr.constants.platform.Errno;
+
+import org.python.core.BufferProtocol;
+import org.python.core.Py;
+import org.python.core.PyBUF;
+import org.python.core.PyBuffer;
+import org.python.core.PyException;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyType;
+import org.python.core.PyUnicode;
+import org.python.core.Untraversable;
+import org.python.core.util.RelativeFile;
+import org.python.expose.ExposedGet;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedType;
+import org.python.modules._io.OpenMode;
+
+/**
+ * A file open for reads and writes at given offsets, each of which returns a {@link PyAioFuture}
+ * at once, and is performed, and the future completed, by the pool of {@link _jyaio}. A read or
+ * write continues until it has transferred all it was asked to (or, reading, until the end of the
+ * file), so that its result is as from a single call. Buffers read into or written from are held
+ * (and cannot be resized) until the operation completes.
+ */
+@Untraversable
+@ExposedType(name = "_jyaio.AsyncFile", isBaseType = false)
+public class PyAsyncFile extends PyObject {
+
+    public static final PyType TYPE = PyType.fromClass(PyAsyncFile.class);
+
+    private final AsynchronousFileChannel channel;
+    private final PyObject name;
+    private final String mode;
+    private final boolean readable, writable;
+
+    PyAsyncFile(PyObject name, String mode) {
+        super(TYPE);
+        OpenMode openMode = new OpenMode(mode) {
+
+            {
+                // Writes are at given offsets, so appending has no meaning
+                invalid |= appending | universal | text;
+            }
+        };
+        openMode.checkValid();
+        this.name = name;
+        this.mode = mode;
+        readable = openMode.reading || openMode.updating;
+        writable = openMode.writing || openMode.updating;
+
+        Set<StandardOpenOption> options = EnumSet.noneOf(StandardOpenOption.class);
+        if (readable) {
+            options.add(StandardOpenOption.READ);
+        }
+        if (writable) {
+            options.add(StandardOpenOption.WRITE);
+        }
+        if (openMode.writing) {
+            options.add(StandardOpenOption.CREATE);
+            options.add(StandardOpenOption.TRUNCATE_EXISTING);
+        }
+        Path path = new RelativeFile(Py.fileSystemDecode(name)).toPath();
+        if (path.toFile().isDirectory()) {
+            // Which the channel would open for reading
+            throw Py.IOError(Errno.EISDIR, name);
+        }
+        try {
+            channel = AsynchronousFileChannel.open(path, options, _jyaio.executor());
+        } catch (NoSuchFileException e) {
+            throw Py.IOError(Errno.ENOENT, name);
+        } catch (AccessDeniedException e) {
+            throw Py.IOError(Errno.EACCES, name);
+        } catch (IOException e) {
+            throw Py.IOError(e);
+        } catch (SecurityException e) {
+            throw Py.IOError(Errno.EACCES, name);
+        }
+    }
+
+    private void checkClosed() {
+        if (!channel.isOpen()) {
+            throw Py.ValueError("I/O operation on closed file");
+        }
+    }
+
+    private void checkReadable() {
+        checkClosed();
+        if (!readable) {
+            throw Py.ValueError("File not open for reading");
+        }
+    }
+
+    private void checkWritable() {
+        checkClosed();
+        if (!writable) {
+            throw Py.ValueError("File not open for writing");
+        }
+    }
+
+    private static void checkOffset(long offset) {
+        if (offset < 0) {
+            throw Py.ValueError("negative offset");
+        }
+    }
+
+    /** The Python exception for one with which an operation failed. */
+    private static PyException error(Throwable t) {
+        if (t instanceof PyException) {
+            return (PyException) t;
+        } else if (t instanceof ClosedChannelException) {
+            // Including AsynchronousCloseException, when closed with the operation in flight
+            return Py.ValueError("I/O operation on closed file");
+        } else if (t instanceof IOException) {
+            return Py.IOError((IOException) t);
+        }
+        return Py.JavaError(t);
+    }
+
+    /**
+     * An operation in flight: a transfer to or from <code>buf</code>, from <code>offset</code> in
+     * the file, repeated until it is complete, which then completes the future.
+     */
+    private abstract class Operation implements CompletionHandler<Integer, Void> {
+
+        final PyAioFuture future = new PyAioFuture();
+        final ByteBuffer buf;
+        final long offset;
+        private final int start;
+
+        Operation(ByteBuffer buf, long offset) {
+            this.buf = buf;
+            this.offset = offset;
+            this.start = buf.position();
+        }
+
+        /** The number of bytes transferred so far. */
+        int count() {
+            return buf.position() - start;
+        }
+
+        /** Start the next transfer. */
+        abstract void next();
+
+        /** Complete the future, now that the transfer is. */
+        abstract void finish();
+
+        /** Release what the operation holds, whether it succeeded or not. */
+        void release() {}
+
+        PyAioFuture start() {
+            try {
+                next();
+            } catch (RuntimeException e) {
+                failed(e, null);
+            }
+            return future;
+        }
+
+        @Override
+        public void completed(Integer n, Void attachment) {
+            if (n >= 0 && buf.hasRemaining()) {
+                // Short of the end of the file: go on from where this ended
+                try {
+                    next();
+                } catch (Throwable t) {
+                    failed(t, null);
+                }
+                return;
+            }
+            release();
+            finish();
+        }
+
+        @Override
+        public void failed(Throwable exc, Void attachment) {
+            release();
+            future.setException(error(exc));
+        }
+    }
+
+    /** A read into a buffer of its own, the result of which is a <code>str</code>. */
+    private class Read extends Operation {
+
+        Read(int size, long offset) {
+            super(ByteBuffer.allocate(size), offset);
+        }
+
+        @Override
+        void next() {
+            channel.read(buf, offset + count(), null, this);
+        }
+
+        @Override
+        void finish() {
+            byte[] array = buf.array();
+            int n = buf.position();
+            byte[] bytes = n == array.length ? array : Arrays.copyOf(array, n);
+            future.setResult(PyString.fromBytes(bytes));
+        }
+    }
+
+    /**
+     * A read into, or write from, the buffer of an object, the result of which is the number of
+     * bytes transferred.
+     */
+    private class Transfer extends Operation {
+
+        private final PyBuffer view;
+        private final boolean write;
+
+        Transfer(PyBuffer view, long offset, boolean write) {
+            super(view.getNIOByteBuffer(), offset);
+            this.view = view;
+            this.write = write;
+        }
+
+        @Override
+        void next() {
+            if (write) {
+                channel.write(buf, offset + count(), null, this);
+            } else {
+                channel.read(buf, offset + count(), null, this);
+            }
+        }
+
+        @Override
+        void finish() {
+            future.setResult(Py.newInteger(count()));
+        }
+
+        @Override
+        void release() {
+            view.release();
+        }
+    }
+
+    @ExposedMethod(doc = "read(size, offset) -> Future\n\n"
+            + "Read size bytes from offset in the file (fewer at the end of the file). The\n"
+            + "result of the future is a str.")
+    final PyObject AsyncFile_read(int size, long offset) {
+        checkReadable();
+        checkOffset(offset);
+        if (size < 0) {
+            throw Py.ValueError("negative size");
+        }
+        return new Read(size, offset).start();
+    }
+
+    @ExposedMethod(doc = "readinto(buffer, offset) -> Future\n\n"
+            + "Read directly into a writable buffer (bytearray, memoryview, mmap, array)\n"
+            + "from offset in the file, until it is full or the end of the file. The result of\n"
+            + "the future is the number of bytes read.")
+    final PyObject AsyncFile_readinto(PyObject buffer, long offset) {
+        checkReadable();
+        checkOffset(offset);
+        return new Transfer(view(buffer, true), offset, false).start();
+    }
+
+    @ExposedMethod(doc = "write(data, offset) -> Future\n\n"
+            + "Write all of a str or buffer at offset in the file. The result of the future is\n"
+            + "the number of bytes written.")
+    final PyObject AsyncFile_write(PyObject data, long offset) {
+        checkWritable();
+        checkOffset(offset);
+        return new Transfer(view(data, false), offset, true).start();
+    }
+
+    private static PyBuffer view(PyObject obj, boolean writable) {
+        if (obj instanceof BufferProtocol && !(obj instanceof PyUnicode)) {
+            try {
+                return ((BufferProtocol) obj).getBuffer(writable ? PyBUF.WRITABLE : PyBUF.SIMPLE);
+            } catch (PyException pye) {
+                if (!pye.match(Py.BufferError)) {
+                    throw pye;
+                }
+            } catch (ClassCastException e) {
+                // Does not implement BufferProtocol (in reality)
+            }
+        }
+        String fmt = "argument 1 must be %s buffer, not %.200s";
+        throw Py.TypeError(String.format(fmt, writable ? "read-write" : "string or read-only",
+                obj.getType().fastGetName()));
+    }
+
+    @ExposedMethod(doc = "size() -> the size of the file in bytes")
+    final long AsyncFile_size() {
+        checkClosed();
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw error(e);
+        }
+    }
+
+    @ExposedMethod(doc = "truncate(size)\n\n"
+            + "Truncate the file to at most size bytes. Writes beyond the end extend it.")
+    final void AsyncFile_truncate(long size) {
+        checkWritable();
+        if (size < 0) {
+            throw Py.ValueError("negative size");
+        }
+        try {
+            channel.truncate(size);
+        } catch (IOException e) {
+            throw error(e);
+        }
+    }
+
+    @ExposedMethod(defaults = {"true"},
+            doc = "fsync([metadata])\n\n"
+                    + "Force the writes completed so far to the storage device, with the metadata\n"
+                    + "of the file unless metadata is False (as fdatasync).")
+    final void AsyncFile_fsync(boolean metadata) {
+        checkClosed();
+        try {
+            channel.force(metadata);
+        } catch (IOException e) {
+            throw error(e);
+        }
+    }
+
+    @ExposedMethod(doc = "close()\n\n"
+            + "Close the file. Reads and writes still in flight fail with ValueError.")
+    final void AsyncFile_close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw error(e);
+        }
+    }
+
+    @ExposedMethod
+    final PyObject AsyncFile___enter__() {
+        checkClosed();
+        return this;
+    }
+
+    @ExposedMethod
+    final void AsyncFile___exit__(PyObject type, PyObject value, PyObject traceback) {
+        AsyncFile_close();
+    }
+
+    @ExposedGet(name = "closed")
+    public boolean getClosed() {
+        return !channel.isOpen();
+    }
+
+    @ExposedGet(name = "name")
+    public PyObject getName() {
+        return name;
+    }
+
+    @ExposedGet(name = "mode")
+    public String getMode() {
+        return mode;
+    }
+
+    @ExposedMethod(names = {"__repr__", "__str__"})
+    final String AsyncFile_toString() {
+        return String.format("<%s _jyaio.AsyncFile %s, mode '%s' at %s>",
+                channel.isOpen() ? "open" : "closed", name.__repr__(), mode, Py.idstr(this));
+    }
+
+    @Override
+    public String toString() {
+        return AsyncFile_toString();
+    }
+}
@@ -0,0 +1,251 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._jyaio;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.python.core.ArgParser;
+import org.python.core.ClassDictInit;
+import org.python.core.Options;
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyIterator;
+import org.python.core.PyObject;
+import org.python.core.PySet;
+import org.python.core.PyString;
+import org.python.core.PyStringMap;
+import org.python.core.PyTuple;
+
+/**
+ * The <code>_jyaio</code> module: files read and written at given offsets through
+ * <code>AsynchronousFileChannel</code>, each operation returning at once a future in the manner of
+ * <code>concurrent.futures</code>, with <code>wait</code> and <code>as_completed</code> to match.
+ * The operations of all files are performed, and their futures completed, by one pool of
+ * {@link Options#aioThreads} daemon threads, so that any number may be in flight without a thread
+ * for each.
+ */
+public class _jyaio implements ClassDictInit {
+
+    public static final PyString __doc__ = new PyString(
+            "Asynchronous file I/O.\n\n"
+            + "open(path[, mode]) returns a file whose read(size, offset), readinto(buffer,\n"
+            + "offset) and write(data, offset) each return a Future at once, completed by\n"
+            + "a pool of threads (python.aio.threads in the registry) shared by all files.\n"
+            + "The futures have the methods of those of concurrent.futures, and wait() and\n"
+            + "as_completed() work as the functions of that module do.");
+
+    public static final String FIRST_COMPLETED = "FIRST_COMPLETED";
+    public static final String FIRST_EXCEPTION = "FIRST_EXCEPTION";
+    public static final String ALL_COMPLETED = "ALL_COMPLETED";
+
+    public static final PyObject Error = Py.makeClass("Error", Py.Exception, exceptionNamespace());
+    public static final PyObject CancelledError =
+            Py.makeClass("CancelledError", Error, exceptionNamespace());
+    public static final PyObject TimeoutError =
+            Py.makeClass("TimeoutError", Error, exceptionNamespace());
+
+    /** The pool performing the I/O, started when first needed. */
+    private static ExecutorService executor;
+
+    public static void classDictInit(PyObject dict) {
+        dict.__setitem__("AsyncFile", PyAsyncFile.TYPE);
+        dict.__setitem__("Future", PyAioFuture.TYPE);
+        dict.__setitem__("classDictInit", null);
+    }
+
+    private static PyObject exceptionNamespace() {
+        PyObject dict = new PyStringMap();
+        dict.__setitem__("__module__", new PyString("_jyaio"));
+        return dict;
+    }
+
+    static synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Math.max(1, Options.aioThreads),
+                    new DaemonThreadFactory());
+        }
+        return executor;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "jython-aio-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    public static PyString __doc__open = new PyString(
+            "open(path[, mode]) -> AsyncFile\n\n"
+            + "Open a file for reads and writes at given offsets. The mode is 'r' (the\n"
+            + "default), 'w' or either with '+', and may include 'b'. There is no appending.");
+
+    public static PyObject open(PyObject path) {
+        return open(path, "r");
+    }
+
+    public static PyObject open(PyObject path, String mode) {
+        return new PyAsyncFile(path, mode);
+    }
+
+    /** The distinct futures of an iterable of them. */
+    private static Set<PyAioFuture> futures(PyObject fs) {
+        Set<PyAioFuture> futures = new LinkedHashSet<PyAioFuture>();
+        for (PyObject f : fs.asIterable()) {
+            if (!(f instanceof PyAioFuture)) {
+                throw Py.TypeError(String.format("expected a _jyaio.Future, not %.200s",
+                        f.getType().fastGetName()));
+            }
+            futures.add((PyAioFuture) f);
+        }
+        return futures;
+    }
+
+    /** The deadline, by <code>System.nanoTime()</code>, or <code>Long.MAX_VALUE</code> if none. */
+    private static long deadline(PyObject timeout) {
+        if (timeout == Py.None) {
+            return Long.MAX_VALUE;
+        }
+        return System.nanoTime() + (long) (timeout.asDouble() * 1e9);
+    }
+
+    /**
+     * The queue of futures (of those given) as they complete, fed by a callback on each, which
+     * {@link #unwatch(Set, Runnable[])} removes.
+     */
+    private static LinkedBlockingQueue<PyAioFuture> watch(Set<PyAioFuture> futures,
+            Runnable[] callbacks) {
+        final LinkedBlockingQueue<PyAioFuture> completed = new LinkedBlockingQueue<PyAioFuture>();
+        int i = 0;
+        for (final PyAioFuture f : futures) {
+            Runnable callback = new Runnable() {
+
+                @Override
+                public void run() {
+                    completed.add(f);
+                }
+            };
+            callbacks[i++] = callback;
+            f.addCallback(callback);
+        }
+        return completed;
+    }
+
+    private static void unwatch(Set<PyAioFuture> futures, Runnable[] callbacks) {
+        int i = 0;
+        for (PyAioFuture f : futures) {
+            f.removeCallback(callbacks[i++]);
+        }
+    }
+
+    public static PyString __doc__wait = new PyString(
+            "wait(fs[, timeout[, return_when]]) -> (done, not_done)\n\n"
+            + "Wait for at most timeout seconds (indefinitely if None or omitted) for the\n"
+            + "futures in fs to complete, as return_when says: FIRST_COMPLETED,\n"
+            + "FIRST_EXCEPTION or ALL_COMPLETED (the default). Return the sets of those that\n"
+            + "are done and not done.");
+
+    public static PyObject wait(PyObject[] args, String[] kwds) throws InterruptedException {
+        ArgParser ap = new ArgParser("wait", args, kwds, "fs", "timeout", "return_when");
+        Set<PyAioFuture> futures = futures(ap.getPyObject(0));
+        long deadline = deadline(ap.getPyObject(1, Py.None));
+        String returnWhen = ap.getString(2, ALL_COMPLETED);
+        if (!returnWhen.equals(FIRST_COMPLETED) && !returnWhen.equals(FIRST_EXCEPTION)
+                && !returnWhen.equals(ALL_COMPLETED)) {
+            throw Py.ValueError("invalid return_when: " + returnWhen);
+        }
+
+        Runnable[] callbacks = new Runnable[futures.size()];
+        LinkedBlockingQueue<PyAioFuture> completed = watch(futures, callbacks);
+        try {
+            for (int count = 0; count < futures.size(); count++) {
+                if (count > 0 && returnWhen.equals(FIRST_COMPLETED)) {
+                    break;
+                }
+                PyAioFuture f;
+                if (deadline == Long.MAX_VALUE) {
+                    f = completed.take();
+                } else {
+                    f = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (f == null) {
+                        break;
+                    }
+                }
+                if (f.hasException() && returnWhen.equals(FIRST_EXCEPTION)) {
+                    break;
+                }
+            }
+        } finally {
+            unwatch(futures, callbacks);
+        }
+
+        PySet done = new PySet(), notDone = new PySet();
+        for (PyAioFuture f : futures) {
+            (f.isDone() ? done : notDone).add(f);
+        }
+        return new PyTuple(done, notDone);
+    }
+
+    public static PyString __doc__as_completed = new PyString(
+            "as_completed(fs[, timeout]) -> iterator\n\n"
+            + "Return an iterator over the futures in fs, yielding each as it completes.\n"
+            + "Raise TimeoutError from next() if timeout seconds pass from the call before\n"
+            + "all have.");
+
+    public static PyObject as_completed(PyObject[] args, String[] kwds) {
+        ArgParser ap = new ArgParser("as_completed", args, kwds, "fs", "timeout");
+        return new AsCompleted(futures(ap.getPyObject(0)), deadline(ap.getPyObject(1, Py.None)));
+    }
+
+    /** The iterator of <code>as_completed</code>. */
+    private static class AsCompleted extends PyIterator {
+
+        private final Set<PyAioFuture> futures;
+        private final Runnable[] callbacks;
+        private final LinkedBlockingQueue<PyAioFuture> completed;
+        private final long deadline;
+        private int remaining;
+
+        AsCompleted(Set<PyAioFuture> futures, long deadline) {
+            this.futures = futures;
+            this.deadline = deadline;
+            callbacks = new Runnable[futures.size()];
+            completed = watch(futures, callbacks);
+            remaining = futures.size();
+        }
+
+        @Override
+        public PyObject __iternext__() {
+            if (remaining == 0) {
+                return null;
+            }
+            PyAioFuture f;
+            try {
+                if (deadline == Long.MAX_VALUE) {
+                    f = completed.take();
+                } else {
+                    f = completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                throw Py.JavaError(e);
+            }
+            if (f == null) {
+                unwatch(futures, callbacks);
+                throw new PyException(TimeoutError,
+                        String.format("%d (of %d) futures unfinished", remaining, futures.size()));
+            }
+            remaining--;
+            return f;
+        }
+    }
+}
@@ -77,7 +77,11 @@ public class _marshal implements ClassDictInit {
         }
 
         public void dump(PyObject obj) {
-            write_object(obj, 0);
+            try {
+                write_object(obj, 0);
+            } finally {
+                file.flush();
+            }
         }
 
         private void write_byte(char c) {
@@ -307,6 +311,9 @@ public class _marshal implements ClassDictInit {
                 // convert from our PyIOFile abstraction to what marshal in CPython returns
                 // (although it's really just looking for no bombing)
                 throw Py.EOFError("EOF read where object expected");
+            } finally {
+                // Leave the file just after the data we used
+                file.flush();
             }
         }
 
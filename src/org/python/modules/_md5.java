@@ -0,0 +1,29 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules;
+
+import org.python.core.ClassDictInit;
+import org.python.core.Py;
+import org.python.core.PyObject;
+
+/**
+ * The Python _md5 module, which in CPython is the built-in implementation hashlib falls back on.
+ * It makes the same objects as {@link _hashlib}.
+ */
+public class _md5 implements ClassDictInit {
+
+    public static final int digest_size = 16;
+
+    public static void classDictInit(PyObject dict) {
+        dict.__setitem__("__name__", Py.newString("_md5"));
+        dict.__setitem__("md5", dict.__finditem__("new"));
+        dict.__setitem__("classDictInit", null);
+    }
+
+    public static PyObject new$() {
+        return _hashlib.new$("md5", null);
+    }
+
+    public static PyObject new$(PyObject string) {
+        return _hashlib.new$("md5", string);
+    }
+}
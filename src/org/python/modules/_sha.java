@@ -0,0 +1,32 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules;
+
+import org.python.core.ClassDictInit;
+import org.python.core.Py;
+import org.python.core.PyObject;
+
+/**
+ * The Python _sha module, which in CPython is the built-in implementation hashlib falls back on.
+ * It makes the same objects as {@link _hashlib}.
+ */
+public class _sha implements ClassDictInit {
+
+    public static final int blocksize = 1;
+
+    public static final int digest_size = 20;
+
+    public static final int digestsize = 20;
+
+    public static void classDictInit(PyObject dict) {
+        dict.__setitem__("__name__", Py.newString("_sha"));
+        dict.__setitem__("classDictInit", null);
+    }
+
+    public static PyObject new$() {
+        return _hashlib.new$("sha1", null);
+    }
+
+    public static PyObject new$(PyObject string) {
+        return _hashlib.new$("sha1", string);
+    }
+}
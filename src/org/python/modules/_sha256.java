@@ -0,0 +1,34 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules;
+
+import org.python.core.ClassDictInit;
+import org.python.core.Py;
+import org.python.core.PyObject;
+
+/**
+ * The Python _sha256 module, which in CPython is the built-in implementation hashlib falls back
+ * on. It makes the same objects as {@link _hashlib}.
+ */
+public class _sha256 implements ClassDictInit {
+
+    public static void classDictInit(PyObject dict) {
+        dict.__setitem__("__name__", Py.newString("_sha256"));
+        dict.__setitem__("classDictInit", null);
+    }
+
+    public static PyObject sha256() {
+        return _hashlib.new$("sha256", null);
+    }
+
+    public static PyObject sha256(PyObject string) {
+        return _hashlib.new$("sha256", string);
+    }
+
+    public static PyObject sha224() {
+        return _hashlib.new$("sha224", null);
+    }
+
+    public static PyObject sha224(PyObject string) {
+        return _hashlib.new$("sha224", string);
+    }
+}
@@ -0,0 +1,34 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules;
+
+import org.python.core.ClassDictInit;
+import org.python.core.Py;
+import org.python.core.PyObject;
+
+/**
+ * The Python _sha512 module, which in CPython is the built-in implementation hashlib falls back
+ * on. It makes the same objects as {@link _hashlib}.
+ */
+public class _sha512 implements ClassDictInit {
+
+    public static void classDictInit(PyObject dict) {
+        dict.__setitem__("__name__", Py.newString("_sha512"));
+        dict.__setitem__("classDictInit", null);
+    }
+
+    public static PyObject sha512() {
+        return _hashlib.new$("sha512", null);
+    }
+
+    public static PyObject sha512(PyObject string) {
+        return _hashlib.new$("sha512", string);
+    }
+
+    public static PyObject sha384() {
+        return _hashlib.new$("sha384", null);
+    }
+
+    public static PyObject sha384(PyObject string) {
+        return _hashlib.new$("sha384", string);
+    }
+}
@@ -0,0 +1,42 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._socket;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * The last handler in the pipeline of a socket's channel, which queues each message received (a
+ * <code>ByteBuf</code>, or for a datagram socket a <code>DatagramPacket</code>) on the socket for
+ * <code>recv</code>, and tells the socket's selectors of any change. The socket takes ownership of
+ * the messages, so they are not passed further along the pipeline.
+ */
+public class InboundHandler extends ChannelInboundHandlerAdapter {
+
+    private final PySocket sock;
+
+    public InboundHandler(PySocket sock) {
+        this.sock = sock;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+        sock.notifySelectors(null, false);
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        sock.received(msg);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        sock.notifySelectors(null, false);
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        sock.notifySelectors(cause, false);
+    }
+}
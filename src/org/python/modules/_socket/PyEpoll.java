@@ -0,0 +1,299 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._socket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jnr.constants.platform.Errno;
+
+import org.python.core.ArgParser;
+import org.python.core.Py;
+import org.python.core.PyList;
+import org.python.core.PyNewWrapper;
+import org.python.core.PyObject;
+import org.python.core.PyTuple;
+import org.python.core.PyType;
+import org.python.core.Untraversable;
+import org.python.expose.ExposedGet;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedNew;
+import org.python.expose.ExposedType;
+
+/**
+ * The epoll object of the <code>select</code> module. Like {@link PyPoll} it tests only the
+ * sockets that have told it they may have changed, but a socket is queued at most once however
+ * often it is notified, so that a busy socket costs one test per <code>poll()</code>, and an
+ * idle one nothing. A waiting <code>poll()</code> is woken only when a socket is first queued.
+ * <p>
+ * Sockets are level-triggered, unless registered with <code>EPOLLET</code>, when a socket found
+ * ready is not tested again until it is next notified, or with <code>EPOLLONESHOT</code>, when it
+ * is not tested again until it is modified. <code>EPOLLERR</code> and <code>EPOLLHUP</code> are
+ * always reported, as by the system call.
+ */
+@Untraversable
+@ExposedType(name = "select.epoll", isBaseType = false)
+public class PyEpoll extends PyObject implements SocketSelector {
+
+    public static final PyType TYPE = PyType.fromClass(PyEpoll.class);
+
+    static final int EPOLLIN = 0x1;
+    static final int EPOLLPRI = 0x2;
+    static final int EPOLLOUT = 0x4;
+    static final int EPOLLERR = 0x8;
+    static final int EPOLLHUP = 0x10;
+    static final int EPOLLONESHOT = 1 << 30;
+    static final int EPOLLET = 1 << 31;
+
+    /** A socket registered, with the object that registered it (its fd). */
+    private static class Registration {
+
+        final PyObject fd;
+        final PyObject sock;
+        volatile int mask;
+
+        /** Whether on the ready queue, so that it is queued at most once. */
+        final AtomicBoolean queued = new AtomicBoolean();
+
+        /** Whether the socket has reported an error, or hung up, since last tested. */
+        volatile boolean error, hangup;
+
+        /** Whether reported once with <code>EPOLLONESHOT</code>, and not modified since. */
+        volatile boolean disabled;
+
+        Registration(PyObject fd, PyObject sock, int mask) {
+            this.fd = fd;
+            this.sock = sock;
+            this.mask = mask;
+        }
+    }
+
+    /** Registrations by the object registered, and by its socket. */
+    private final Map<PyObject, Registration> registered =
+            new ConcurrentHashMap<PyObject, Registration>();
+    private final Map<PyObject, Registration> bySocket =
+            new ConcurrentHashMap<PyObject, Registration>();
+
+    /** The registrations to test on the next <code>poll()</code>. */
+    private final LinkedBlockingQueue<Registration> ready =
+            new LinkedBlockingQueue<Registration>();
+
+    private volatile boolean closed;
+
+    public PyEpoll() {
+        super(TYPE);
+    }
+
+    @ExposedNew
+    static PyObject epoll___new__(PyNewWrapper new_, boolean init, PyType subtype,
+            PyObject[] args, String[] keywords) {
+        // sizehint and flags are accepted for compatibility, and have no meaning here
+        ArgParser ap = new ArgParser("epoll", args, keywords, new String[] {"sizehint", "flags"},
+                0);
+        ap.getInt(0, -1);
+        ap.getInt(1, 0);
+        return new PyEpoll();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw Py.ValueError("I/O operation on closed epoll fd");
+        }
+    }
+
+    private void queue(Registration r) {
+        if (r.queued.compareAndSet(false, true)) {
+            ready.add(r);
+        }
+    }
+
+    @Override
+    public void notifySelector(PyObject sock, Object exception, boolean hangup) {
+        Registration r = bySocket.get(sock);
+        if (r != null) {
+            if (exception != null) {
+                r.error = true;
+            }
+            if (hangup) {
+                r.hangup = true;
+            }
+            queue(r);
+        }
+    }
+
+    /** An event mask, which may be given as a long (for <code>EPOLLET</code>). */
+    private static int mask(PyObject eventmask) {
+        return (int) eventmask.asLong();
+    }
+
+    @ExposedMethod(defaults = {"null"},
+            doc = "register(fd[, eventmask])\n\n"
+                    + "Register a socket (an object with a fileno() method) with the epoll object,\n"
+                    + "for the events in eventmask (by default EPOLLIN|EPOLLPRI|EPOLLOUT).")
+    final void epoll_register(PyObject fd, PyObject eventmask) {
+        checkOpen();
+        PyObject sock = PyPoll.socket(fd);
+        int mask = eventmask == null ? EPOLLIN | EPOLLPRI | EPOLLOUT : mask(eventmask);
+        Registration r = new Registration(fd, sock, mask);
+        if (registered.putIfAbsent(fd, r) != null) {
+            throw Py.IOError(Errno.EEXIST);
+        }
+        bySocket.put(sock, r);
+        Select.register(sock, this);
+        // Ensure the socket is tested by the next poll
+        queue(r);
+    }
+
+    @ExposedMethod(doc = "modify(fd, eventmask)\n\n"
+            + "Change the events for which a registered socket is polled.")
+    final void epoll_modify(PyObject fd, PyObject eventmask) {
+        checkOpen();
+        PyPoll.socket(fd);
+        Registration r = registered.get(fd);
+        if (r == null) {
+            throw Py.IOError(Errno.ENOENT);
+        }
+        r.mask = mask(eventmask);
+        r.disabled = false;
+        // Rearms a socket registered with EPOLLET or EPOLLONESHOT
+        queue(r);
+    }
+
+    @ExposedMethod(doc = "unregister(fd)\n\nRemove a socket from the epoll object.")
+    final void epoll_unregister(PyObject fd) {
+        checkOpen();
+        PyPoll.socket(fd);
+        Registration r = registered.remove(fd);
+        if (r == null) {
+            throw Py.IOError(Errno.ENOENT);
+        }
+        bySocket.remove(r.sock, r);
+        Select.unregister(r.sock, this);
+    }
+
+    @ExposedMethod(doc = "close()\n\nClose the epoll object, unregistering all sockets.")
+    final void epoll_close() {
+        closed = true;
+        for (Registration r : registered.values()) {
+            Select.unregister(r.sock, this);
+        }
+        registered.clear();
+        bySocket.clear();
+        ready.clear();
+    }
+
+    @ExposedGet(name = "closed")
+    public boolean getClosed() {
+        return closed;
+    }
+
+    /** Whether a socket has been closed by its peer (or locally). */
+    private static boolean hungUp(PyObject sock) {
+        if (sock instanceof PySocket) {
+            return ((PySocket) sock).getChannelClosed();
+        }
+        return false;
+    }
+
+    /** The events of those registered for the socket that have happened. */
+    private static int events(Registration r) {
+        int mask = r.mask;
+        PyObject sock = r.sock;
+        int events = 0;
+        if ((mask & EPOLLIN) != 0 && Select.readable(sock)) {
+            events |= EPOLLIN;
+        }
+        if ((mask & EPOLLOUT) != 0 && Select.writable(sock)) {
+            events |= EPOLLOUT;
+        }
+        if (r.error) {
+            r.error = false;
+            events |= EPOLLERR;
+        }
+        if (r.hangup || hungUp(sock)) {
+            events |= EPOLLHUP;
+        }
+        return events;
+    }
+
+    /**
+     * Test the registrations queued, starting with the one given, and return a list of at most
+     * <code>maxevents</code> (fd, events), or all if negative.
+     */
+    private PyList handle(Registration first, int maxevents) {
+        PyList result = new PyList();
+        List<Registration> again = new ArrayList<Registration>();
+        for (Registration r = first; r != null; r = ready.poll()) {
+            // A notification from now on queues it again
+            r.queued.set(false);
+            if (r.disabled || registered.get(r.fd) != r) {
+                // Disabled by EPOLLONESHOT, or unregistered since
+                continue;
+            }
+            int events = events(r);
+            if (events == 0) {
+                continue;
+            }
+            result.append(new PyTuple(r.fd, Py.newInteger(events)));
+            if ((r.mask & EPOLLONESHOT) != 0) {
+                r.disabled = true;
+            } else if ((r.mask & EPOLLET) == 0) {
+                // Level-triggered: test it again next time
+                again.add(r);
+            }
+            if (result.size() == maxevents) {
+                break;
+            }
+        }
+        for (Registration r : again) {
+            queue(r);
+        }
+        return result;
+    }
+
+    @ExposedMethod(doc = "poll([timeout[, maxevents]]) -> list of (fd, events)\n\n"
+            + "Wait for at most timeout seconds (indefinitely if negative, None or omitted)\n"
+            + "for events on the registered sockets, and return at most maxevents of those\n"
+            + "that have happened (all if maxevents is -1 or omitted).")
+    final PyObject epoll_poll(PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("poll", args, keywords, new String[] {"timeout", "maxevents"},
+                0);
+        PyObject timeout = ap.getPyObject(0, Py.None);
+        int maxevents = ap.getInt(1, -1);
+        checkOpen();
+        if (maxevents == 0 || maxevents < -1) {
+            throw Py.ValueError(
+                    String.format("maxevents must be greater than 0, got %d", maxevents));
+        }
+        double seconds = timeout == Py.None ? -1 : timeout.asDouble();
+        try {
+            if (seconds < 0) {
+                while (true) {
+                    PyList result = handle(ready.take(), maxevents);
+                    if (result.size() > 0) {
+                        return result;
+                    }
+                }
+            } else if (seconds == 0) {
+                return handle(ready.poll(), maxevents);
+            }
+            long nanos = (long) (seconds * 1e9);
+            long deadline = System.nanoTime() + nanos;
+            while (nanos > 0) {
+                PyList result = handle(ready.poll(nanos, TimeUnit.NANOSECONDS), maxevents);
+                if (result.size() > 0) {
+                    return result;
+                }
+                // Notified of a socket not ready: wait for the rest of the time
+                nanos = deadline - System.nanoTime();
+            }
+            return new PyList();
+        } catch (InterruptedException e) {
+            throw _jysocket.mapException(e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._socket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.MapMaker;
+
+import jnr.constants.platform.Errno;
+
+import org.python.core.Py;
+import org.python.core.PyList;
+import org.python.core.PyNewWrapper;
+import org.python.core.PyObject;
+import org.python.core.PyTuple;
+import org.python.core.PyType;
+import org.python.core.Untraversable;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedNew;
+import org.python.expose.ExposedType;
+
+/**
+ * The poll object of the <code>select</code> module. Each registered socket tells the poll object
+ * when it may have changed, by queueing a notification, and <code>poll()</code> tests the sockets
+ * so notified against the events registered for them. Since the test is of the socket's state,
+ * and a socket found ready is notified again for the next call, this reports levels, as CPython
+ * does, and not edges.
+ */
+@Untraversable
+@ExposedType(name = "select.poll", isBaseType = false)
+public class PyPoll extends PyObject implements SocketSelector {
+
+    public static final PyType TYPE = PyType.fromClass(PyPoll.class);
+
+    static final int POLLIN = 1;
+    static final int POLLOUT = 2;
+    static final int POLLPRI = 4;
+    static final int POLLERR = 8;
+    static final int POLLHUP = 16;
+    static final int POLLNVAL = 32;
+
+    /** A socket that may have changed, with what registered it (its fd) and what happened. */
+    private static class Notification {
+
+        final PyObject sock;
+        final PyObject fd;
+        final Object exception;
+        final boolean hangup;
+
+        Notification(PyObject sock, PyObject fd, Object exception, boolean hangup) {
+            this.sock = sock;
+            this.fd = fd;
+            this.exception = exception;
+            this.hangup = hangup;
+        }
+    }
+
+    private final LinkedBlockingQueue<Notification> queue =
+            new LinkedBlockingQueue<Notification>();
+
+    /** The event mask of each object registered. */
+    private final Map<PyObject, Integer> registered = new ConcurrentHashMap<PyObject, Integer>();
+
+    /** The object registered for each socket. */
+    private final Map<PyObject, PyObject> socksToFd = new MapMaker().weakKeys().makeMap();
+
+    public PyPoll() {
+        super(TYPE);
+    }
+
+    @ExposedNew
+    static PyObject poll___new__(PyNewWrapper new_, boolean init, PyType subtype,
+            PyObject[] args, String[] keywords) {
+        return new PyPoll();
+    }
+
+    @Override
+    public void notifySelector(PyObject sock, Object exception, boolean hangup) {
+        PyObject fd = socksToFd.get(sock);
+        queue.add(new Notification(sock, fd, exception, hangup));
+    }
+
+    /** The socket of an object registered (as returned by its <code>fileno()</code>). */
+    static PyObject socket(PyObject fd) {
+        if (fd.__findattr__("fileno") == null) {
+            throw Py.TypeError("argument must have a fileno() method");
+        }
+        return fd.invoke("fileno");
+    }
+
+    @ExposedMethod(defaults = {"null"},
+            doc = "register(fd[, eventmask])\n\n"
+                    + "Register a socket (an object with a fileno() method) with the poll object,\n"
+                    + "for the events in eventmask (by default POLLIN|POLLPRI|POLLOUT).")
+    final void poll_register(PyObject fd, PyObject eventmask) {
+        PyObject sock = socket(fd);
+        int mask = eventmask == null ? POLLIN | POLLPRI | POLLOUT : eventmask.asInt();
+        registered.put(fd, mask);
+        socksToFd.put(sock, fd);
+        Select.register(sock, this);
+        // Ensure the socket is tested by the next poll
+        notifySelector(sock, null, false);
+    }
+
+    @ExposedMethod(doc = "modify(fd, eventmask)\n\n"
+            + "Change the events for which a registered socket is polled.")
+    final void poll_modify(PyObject fd, int eventmask) {
+        socket(fd);
+        if (!registered.containsKey(fd)) {
+            throw _jysocket.socketError(Errno.ENOENT, "No such file or directory");
+        }
+        registered.put(fd, eventmask);
+    }
+
+    @ExposedMethod(doc = "unregister(fd)\n\nRemove a socket from the poll object.")
+    final void poll_unregister(PyObject fd) {
+        PyObject sock = socket(fd);
+        if (registered.remove(fd) == null) {
+            throw Py.KeyError(fd);
+        }
+        Select.unregister(sock, this);
+    }
+
+    /** The events of those registered for the socket that have happened. */
+    private int events(Notification notification) {
+        if (notification.fd == null) {
+            return 0;
+        }
+        // If unregistered since, there are none
+        Integer registeredMask = registered.get(notification.fd);
+        int mask = registeredMask == null ? 0 : registeredMask;
+        PyObject sock = notification.sock;
+        int events = 0;
+        if ((mask & POLLIN) != 0 && Select.readable(sock)) {
+            events |= POLLIN;
+        }
+        if ((mask & POLLOUT) != 0 && Select.writable(sock)) {
+            events |= POLLOUT;
+        }
+        if ((mask & POLLERR) != 0 && notification.exception != null) {
+            events |= POLLERR;
+        }
+        if ((mask & POLLHUP) != 0 && (notification.hangup
+                || !sock.__getattr__("channel").__nonzero__())) {
+            events |= POLLHUP;
+        }
+        // Not open: there is no channel (as the constant in _socket says)
+        if ((mask & POLLNVAL) != 0 && !sock.__getattr__("channel").__nonzero__()) {
+            events |= POLLNVAL;
+        }
+        return events;
+    }
+
+    /** Test the sockets notified, at most once each, returning a list of (fd, events). */
+    private PyList handle(Notification first) {
+        PyList result = new PyList();
+        if (first == null) {
+            return result;
+        }
+        List<Notification> notifications = new ArrayList<Notification>();
+        notifications.add(first);
+        queue.drainTo(notifications);
+        Set<PyObject> ready =
+                Collections.newSetFromMap(new IdentityHashMap<PyObject, Boolean>());
+        for (Notification notification : notifications) {
+            if (!ready.contains(notification.sock)) {
+                int events = events(notification);
+                if (events != 0) {
+                    result.append(new PyTuple(notification.fd, Py.newInteger(events)));
+                    ready.add(notification.sock);
+                }
+            }
+        }
+        // Test these again next time, to pick up a change of level
+        for (PyObject sock : ready) {
+            notifySelector(sock, null, false);
+        }
+        return result;
+    }
+
+    @ExposedMethod(defaults = {"null"},
+            doc = "poll([timeout]) -> list of (fd, event) pairs\n\n"
+                    + "Wait for at most timeout milliseconds (indefinitely if None, negative or\n"
+                    + "omitted) for events on the registered sockets, and return those that\n"
+                    + "have happened.")
+    final PyObject poll_poll(PyObject timeout) {
+        double ms = -1;
+        if (timeout != null && timeout != Py.None) {
+            if (!timeout.isNumberType()) {
+                throw Py.TypeError(String.format("timeout must be a number or None, got %s",
+                        timeout.__repr__()));
+            }
+            ms = timeout.asDouble();
+        }
+        try {
+            if (ms < 0) {
+                return handle(queue.take());
+            } else if (ms == 0) {
+                return handle(queue.poll());
+            }
+            long nanos = (long) (ms * 1e6);
+            long deadline = System.nanoTime() + nanos;
+            while (nanos > 0) {
+                PyList result = handle(queue.poll(nanos, TimeUnit.NANOSECONDS));
+                if (result.size() > 0) {
+                    return result;
+                }
+                // Notified of a socket not ready: wait for the rest of the time
+                nanos = deadline - System.nanoTime();
+            }
+            return new PyList();
+        } catch (InterruptedException e) {
+            throw _jysocket.mapException(e);
+        }
+    }
+}
@@ -0,0 +1,799 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._socket;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GenericFutureListener;
+
+import jnr.constants.platform.Errno;
+
+import org.python.core.ArgParser;
+import org.python.core.BufferProtocol;
+import org.python.core.Py;
+import org.python.core.PyBUF;
+import org.python.core.PyBuffer;
+import org.python.core.PyException;
+import org.python.core.PyInteger;
+import org.python.core.PyList;
+import org.python.core.PyNewWrapper;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyTuple;
+import org.python.core.PyType;
+import org.python.core.Untraversable;
+import org.python.core.io.BufferSequence;
+import org.python.expose.ExposedGet;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedNew;
+import org.python.expose.ExposedSet;
+import org.python.expose.ExposedType;
+
+/**
+ * The base of <code>_socket._realsocket</code>, holding the state of a socket needed on every send
+ * and receive, and the methods that use it. Creating, connecting, accepting and closing sockets,
+ * wrapping them for SSL, and socket options, remain in Python.
+ * <p>
+ * The socket is a Netty channel. The {@link InboundHandler} at the end of its pipeline queues
+ * each message received, as the <code>ByteBuf</code> (or <code>DatagramPacket</code>) Netty read
+ * it into, and <code>recv</code> copies from there into a <code>str</code>, or
+ * <code>recv_into</code> directly into the buffer of the object given. Objects waiting in
+ * <code>select</code> or <code>poll</code> register with the socket, and are told when it may
+ * have become ready.
+ */
+@Untraversable
+@ExposedType(name = "_jysocket.socket")
+public class PySocket extends PyObject {
+
+    public static final PyType TYPE = PyType.fromClass(PySocket.class);
+
+    /** Values of <code>socket_type</code>, as in <code>_socket</code>. */
+    static final int UNKNOWN_SOCKET = 0, CLIENT_SOCKET = 1, SERVER_SOCKET = 2,
+            DATAGRAM_SOCKET = 3;
+
+    /** Run on a channel's event loop to wait for what was submitted before it. */
+    private static final Runnable NOTHING = new Runnable() {
+
+        @Override
+        public void run() {}
+    };
+
+    /** Queued after the last message when the channel closes. */
+    private static final Object PEER_CLOSED = new Object();
+
+    private volatile Channel channel;
+
+    /** The timeout in seconds, or negative if operations block indefinitely. */
+    private volatile double timeout = -1;
+
+    private volatile int socketType = UNKNOWN_SOCKET;
+    private volatile boolean connected;
+    private volatile boolean peerClosed;
+    private volatile boolean channelClosed;
+    private volatile boolean canWrite;
+
+    /** Whether the socket needs no <code>_make_active()</code> before use (see ChildSocket). */
+    private volatile boolean activated = true;
+
+    /** The error number of the last error, for <code>SO_ERROR</code>. */
+    private volatile int lastError;
+
+    /** Connections accepted by a server socket, and not yet returned by <code>accept()</code>. */
+    private volatile BlockingQueue<?> childQueue;
+
+    /** Those waiting for this socket to become ready. */
+    private final CopyOnWriteArrayList<PyObject> selectors =
+            new CopyOnWriteArrayList<PyObject>();
+
+    /** Messages received, the first of which may have been partly read. Guarded by lock. */
+    private final ArrayDeque<Object> incoming = new ArrayDeque<Object>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition arrived = lock.newCondition();
+
+    /** Tells the selectors when a future completes. */
+    private final GenericFutureListener<Future<Object>> notifier =
+            new GenericFutureListener<Future<Object>>() {
+
+                @Override
+                public void operationComplete(Future<Object> future) {
+                    notifySelectors(null, false);
+                }
+            };
+
+    public PySocket() {
+        super(TYPE);
+    }
+
+    public PySocket(PyType subType) {
+        super(subType);
+    }
+
+    @ExposedNew
+    static PyObject socket___new__(PyNewWrapper new_, boolean init, PyType subtype,
+            PyObject[] args, String[] keywords) {
+        // _realsocket.__init__ sets the socket up
+        return subtype == TYPE ? new PySocket() : new PySocketDerived(subtype);
+    }
+
+    // Attributes set up by _socket
+
+    @ExposedGet(name = "channel")
+    public PyObject getChannel() {
+        Channel ch = channel;
+        return ch == null ? Py.None : Py.java2py(ch);
+    }
+
+    @ExposedSet(name = "channel")
+    public void setChannel(PyObject value) {
+        channel = value == Py.None ? null : (Channel) value.__tojava__(Channel.class);
+    }
+
+    @ExposedGet(name = "timeout")
+    public PyObject getTimeout() {
+        double t = timeout;
+        return t < 0 ? Py.None : Py.newFloat(t);
+    }
+
+    @ExposedSet(name = "timeout")
+    public void setTimeout(PyObject value) {
+        timeout = value == Py.None ? -1 : value.asDouble();
+    }
+
+    @ExposedGet(name = "socket_type")
+    public int getSocketType() {
+        return socketType;
+    }
+
+    @ExposedSet(name = "socket_type")
+    public void setSocketType(int value) {
+        socketType = value;
+    }
+
+    @ExposedGet(name = "connected")
+    public boolean getConnected() {
+        return connected;
+    }
+
+    @ExposedSet(name = "connected")
+    public void setConnected(boolean value) {
+        connected = value;
+    }
+
+    @ExposedGet(name = "peer_closed")
+    public boolean getPeerClosed() {
+        return peerClosed;
+    }
+
+    @ExposedSet(name = "peer_closed")
+    public void setPeerClosed(boolean value) {
+        peerClosed = value;
+    }
+
+    @ExposedGet(name = "channel_closed")
+    public boolean getChannelClosed() {
+        return channelClosed;
+    }
+
+    @ExposedSet(name = "channel_closed")
+    public void setChannelClosed(boolean value) {
+        channelClosed = value;
+    }
+
+    @ExposedGet(name = "_can_write")
+    public boolean getCanWrite() {
+        return canWrite;
+    }
+
+    @ExposedSet(name = "_can_write")
+    public void setCanWrite(boolean value) {
+        canWrite = value;
+    }
+
+    @ExposedGet(name = "_activated")
+    public boolean getActivated() {
+        return activated;
+    }
+
+    @ExposedSet(name = "_activated")
+    public void setActivated(boolean value) {
+        activated = value;
+    }
+
+    @ExposedGet(name = "_last_error")
+    public int getLastError() {
+        return lastError;
+    }
+
+    @ExposedSet(name = "_last_error")
+    public void setLastError(int value) {
+        lastError = value;
+    }
+
+    @ExposedGet(name = "child_queue")
+    public PyObject getChildQueue() {
+        BlockingQueue<?> q = childQueue;
+        return q == null ? Py.None : Py.java2py(q);
+    }
+
+    @ExposedSet(name = "child_queue")
+    public void setChildQueue(PyObject value) {
+        childQueue = value == Py.None ? null
+                : (BlockingQueue<?>) value.__tojava__(BlockingQueue.class);
+    }
+
+    // Errors
+
+    /** Return a <code>_socket.error</code>, remembering the error number for SO_ERROR. */
+    private PyException error(Errno errno, String message) {
+        lastError = errno.intValue();
+        return _jysocket.socketError(errno, message);
+    }
+
+    /** Return the Python exception for a Java one, remembering the error number for SO_ERROR. */
+    private PyException mapException(Throwable t) {
+        PyException pye = _jysocket.mapException(t);
+        PyObject errno = pye.value.__findattr__("errno");
+        if (errno instanceof PyInteger) {
+            lastError = errno.asInt();
+        }
+        return pye;
+    }
+
+    /** Activate a child socket that has not been yet (by the Python <code>_make_active</code>). */
+    private void makeActive() {
+        if (!activated) {
+            invoke("_make_active");
+        }
+    }
+
+    private Channel verifyChannel() {
+        Channel ch = channel;
+        if (ch == null) {
+            throw error(Errno.ENOTCONN, "Socket is not connected");
+        }
+        return ch;
+    }
+
+    @ExposedMethod
+    final void socket__verify_channel() {
+        verifyChannel();
+    }
+
+    // Receiving
+
+    /** Queue a message received (called by the {@link InboundHandler}). */
+    void received(Object msg) {
+        lock.lock();
+        try {
+            incoming.add(msg);
+            arrived.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        notifySelectors(null, msg == PEER_CLOSED);
+    }
+
+    /**
+     * Wait as the timeout allows for a message, and return it (without removing it from the
+     * queue), or <code>null</code> at the end of the stream. Called with the lock held.
+     */
+    private Object awaitMessage() {
+        Object msg = incoming.peekFirst();
+        try {
+            if (msg == null && !peerClosed) {
+                double t = timeout;
+                if (t == 0) {
+                    throw error(Errno.EAGAIN, "Resource temporarily unavailable");
+                } else if (t < 0) {
+                    while ((msg = incoming.peekFirst()) == null) {
+                        arrived.await();
+                    }
+                } else {
+                    long nanos = (long) (t * 1e9);
+                    while ((msg = incoming.peekFirst()) == null) {
+                        if (nanos <= 0) {
+                            lastError = Errno.ETIMEDOUT.intValue();
+                            throw _jysocket.timeoutError();
+                        }
+                        nanos = arrived.awaitNanos(nanos);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            throw mapException(e);
+        }
+        if (msg == PEER_CLOSED) {
+            incoming.pollFirst();
+            peerClosed = true;
+            return null;
+        }
+        return msg;
+    }
+
+    private static ByteBuf content(Object msg) {
+        return msg instanceof DatagramPacket ? ((DatagramPacket) msg).content() : (ByteBuf) msg;
+    }
+
+    /** Remove the message at the head of the queue if it has been read. */
+    private void consumed(Object msg) {
+        if (!content(msg).isReadable()) {
+            incoming.pollFirst();
+            ReferenceCountUtil.release(msg);
+        }
+    }
+
+    /** The sender of a message, or of the end of the stream if <code>msg</code> is null. */
+    private SocketAddress sender(Object msg) {
+        if (msg instanceof DatagramPacket) {
+            return ((DatagramPacket) msg).sender();
+        } else if (socketType == DATAGRAM_SOCKET) {
+            return null;
+        }
+        return channel.remoteAddress();
+    }
+
+    /**
+     * Receive up to <code>size</code> bytes, waiting as the timeout allows, and return them (empty
+     * at the end of the stream). If <code>from</code> is not null, set <code>from[0]</code> to the
+     * sender.
+     */
+    private PyString receive(int size, SocketAddress[] from) {
+        if (size < 0) {
+            throw Py.ValueError("negative buffersize in recv");
+        }
+        makeActive();
+        verifyChannel();
+        lock.lock();
+        try {
+            Object msg = awaitMessage();
+            if (from != null) {
+                from[0] = sender(msg);
+            }
+            if (msg == null) {
+                return Py.EmptyString;
+            }
+            ByteBuf content = content(msg);
+            byte[] data = new byte[Math.min(content.readableBytes(), size)];
+            content.readBytes(data);
+            consumed(msg);
+            return PyString.fromBytes(data);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receive up to <code>nbytes</code> bytes (0 meaning as many as it will hold) directly into
+     * the buffer of the object given, waiting as the timeout allows, and return the number
+     * received (0 at the end of the stream). If <code>from</code> is not null, set
+     * <code>from[0]</code> to the sender.
+     */
+    private int receiveInto(PyObject buffer, int nbytes, SocketAddress[] from) {
+        if (nbytes < 0) {
+            throw Py.ValueError("negative buffersize in recv_into");
+        }
+        PyBuffer view;
+        try {
+            view = ((BufferProtocol) buffer).getBuffer(PyBUF.WRITABLE);
+        } catch (ClassCastException e) {
+            // Not a buffer: assign a slice, as for an object implementing just that
+            PyString data = receive(nbytes == 0 ? buffer.__len__() : nbytes, from);
+            buffer.__setslice__(Py.Zero, Py.newInteger(data.__len__()), data);
+            return data.__len__();
+        }
+        try {
+            int length = view.getLen();
+            if (nbytes == 0) {
+                nbytes = length;
+            } else if (nbytes > length) {
+                throw Py.ValueError("buffer too small for requested bytes");
+            }
+            makeActive();
+            verifyChannel();
+            lock.lock();
+            try {
+                Object msg = awaitMessage();
+                if (from != null) {
+                    from[0] = sender(msg);
+                }
+                if (msg == null) {
+                    return 0;
+                }
+                ByteBuf content = content(msg);
+                int n = Math.min(content.readableBytes(), nbytes);
+                ByteBuffer dst = view.getNIOByteBuffer();
+                dst.limit(dst.position() + n);
+                content.readBytes(dst);
+                consumed(msg);
+                return n;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            view.release();
+        }
+    }
+
+    /**
+     * Receive into the buffers in turn, as into one as long as all of them, waiting as the timeout
+     * allows, and return the number of bytes received (0 at the end of the stream). If
+     * <code>from</code> is not null, set <code>from[0]</code> to the sender.
+     */
+    private long receiveInto(ByteBuffer[] dsts, SocketAddress[] from) {
+        makeActive();
+        verifyChannel();
+        lock.lock();
+        try {
+            Object msg = awaitMessage();
+            if (from != null) {
+                from[0] = sender(msg);
+            }
+            if (msg == null) {
+                return 0;
+            }
+            ByteBuf content = content(msg);
+            long count = 0;
+            for (ByteBuffer dst : dsts) {
+                int n = Math.min(content.readableBytes(), dst.remaining());
+                dst.limit(dst.position() + n);
+                content.readBytes(dst);
+                count += n;
+            }
+            consumed(msg);
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static PyObject addressTuple(SocketAddress address) {
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress a = (InetSocketAddress) address;
+            return new PyTuple(Py.newString(a.getHostString()), Py.newInteger(a.getPort()));
+        }
+        return Py.None;
+    }
+
+    @ExposedMethod(defaults = {"0"})
+    final PyString socket_recv(int bufsize, int flags) {
+        return receive(bufsize, null);
+    }
+
+    @ExposedMethod(defaults = {"0"})
+    final PyObject socket_recvfrom(int bufsize, int flags) {
+        SocketAddress[] from = new SocketAddress[1];
+        PyString data = receive(bufsize, from);
+        return new PyTuple(data, addressTuple(from[0]));
+    }
+
+    @ExposedMethod(defaults = {"0", "0"})
+    final int socket_recv_into(PyObject buffer, int nbytes, int flags) {
+        return receiveInto(buffer, nbytes, null);
+    }
+
+    @ExposedMethod(defaults = {"0", "0"})
+    final PyObject socket_recvfrom_into(PyObject buffer, int nbytes, int flags) {
+        SocketAddress[] from = new SocketAddress[1];
+        int n = receiveInto(buffer, nbytes, from);
+        return new PyTuple(Py.newInteger(n), addressTuple(from[0]));
+    }
+
+    @ExposedMethod(defaults = {"0", "0"},
+            doc = "recvmsg_into(buffers[, ancbufsize[, flags]]) -> (nbytes, ancdata, msg_flags,"
+                    + " address)\n\n"
+                    + "Receive data directly into a sequence of writable buffers, filling each in\n"
+                    + "turn, and return the number of bytes received, with the address of the\n"
+                    + "sender of a datagram (None for a stream). Ancillary data are not supported,\n"
+                    + "so ancdata is always empty.")
+    final PyObject socket_recvmsg_into(PyObject buffers, int ancbufsize, int flags) {
+        if (ancbufsize < 0) {
+            throw Py.ValueError("negative buffer size in recvmsg_into");
+        }
+        SocketAddress[] from = new SocketAddress[1];
+        long n;
+        try (BufferSequence seq = new BufferSequence("recvmsg_into", buffers, true)) {
+            n = receiveInto(seq.buffers(), from);
+        }
+        PyObject address = socketType == DATAGRAM_SOCKET ? addressTuple(from[0]) : Py.None;
+        return new PyTuple(Py.newInteger(n), new PyList(), Py.Zero, address);
+    }
+
+    /**
+     * The number of bytes received and not yet read, which, since SSL is handled in the pipeline,
+     * is plain text.
+     */
+    @ExposedMethod
+    final int socket__pending() {
+        int pending = 0;
+        lock.lock();
+        try {
+            for (Object msg : incoming) {
+                if (msg != PEER_CLOSED) {
+                    pending += content(msg).readableBytes();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return pending;
+    }
+
+    /** Release the messages received and not read, once the channel is closed. */
+    @ExposedMethod
+    final void socket__release_incoming() {
+        lock.lock();
+        try {
+            for (Object msg; (msg = incoming.pollFirst()) != null;) {
+                if (msg != PEER_CLOSED) {
+                    ReferenceCountUtil.release(msg);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Watch for the channel closing, after which <code>recv</code> returns what was received and
+     * then the end of the stream.
+     */
+    @ExposedMethod
+    final void socket__watch_close() {
+        verifyChannel().closeFuture().addListener(new ChannelFutureListener() {
+
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                channelClosed = true;
+                received(PEER_CLOSED);
+            }
+        });
+    }
+
+    // Sending
+
+    /** A buffer on the bytes of data, which may be any object <code>str()</code> accepts. */
+    private static PyBuffer bytes(PyObject data) {
+        if (data instanceof BufferProtocol) {
+            try {
+                return ((BufferProtocol) data).getBuffer(PyBUF.SIMPLE);
+            } catch (ClassCastException e) {
+                // unicode: fall through to encode it with str()
+            }
+        }
+        return data.__str__().getBuffer(PyBUF.SIMPLE);
+    }
+
+    /**
+     * Send data. A blocking socket (one with a timeout or none) sends all of it, waiting as the
+     * timeout allows. A non-blocking one sends as much as the channel will take without becoming
+     * unwritable, unless <code>all</code>, and does not wait.
+     */
+    private int send(PyObject data, boolean all) {
+        try (PyBuffer view = bytes(data)) {
+            return send(new ByteBuffer[] {view.getNIOByteBuffer()}, all);
+        }
+    }
+
+    /**
+     * Send the bytes of the buffers, in order, as one message, as
+     * {@link #send(PyObject, boolean)} sends its data.
+     */
+    private int send(ByteBuffer[] srcs, boolean all) {
+        makeActive();
+        Channel ch = verifyChannel();
+        long total = 0;
+        for (ByteBuffer src : srcs) {
+            total += src.remaining();
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw error(Errno.EMSGSIZE, "Message too long");
+        }
+        int length = (int) total;
+        if (socketType == DATAGRAM_SOCKET) {
+            ByteBuf buf = copy(ch, srcs, length);
+            write(ch, new DatagramPacket(buf, (InetSocketAddress) ch.remoteAddress()));
+            return length;
+        } else if (!canWrite) {
+            throw error(Errno.ENOTCONN, "Socket not connected");
+        }
+        if (timeout == 0 && !all) {
+            long writable = ch.bytesBeforeUnwritable();
+            if (writable == 0 && length > 0) {
+                throw error(Errno.EAGAIN, "Resource temporarily unavailable");
+            } else if (writable < length) {
+                length = (int) writable;
+            }
+        }
+        write(ch, copy(ch, srcs, length));
+        return length;
+    }
+
+    /**
+     * Write a message to the channel, waiting as the timeout allows for it to be sent. A
+     * non-blocking socket waits only for the event loop to offer the message to the transport,
+     * much as a system <code>send</code> copies data to the kernel, which does not depend on the
+     * peer.
+     */
+    private void write(Channel ch, Object msg) {
+        ChannelFuture future = ch.writeAndFlush(msg);
+        handleFuture(future);
+        EventLoop loop = ch.eventLoop();
+        if (timeout == 0 && !future.isDone() && !loop.inEventLoop()) {
+            try {
+                loop.submit(NOTHING).await();
+            } catch (RejectedExecutionException e) {
+                // The loop is shutting down, which fails the write
+            } catch (InterruptedException e) {
+                throw mapException(e);
+            }
+        }
+    }
+
+    /** Copy the first bytes of the buffers, in order, into one allocated by the channel. */
+    private static ByteBuf copy(Channel ch, ByteBuffer[] srcs, int length) {
+        ByteBuf buf = ch.alloc().ioBuffer(length);
+        for (ByteBuffer src : srcs) {
+            int n = Math.min(src.remaining(), length - buf.writerIndex());
+            src.limit(src.position() + n);
+            buf.writeBytes(src);
+        }
+        return buf;
+    }
+
+    @ExposedMethod(defaults = {"0"})
+    final int socket_send(PyObject data, int flags) {
+        return send(data, false);
+    }
+
+    @ExposedMethod(defaults = {"0"})
+    final void socket_sendall(PyObject data, int flags) {
+        send(data, true);
+    }
+
+    @ExposedMethod(defaults = {"null", "0"},
+            doc = "sendmsg(buffers[, ancdata[, flags]]) -> count\n\n"
+                    + "Send the data of a sequence of buffers as one message, gathered directly\n"
+                    + "from each, and return the number of bytes sent. Ancillary data are not\n"
+                    + "supported, so ancdata must be empty.")
+    final int socket_sendmsg(PyObject buffers, PyObject ancdata, int flags) {
+        if (ancdata != null && ancdata.__nonzero__()) {
+            throw error(Errno.EOPNOTSUPP, "Ancillary data are not supported");
+        }
+        try (BufferSequence seq = new BufferSequence("sendmsg", buffers, false)) {
+            return send(seq.buffers(), false);
+        }
+    }
+
+    /**
+     * Wait for an operation on the channel to complete, as the timeout allows, raising the
+     * Python equivalent if it failed. The selectors are told when it completes.
+     */
+    @SuppressWarnings("unchecked")
+    private void handleFuture(Future<?> future) {
+        ((Future<Object>) future).addListener(notifier);
+        double t = timeout;
+        try {
+            if (t < 0) {
+                future.sync();
+            } else if (t > 0) {
+                if (!future.await((long) (t * 1e9), TimeUnit.NANOSECONDS)) {
+                    lastError = Errno.ETIMEDOUT.intValue();
+                    throw _jysocket.timeoutError();
+                } else if (!future.isSuccess()) {
+                    throw mapException(future.cause());
+                }
+            }
+        } catch (PyException pye) {
+            throw pye;
+        } catch (Throwable e) {
+            // Including the checked exceptions Netty throws without declaring them
+            throw mapException(e);
+        }
+    }
+
+    @ExposedMethod
+    final PyObject socket__handle_channel_future(PyObject future, PyObject reason) {
+        handleFuture((Future<?>) future.__tojava__(Future.class));
+        return future;
+    }
+
+    // Readiness
+
+    /** Whether <code>recv</code> (or for a server socket, <code>accept</code>) would not block. */
+    boolean readable() {
+        switch (socketType) {
+            case CLIENT_SOCKET:
+            case DATAGRAM_SOCKET:
+                lock.lock();
+                try {
+                    return !incoming.isEmpty() || peerClosed;
+                } finally {
+                    lock.unlock();
+                }
+            case SERVER_SOCKET:
+                BlockingQueue<?> q = childQueue;
+                return q != null && q.peek() != null;
+            default:
+                return false;
+        }
+    }
+
+    /** Whether <code>send</code> would not block. */
+    boolean writable() {
+        Channel ch = channel;
+        return channelClosed || (ch != null && ch.isActive() && ch.isWritable());
+    }
+
+    @ExposedMethod
+    final boolean socket__readable() {
+        return readable();
+    }
+
+    @ExposedMethod(names = {"_writable", "can_write"})
+    final boolean socket__writable() {
+        return writable();
+    }
+
+    void registerSelector(PyObject selector) {
+        // Waiting on a socket means any wrapping (for SSL) has been decided
+        makeActive();
+        selectors.addIfAbsent(selector);
+    }
+
+    boolean unregisterSelector(PyObject selector) {
+        return selectors.remove(selector);
+    }
+
+    /** Tell the selectors this socket may have become ready, or failed, or closed. */
+    void notifySelectors(Object exception, boolean hangup) {
+        for (PyObject selector : selectors) {
+            if (selector instanceof SocketSelector) {
+                ((SocketSelector) selector).notifySelector(this, exception, hangup);
+            } else {
+                selector.invoke("notify", new PyObject[] {this,
+                        exception == null ? Py.None : Py.java2py(exception),
+                        Py.newBoolean(hangup)}, new String[] {"exception", "hangup"});
+            }
+        }
+    }
+
+    @ExposedMethod
+    final void socket__register_selector(PyObject selector) {
+        registerSelector(selector);
+    }
+
+    @ExposedMethod
+    final boolean socket__unregister_selector(PyObject selector) {
+        return unregisterSelector(selector);
+    }
+
+    @ExposedMethod
+    final void socket__notify_selectors(PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("_notify_selectors", args, keywords,
+                new String[] {"exception", "hangup"}, 0);
+        PyObject exception = ap.getPyObject(0, Py.None);
+        notifySelectors(exception == Py.None ? null : exception.__tojava__(Object.class),
+                ap.getPyObject(1, Py.False).__nonzero__());
+    }
+
+    @ExposedMethod
+    final PyObject socket_fileno() {
+        return this;
+    }
+}
@@ -0,0 +1,171 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._socket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jnr.constants.platform.Errno;
+
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyList;
+import org.python.core.PyObject;
+import org.python.core.PyTuple;
+
+/**
+ * One call of <code>select</code>, which registers with each socket as a {@link SocketSelector},
+ * and waits until one is ready or the timeout expires. Since the sockets say only that they may
+ * have changed, readiness is tested each time (so that select reports levels, not edges).
+ * <p>
+ * A socket is anything with a <code>fileno()</code> that returns a {@link PySocket}, or an object
+ * (such as an <code>SSLSocket</code>) with the methods <code>_register_selector</code>,
+ * <code>_unregister_selector</code>, <code>_readable</code> and <code>_writable</code>.
+ */
+class Select extends PyObject implements SocketSelector {
+
+    /** The objects selected on, in order and once each, and the socket of each. */
+    private final Sockets rlist, wlist, xlist;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private static class Sockets {
+
+        final List<PyObject> objects = new ArrayList<PyObject>();
+        final List<PyObject> sockets = new ArrayList<PyObject>();
+
+        Sockets(PyObject list) {
+            Set<PyObject> seen =
+                    Collections.newSetFromMap(new IdentityHashMap<PyObject, Boolean>());
+            for (PyObject obj : list.asIterable()) {
+                if (seen.add(obj)) {
+                    objects.add(obj);
+                    sockets.add(socket(obj));
+                }
+            }
+        }
+    }
+
+    Select(PyObject rlist, PyObject wlist, PyObject xlist) {
+        this.rlist = new Sockets(rlist);
+        this.wlist = new Sockets(wlist);
+        this.xlist = new Sockets(xlist);
+    }
+
+    /** The socket of an object, or <code>EBADF</code> if it has none. */
+    static PyObject socket(PyObject obj) {
+        try {
+            PyObject sock = obj.invoke("fileno");
+            if (!(sock instanceof PySocket)) {
+                sock.__getattr__("_register_selector");
+            }
+            return sock;
+        } catch (PyException pye) {
+            if (pye.match(Py.AttributeError)) {
+                throw _jysocket.socketError(Errno.EBADF, "Bad file descriptor: " + obj);
+            }
+            throw pye;
+        }
+    }
+
+    static boolean readable(PyObject sock) {
+        if (sock instanceof PySocket) {
+            return ((PySocket) sock).readable();
+        }
+        return sock.invoke("_readable").__nonzero__();
+    }
+
+    static boolean writable(PyObject sock) {
+        if (sock instanceof PySocket) {
+            return ((PySocket) sock).writable();
+        }
+        return sock.invoke("_writable").__nonzero__();
+    }
+
+    static void register(PyObject sock, PyObject selector) {
+        if (sock instanceof PySocket) {
+            ((PySocket) sock).registerSelector(selector);
+        } else {
+            sock.invoke("_register_selector", selector);
+        }
+    }
+
+    static void unregister(PyObject sock, PyObject selector) {
+        if (sock instanceof PySocket) {
+            ((PySocket) sock).unregisterSelector(selector);
+        } else {
+            sock.invoke("_unregister_selector", selector);
+        }
+    }
+
+    @Override
+    public void notifySelector(PyObject sock, Object exception, boolean hangup) {
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the sockets, for at most timeout seconds (indefinitely if <code>None</code>), and
+     * return the lists of those ready.
+     */
+    PyObject select(PyObject timeout) {
+        long nanos = timeout == Py.None ? -1 : (long) (timeout.asDouble() * 1e9);
+        long deadline = System.nanoTime() + nanos;
+        List<PyObject> registered = new ArrayList<PyObject>();
+        try {
+            for (Sockets sockets : new Sockets[] {rlist, wlist, xlist}) {
+                for (PyObject sock : sockets.sockets) {
+                    register(sock, this);
+                    registered.add(sock);
+                }
+            }
+            lock.lock();
+            try {
+                while (true) {
+                    PyList readable = ready(rlist, true), writable = ready(wlist, false);
+                    // Exceptional conditions are not supported
+                    if (readable.size() > 0 || writable.size() > 0) {
+                        return new PyTuple(readable, writable, new PyList());
+                    } else if (nanos < 0) {
+                        changed.await();
+                    } else {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            return new PyTuple(new PyList(), new PyList(), new PyList());
+                        }
+                        changed.awaitNanos(remaining);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            throw _jysocket.mapException(e);
+        } finally {
+            for (PyObject sock : registered) {
+                unregister(sock, this);
+            }
+        }
+    }
+
+    /** The objects whose sockets are readable (or writable). */
+    private static PyList ready(Sockets sockets, boolean read) {
+        PyList ready = new PyList();
+        for (int i = 0; i < sockets.objects.size(); i++) {
+            PyObject sock = sockets.sockets.get(i);
+            if (read ? readable(sock) : writable(sock)) {
+                ready.append(sockets.objects.get(i));
+            }
+        }
+        return ready;
+    }
+}
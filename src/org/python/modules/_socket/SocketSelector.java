@@ -0,0 +1,21 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._socket;
+
+import org.python.core.PyObject;
+
+/**
+ * Something waiting for sockets to become ready, as <code>select</code> or <code>poll</code> is,
+ * which a {@link PySocket} tells when it may have. Selectors written in Python are told instead by
+ * a call of their <code>notify(sock, exception=None, hangup=False)</code>.
+ */
+interface SocketSelector {
+
+    /**
+     * The socket may have become ready, or failed, or its peer hung up.
+     *
+     * @param sock that changed
+     * @param exception raised by the channel, or <code>null</code>
+     * @param hangup whether the channel has closed
+     */
+    void notifySelector(PyObject sock, Object exception, boolean hangup);
+}
@@ -0,0 +1,84 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._socket;
+
+import jnr.constants.Constant;
+import jnr.constants.platform.Errno;
+
+import org.python.core.ClassDictInit;
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyTuple;
+import org.python.core.PyType;
+import org.python.core.imp;
+
+/**
+ * The Java part of the <code>_socket</code> module, which is written in Python over Netty. This
+ * module provides what is used on every send and receive, or while waiting for sockets to become
+ * ready: the base of the socket object ({@link PySocket}), the Netty handler that queues data
+ * received ({@link InboundHandler}), <code>select</code>, <code>poll</code> and
+ * <code>epoll</code>. Errors are the exceptions defined by <code>_socket</code>.
+ */
+public class _jysocket implements ClassDictInit {
+
+    public static final PyString __doc__ = new PyString(
+            "Java support for the _socket module: the base of its socket objects, and\n"
+            + "select, poll and epoll.");
+
+    public static void classDictInit(PyObject dict) {
+        dict.__setitem__("socket", PySocket.TYPE);
+        dict.__setitem__("poll", PyPoll.TYPE);
+        dict.__setitem__("epoll", PyEpoll.TYPE);
+        dict.__setitem__("InboundHandler", PyType.fromClass(InboundHandler.class));
+        dict.__setitem__("classDictInit", null);
+    }
+
+    public static PyString __doc__select = new PyString(
+            "select(rlist, wlist, xlist[, timeout]) -> (rlist, wlist, xlist)\n\n"
+            + "Wait until one or more of the sockets in the lists is ready, or the timeout (in\n"
+            + "seconds, None to wait indefinitely) expires, and return those that are ready.\n"
+            + "Readiness for exceptional conditions (xlist) is not supported.");
+
+    public static PyObject select(PyObject rlist, PyObject wlist, PyObject xlist) {
+        return select(rlist, wlist, xlist, Py.None);
+    }
+
+    public static PyObject select(PyObject rlist, PyObject wlist, PyObject xlist,
+            PyObject timeout) {
+        return new Select(rlist, wlist, xlist).select(timeout);
+    }
+
+    /** The attribute of the Python module <code>_socket</code> with the given name. */
+    private static PyObject socketModuleAttr(String name) {
+        PyObject module = Py.getSystemState().modules.__finditem__("_socket");
+        if (module == null) {
+            module = imp.load("_socket");
+        }
+        return module.__getattr__(name);
+    }
+
+    /** Return a <code>_socket.error</code> for the given error number. */
+    static PyException socketError(Constant errno, String message) {
+        return new PyException(socketModuleAttr("error"),
+                new PyTuple(Py.newInteger(errno.intValue()), Py.newString(message)));
+    }
+
+    /** Return the <code>_socket.timeout</code> raised when a socket operation times out. */
+    static PyException timeoutError() {
+        return new PyException(socketModuleAttr("timeout"),
+                new PyTuple(Py.newInteger(Errno.ETIMEDOUT.intValue()), Py.newString("timed out")));
+    }
+
+    /**
+     * Return the Python exception for a Java exception raised by Netty (or the JDK), as mapped by
+     * <code>_socket._map_exception</code>.
+     */
+    static PyException mapException(Throwable t) {
+        if (t instanceof PyException) {
+            return (PyException) t;
+        }
+        PyObject exc = socketModuleAttr("_map_exception").__call__(Py.java2py(t));
+        return new PyException(exc.getType(), exc);
+    }
+}
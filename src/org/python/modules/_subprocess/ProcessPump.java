@@ -0,0 +1,345 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._subprocess;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyString;
+import org.python.core.io.RawIOBase;
+
+/**
+ * Copies the output of child processes on a single thread, shared by all of them, in place of a
+ * thread for each stream. <code>subprocess</code> uses it to collect the output for
+ * <code>communicate()</code> and to redirect output to a file.
+ * <p>
+ * The streams of a <code>java.lang.Process</code> cannot be selected on, so the pump reads from
+ * each only what is available, and when none has anything, sleeps for a time that grows (to at
+ * most {@link #MAX_IDLE}) while they stay idle, or while a thread waits for a transfer, for no
+ * more than {@link #JOIN_WAKE}. The pipes of a {@link SpawnedProcess} are read without blocking,
+ * and at end of file are known to be so.
+ */
+public final class ProcessPump implements Runnable {
+
+    /** The least and most time to sleep while all the streams are idle. */
+    private static final long MIN_IDLE = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_IDLE = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * How long after a child has exited before reading its stream to the end. The JDK reads what
+     * remains in the pipe, and replaces the stream, just after the child exits, and to read before
+     * then may block until any grandchild holding the pipe also exits.
+     */
+    private static final long EXIT_GRACE = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * How often a thread waiting for a transfer wakes the pump, so that it does not sleep long
+     * while someone is waiting for the end of a stream.
+     */
+    private static final long JOIN_WAKE = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private static final ProcessPump INSTANCE = new ProcessPump();
+
+    /** Transfers started, not yet taken up by the pump thread. */
+    private final ConcurrentLinkedQueue<Transfer> added = new ConcurrentLinkedQueue<Transfer>();
+
+    /** The pump thread, started when first needed. */
+    private Thread thread;
+
+    /** Whether to poll again soon, rather than sleep longer, when the streams are idle. */
+    private volatile boolean hurry;
+
+    private ProcessPump() {}
+
+    /**
+     * Copy everything from a stream of the child process to <code>out</code>, which is not
+     * closed at the end.
+     */
+    public static Transfer copy(String name, Process process, InputStream in, RawIOBase out) {
+        return INSTANCE.start(new Transfer(name, source(process, in), out));
+    }
+
+    /**
+     * Collect everything from a stream of the child process, which is then the value of the
+     * transfer.
+     */
+    public static Transfer collect(String name, Process process, InputStream in) {
+        return INSTANCE.start(new Transfer(name, source(process, in), null));
+    }
+
+    private static Source source(Process process, InputStream in) {
+        if (in instanceof SpawnedProcess.PipeInputStream) {
+            return new PipeSource((SpawnedProcess.PipeInputStream) in);
+        }
+        return new StreamSource(process, in);
+    }
+
+    private Transfer start(Transfer transfer) {
+        added.add(transfer);
+        synchronized (this) {
+            if (thread == null) {
+                thread = new Thread(this, "jython-process-pump");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+        wake();
+        return transfer;
+    }
+
+    /** Wake the pump to poll the streams now, and again soon. */
+    private void wake() {
+        hurry = true;
+        LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        List<Transfer> active = new ArrayList<Transfer>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long idle = MIN_IDLE;
+        while (true) {
+            for (Transfer transfer; (transfer = added.poll()) != null;) {
+                active.add(transfer);
+                idle = MIN_IDLE;
+            }
+            if (active.isEmpty()) {
+                // Until a transfer is started
+                LockSupport.park(this);
+                continue;
+            }
+            boolean progress = false;
+            for (Iterator<Transfer> i = active.iterator(); i.hasNext();) {
+                Transfer transfer = i.next();
+                if (transfer.pump(buffer) != 0) {
+                    progress = true;
+                }
+                if (transfer.isDone()) {
+                    i.remove();
+                }
+            }
+            if (progress || hurry) {
+                hurry = false;
+                idle = MIN_IDLE;
+            } else {
+                LockSupport.parkNanos(this, idle);
+                idle = Math.min(idle * 2, MAX_IDLE);
+            }
+        }
+    }
+
+    /** A stream of the child, read without blocking. */
+    private interface Source {
+
+        /** Read what is available: the number of bytes, 0 if none yet, or -1 at end of file. */
+        int read(byte[] b) throws IOException;
+
+        /**
+         * Read, waiting if necessary, once the child has exited: the number of bytes, or -1 at
+         * end of file.
+         */
+        int readAfterExit(byte[] b) throws IOException;
+
+        /**
+         * The process whose exit a thread joining the transfer should wait for, then finish the
+         * transfer itself, or <code>null</code> if the pump should finish it.
+         */
+        Process process();
+    }
+
+    /** A stream of a child started by <code>ProcessBuilder</code>. */
+    private static class StreamSource implements Source {
+
+        private final Process process;
+        private final InputStream in;
+        private long exited;
+
+        StreamSource(Process process, InputStream in) {
+            this.process = process;
+            this.in = in;
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            int available = in.available();
+            if (available > 0) {
+                return in.read(b, 0, Math.min(available, b.length));
+            } else if (process.isAlive()) {
+                return 0;
+            } else if (exited == 0) {
+                exited = System.nanoTime();
+                return 0;
+            } else if (System.nanoTime() - exited < EXIT_GRACE) {
+                return 0;
+            }
+            return readAfterExit(b);
+        }
+
+        @Override
+        public int readAfterExit(byte[] b) throws IOException {
+            return in.read(b, 0, b.length);
+        }
+
+        @Override
+        public Process process() {
+            return process;
+        }
+    }
+
+    /** A pipe from a {@link SpawnedProcess}, which reports end of file as soon as it is. */
+    private static class PipeSource implements Source {
+
+        private final SpawnedProcess.PipeInputStream in;
+
+        PipeSource(SpawnedProcess.PipeInputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(byte[] b) throws IOException {
+            return in.readAvailable(b, 0, b.length);
+        }
+
+        @Override
+        public int readAfterExit(byte[] b) throws IOException {
+            return in.read(b, 0, b.length);
+        }
+
+        @Override
+        public Process process() {
+            return null;
+        }
+    }
+
+    /**
+     * The copying of one stream of a child, to a file or (for <code>communicate()</code>) into
+     * memory.
+     */
+    public static final class Transfer {
+
+        private final String name;
+        private final Source source;
+        private final RawIOBase out;
+        private final ByteArrayOutputStream collected;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Throwable error;
+
+        /** Held while copying, by the pump or by a thread finishing the transfer. */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        Transfer(String name, Source source, RawIOBase out) {
+            this.name = name;
+            this.source = source;
+            this.out = out;
+            this.collected = out == null ? new ByteArrayOutputStream() : null;
+        }
+
+        /**
+         * Copy what is available, returning the number of bytes, or -1 if now finished (or 0 if
+         * a thread joining the transfer is finishing it).
+         */
+        int pump(byte[] buffer) {
+            if (!lock.tryLock()) {
+                return 0;
+            }
+            try {
+                if (isDone()) {
+                    return -1;
+                }
+                int n = source.read(buffer);
+                if (n > 0) {
+                    write(buffer, n);
+                } else if (n < 0) {
+                    done.countDown();
+                }
+                return n;
+            } catch (Throwable t) {
+                error = t;
+                done.countDown();
+                return -1;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void write(byte[] buffer, int n) {
+            if (out == null) {
+                collected.write(buffer, 0, n);
+            } else {
+                ByteBuffer buf = ByteBuffer.wrap(buffer, 0, n);
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+            }
+        }
+
+        /**
+         * Wait for the child to exit, and copy the rest of the stream on this thread, which
+         * saves waiting for the pump to notice the exit.
+         */
+        private void finish(Process process) throws InterruptedException {
+            process.waitFor();
+            lock.lock();
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int n; !isDone() && (n = source.readAfterExit(buffer)) >= 0;) {
+                    write(buffer, n);
+                }
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                done.countDown();
+                lock.unlock();
+            }
+        }
+
+        /** Whether the whole stream has been copied (or the copy failed). */
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /** Wait until done, raising any error the copy met. */
+        public void join() throws InterruptedException {
+            Process process = source.process();
+            if (process != null && !isDone()) {
+                finish(process);
+            }
+            while (!done.await(JOIN_WAKE, TimeUnit.NANOSECONDS)) {
+                INSTANCE.wake();
+            }
+            if (error instanceof PyException) {
+                throw (PyException) error;
+            } else if (error instanceof IOException) {
+                throw Py.IOError((IOException) error);
+            } else if (error != null) {
+                throw Py.JavaError(error);
+            }
+        }
+
+        /** What has been collected, as a <code>str</code>. */
+        public PyString getvalue() {
+            if (collected == null) {
+                throw Py.ValueError("not collected: " + name);
+            }
+            return PyString.fromBytes(collected.toByteArray());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Transfer[%s%s]", name, isDone() ? ", done" : "");
+        }
+    }
+}
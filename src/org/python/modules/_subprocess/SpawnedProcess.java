@@ -0,0 +1,646 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules._subprocess;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jnr.constants.platform.Errno;
+import jnr.constants.platform.Fcntl;
+import jnr.constants.platform.OpenFlags;
+import jnr.constants.platform.Signal;
+import jnr.posix.POSIX;
+import jnr.posix.SpawnFileAction;
+
+import org.python.modules.posix.PosixModule;
+
+/**
+ * A child process started with <code>posix_spawnp</code>, rather than by
+ * <code>ProcessBuilder.start()</code>, which on some JVMs forks the whole JVM (or goes through a
+ * helper process) for each child. The child is described by a <code>ProcessBuilder</code>, so
+ * that <code>subprocess</code> prepares it the same way whichever is used.
+ * <p>
+ * Only what <code>subprocess</code> asks of a <code>ProcessBuilder</code> is supported here: each
+ * standard stream inherited or a pipe, with standard error optionally merged into standard
+ * output, and the working directory of the JVM. For anything else, or where native POSIX support
+ * is not available, {@link #start(ProcessBuilder)} returns <code>null</code> and the caller should
+ * use the <code>ProcessBuilder</code>. As with <code>ProcessBuilder</code>, the child inherits no
+ * other file descriptors of the JVM.
+ */
+public class SpawnedProcess extends Process {
+
+    private static final int WNOHANG = 1;
+    private static final int FD_CLOEXEC = 1;
+
+    /** Whether processes may be spawned here (natively, on a system with /proc/self/fd). */
+    private static final boolean AVAILABLE = available();
+
+    private static boolean available() {
+        try {
+            return PosixModule.getPOSIX().isNative() && new File("/proc/self/fd").isDirectory();
+        } catch (Throwable t) {
+            // SecurityManager, missing native support, or some other reason not to
+            return false;
+        }
+    }
+
+    /** Serialises spawning, so that no child inherits the pipes of another. */
+    private static final Object SPAWN_LOCK = new Object();
+
+    private final POSIX posix;
+
+    /** The process id (the name is that of the field in the JDK's own Process classes). */
+    private final int pid;
+
+    private final OutputStream stdin;
+    private final InputStream stdout, stderr;
+
+    /** The exit status as Java reports it, once known, or -1. */
+    private int exitValue = -1;
+
+    private SpawnedProcess(POSIX posix, int pid, int stdin, int stdout, int stderr) {
+        this.posix = posix;
+        this.pid = pid;
+        this.stdin = stdin < 0 ? NullOutputStream.INSTANCE : new PipeOutputStream(posix, stdin);
+        this.stdout = stdout < 0 ? NullInputStream.INSTANCE : new PipeInputStream(posix, stdout);
+        this.stderr = stderr < 0 ? NullInputStream.INSTANCE : new PipeInputStream(posix, stderr);
+    }
+
+    /** Whether {@link #start(ProcessBuilder)} is able to spawn processes on this platform. */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Start the process described by the builder, returning <code>null</code> if it cannot be
+     * started this way, or throwing an <code>IOException</code> (with the same message as
+     * <code>ProcessBuilder</code> would) if it cannot be started at all.
+     */
+    public static SpawnedProcess start(ProcessBuilder builder) throws IOException {
+        if (!AVAILABLE) {
+            return null;
+        }
+        ProcessBuilder.Redirect in = builder.redirectInput(), out = builder.redirectOutput(),
+                err = builder.redirectError();
+        if (!pipeOrInherit(in) || !pipeOrInherit(out)
+                || !builder.redirectErrorStream() && !pipeOrInherit(err)) {
+            return null;
+        }
+        File cwd = builder.directory();
+        if (cwd != null && !cwd.getCanonicalFile()
+                .equals(new File(System.getProperty("user.dir")).getCanonicalFile())) {
+            // posix_spawn cannot change the directory of the child
+            return null;
+        }
+
+        List<String> command = builder.command();
+        String program = command.get(0);
+        checkProgram(program);
+        List<String> envp = new ArrayList<String>();
+        for (Map.Entry<String, String> entry : builder.environment().entrySet()) {
+            envp.add(entry.getKey() + "=" + entry.getValue());
+        }
+
+        POSIX posix = PosixModule.getPOSIX();
+        // The pipes: [read, write] for stdin, stdout and stderr, or -1 where not a pipe
+        int[][] pipes = {{-1, -1}, {-1, -1}, {-1, -1}};
+        boolean started = false;
+        synchronized (SPAWN_LOCK) {
+            try {
+                List<SpawnFileAction> actions = new ArrayList<SpawnFileAction>();
+                if (in.type() == ProcessBuilder.Redirect.Type.PIPE) {
+                    pipe(posix, pipes[0]);
+                    actions.add(SpawnFileAction.dup(pipes[0][0], 0));
+                }
+                if (out.type() == ProcessBuilder.Redirect.Type.PIPE) {
+                    pipe(posix, pipes[1]);
+                    actions.add(SpawnFileAction.dup(pipes[1][1], 1));
+                }
+                if (builder.redirectErrorStream()) {
+                    actions.add(SpawnFileAction.dup(1, 2));
+                } else if (err.type() == ProcessBuilder.Redirect.Type.PIPE) {
+                    pipe(posix, pipes[2]);
+                    actions.add(SpawnFileAction.dup(pipes[2][1], 2));
+                }
+                // As ProcessBuilder does, close everything else in the child
+                for (int fd : openDescriptors()) {
+                    actions.add(SpawnFileAction.close(fd));
+                }
+                long pid = posix.posix_spawnp(program, actions, command, envp);
+                if (pid < 0) {
+                    throw new IOException(String.format("Cannot run program \"%s\": %s", program,
+                            "posix_spawn failed"));
+                }
+                started = true;
+                return new SpawnedProcess(posix, (int) pid, pipes[0][1], pipes[1][0],
+                        pipes[2][0]);
+            } finally {
+                // Close the ends of the pipes that are the child's (and all, if it failed)
+                for (int i = 0; i < pipes.length; i++) {
+                    int childEnd = i == 0 ? 0 : 1;
+                    for (int end = 0; end < 2; end++) {
+                        if (pipes[i][end] >= 0 && (!started || end == childEnd)) {
+                            posix.close(pipes[i][end]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean pipeOrInherit(ProcessBuilder.Redirect redirect) {
+        ProcessBuilder.Redirect.Type type = redirect.type();
+        return type == ProcessBuilder.Redirect.Type.PIPE
+                || type == ProcessBuilder.Redirect.Type.INHERIT;
+    }
+
+    /**
+     * Raise the error <code>ProcessBuilder</code> would if the program cannot be run, since the
+     * reason for a failure of <code>posix_spawnp</code> itself is not reported.
+     */
+    private static void checkProgram(String program) throws IOException {
+        if (program.indexOf('/') >= 0) {
+            File file = new File(program);
+            if (file.isFile()) {
+                if (!file.canExecute()) {
+                    throw cannotRun(program, Errno.EACCES);
+                }
+                return;
+            }
+        } else {
+            String path = System.getenv("PATH");
+            if (path != null) {
+                for (String dir : path.split(File.pathSeparator)) {
+                    File file = new File(dir.isEmpty() ? "." : dir, program);
+                    if (file.isFile() && file.canExecute()) {
+                        return;
+                    }
+                }
+            }
+        }
+        throw cannotRun(program, Errno.ENOENT);
+    }
+
+    private static IOException cannotRun(String program, Errno errno) {
+        return new IOException(String.format("Cannot run program \"%s\": error=%d, %s", program,
+                errno.intValue(), errno.description()));
+    }
+
+    /** Make a pipe whose ends are not inherited (except as the child's standard streams). */
+    private static void pipe(POSIX posix, int[] fds) throws IOException {
+        if (posix.pipe(fds) < 0) {
+            throw new IOException(Errno.valueOf(posix.errno()).description());
+        }
+        for (int fd : fds) {
+            posix.fcntlInt(fd, Fcntl.F_SETFD, FD_CLOEXEC);
+        }
+    }
+
+    /** The file descriptors of the JVM, other than the standard ones. */
+    private static List<Integer> openDescriptors() {
+        List<Integer> fds = new ArrayList<Integer>();
+        String[] names = new File("/proc/self/fd").list();
+        if (names != null) {
+            for (String name : names) {
+                try {
+                    int fd = Integer.parseInt(name);
+                    if (fd > 2) {
+                        fds.add(fd);
+                    }
+                } catch (NumberFormatException e) {
+                    // not a descriptor
+                }
+            }
+        }
+        return fds;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return stdin;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return stdout;
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return stderr;
+    }
+
+    /** The process id of the child. */
+    public long pid() {
+        return pid;
+    }
+
+    /**
+     * Reap the child if it has exited (or wait until it has, if <code>block</code>), returning
+     * whether it has exited.
+     */
+    private boolean reap(boolean block) throws InterruptedException {
+        synchronized (this) {
+            if (exitValue >= 0) {
+                return true;
+            }
+        }
+        int[] status = new int[1];
+        while (true) {
+            int result = posix.waitpid(pid, status, block ? 0 : WNOHANG);
+            if (result == pid) {
+                int s = status[0];
+                synchronized (this) {
+                    // Exit status, or like the JDK, 0x80 + the signal that killed it
+                    exitValue = (s & 0x7f) == 0 ? (s >> 8) & 0xff : 0x80 + (s & 0x7f);
+                    notifyAll();
+                }
+                releaseStreams(true);
+                return true;
+            } else if (result == 0) {
+                return false;
+            } else if (posix.errno() == Errno.ECHILD.intValue()) {
+                // Reaped by a concurrent call: wait for it to record the status
+                synchronized (this) {
+                    while (exitValue < 0) {
+                        wait();
+                    }
+                }
+                return true;
+            } else if (posix.errno() != Errno.EINTR.intValue()) {
+                throw new IllegalStateException(Errno.valueOf(posix.errno()).description());
+            } else if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    @Override
+    public int waitFor() throws InterruptedException {
+        reap(true);
+        return exitValue;
+    }
+
+    @Override
+    public boolean waitFor(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long delay = TimeUnit.MILLISECONDS.toNanos(1);
+        while (!reap(false)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(delay, remaining));
+            delay = Math.min(delay * 2, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        return true;
+    }
+
+    @Override
+    public int exitValue() {
+        try {
+            if (reap(false)) {
+                return exitValue;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new IllegalThreadStateException("process hasn't exited");
+    }
+
+    @Override
+    public boolean isAlive() {
+        try {
+            return !reap(false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    private void kill(Signal signal) {
+        if (isAlive()) {
+            posix.kill(pid, signal.intValue());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        kill(Signal.SIGTERM);
+        releaseStreams(false);
+    }
+
+    @Override
+    public Process destroyForcibly() {
+        kill(Signal.SIGKILL);
+        releaseStreams(false);
+        return this;
+    }
+
+    /**
+     * Close our ends of the pipes, as the JDK does when its child exits (keeping what is left to
+     * read) or is destroyed (discarding it), so that their descriptors are not held until the
+     * streams are collected.
+     */
+    private void releaseStreams(boolean exited) {
+        if (stdin instanceof PipeOutputStream) {
+            ((PipeOutputStream) stdin).release();
+        }
+        if (stdout instanceof PipeInputStream) {
+            ((PipeInputStream) stdout).release(exited);
+        }
+        if (stderr instanceof PipeInputStream) {
+            ((PipeInputStream) stderr).release(exited);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SpawnedProcess[pid=%d]", pid);
+    }
+
+    /**
+     * Our end of a pipe from the child. The descriptor is closed at end of file, or when the child
+     * has exited (after reading what it left in the pipe), as the JDK closes the pipes of a child
+     * that has exited, so that a program running many children does not run out of descriptors
+     * waiting for the streams to be collected.
+     */
+    static class PipeInputStream extends InputStream {
+
+        private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+
+        private final POSIX posix;
+        private final int fd;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean nonBlocking;
+
+        /** Held while reading, so that the descriptor is not closed under a reader. */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** What was left in the pipe when the child exited, and the position in it. */
+        private byte[] left;
+        private int leftPos;
+
+        PipeInputStream(POSIX posix, int fd) {
+            this.posix = posix;
+            this.fd = fd;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                int n = readNative(b, off, len);
+                if (n != 0) {
+                    return n;
+                }
+                // Only if made non-blocking for the pump, which now owns the stream
+                LockSupport.parkNanos(POLL_INTERVAL);
+            }
+        }
+
+        /**
+         * Read what is available without waiting: the number of bytes read, 0 if there are none
+         * yet, or -1 at end of file.
+         */
+        int readAvailable(byte[] b, int off, int len) throws IOException {
+            lock.lock();
+            try {
+                if (!nonBlocking && !closed.get()) {
+                    setNonBlocking();
+                    nonBlocking = true;
+                }
+                return readNative(b, off, len);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void setNonBlocking() {
+            int flags = posix.fcntl(fd, Fcntl.F_GETFL);
+            posix.fcntlInt(fd, Fcntl.F_SETFL, flags | OpenFlags.O_NONBLOCK.intValue());
+        }
+
+        private int readNative(byte[] b, int off, int len) throws IOException {
+            lock.lock();
+            try {
+                return readLocked(b, off, len);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int readLocked(byte[] b, int off, int len) throws IOException {
+            if (left != null) {
+                int n = Math.min(len, left.length - leftPos);
+                System.arraycopy(left, leftPos, b, off, n);
+                leftPos += n;
+                if (leftPos == left.length) {
+                    left = null;
+                }
+                return n;
+            } else if (closed.get()) {
+                return -1;
+            }
+            byte[] buf = off == 0 ? b : new byte[len];
+            while (true) {
+                int n = posix.read(fd, buf, len);
+                if (n > 0) {
+                    if (buf != b) {
+                        System.arraycopy(buf, 0, b, off, n);
+                    }
+                    return n;
+                } else if (n == 0) {
+                    close();
+                    return -1;
+                }
+                int errno = posix.errno();
+                if (errno == Errno.EAGAIN.intValue() || errno == Errno.EWOULDBLOCK.intValue()) {
+                    return 0;
+                } else if (errno != Errno.EINTR.intValue()) {
+                    throw new IOException(Errno.valueOf(errno).description());
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                posix.close(fd);
+            }
+        }
+
+        /**
+         * Close the pipe once the child has exited (first reading what it left there, if
+         * <code>keep</code>) or been destroyed. A thread blocked reading it holds the lock, and
+         * will close it itself at end of file: it is not closed under that thread.
+         */
+        void release(boolean keep) {
+            while (!lock.tryLock()) {
+                if (!nonBlocking) {
+                    return;
+                }
+                // The pump reads without waiting, so will soon let go
+                Thread.yield();
+            }
+            try {
+                if (closed.get()) {
+                    return;
+                }
+                if (keep) {
+                    left = drain();
+                    leftPos = 0;
+                }
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * What is in the pipe now, without waiting for any more (from a grandchild holding it),
+         * or <code>null</code> if nothing.
+         */
+        private byte[] drain() {
+            if (!nonBlocking) {
+                setNonBlocking();
+                nonBlocking = true;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            while (true) {
+                int n = posix.read(fd, buf, buf.length);
+                if (n > 0) {
+                    out.write(buf, 0, n);
+                } else if (n == 0 || posix.errno() != Errno.EINTR.intValue()) {
+                    // End of file, nothing more yet, or an error: keep what was read
+                    break;
+                }
+            }
+            return out.size() > 0 ? out.toByteArray() : null;
+        }
+    }
+
+    /** Our end of the pipe to the child's standard input. */
+    static class PipeOutputStream extends OutputStream {
+
+        private final POSIX posix;
+        private final int fd;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        /** Held while writing, so that the descriptor is not closed under a writer. */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        PipeOutputStream(POSIX posix, int fd) {
+            this.posix = posix;
+            this.fd = fd;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            lock.lock();
+            try {
+                writeLocked(b, off, len);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void writeLocked(byte[] b, int off, int len) throws IOException {
+            if (closed.get()) {
+                throw new IOException("Stream closed");
+            }
+            byte[] buf = b;
+            if (off != 0) {
+                buf = new byte[len];
+                System.arraycopy(b, off, buf, 0, len);
+            }
+            while (len > 0) {
+                int n = posix.write(fd, buf, len);
+                if (n < 0) {
+                    int errno = posix.errno();
+                    if (errno == Errno.EINTR.intValue()) {
+                        continue;
+                    }
+                    throw new IOException(Errno.valueOf(errno).description());
+                }
+                len -= n;
+                if (len > 0) {
+                    byte[] rest = new byte[len];
+                    System.arraycopy(buf, n, rest, 0, len);
+                    buf = rest;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                posix.close(fd);
+            }
+        }
+
+        /**
+         * Close the pipe once the child has exited or been destroyed, unless a thread is writing
+         * to it, which will fail (the child having gone), leaving it to be closed by its owner.
+         */
+        void release() {
+            if (lock.tryLock()) {
+                try {
+                    close();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /** The input stream of a child stream that is not a pipe (as from ProcessBuilder). */
+    private static class NullInputStream extends InputStream {
+
+        static final NullInputStream INSTANCE = new NullInputStream();
+
+        @Override
+        public int read() {
+            return -1;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+
+    /** The output stream of a child stream that is not a pipe (as from ProcessBuilder). */
+    private static class NullOutputStream extends OutputStream {
+
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) throws IOException {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.python.core.Py;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyUnicode;
+
+import com.ibm.icu.lang.UCharacter;
+import com.ibm.icu.lang.UCharacter.EastAsianWidth;
+import com.ibm.icu.lang.UCharacterCategory;
+import com.ibm.icu.lang.UCharacterDirection;
+import com.ibm.icu.lang.UProperty;
+import com.ibm.icu.text.Normalizer2;
+
+/**
+ * Per code point queries of the Unicode database, and normalisation of whole strings, in support
+ * of <code>Lib/unicodedata.py</code>.
+ * <p>
+ * The data come from ICU, as they always have in Jython, but the properties most often asked for
+ * are packed into one <code>int</code> record per code point, held in pages of 256 records that
+ * are filled from ICU the first time a code point in the page is queried. A query is then a pair
+ * of array look-ups, in the style of the tables CPython generates from
+ * <code>UnicodeData.txt</code>.
+ */
+public class _unicodedata {
+
+    public static final PyString __doc__ = new PyString(
+            "Unicode character properties from compact tables built from ICU data.");
+
+    /*
+     * Layout of a record. The digit value occupies the top bits so that it may be extracted by an
+     * unsigned shift alone.
+     */
+    private static final int CATEGORY_SHIFT = 0, CATEGORY_MASK = 0x1f;
+    private static final int BIDI_SHIFT = 5, BIDI_MASK = 0x1f;
+    private static final int EAW_SHIFT = 10, EAW_MASK = 0x7;
+    private static final int MIRRORED = 1 << 13;
+    private static final int COMBINING_SHIFT = 14, COMBINING_MASK = 0xff;
+    private static final int DECIMAL_SHIFT = 22, DECIMAL_MASK = 0xf;
+    private static final int HAS_DECIMAL = 1 << 26;
+    private static final int HAS_DIGIT = 1 << 27;
+    private static final int DIGIT_SHIFT = 28;
+
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    /** Pages of records, indexed by code point &gt;&gt; {@link #PAGE_SHIFT}, created on demand. */
+    private static final AtomicReferenceArray<int[]> pages =
+            new AtomicReferenceArray<>((UCharacter.MAX_VALUE + 1) >> PAGE_SHIFT);
+
+    /** General category names indexed by {@link UCharacterCategory} value. */
+    private static final PyString[] CATEGORY = new PyString[UCharacterCategory.CHAR_CATEGORY_COUNT];
+
+    /** Bidirectional class names indexed by {@link UCharacterDirection} value. */
+    private static final PyString[] BIDI =
+            new PyString[UCharacter.getIntPropertyMaxValue(UProperty.BIDI_CLASS) + 1];
+
+    /** East Asian width names indexed by {@link EastAsianWidth} value. */
+    private static final PyString[] EAW =
+            new PyString[UCharacter.getIntPropertyMaxValue(UProperty.EAST_ASIAN_WIDTH) + 1];
+
+    static {
+        // To map from ICU4J enumerations for category, bidirection, and east_asian_width to the
+        // property values Python uses from UnicodeData.txt see:
+        // http://icu-project.org/apiref/icu4j/constant-values.html
+        // http://www.unicode.org/Public/6.3.0/ucd/PropertyValueAliases.txt
+        CATEGORY[UCharacterCategory.UNASSIGNED] = Py.newString("Cn");
+        CATEGORY[UCharacterCategory.UPPERCASE_LETTER] = Py.newString("Lu");
+        CATEGORY[UCharacterCategory.LOWERCASE_LETTER] = Py.newString("Ll");
+        CATEGORY[UCharacterCategory.TITLECASE_LETTER] = Py.newString("Lt");
+        CATEGORY[UCharacterCategory.MODIFIER_LETTER] = Py.newString("Lm");
+        CATEGORY[UCharacterCategory.OTHER_LETTER] = Py.newString("Lo");
+        CATEGORY[UCharacterCategory.NON_SPACING_MARK] = Py.newString("Mn");
+        CATEGORY[UCharacterCategory.ENCLOSING_MARK] = Py.newString("Me");
+        CATEGORY[UCharacterCategory.COMBINING_SPACING_MARK] = Py.newString("Mc");
+        CATEGORY[UCharacterCategory.DECIMAL_DIGIT_NUMBER] = Py.newString("Nd");
+        CATEGORY[UCharacterCategory.LETTER_NUMBER] = Py.newString("Nl");
+        CATEGORY[UCharacterCategory.OTHER_NUMBER] = Py.newString("No");
+        CATEGORY[UCharacterCategory.SPACE_SEPARATOR] = Py.newString("Zs");
+        CATEGORY[UCharacterCategory.LINE_SEPARATOR] = Py.newString("Zl");
+        CATEGORY[UCharacterCategory.PARAGRAPH_SEPARATOR] = Py.newString("Zp");
+        CATEGORY[UCharacterCategory.CONTROL] = Py.newString("Cc");
+        CATEGORY[UCharacterCategory.FORMAT] = Py.newString("Cf");
+        CATEGORY[UCharacterCategory.PRIVATE_USE] = Py.newString("Co");
+        CATEGORY[UCharacterCategory.SURROGATE] = Py.newString("Cs");
+        CATEGORY[UCharacterCategory.DASH_PUNCTUATION] = Py.newString("Pd");
+        CATEGORY[UCharacterCategory.START_PUNCTUATION] = Py.newString("Ps");
+        CATEGORY[UCharacterCategory.END_PUNCTUATION] = Py.newString("Pe");
+        CATEGORY[UCharacterCategory.CONNECTOR_PUNCTUATION] = Py.newString("Pc");
+        CATEGORY[UCharacterCategory.OTHER_PUNCTUATION] = Py.newString("Po");
+        CATEGORY[UCharacterCategory.MATH_SYMBOL] = Py.newString("Sm");
+        CATEGORY[UCharacterCategory.CURRENCY_SYMBOL] = Py.newString("Sc");
+        CATEGORY[UCharacterCategory.MODIFIER_SYMBOL] = Py.newString("Sk");
+        CATEGORY[UCharacterCategory.OTHER_SYMBOL] = Py.newString("So");
+        CATEGORY[UCharacterCategory.INITIAL_PUNCTUATION] = Py.newString("Pi");
+        CATEGORY[UCharacterCategory.FINAL_PUNCTUATION] = Py.newString("Pf");
+
+        BIDI[UCharacterDirection.ARABIC_NUMBER] = Py.newString("An");
+        BIDI[UCharacterDirection.BLOCK_SEPARATOR] = Py.newString("B");
+        BIDI[UCharacterDirection.BOUNDARY_NEUTRAL] = Py.newString("BN");
+        BIDI[UCharacterDirection.COMMON_NUMBER_SEPARATOR] = Py.newString("CS");
+        BIDI[UCharacterDirection.DIR_NON_SPACING_MARK] = Py.newString("NSM");
+        BIDI[UCharacterDirection.EUROPEAN_NUMBER] = Py.newString("EN");
+        BIDI[UCharacterDirection.EUROPEAN_NUMBER_SEPARATOR] = Py.newString("ES");
+        BIDI[UCharacterDirection.EUROPEAN_NUMBER_TERMINATOR] = Py.newString("ET");
+        BIDI[UCharacterDirection.FIRST_STRONG_ISOLATE] = Py.newString("FSI");
+        BIDI[UCharacterDirection.LEFT_TO_RIGHT] = Py.newString("L");
+        BIDI[UCharacterDirection.LEFT_TO_RIGHT_EMBEDDING] = Py.newString("LRE");
+        BIDI[UCharacterDirection.LEFT_TO_RIGHT_ISOLATE] = Py.newString("LRI");
+        BIDI[UCharacterDirection.LEFT_TO_RIGHT_OVERRIDE] = Py.newString("LRO");
+        BIDI[UCharacterDirection.OTHER_NEUTRAL] = Py.newString("ON");
+        BIDI[UCharacterDirection.POP_DIRECTIONAL_FORMAT] = Py.newString("PDF");
+        BIDI[UCharacterDirection.POP_DIRECTIONAL_ISOLATE] = Py.newString("PDI");
+        BIDI[UCharacterDirection.RIGHT_TO_LEFT] = Py.newString("R");
+        BIDI[UCharacterDirection.RIGHT_TO_LEFT_ARABIC] = Py.newString("AL");
+        BIDI[UCharacterDirection.RIGHT_TO_LEFT_EMBEDDING] = Py.newString("RLE");
+        BIDI[UCharacterDirection.RIGHT_TO_LEFT_ISOLATE] = Py.newString("RLI");
+        BIDI[UCharacterDirection.RIGHT_TO_LEFT_OVERRIDE] = Py.newString("RLO");
+        BIDI[UCharacterDirection.SEGMENT_SEPARATOR] = Py.newString("S");
+        BIDI[UCharacterDirection.WHITE_SPACE_NEUTRAL] = Py.newString("WS");
+
+        // http://www.unicode.org/reports/tr11/
+        EAW[EastAsianWidth.AMBIGUOUS] = Py.newString("A");
+        EAW[EastAsianWidth.FULLWIDTH] = Py.newString("F");
+        EAW[EastAsianWidth.HALFWIDTH] = Py.newString("H");
+        EAW[EastAsianWidth.NARROW] = Py.newString("Na");
+        EAW[EastAsianWidth.NEUTRAL] = Py.newString("N");
+        EAW[EastAsianWidth.WIDE] = Py.newString("W");
+    }
+
+    /** Return the record for a code point, building its page if necessary. */
+    private static int record(int cp) {
+        int index = cp >> PAGE_SHIFT;
+        int[] page = pages.get(index);
+        if (page == null) {
+            // Racing threads compute identical pages: it does not matter which one is kept.
+            page = makePage(index << PAGE_SHIFT);
+            pages.compareAndSet(index, null, page);
+        }
+        return page[cp & (PAGE_SIZE - 1)];
+    }
+
+    private static int[] makePage(int base) {
+        int[] page = new int[PAGE_SIZE];
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page[i] = makeRecord(base + i);
+        }
+        return page;
+    }
+
+    private static int makeRecord(int cp) {
+        int r = UCharacter.getType(cp) << CATEGORY_SHIFT;
+        r |= UCharacter.getDirection(cp) << BIDI_SHIFT;
+        r |= UCharacter.getIntPropertyValue(cp, UProperty.EAST_ASIAN_WIDTH) << EAW_SHIFT;
+        if (UCharacter.isMirrored(cp)) {
+            r |= MIRRORED;
+        }
+        r |= UCharacter.getCombiningClass(cp) << COMBINING_SHIFT;
+        int decimal = UCharacter.getNumericValue(cp);
+        if (decimal >= 0 && decimal <= 9) {
+            r |= HAS_DECIMAL | (decimal << DECIMAL_SHIFT);
+        }
+        int digit = UCharacter.digit(cp);
+        if (digit != -1) {
+            r |= HAS_DIGIT | (digit << DIGIT_SHIFT);
+        }
+        return r;
+    }
+
+    /**
+     * Return the code point of a unicode object of length one, or raise <code>TypeError</code> as
+     * <code>_validate_unichr</code> in <code>unicodedata.py</code>.
+     */
+    private static int codePoint(PyObject unichr) {
+        if (!(unichr instanceof PyUnicode)) {
+            throw Py.TypeError("must be unicode, not " + unichr.getType().fastGetName());
+        }
+        String s = ((PyUnicode)unichr).getString();
+        if (s.length() > 0) {
+            int cp = s.codePointAt(0);
+            if (Character.charCount(cp) == s.length()) {
+                return cp;
+            }
+        }
+        throw Py.TypeError("need a single Unicode character as parameter");
+    }
+
+    public static PyString __doc__category =
+            new PyString("Returns the general category assigned to the Unicode character unichr "
+                    + "as string.");
+
+    public static PyString category(PyObject unichr) {
+        return CATEGORY[(record(codePoint(unichr)) >> CATEGORY_SHIFT) & CATEGORY_MASK];
+    }
+
+    public static PyString __doc__bidirectional =
+            new PyString("Returns the bidirectional class assigned to the Unicode character "
+                    + "unichr as string.");
+
+    public static PyString bidirectional(PyObject unichr) {
+        return BIDI[(record(codePoint(unichr)) >> BIDI_SHIFT) & BIDI_MASK];
+    }
+
+    public static PyString __doc__east_asian_width =
+            new PyString("Returns the east asian width assigned to the Unicode character unichr "
+                    + "as string.");
+
+    public static PyString east_asian_width(PyObject unichr) {
+        return EAW[(record(codePoint(unichr)) >> EAW_SHIFT) & EAW_MASK];
+    }
+
+    public static PyString __doc__combining =
+            new PyString("Returns the canonical combining class assigned to the Unicode "
+                    + "character unichr as integer. Returns 0 if no combining class is defined.");
+
+    public static int combining(PyObject unichr) {
+        return (record(codePoint(unichr)) >> COMBINING_SHIFT) & COMBINING_MASK;
+    }
+
+    public static PyString __doc__mirrored =
+            new PyString("Returns the mirrored property assigned to the Unicode character "
+                    + "unichr.");
+
+    public static boolean mirrored(PyObject unichr) {
+        return (record(codePoint(unichr)) & MIRRORED) != 0;
+    }
+
+    public static PyString __doc__decimal =
+            new PyString("Returns the decimal value assigned to the Unicode character unichr as "
+                    + "integer. If no such value is defined, default is returned, or, if not "
+                    + "given, ValueError is raised.");
+
+    public static PyObject decimal(PyObject unichr) {
+        return decimal(unichr, null);
+    }
+
+    public static PyObject decimal(PyObject unichr, PyObject defaultValue) {
+        int r = record(codePoint(unichr));
+        if ((r & HAS_DECIMAL) != 0) {
+            return Py.newInteger((r >> DECIMAL_SHIFT) & DECIMAL_MASK);
+        } else if (defaultValue != null) {
+            return defaultValue;
+        }
+        throw Py.ValueError("not a decimal");
+    }
+
+    public static PyString __doc__digit =
+            new PyString("Returns the digit value assigned to the Unicode character unichr as "
+                    + "integer. If no such value is defined, default is returned, or, if not "
+                    + "given, ValueError is raised.");
+
+    public static PyObject digit(PyObject unichr) {
+        return digit(unichr, null);
+    }
+
+    public static PyObject digit(PyObject unichr, PyObject defaultValue) {
+        int r = record(codePoint(unichr));
+        if ((r & HAS_DIGIT) != 0) {
+            return Py.newInteger(r >>> DIGIT_SHIFT);
+        } else if (defaultValue != null) {
+            return defaultValue;
+        }
+        throw Py.ValueError("not a digit");
+    }
+
+    public static PyString __doc__normalize =
+            new PyString("Return the normal form 'form' for the Unicode string unistr.  Valid\n"
+                    + "values for form are 'NFC', 'NFKC', 'NFD', and 'NFKD'.");
+
+    public static PyObject normalize(PyObject form, PyObject unistr) {
+        Normalizer2 normalizer = getNormalizer(form.asString());
+        if (!(unistr instanceof PyString)) {
+            throw Py.TypeError("normalize() argument 2 must be unicode, not "
+                    + unistr.getType().fastGetName());
+        }
+        String s = ((PyString)unistr).getString();
+
+        // The longest prefix already in normal form is returned without copying.
+        int span = normalizer.spanQuickCheckYes(s);
+        if (span == s.length()) {
+            return unistr instanceof PyUnicode ? unistr : Py.newUnicode(s);
+        }
+        StringBuilder buf = new StringBuilder(s.length() + 16).append(s, 0, span);
+        normalizer.normalizeSecondAndAppend(buf, s.subSequence(span, s.length()));
+        return Py.newUnicode(buf.toString());
+    }
+
+    private static Normalizer2 getNormalizer(String form) {
+        switch (form) {
+            case "NFC":
+                return Normalizer2.getNFCInstance();
+            case "NFD":
+                return Normalizer2.getNFDInstance();
+            case "NFKC":
+                return Normalizer2.getNFKCInstance();
+            case "NFKD":
+                return Normalizer2.getNFKDInstance();
+            default:
+                throw Py.ValueError("invalid normalization form");
+        }
+    }
+}
@@ -15,7 +15,12 @@
 package org.python.modules;
 
 import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import org.python.core.ClassDictInit;
 import org.python.core.Py;
@@ -707,9 +712,12 @@ public class cPickle implements ClassDictInit {
                 file.write(PROTO);
                 file.write((char) protocol);
             }
-            save(object);
-            file.write(STOP);
-            file.flush();
+            try {
+                save(object);
+                file.write(STOP);
+            } finally {
+                file.flush();
+            }
         }
 
         private static final int get_id(PyObject o) {
@@ -1572,6 +1580,171 @@ public class cPickle implements ClassDictInit {
     }
 
 
+    /*
+     * The memo of an Unpickler, a map from the string form of each key as the public
+     * Unpickler.memo has always been. Keys that BINPUT can store densely are kept by integer in
+     * an array, so BINGET and BINPUT need not format a String for each, and are seen through the
+     * map under their string form. Other keys go to an ordinary map.
+     */
+    static private class UnpickleMemo extends AbstractMap<String,PyObject> {
+
+        private PyObject[] bin = new PyObject[64];
+        private int binSize;
+        private final Map<String,PyObject> other = Generic.map();
+
+        /** The array index for key, or -1 if it is not the canonical string form of one. */
+        private static int index(Object key) {
+            if (!(key instanceof String)) {
+                return -1;
+            }
+            String s = (String) key;
+            int n = s.length();
+            if (n == 0 || n > 9 || (n > 1 && s.charAt(0) == '0')) {
+                return -1;
+            }
+            int i = 0;
+            for (int j = 0; j < n; j++) {
+                char c = s.charAt(j);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                i = i * 10 + (c - '0');
+            }
+            return i;
+        }
+
+        PyObject get(int i) {
+            PyObject value = i >= 0 && i < bin.length ? bin[i] : null;
+            if (value == null && !other.isEmpty()) {
+                // Stored before the array grew to cover it, or a key outside it
+                value = other.get(String.valueOf(i));
+            }
+            return value;
+        }
+
+        PyObject put(int i, PyObject value) {
+            if (i >= bin.length && i < 2 * bin.length) {
+                bin = Arrays.copyOf(bin, 2 * bin.length);
+            }
+            if (i < 0 || i >= bin.length) {
+                // A key far beyond those seen so far: not worth growing the array for
+                return other.put(String.valueOf(i), value);
+            }
+            PyObject old = bin[i];
+            if (old == null) {
+                binSize++;
+                if (!other.isEmpty()) {
+                    old = other.remove(String.valueOf(i));
+                }
+            }
+            bin[i] = value;
+            return old;
+        }
+
+        @Override
+        public PyObject get(Object key) {
+            int i = index(key);
+            return i < 0 ? other.get(key) : get(i);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public PyObject put(String key, PyObject value) {
+            int i = index(key);
+            return i < 0 ? other.put(key, value) : put(i, value);
+        }
+
+        @Override
+        public PyObject remove(Object key) {
+            int i = index(key);
+            if (i >= 0 && i < bin.length && bin[i] != null) {
+                PyObject old = bin[i];
+                bin[i] = null;
+                binSize--;
+                return old;
+            }
+            return other.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(bin, null);
+            binSize = 0;
+            other.clear();
+        }
+
+        @Override
+        public int size() {
+            return binSize + other.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String,PyObject>> entrySet() {
+            return new AbstractSet<Map.Entry<String,PyObject>>() {
+
+                @Override
+                public int size() {
+                    return UnpickleMemo.this.size();
+                }
+
+                @Override
+                public Iterator<Map.Entry<String,PyObject>> iterator() {
+                    return new Iterator<Map.Entry<String,PyObject>>() {
+
+                        private final Iterator<Map.Entry<String,PyObject>> rest =
+                                other.entrySet().iterator();
+                        private int next = advance(0);
+                        private int last = -1;
+
+                        private int advance(int i) {
+                            while (i < bin.length && bin[i] == null) {
+                                i++;
+                            }
+                            return i;
+                        }
+
+                        public boolean hasNext() {
+                            return next < bin.length || rest.hasNext();
+                        }
+
+                        public Map.Entry<String,PyObject> next() {
+                            if (next >= bin.length) {
+                                last = -1;
+                                return rest.next();
+                            }
+                            last = next;
+                            next = advance(next + 1);
+                            final int i = last;
+                            return new SimpleEntry<String,PyObject>(String.valueOf(i), bin[i]) {
+
+                                @Override
+                                public PyObject setValue(PyObject value) {
+                                    bin[i] = value;
+                                    return super.setValue(value);
+                                }
+                            };
+                        }
+
+                        public void remove() {
+                            if (last < 0) {
+                                rest.remove();
+                            } else {
+                                bin[last] = null;
+                                binSize--;
+                                last = -1;
+                            }
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+
 
 
 
@@ -1585,7 +1758,12 @@ public class cPickle implements ClassDictInit {
 
         private PyIOFile file;
 
-        public Map<String,PyObject> memo = Generic.map();
+        /**
+         * Memo for GET and PUT, and for BINGET and BINPUT and their long forms, by the string form
+         * of the key. While it is our own {@link UnpickleMemo}, the binary opcodes index it by
+         * integer: the pickler numbers these from 1, so they are dense.
+         */
+        public Map<String,PyObject> memo = new UnpickleMemo();
 
         /**
          * For the benefit of persistency modules written using pickle,
@@ -1616,6 +1794,15 @@ public class cPickle implements ClassDictInit {
          * the file.
          */
         public PyObject load() {
+            try {
+                return load_all();
+            } finally {
+                // Leave the file just after the data we used
+                file.flush();
+            }
+        }
+
+        private PyObject load_all() {
             stackTop = 0;
             stack = new PyObject[10];
 
@@ -2110,20 +2297,18 @@ public class cPickle implements ClassDictInit {
         }
 
         final private void load_binget() {
-            String py_key = String.valueOf((int)file.read(1).charAt(0));
-            PyObject value = memo.get(py_key);
-            if (value == null) {
-                throw new PyException(BadPickleGet, py_key);
-            }
-            push(value);
+            binget(file.read(1).charAt(0));
         }
 
         final private void load_long_binget() {
-            int i = read_binint();
-            String py_key = String.valueOf(i);
-            PyObject value = memo.get(py_key);
+            binget(read_binint());
+        }
+
+        final private void binget(int i) {
+            PyObject value = memo instanceof UnpickleMemo ? ((UnpickleMemo) memo).get(i)
+                    : memo.get(String.valueOf(i));
             if (value == null) {
-                throw new PyException(BadPickleGet, py_key);
+                throw new PyException(BadPickleGet, String.valueOf(i));
             }
             push(value);
         }
@@ -2135,14 +2320,21 @@ public class cPickle implements ClassDictInit {
 
 
         final private void load_binput() {
-            int i = file.read(1).charAt(0);
-            memo.put(String.valueOf(i), peek());
+            binput(file.read(1).charAt(0));
         }
 
 
         final private void load_long_binput() {
-            int i = read_binint();
-            memo.put(String.valueOf(i), peek());
+            binput(read_binint());
+        }
+
+
+        final private void binput(int i) {
+            if (memo instanceof UnpickleMemo) {
+                ((UnpickleMemo) memo).put(i, peek());
+            } else {
+                memo.put(String.valueOf(i), peek());
+            }
         }
 
         final private void load_append() {
@@ -0,0 +1,31 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.datetime;
+
+import org.python.core.ClassDictInit;
+import org.python.core.Py;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+
+/**
+ * The builtin <code>datetime</code> module: the types <code>date</code>, <code>datetime</code>,
+ * <code>time</code>, <code>timedelta</code> and <code>tzinfo</code>, implemented in Java.
+ */
+public class DatetimeModule implements ClassDictInit {
+
+    public static final PyString __doc__ = new PyString(
+            "Fast implementation of the datetime type.");
+
+    private DatetimeModule() {}
+
+    public static void classDictInit(PyObject dict) {
+        dict.__setitem__("__name__", Py.newString("datetime"));
+        dict.__setitem__("MINYEAR", Py.newInteger(Gregorian.MINYEAR));
+        dict.__setitem__("MAXYEAR", Py.newInteger(Gregorian.MAXYEAR));
+        dict.__setitem__("date", PyDate.TYPE);
+        dict.__setitem__("datetime", PyDatetime.TYPE);
+        dict.__setitem__("time", PyTime.TYPE);
+        dict.__setitem__("timedelta", PyTimedelta.TYPE);
+        dict.__setitem__("tzinfo", PyTzinfo.TYPE);
+        dict.__setitem__("classDictInit", null);
+    }
+}
@@ -0,0 +1,540 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.datetime;
+
+import java.math.BigInteger;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyFloat;
+import org.python.core.PyInteger;
+import org.python.core.PyLong;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyTuple;
+import org.python.core.PyUnicode;
+import org.python.modules.time.PyTimeTuple;
+import org.python.modules.time.Time;
+
+/**
+ * The calendar arithmetic, field validation and formatting shared by the types of the
+ * <code>datetime</code> module. The calendar is the proleptic Gregorian calendar, in which January
+ * 1 of year 1 is day (ordinal) 1, as in Dershowitz and Reingold's "Calendrical Calculations".
+ */
+final class Gregorian {
+
+    static final int MINYEAR = 1;
+    static final int MAXYEAR = 9999;
+
+    /** Ordinal of 9999-12-31. */
+    static final int MAXORDINAL = 3652059;
+
+    static final int SECONDS_PER_DAY = 24 * 3600;
+    static final int MICROS_PER_SECOND = 1000000;
+
+    /** Days in each month of a non-leap year (index 0 unused). */
+    private static final int[] DAYS_IN_MONTH = {-1, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    /** Days in a non-leap year preceding the first of each month (index 0 unused). */
+    private static final int[] DAYS_BEFORE_MONTH = new int[13];
+
+    static {
+        int dbm = 0;
+        for (int month = 1; month <= 12; month++) {
+            DAYS_BEFORE_MONTH[month] = dbm;
+            dbm += DAYS_IN_MONTH[month];
+        }
+    }
+
+    /** Number of days in 400 years. */
+    private static final long DI400Y = daysBeforeYear(401);
+    /** Number of days in 100 years. */
+    private static final long DI100Y = daysBeforeYear(101);
+    /** Number of days in 4 years. */
+    private static final long DI4Y = daysBeforeYear(5);
+
+    static final String[] MONTH_NAMES =
+            {null, "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov",
+                    "Dec"};
+    static final String[] DAY_NAMES = {null, "Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
+    /** The earliest year <code>strftime</code> accepts. */
+    private static final int MINYEARFMT = 1900;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private Gregorian() {}
+
+    /** Python (floor) division of <code>a</code> by positive <code>b</code>. */
+    static long floorDiv(long a, long b) {
+        long q = a / b;
+        return (a % b < 0) ? q - 1 : q;
+    }
+
+    /** Python (floor) modulus of <code>a</code> by positive <code>b</code>. */
+    static long floorMod(long a, long b) {
+        long r = a % b;
+        return (r < 0) ? r + b : r;
+    }
+
+    static boolean isLeap(long year) {
+        return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /** Number of days before January 1st of the year. */
+    static long daysBeforeYear(long year) {
+        long y = year - 1;
+        return y * 365 + floorDiv(y, 4) - floorDiv(y, 100) + floorDiv(y, 400);
+    }
+
+    /** Number of days in the month (1..12) of the year. */
+    static int daysInMonth(long year, int month) {
+        if (month == 2 && isLeap(year)) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month];
+    }
+
+    /** Number of days in the year preceding the first day of the month (1..12). */
+    static int daysBeforeMonth(long year, int month) {
+        return DAYS_BEFORE_MONTH[month] + (month > 2 && isLeap(year) ? 1 : 0);
+    }
+
+    /** Ordinal of a valid year, month and day. */
+    static long ymd2ord(long year, int month, int day) {
+        return daysBeforeYear(year) + daysBeforeMonth(year, month) + day;
+    }
+
+    /**
+     * Convert an ordinal to year, month and day. The pattern of leap years repeats exactly every
+     * 400 years, so the method finds the closest 400-year boundary at or before the ordinal, then
+     * works with the offset from it, as <code>_ord2ymd</code> in CPython's <code>datetime.py</code>
+     * does.
+     *
+     * @param n ordinal, where 01-Jan-0001 is day 1
+     * @return year, month and day
+     */
+    static int[] ord2ymd(long n) {
+        n -= 1;
+        long n400 = floorDiv(n, DI400Y);
+        n = floorMod(n, DI400Y);
+        long year = n400 * 400 + 1;
+
+        // Now n is the (non-negative) offset, in days, from January 1 of year. n100 or n1 may be 4,
+        // meaning the desired day is December 31 at the end of the 400- or 4-year cycle.
+        long n100 = n / DI100Y;
+        n = n % DI100Y;
+        long n4 = n / DI4Y;
+        n = n % DI4Y;
+        long n1 = n / 365;
+        n = n % 365;
+
+        year += n100 * 100 + n4 * 4 + n1;
+        if (n1 == 4 || n100 == 4) {
+            return new int[] {(int)(year - 1), 12, 31};
+        }
+
+        // Now the year is correct, and n is the offset from January 1. The estimate of the month
+        // is either exact or one too large.
+        boolean leapyear = n1 == 3 && (n4 != 24 || n100 == 3);
+        int month = (int)((n + 50) >> 5);
+        int preceding = DAYS_BEFORE_MONTH[month] + (month > 2 && leapyear ? 1 : 0);
+        if (preceding > n) {
+            month -= 1;
+            preceding -= DAYS_IN_MONTH[month] + (month == 2 && leapyear ? 1 : 0);
+        }
+        return new int[] {(int)year, month, (int)(n - preceding) + 1};
+    }
+
+    /** Ordinal of the Monday starting ISO week 1 of the year. */
+    static long isoWeek1Monday(long year) {
+        final int THURSDAY = 3;
+        long firstday = ymd2ord(year, 1, 1);
+        long firstweekday = floorMod(firstday + 6, 7);
+        long week1monday = firstday - firstweekday;
+        if (firstweekday > THURSDAY) {
+            week1monday += 7;
+        }
+        return week1monday;
+    }
+
+    /** A <code>time.struct_time</code> of the fields, completing the weekday and day of year. */
+    static PyTuple timeTuple(int y, int m, int d, int hh, int mm, int ss, int dstflag) {
+        int wday = (int)floorMod(ymd2ord(y, m, d) + 6, 7);
+        int dnum = daysBeforeMonth(y, m) + d;
+        return new PyTimeTuple(Py.newInteger(y), Py.newInteger(m), Py.newInteger(d),
+                Py.newInteger(hh), Py.newInteger(mm), Py.newInteger(ss), Py.newInteger(wday),
+                Py.newInteger(dnum), Py.newInteger(dstflag));
+    }
+
+    /** Validate the fields of a date. */
+    static int[] checkDateFields(PyObject year, PyObject month, PyObject day) {
+        year = checkIntField(year);
+        month = checkIntField(month);
+        day = checkIntField(day);
+        int y = fieldValue(year, MINYEAR, MAXYEAR, "year must be in " + MINYEAR + ".." + MAXYEAR);
+        int m = fieldValue(month, 1, 12, "month must be in 1..12");
+        int dim = daysInMonth(y, m);
+        int d = fieldValue(day, 1, dim, "day must be in 1.." + dim);
+        return new int[] {y, m, d};
+    }
+
+    /** Validate the fields of a time. */
+    static int[] checkTimeFields(PyObject hour, PyObject minute, PyObject second,
+            PyObject microsecond) {
+        hour = checkIntField(hour);
+        minute = checkIntField(minute);
+        second = checkIntField(second);
+        microsecond = checkIntField(microsecond);
+        return new int[] {fieldValue(hour, 0, 23, "hour must be in 0..23"),
+                fieldValue(minute, 0, 59, "minute must be in 0..59"),
+                fieldValue(second, 0, 59, "second must be in 0..59"),
+                fieldValue(microsecond, 0, 999999, "microsecond must be in 0..999999")};
+    }
+
+    /**
+     * Equivalent of <code>_check_int_field</code> in CPython's <code>datetime.py</code>: the value
+     * itself or the result of its <code>__int__</code>, an <code>int</code> or a <code>long</code>.
+     */
+    private static PyObject checkIntField(PyObject value) {
+        if (value instanceof PyInteger || value instanceof PyLong) {
+            return value;
+        }
+        if (value instanceof PyFloat) {
+            throw Py.TypeError("integer argument expected, got float");
+        }
+        PyObject intMethod = value.__findattr__("__int__");
+        if (intMethod == null) {
+            throw Py.TypeError("an integer is required");
+        }
+        PyObject result = intMethod.__call__();
+        if (result instanceof PyInteger || result instanceof PyLong) {
+            return result;
+        }
+        throw Py.TypeError("__int__ method should return an integer");
+    }
+
+    /**
+     * The value of an <code>int</code> or <code>long</code> field, once it is known to lie in the
+     * range given. Otherwise raise a <code>ValueError</code> with the original value (not one
+     * clipped to fit a Java <code>int</code>) as second argument, as in Python.
+     */
+    private static int fieldValue(PyObject value, int min, int max, String message) {
+        if (value instanceof PyInteger) {
+            int v = ((PyInteger)value).getValue();
+            if (v >= min && v <= max) {
+                return v;
+            }
+        } else {
+            BigInteger v = ((PyLong)value).getValue();
+            if (v.bitLength() < 32 && v.intValue() >= min && v.intValue() <= max) {
+                return v.intValue();
+            }
+        }
+        throw new PyException(Py.ValueError, new PyTuple(Py.newString(message), value));
+    }
+
+    static void checkTzinfoArg(PyObject tzinfo) {
+        if (tzinfo != Py.None && !(tzinfo instanceof PyTzinfo)) {
+            throw Py.TypeError("tzinfo argument must be None or of a tzinfo subclass");
+        }
+    }
+
+    /** Raise a <code>TypeError</code> unless the name is <code>None</code> or a <code>str</code>. */
+    static PyObject checkTzname(PyObject name) {
+        if (name != Py.None && (!(name instanceof PyString) || name instanceof PyUnicode)) {
+            throw Py.TypeError(String.format(
+                    "tzinfo.tzname() must return None or string, not '%s'", name.getType()));
+        }
+        return name;
+    }
+
+    /**
+     * Check what a <code>tzinfo</code> offset-producing method returned.
+     *
+     * @param name of the method, "utcoffset" or "dst"
+     * @param offset it returned
+     * @return the offset in minutes, or <code>null</code> if it was <code>None</code>
+     */
+    static Integer checkUtcOffset(String name, PyObject offset) {
+        if (offset == Py.None) {
+            return null;
+        }
+        if (!(offset instanceof PyTimedelta)) {
+            throw Py.TypeError(String.format("tzinfo.%s() must return None or timedelta, not '%s'",
+                    name, offset.getType()));
+        }
+        PyTimedelta delta = (PyTimedelta)offset;
+        int minutes;
+        if (delta.getDays() < -1 || delta.getDays() > 0) {
+            // Trigger the range error
+            minutes = 1440;
+        } else {
+            int seconds = delta.getDays() * SECONDS_PER_DAY + delta.getSeconds();
+            if (floorMod(seconds, 60) != 0 || delta.getMicroseconds() != 0) {
+                throw Py.ValueError(String.format(
+                        "tzinfo.%s() must return a whole number of minutes", name));
+            }
+            minutes = (int)floorDiv(seconds, 60);
+        }
+        if (minutes <= -1440 || minutes >= 1440) {
+            throw Py.ValueError(String.format("%s()=%d, must be in -1439..1439", name, minutes));
+        }
+        return minutes;
+    }
+
+    /** The offset of the <code>tzinfo</code> for the argument, in minutes or <code>null</code>. */
+    static Integer utcoffset(PyObject tzinfo, PyObject tzArg) {
+        if (tzinfo == Py.None) {
+            return null;
+        }
+        return checkUtcOffset("utcoffset", tzinfo.invoke("utcoffset", tzArg));
+    }
+
+    /** The DST offset of the <code>tzinfo</code> for the argument, in minutes or <code>null</code>. */
+    static Integer dst(PyObject tzinfo, PyObject tzArg) {
+        if (tzinfo == Py.None) {
+            return null;
+        }
+        return checkUtcOffset("dst", tzinfo.invoke("dst", tzArg));
+    }
+
+    static PyObject tzname(PyObject tzinfo, PyObject tzArg) {
+        if (tzinfo == Py.None) {
+            return Py.None;
+        }
+        return checkTzname(tzinfo.invoke("tzname", tzArg));
+    }
+
+    /** An offset in minutes as a <code>timedelta</code>, or <code>None</code>. */
+    static PyObject offsetDelta(Integer minutes) {
+        return minutes == null ? Py.None : PyTimedelta.of(0, minutes * 60, 0);
+    }
+
+    /** The offset as "+HH:MM" (with a separator as given), or "" for <code>null</code>. */
+    static String formatOffset(Integer minutes, String sep) {
+        if (minutes == null) {
+            return "";
+        }
+        int off = minutes;
+        char sign = '+';
+        if (off < 0) {
+            sign = '-';
+            off = -off;
+        }
+        return String.format("%c%02d%s%02d", sign, off / 60, sep, off % 60);
+    }
+
+    /** "HH:MM:SS", with ".ffffff" if there are microseconds. */
+    static String formatTime(int hh, int mm, int ss, int us) {
+        String result = String.format("%02d:%02d:%02d", hh, mm, ss);
+        return us == 0 ? result : result + String.format(".%06d", us);
+    }
+
+    /**
+     * Format a date or time with <code>time.strftime</code>, after substituting for the
+     * <code>%f</code>, <code>%z</code> and <code>%Z</code> escapes it does not know. The
+     * <code>tzinfo</code> is only consulted when <code>%z</code> or <code>%Z</code> is present.
+     *
+     * @param format as given to <code>strftime</code>
+     * @param timetuple of the date or time
+     * @param microsecond to substitute for <code>%f</code>
+     * @param tzinfo of the time or datetime (<code>None</code> for a date)
+     * @param tzArg to pass to the methods of the <code>tzinfo</code>
+     */
+    static PyObject strftime(PyObject format, PyTuple timetuple, int microsecond,
+            PyObject tzinfo, PyObject tzArg) {
+        if (!(format instanceof PyString)) {
+            throw Py.TypeError(String.format("strftime() argument 1 must be str, not %s",
+                    format.getType().fastGetName()));
+        }
+        int year = timetuple.pyget(0).asInt();
+        if (year < MINYEARFMT) {
+            throw Py.ValueError(String.format("year=%d is before %d; the datetime strftime() "
+                    + "methods require year >= %d", year, MINYEARFMT, MINYEARFMT));
+        }
+        String fmt = ((PyString)format).getString();
+        String zreplace = null, Zreplace = null;
+        StringBuilder newformat = new StringBuilder(fmt.length());
+        int i = 0, n = fmt.length();
+        while (i < n) {
+            char ch = fmt.charAt(i++);
+            if (ch != '%') {
+                newformat.append(ch);
+            } else if (i >= n) {
+                newformat.append('%');
+            } else {
+                ch = fmt.charAt(i++);
+                if (ch == 'f') {
+                    newformat.append(String.format("%06d", microsecond));
+                } else if (ch == 'z') {
+                    if (zreplace == null) {
+                        zreplace = formatOffset(utcoffset(tzinfo, tzArg), "");
+                    }
+                    newformat.append(zreplace);
+                } else if (ch == 'Z') {
+                    if (Zreplace == null) {
+                        Zreplace = "";
+                        PyObject name = tzname(tzinfo, tzArg);
+                        if (name != Py.None) {
+                            // strftime is going to have at this: escape %
+                            PyObject escaped = name.invoke("replace", Py.newString("%"),
+                                    Py.newString("%%"));
+                            if (!(escaped instanceof PyString)) {
+                                throw Py.TypeError("tzname.replace() did not return a string");
+                            }
+                            Zreplace = ((PyString)escaped).getString();
+                        }
+                    }
+                    newformat.append(Zreplace);
+                } else {
+                    newformat.append('%').append(ch);
+                }
+            }
+        }
+        return Time.strftime(newformat.toString(), timetuple);
+    }
+
+    /** "Wed Jan  3 00:00:00 2007", the format of <code>ctime()</code>. */
+    static String ctime(int year, int month, int day, int hh, int mm, int ss) {
+        int weekday = (int)floorMod(ymd2ord(year, month, day), 7);
+        return String.format("%s %s %2d %02d:%02d:%02d %04d", DAY_NAMES[weekday == 0 ? 7
+                : weekday], MONTH_NAMES[month], day, hh, mm, ss, year);
+    }
+
+    /**
+     * A calendar in the time zone of the <code>tzinfo</code>, or in UTC if it is
+     * <code>None</code>. Where <code>tzname()</code> is an Olson name, as Java uses, the calendar
+     * is in that zone; otherwise it is a UTC calendar with the zone and DST offsets the
+     * <code>tzinfo</code> gives.
+     */
+    static GregorianCalendar javaCalendar(PyObject tzinfo, PyObject tzArg) {
+        if (tzinfo == Py.None) {
+            return new GregorianCalendar(UTC);
+        }
+        PyObject name = tzname(tzinfo, tzArg);
+        if (name != Py.None) {
+            String id = ((PyString)name).getString();
+            TimeZone tz = TimeZone.getTimeZone(id);
+            if (tz.getID().equals(id) || !tz.getID().equals("GMT")) {
+                return new GregorianCalendar(tz);
+            }
+        }
+        GregorianCalendar cal = new GregorianCalendar(UTC);
+        Integer dst = dst(tzinfo, tzArg), offset = utcoffset(tzinfo, tzArg);
+        cal.set(Calendar.DST_OFFSET, dst == null ? 0 : dst * 60000);
+        cal.set(Calendar.ZONE_OFFSET, offset == null ? 0 : offset * 60000);
+        return cal;
+    }
+
+    /** A cleared calendar in UTC. */
+    static GregorianCalendar javaUTCCalendar() {
+        GregorianCalendar cal = new GregorianCalendar(UTC);
+        cal.clear();
+        return cal;
+    }
+
+    /**
+     * Parse a string according to a format composed only of the directives
+     * <code>%Y %m %d %H %M %S %f %%</code> and non-space literal characters, each numeric
+     * directive being followed by the end of the format or a non-digit literal.
+     *
+     * @return year, month, day, hour, minute, second and microsecond, or <code>null</code> when
+     *         the format or string is outside this subset, or does not match, so that the caller
+     *         may fall back to <code>_strptime</code> for the full treatment (and error message).
+     */
+    static int[] strptime(PyObject string, PyObject format) {
+        if (!(string instanceof PyString) || !(format instanceof PyString)) {
+            return null;
+        }
+        String s = ((PyString)string).getString();
+        String f = ((PyString)format).getString();
+        // Fields default as in _strptime: 1900-01-01T00:00:00.000000
+        int[] fields = {1900, 1, 1, 0, 0, 0, 0};
+        int si = 0, fi = 0, slen = s.length(), flen = f.length();
+
+        while (fi < flen) {
+            char fc = f.charAt(fi++);
+            if (fc != '%') {
+                // Whitespace in a format matches any run of whitespace: leave that to _strptime
+                if (Character.isWhitespace(fc) || si >= slen || s.charAt(si++) != fc) {
+                    return null;
+                }
+                continue;
+            } else if (fi >= flen) {
+                return null;
+            }
+
+            char directive = f.charAt(fi++);
+            int field, minWidth, maxWidth, min, max;
+            switch (directive) {
+                case 'Y':
+                    field = 0; minWidth = 4; maxWidth = 4; min = 0; max = 9999;
+                    break;
+                case 'm':
+                    field = 1; minWidth = 1; maxWidth = 2; min = 1; max = 12;
+                    break;
+                case 'd':
+                    field = 2; minWidth = 1; maxWidth = 2; min = 1; max = 31;
+                    break;
+                case 'H':
+                    field = 3; minWidth = 1; maxWidth = 2; min = 0; max = 23;
+                    break;
+                case 'M':
+                    field = 4; minWidth = 1; maxWidth = 2; min = 0; max = 59;
+                    break;
+                case 'S':
+                    field = 5; minWidth = 1; maxWidth = 2; min = 0; max = 59;
+                    break;
+                case 'f':
+                    field = 6; minWidth = 1; maxWidth = 6; min = 0; max = 999999;
+                    break;
+                case '%':
+                    if (si >= slen || s.charAt(si++) != '%') {
+                        return null;
+                    }
+                    continue;
+                default:
+                    return null;
+            }
+
+            // A digit literal (or another directive) next would make the split ambiguous.
+            if (fi < flen && (f.charAt(fi) == '%' || isDigit(f.charAt(fi)))) {
+                return null;
+            }
+
+            int start = si, value = 0;
+            while (si < slen && isDigit(s.charAt(si))) {
+                value = value * 10 + (s.charAt(si++) - '0');
+                if (si - start > maxWidth) {
+                    return null;
+                }
+            }
+            int width = si - start;
+            if (width < minWidth) {
+                return null;
+            }
+            if (directive == 'f') {
+                // Digits are a fraction of a second: pad to microseconds
+                for (; width < 6; width++) {
+                    value *= 10;
+                }
+            } else if (value < min || value > max) {
+                return null;
+            }
+            fields[field] = value;
+        }
+
+        if (si != slen) {
+            // Unconverted data remains
+            return null;
+        }
+        return fields;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
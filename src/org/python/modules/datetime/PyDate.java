@@ -0,0 +1,514 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.datetime;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import org.python.core.ArgParser;
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyNewWrapper;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyTuple;
+import org.python.core.PyType;
+import org.python.core.PyUnicode;
+import org.python.core.Untraversable;
+import org.python.expose.ExposedClassMethod;
+import org.python.expose.ExposedGet;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedNew;
+import org.python.expose.ExposedType;
+import org.python.expose.MethodType;
+import org.python.modules.time.Time;
+
+/**
+ * The <code>datetime.date</code> type: a date of the proleptic Gregorian calendar, from year 1 to
+ * 9999. Besides the Python interface, a date converts (<code>__tojava__</code>) to a
+ * {@link java.util.Calendar} (in UTC), a {@link java.sql.Date} (in the default time zone) or a
+ * {@link java.time.LocalDate}.
+ */
+@Untraversable
+@ExposedType(name = "datetime.date", doc = PyDate.DATE_DOC)
+public class PyDate extends PyObject {
+
+    public static final PyType TYPE = PyType.fromClass(PyDate.class);
+
+    static final String DATE_DOC = "date(year, month, day) --> date object";
+
+    static {
+        TYPE.fastGetDict().__setitem__("min", new PyDate(Gregorian.MINYEAR, 1, 1));
+        TYPE.fastGetDict().__setitem__("max", new PyDate(Gregorian.MAXYEAR, 12, 31));
+        TYPE.fastGetDict().__setitem__("resolution", new PyTimedelta(1, 0, 0));
+    }
+
+    private final int year;
+    private final int month;
+    private final int day;
+
+    /** A <code>date</code> of fields already validated. */
+    public PyDate(int year, int month, int day) {
+        this(TYPE, year, month, day);
+    }
+
+    public PyDate(PyType subType, int year, int month, int day) {
+        super(subType);
+        this.year = year;
+        this.month = month;
+        this.day = day;
+    }
+
+    @ExposedNew
+    static final PyObject date_new(PyNewWrapper new_, boolean init, PyType subtype,
+            PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("date", args, keywords, new String[] {"year", "month",
+                "day"}, 1);
+        PyObject year = ap.getPyObject(0);
+        PyObject month = ap.getPyObject(1, Py.None);
+        int[] ymd;
+        if (month == Py.None && isState(year, 4)) {
+            // Pickle support
+            String state = ((PyString)year).getString();
+            ymd = new int[] {state.charAt(0) * 256 + state.charAt(1), state.charAt(2),
+                    state.charAt(3)};
+        } else {
+            ymd = Gregorian.checkDateFields(year, month, ap.getPyObject(2, Py.None));
+        }
+        if (new_.for_type == subtype) {
+            return new PyDate(ymd[0], ymd[1], ymd[2]);
+        } else {
+            return new PyDateDerived(subtype, ymd[0], ymd[1], ymd[2]);
+        }
+    }
+
+    /**
+     * Whether the argument is the state of a pickled date or datetime: a <code>str</code> of the
+     * length given, in which the month is valid.
+     */
+    static boolean isState(PyObject arg, int length) {
+        if (!(arg instanceof PyString) || arg instanceof PyUnicode) {
+            return false;
+        }
+        String state = ((PyString)arg).getString();
+        return state.length() == length && state.charAt(2) >= 1 && state.charAt(2) <= 12;
+    }
+
+    /** The state for pickling, with the year in two bytes, as in CPython. */
+    String getState() {
+        return new String(new char[] {(char)(year >> 8), (char)(year & 0xff), (char)month,
+                (char)day});
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    @ExposedGet(name = "year", doc = "year (1-9999)")
+    public PyObject getYearObject() {
+        return Py.newInteger(year);
+    }
+
+    @ExposedGet(name = "month", doc = "month (1-12)")
+    public PyObject getMonthObject() {
+        return Py.newInteger(month);
+    }
+
+    @ExposedGet(name = "day", doc = "day (1-31)")
+    public PyObject getDayObject() {
+        return Py.newInteger(day);
+    }
+
+    @ExposedClassMethod(doc = "timestamp -> local date from a POSIX timestamp (like time.time()).")
+    static final PyObject date_fromtimestamp(PyType type, PyObject t) {
+        PyTuple tm = Time.localtime(t);
+        return type.__call__(tm.pyget(0), tm.pyget(1), tm.pyget(2));
+    }
+
+    @ExposedClassMethod(doc = "Current date or datetime:  same as self.__class__.fromtimestamp("
+            + "time.time()).")
+    static final PyObject date_today(PyType type) {
+        return type.invoke("fromtimestamp", Py.newFloat(Time.time()));
+    }
+
+    @ExposedClassMethod(doc = "int -> date corresponding to a proleptic Gregorian ordinal.")
+    static final PyObject date_fromordinal(PyType type, PyObject n) {
+        long ordinal = n.asLong();
+        if (ordinal < 1) {
+            throw Py.ValueError("ordinal must be >= 1");
+        } else if (ordinal > Gregorian.MAXORDINAL) {
+            throw Py.ValueError("year is out of range");
+        }
+        int[] ymd = Gregorian.ord2ymd(ordinal);
+        return type.__call__(Py.newInteger(ymd[0]), Py.newInteger(ymd[1]),
+                Py.newInteger(ymd[2]));
+    }
+
+    @Override
+    public PyString __repr__() {
+        return date___repr__();
+    }
+
+    @ExposedMethod
+    final PyString date___repr__() {
+        return Py.newString(String.format("datetime.%s(%d, %d, %d)", getType().getName(), year,
+                month, day));
+    }
+
+    @ExposedMethod(doc = "Return ctime() style string.")
+    final PyObject date_ctime() {
+        return Py.newString(Gregorian.ctime(year, month, day, 0, 0, 0));
+    }
+
+    @ExposedMethod(doc = "format -> strftime() style string.")
+    final PyObject date_strftime(PyObject format) {
+        return Gregorian.strftime(format, timeTuple(), 0, Py.None, Py.None);
+    }
+
+    @Override
+    public PyObject __format__(PyObject formatSpec) {
+        return date___format__(formatSpec);
+    }
+
+    @ExposedMethod(doc = "Formats self with strftime.")
+    final PyObject date___format__(PyObject formatSpec) {
+        return format(this, formatSpec);
+    }
+
+    /** The common <code>__format__</code>, by <code>str()</code> or <code>strftime()</code>. */
+    static PyObject format(PyObject self, PyObject formatSpec) {
+        if (!(formatSpec instanceof PyString)) {
+            throw Py.ValueError(String.format("__format__ expects str or unicode, not %s",
+                    formatSpec.getType().fastGetName()));
+        }
+        if (formatSpec.__len__() != 0) {
+            return self.invoke("strftime", formatSpec);
+        }
+        return self.__str__();
+    }
+
+    @ExposedMethod(doc = "Return string in ISO 8601 format, YYYY-MM-DD.")
+    final PyObject date_isoformat() {
+        return Py.newString(isoformat());
+    }
+
+    String isoformat() {
+        return String.format("%04d-%02d-%02d", year, month, day);
+    }
+
+    @Override
+    public PyString __str__() {
+        return date___str__();
+    }
+
+    @ExposedMethod
+    final PyString date___str__() {
+        return Py.newString(isoformat());
+    }
+
+    @ExposedMethod(doc = "Return time tuple, compatible with time.localtime().")
+    final PyObject date_timetuple() {
+        return timeTuple();
+    }
+
+    private PyTuple timeTuple() {
+        return Gregorian.timeTuple(year, month, day, 0, 0, 0, -1);
+    }
+
+    @ExposedMethod(doc = "Return proleptic Gregorian ordinal.  January 1 of year 1 is day 1.")
+    final PyObject date_toordinal() {
+        return Py.newInteger(toOrdinal());
+    }
+
+    int toOrdinal() {
+        return (int)Gregorian.ymd2ord(year, month, day);
+    }
+
+    @ExposedMethod(doc = "Return date with new specified fields.")
+    final PyObject date_replace(PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("replace", args, keywords, new String[] {"year", "month",
+                "day"}, 0);
+        int[] ymd = Gregorian.checkDateFields(ap.getPyObject(0, getYearObject()),
+                ap.getPyObject(1, getMonthObject()), ap.getPyObject(2, getDayObject()));
+        return new PyDate(ymd[0], ymd[1], ymd[2]);
+    }
+
+    /**
+     * Compare to another date, giving -1, 0 or 1. A datetime is compared only by its date, as in
+     * CPython's <code>datetime.py</code>: the datetime's own comparisons take precedence.
+     */
+    private int compareTo(PyDate other) {
+        if (year != other.year) {
+            return year < other.year ? -1 : 1;
+        } else if (month != other.month) {
+            return month < other.month ? -1 : 1;
+        }
+        return Integer.signum(day - other.day);
+    }
+
+    /**
+     * The <code>TypeError</code> of a comparison that is not defined. The datetime types raise it
+     * rather than fall back to comparing the identities of the objects.
+     */
+    static PyException cmpError(PyObject x, PyObject y) {
+        return Py.TypeError(String.format("can't compare '%s' to '%s'",
+                x.getType().fastGetName(), y.getType().fastGetName()));
+    }
+
+    /**
+     * Whether to leave a comparison to the other object: it has a <code>timetuple</code>
+     * attribute, the hook by which other kinds of date-like object may intercept the comparison.
+     */
+    static boolean deferComparison(PyObject other) {
+        return other.__findattr__("timetuple") != null;
+    }
+
+    @Override
+    public PyObject __eq__(PyObject other) {
+        return date___eq__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject date___eq__(PyObject other) {
+        if (other instanceof PyDate) {
+            return Py.newBoolean(compareTo((PyDate)other) == 0);
+        }
+        return deferComparison(other) ? null : Py.False;
+    }
+
+    @Override
+    public PyObject __ne__(PyObject other) {
+        return date___ne__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject date___ne__(PyObject other) {
+        if (other instanceof PyDate) {
+            return Py.newBoolean(compareTo((PyDate)other) != 0);
+        }
+        return deferComparison(other) ? null : Py.True;
+    }
+
+    @Override
+    public PyObject __lt__(PyObject other) {
+        return date___lt__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject date___lt__(PyObject other) {
+        if (other instanceof PyDate) {
+            return Py.newBoolean(compareTo((PyDate)other) < 0);
+        } else if (deferComparison(other)) {
+            return null;
+        }
+        throw cmpError(this, other);
+    }
+
+    @Override
+    public PyObject __le__(PyObject other) {
+        return date___le__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject date___le__(PyObject other) {
+        if (other instanceof PyDate) {
+            return Py.newBoolean(compareTo((PyDate)other) <= 0);
+        } else if (deferComparison(other)) {
+            return null;
+        }
+        throw cmpError(this, other);
+    }
+
+    @Override
+    public PyObject __gt__(PyObject other) {
+        return date___gt__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject date___gt__(PyObject other) {
+        if (other instanceof PyDate) {
+            return Py.newBoolean(compareTo((PyDate)other) > 0);
+        } else if (deferComparison(other)) {
+            return null;
+        }
+        throw cmpError(this, other);
+    }
+
+    @Override
+    public PyObject __ge__(PyObject other) {
+        return date___ge__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject date___ge__(PyObject other) {
+        if (other instanceof PyDate) {
+            return Py.newBoolean(compareTo((PyDate)other) >= 0);
+        } else if (deferComparison(other)) {
+            return null;
+        }
+        throw cmpError(this, other);
+    }
+
+    @Override
+    public int hashCode() {
+        return date___hash__();
+    }
+
+    @ExposedMethod
+    final int date___hash__() {
+        return (year * 13 + month) * 32 + day;
+    }
+
+    /**
+     * Year, month and day of the ordinal, which must be a date of years 1 to 9999.
+     *
+     * @throws OverflowError if it is not
+     */
+    static int[] checkedOrd2ymd(long ordinal) {
+        int[] ymd = Gregorian.ord2ymd(ordinal);
+        if (ordinal < 1 || ordinal > Gregorian.MAXORDINAL) {
+            throw Py.OverflowError(String.format("date +/-: result year %d not in %d..%d",
+                    ymd[0], Gregorian.MINYEAR, Gregorian.MAXYEAR));
+        }
+        return ymd;
+    }
+
+    @Override
+    public PyObject __add__(PyObject other) {
+        return date___add__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject date___add__(PyObject other) {
+        if (!(other instanceof PyTimedelta)) {
+            return null;
+        }
+        int[] ymd = checkedOrd2ymd((long)toOrdinal() + ((PyTimedelta)other).getDays());
+        return new PyDate(ymd[0], ymd[1], ymd[2]);
+    }
+
+    @Override
+    public PyObject __radd__(PyObject other) {
+        return date___radd__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject date___radd__(PyObject other) {
+        return date___add__(other);
+    }
+
+    @Override
+    public PyObject __sub__(PyObject other) {
+        return date___sub__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject date___sub__(PyObject other) {
+        if (other instanceof PyTimedelta) {
+            int[] ymd = checkedOrd2ymd((long)toOrdinal() - ((PyTimedelta)other).getDays());
+            return new PyDate(ymd[0], ymd[1], ymd[2]);
+        } else if (other instanceof PyDate) {
+            return new PyTimedelta(toOrdinal() - ((PyDate)other).toOrdinal(), 0, 0);
+        }
+        return null;
+    }
+
+    @ExposedMethod(doc = "Return the day of the week represented by the date.\n"
+            + "Monday == 0 ... Sunday == 6")
+    final PyObject date_weekday() {
+        return Py.newInteger((toOrdinal() + 6) % 7);
+    }
+
+    @ExposedMethod(doc = "Return the day of the week represented by the date.\n"
+            + "Monday == 1 ... Sunday == 7")
+    final PyObject date_isoweekday() {
+        int weekday = toOrdinal() % 7;
+        return Py.newInteger(weekday == 0 ? 7 : weekday);
+    }
+
+    @ExposedMethod(doc = "Return a 3-tuple containing ISO year, week number, and weekday.")
+    final PyObject date_isocalendar() {
+        // The first ISO week of the year is the (Mon-Sun) week containing the year's first
+        // Thursday; internally, week and day have origin 0.
+        int isoyear = year;
+        long today = toOrdinal();
+        long week1monday = Gregorian.isoWeek1Monday(isoyear);
+        long week = Gregorian.floorDiv(today - week1monday, 7);
+        if (week < 0) {
+            isoyear -= 1;
+            week1monday = Gregorian.isoWeek1Monday(isoyear);
+        } else if (week >= 52 && today >= Gregorian.isoWeek1Monday(isoyear + 1)) {
+            isoyear += 1;
+            week1monday = Gregorian.isoWeek1Monday(isoyear);
+        }
+        week = Gregorian.floorDiv(today - week1monday, 7);
+        long weekday = Gregorian.floorMod(today - week1monday, 7);
+        return new PyTuple(Py.newInteger(isoyear), Py.newInteger(week + 1),
+                Py.newInteger(weekday + 1));
+    }
+
+    @Override
+    public PyObject __reduce__() {
+        return date___reduce__();
+    }
+
+    @ExposedMethod(doc = "__reduce__() -> (cls, state)")
+    final PyObject date___reduce__() {
+        return new PyTuple(getType(), new PyTuple(Py.newString(getState())));
+    }
+
+    @Override
+    public Object __tojava__(Class<?> c) {
+        Object result = toJava(c);
+        return result != null ? result : super.__tojava__(c);
+    }
+
+    @ExposedMethod(doc = "Java class -> this date as an instance of it, if possible.")
+    final PyObject date___tojava__(PyObject cls) {
+        return javaResult(toJava(cls));
+    }
+
+    /** The argument as a Java class, or <code>null</code> if it is not one. */
+    static Class<?> asJavaClass(PyObject cls) {
+        Object c = cls.__tojava__(Class.class);
+        return c instanceof Class ? (Class<?>)c : null;
+    }
+
+    /** The result of the Python-level <code>__tojava__</code>: the object or NoConversion. */
+    static PyObject javaResult(Object result) {
+        return Py.java2py(result != null ? result : Py.NoConversion);
+    }
+
+    private Object toJava(PyObject cls) {
+        Class<?> c = asJavaClass(cls);
+        return c == null ? null : toJava(c);
+    }
+
+    /**
+     * Convert to the class given, if it is one the date supports, or return <code>null</code>.
+     * This is private (and <code>datetime</code> has its own) since the Java
+     * <code>__tojava__</code> of a derived class calls the Python one, which calls this.
+     */
+    private Object toJava(Class<?> c) {
+        if (c == Calendar.class) {
+            Calendar calendar = Gregorian.javaUTCCalendar();
+            calendar.set(year, month - 1, day);
+            return calendar;
+        } else if (c == java.sql.Date.class || c == Object.class) {
+            Calendar calendar = new GregorianCalendar(0, 0, 0, 0, 0, 0);
+            calendar.set(year, month - 1, day);
+            return new java.sql.Date(calendar.getTimeInMillis());
+        } else if (c == LocalDate.class) {
+            return LocalDate.of(year, month, day);
+        }
+        return null;
+    }
+}
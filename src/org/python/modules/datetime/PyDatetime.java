@@ -0,0 +1,675 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.datetime;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Calendar;
+
+import org.python.core.ArgParser;
+import org.python.core.Py;
+import org.python.core.PyNewWrapper;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyTuple;
+import org.python.core.PyType;
+import org.python.core.PyUnicode;
+import org.python.core.Traverseproc;
+import org.python.core.Visitproc;
+import org.python.core.__builtin__;
+import org.python.expose.ExposedClassMethod;
+import org.python.expose.ExposedGet;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedNew;
+import org.python.expose.ExposedType;
+import org.python.expose.MethodType;
+import org.python.modules.time.Time;
+
+/**
+ * The <code>datetime.datetime</code> type: a date and a time of day, possibly with time zone
+ * information (a <code>tzinfo</code>). Besides the Python interface, a datetime converts
+ * (<code>__tojava__</code>) to a {@link java.util.Calendar} or a {@link java.sql.Timestamp}, in the
+ * zone of its <code>tzinfo</code> or UTC, or to a {@link java.time.LocalDateTime}.
+ */
+@ExposedType(name = "datetime.datetime", doc = PyDatetime.DATETIME_DOC)
+public class PyDatetime extends PyDate implements Traverseproc {
+
+    public static final PyType TYPE = PyType.fromClass(PyDatetime.class);
+
+    static final String DATETIME_DOC = "datetime(year, month, day[, hour[, minute[, second[, "
+            + "microsecond[,tzinfo]]]]])\n\nThe year, month and day arguments are required. "
+            + "tzinfo may be None, or an\ninstance of a tzinfo subclass. The remaining arguments "
+            + "may be ints or longs.";
+
+    static {
+        TYPE.fastGetDict().__setitem__("min", new PyDatetime(Gregorian.MINYEAR, 1, 1, 0, 0, 0,
+                0, Py.None));
+        TYPE.fastGetDict().__setitem__("max", new PyDatetime(Gregorian.MAXYEAR, 12, 31, 23, 59,
+                59, 999999, Py.None));
+        TYPE.fastGetDict().__setitem__("resolution", new PyTimedelta(0, 0, 1));
+    }
+
+    private final int hour;
+    private final int minute;
+    private final int second;
+    private final int microsecond;
+    /** A <code>tzinfo</code> or <code>None</code>. */
+    private final PyObject tzinfo;
+
+    /** A <code>datetime</code> of fields already validated. */
+    public PyDatetime(int year, int month, int day, int hour, int minute, int second,
+            int microsecond, PyObject tzinfo) {
+        this(TYPE, year, month, day, hour, minute, second, microsecond, tzinfo);
+    }
+
+    public PyDatetime(PyType subType, int year, int month, int day, int hour, int minute,
+            int second, int microsecond, PyObject tzinfo) {
+        super(subType, year, month, day);
+        this.hour = hour;
+        this.minute = minute;
+        this.second = second;
+        this.microsecond = microsecond;
+        this.tzinfo = tzinfo;
+    }
+
+    @ExposedNew
+    static final PyObject datetime_new(PyNewWrapper new_, boolean init, PyType subtype,
+            PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("datetime", args, keywords, new String[] {"year", "month",
+                "day", "hour", "minute", "second", "microsecond", "tzinfo"}, 1);
+        PyObject year = ap.getPyObject(0);
+        int[] ymd, fields;
+        PyObject tzinfo;
+        if (isState(year, 10)) {
+            // Pickle support
+            String state = ((PyString)year).getString();
+            ymd = new int[] {state.charAt(0) * 256 + state.charAt(1), state.charAt(2),
+                    state.charAt(3)};
+            fields = new int[] {state.charAt(4), state.charAt(5), state.charAt(6),
+                    (state.charAt(7) << 16) | (state.charAt(8) << 8) | state.charAt(9)};
+            tzinfo = ap.getPyObject(1, Py.None);
+            if (tzinfo != Py.None && !(tzinfo instanceof PyTzinfo)) {
+                throw Py.TypeError("bad tzinfo state arg");
+            }
+        } else {
+            ymd = Gregorian.checkDateFields(year, ap.getPyObject(1, Py.None),
+                    ap.getPyObject(2, Py.None));
+            fields = Gregorian.checkTimeFields(ap.getPyObject(3, Py.Zero),
+                    ap.getPyObject(4, Py.Zero), ap.getPyObject(5, Py.Zero),
+                    ap.getPyObject(6, Py.Zero));
+            tzinfo = ap.getPyObject(7, Py.None);
+            Gregorian.checkTzinfoArg(tzinfo);
+        }
+        if (new_.for_type == subtype) {
+            return new PyDatetime(ymd[0], ymd[1], ymd[2], fields[0], fields[1], fields[2],
+                    fields[3], tzinfo);
+        } else {
+            return new PyDatetimeDerived(subtype, ymd[0], ymd[1], ymd[2], fields[0], fields[1],
+                    fields[2], fields[3], tzinfo);
+        }
+    }
+
+    public int getHour() {
+        return hour;
+    }
+
+    public int getMinute() {
+        return minute;
+    }
+
+    public int getSecond() {
+        return second;
+    }
+
+    public int getMicrosecond() {
+        return microsecond;
+    }
+
+    @ExposedGet(name = "tzinfo", doc = "timezone info object")
+    public PyObject getTzinfo() {
+        return tzinfo;
+    }
+
+    @ExposedGet(name = "hour", doc = "hour (0-23)")
+    public PyObject getHourObject() {
+        return Py.newInteger(hour);
+    }
+
+    @ExposedGet(name = "minute", doc = "minute (0-59)")
+    public PyObject getMinuteObject() {
+        return Py.newInteger(minute);
+    }
+
+    @ExposedGet(name = "second", doc = "second (0-59)")
+    public PyObject getSecondObject() {
+        return Py.newInteger(second);
+    }
+
+    @ExposedGet(name = "microsecond", doc = "microsecond (0-999999)")
+    public PyObject getMicrosecondObject() {
+        return Py.newInteger(microsecond);
+    }
+
+    @ExposedClassMethod(doc = "timestamp[, tz] -> tz's local time from POSIX timestamp.")
+    static final PyObject datetime_fromtimestamp(PyType type, PyObject[] args,
+            String[] keywords) {
+        ArgParser ap = new ArgParser("fromtimestamp", args, keywords, new String[] {
+                "timestamp", "tz"}, 1);
+        PyObject tz = ap.getPyObject(1, Py.None);
+        Gregorian.checkTzinfoArg(tz);
+        PyObject result = fromTimestamp(type, ap.getPyObject(0), tz);
+        return tz == Py.None ? result : tz.invoke("fromutc", result);
+    }
+
+    @ExposedClassMethod(doc = "timestamp -> UTC datetime from a POSIX timestamp "
+            + "(like time.time()).")
+    static final PyObject datetime_utcfromtimestamp(PyType type, PyObject t) {
+        return fromTimestamp(type, t, null);
+    }
+
+    /**
+     * Construct an instance of the type from a timestamp, in local time if the
+     * <code>tzinfo</code> is <code>null</code> and otherwise in UTC, with that
+     * <code>tzinfo</code>.
+     */
+    private static PyObject fromTimestamp(PyType type, PyObject t, PyObject tzinfo) {
+        double timestamp = t.asDouble();
+        double whole = Math.floor(timestamp);
+        long us = Math.round((timestamp - whole) * 1e6);
+        // If the timestamp is less than one microsecond smaller than a full second, us can be
+        // rounded up to 1000000: roll over to seconds.
+        if (us == Gregorian.MICROS_PER_SECOND) {
+            whole += 1;
+            us = 0;
+        }
+        PyObject secs = Py.newFloat(whole);
+        PyTuple tm = tzinfo == Py.None ? Time.localtime(secs) : Time.gmtime(secs);
+        // Clamp out leap seconds, should the platform have them
+        PyObject ss = Py.newInteger(Math.min(tm.pyget(5).asInt(), 59));
+        PyObject[] args = {tm.pyget(0), tm.pyget(1), tm.pyget(2), tm.pyget(3), tm.pyget(4), ss,
+                Py.newInteger(us), tzinfo == null ? Py.None : tzinfo};
+        return type.__call__(args);
+    }
+
+    @ExposedClassMethod(doc = "[tz] -> new datetime with tz's local day and time.")
+    static final PyObject datetime_now(PyType type, PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("now", args, keywords, new String[] {"tz"}, 0);
+        return type.invoke("fromtimestamp", Py.newFloat(Time.time()),
+                ap.getPyObject(0, Py.None));
+    }
+
+    @ExposedClassMethod(doc = "Return a new datetime representing UTC day and time.")
+    static final PyObject datetime_utcnow(PyType type) {
+        return type.invoke("utcfromtimestamp", Py.newFloat(Time.time()));
+    }
+
+    @ExposedClassMethod(doc = "date, time -> datetime with same date and time fields")
+    static final PyObject datetime_combine(PyType type, PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("combine", args, keywords, new String[] {"date", "time"},
+                2);
+        PyObject date = ap.getPyObject(0);
+        PyObject time = ap.getPyObject(1);
+        if (!(date instanceof PyDate)) {
+            throw Py.TypeError("date argument must be a date instance");
+        } else if (!(time instanceof PyTime)) {
+            throw Py.TypeError("time argument must be a time instance");
+        }
+        PyDate d = (PyDate)date;
+        PyTime t = (PyTime)time;
+        return type.__call__(new PyObject[] {d.getYearObject(), d.getMonthObject(),
+                d.getDayObject(), t.getHourObject(), t.getMinuteObject(), t.getSecondObject(),
+                t.getMicrosecondObject(), t.getTzinfo()});
+    }
+
+    @ExposedClassMethod(doc = "string, format -> new datetime parsed from a string "
+            + "(like time.strptime()).")
+    static final PyObject datetime_strptime(PyType type, PyObject string, PyObject format) {
+        int[] fields = Gregorian.strptime(string, format);
+        PyObject[] args = new PyObject[7];
+        if (fields != null) {
+            // Fast path: formats made only of numeric fields and literals
+            for (int i = 0; i < args.length; i++) {
+                args[i] = Py.newInteger(fields[i]);
+            }
+        } else {
+            // _strptime._strptime returns (time.struct_time, microseconds)
+            PyObject strptime = __builtin__.__import__("_strptime").__getattr__("_strptime");
+            PyObject result = strptime.__call__(string, format);
+            PyObject struct = result.__getitem__(0);
+            for (int i = 0; i < 6; i++) {
+                args[i] = struct.__getitem__(i);
+            }
+            args[6] = result.__getitem__(1);
+        }
+        return type.__call__(args);
+    }
+
+    /** Offset from UTC in minutes, or <code>null</code> if naive. */
+    private Integer utcoffset() {
+        return Gregorian.utcoffset(tzinfo, this);
+    }
+
+    @ExposedMethod(doc = "Return self.tzinfo.utcoffset(self).")
+    final PyObject datetime_utcoffset() {
+        return Gregorian.offsetDelta(utcoffset());
+    }
+
+    @ExposedMethod(doc = "Return self.tzinfo.tzname(self).")
+    final PyObject datetime_tzname() {
+        return Gregorian.tzname(tzinfo, this);
+    }
+
+    @ExposedMethod(doc = "Return self.tzinfo.dst(self).")
+    final PyObject datetime_dst() {
+        return Gregorian.offsetDelta(Gregorian.dst(tzinfo, this));
+    }
+
+    @ExposedMethod(doc = "Return time tuple, compatible with time.localtime().")
+    final PyObject datetime_timetuple() {
+        return timeTuple();
+    }
+
+    private PyTuple timeTuple() {
+        Integer dst = Gregorian.dst(tzinfo, this);
+        int dstflag = dst == null ? -1 : (dst != 0 ? 1 : 0);
+        return Gregorian.timeTuple(getYear(), getMonth(), getDay(), hour, minute, second,
+                dstflag);
+    }
+
+    @ExposedMethod(doc = "Return UTC time tuple, compatible with time.localtime().")
+    final PyObject datetime_utctimetuple() {
+        int y = getYear(), m = getMonth(), d = getDay(), hh = hour, mm = minute;
+        Integer offset = utcoffset();
+        if (offset != null && offset != 0) {
+            // The result may fall in year 0 or 10000
+            long minutes = hh * 60 + mm - offset;
+            int[] ymd = Gregorian.ord2ymd(toOrdinal() + Gregorian.floorDiv(minutes, 1440));
+            y = ymd[0];
+            m = ymd[1];
+            d = ymd[2];
+            minutes = Gregorian.floorMod(minutes, 1440);
+            hh = (int)(minutes / 60);
+            mm = (int)(minutes % 60);
+        }
+        return Gregorian.timeTuple(y, m, d, hh, mm, second, 0);
+    }
+
+    @ExposedMethod(doc = "Return date object with same year, month and day.")
+    final PyObject datetime_date() {
+        return new PyDate(getYear(), getMonth(), getDay());
+    }
+
+    @ExposedMethod(doc = "Return time object with same time but with tzinfo=None.")
+    final PyObject datetime_time() {
+        return new PyTime(hour, minute, second, microsecond, Py.None);
+    }
+
+    @ExposedMethod(doc = "Return time object with same time and tzinfo.")
+    final PyObject datetime_timetz() {
+        return new PyTime(hour, minute, second, microsecond, tzinfo);
+    }
+
+    @ExposedMethod(doc = "Return datetime with new specified fields.")
+    final PyObject datetime_replace(PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("replace", args, keywords, new String[] {"year", "month",
+                "day", "hour", "minute", "second", "microsecond", "tzinfo"}, 0);
+        int[] ymd = Gregorian.checkDateFields(ap.getPyObject(0, getYearObject()),
+                ap.getPyObject(1, getMonthObject()), ap.getPyObject(2, getDayObject()));
+        int[] fields = Gregorian.checkTimeFields(ap.getPyObject(3, getHourObject()),
+                ap.getPyObject(4, getMinuteObject()), ap.getPyObject(5, getSecondObject()),
+                ap.getPyObject(6, getMicrosecondObject()));
+        PyObject newTzinfo = ap.getPyObject(7, tzinfo);
+        Gregorian.checkTzinfoArg(newTzinfo);
+        return new PyDatetime(ymd[0], ymd[1], ymd[2], fields[0], fields[1], fields[2],
+                fields[3], newTzinfo);
+    }
+
+    @ExposedMethod(doc = "tz -> convert to local time in new timezone tz")
+    final PyObject datetime_astimezone(PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("astimezone", args, keywords, new String[] {"tz"}, 1);
+        PyObject tz = ap.getPyObject(0);
+        if (!(tz instanceof PyTzinfo)) {
+            throw Py.TypeError("tz argument must be an instance of tzinfo");
+        }
+        if (tzinfo == Py.None) {
+            throw Py.ValueError("astimezone() requires an aware datetime");
+        } else if (tz == tzinfo) {
+            return this;
+        }
+        // Convert self to UTC, and attach the new time zone object.
+        Integer offset = utcoffset();
+        if (offset == null) {
+            throw Py.ValueError("astimezone() requires an aware datetime");
+        }
+        PyDatetime utc = add(0, -offset * 60, 0, tz);
+        // Convert from UTC to tz's local time.
+        return tz.invoke("fromutc", utc);
+    }
+
+    @ExposedMethod(doc = "Return ctime() style string.")
+    final PyObject datetime_ctime() {
+        return Py.newString(Gregorian.ctime(getYear(), getMonth(), getDay(), hour, minute,
+                second));
+    }
+
+    @ExposedMethod(doc = "format -> strftime() style string.")
+    final PyObject datetime_strftime(PyObject format) {
+        return Gregorian.strftime(format, timeTuple(), microsecond, tzinfo, this);
+    }
+
+    @ExposedMethod(doc = "[sep] -> string in ISO 8601 format, "
+            + "YYYY-MM-DDTHH:MM:SS[.mmmmmm][+HH:MM].\n\n"
+            + "sep is used to separate the year from the time, and defaults to 'T'.")
+    final PyObject datetime_isoformat(PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("isoformat", args, keywords, new String[] {"sep"}, 0);
+        PyObject sep = ap.getPyObject(0, Py.newString('T'));
+        if (!(sep instanceof PyString) || sep instanceof PyUnicode || sep.__len__() != 1) {
+            throw Py.TypeError(String.format("isoformat() argument 1 must be char, not %s",
+                    sep.getType().fastGetName()));
+        }
+        return Py.newString(isoformat(((PyString)sep).getString().charAt(0)));
+    }
+
+    private String isoformat(char sep) {
+        return isoformat() + sep + Gregorian.formatTime(hour, minute, second, microsecond)
+                + Gregorian.formatOffset(utcoffset(), ":");
+    }
+
+    @Override
+    public PyString __str__() {
+        return datetime___str__();
+    }
+
+    @ExposedMethod
+    final PyString datetime___str__() {
+        return invoke("isoformat", Py.newString(' ')).__str__();
+    }
+
+    @Override
+    public PyString __repr__() {
+        return datetime___repr__();
+    }
+
+    @ExposedMethod
+    final PyString datetime___repr__() {
+        StringBuilder s = new StringBuilder("datetime.").append(getType().getName());
+        s.append('(').append(getYear()).append(", ").append(getMonth()).append(", ")
+                .append(getDay()).append(", ").append(hour).append(", ").append(minute);
+        if (microsecond != 0) {
+            s.append(", ").append(second).append(", ").append(microsecond);
+        } else if (second != 0) {
+            s.append(", ").append(second);
+        }
+        if (tzinfo != Py.None) {
+            s.append(", tzinfo=").append(tzinfo.__repr__().toString());
+        }
+        return Py.newString(s.append(')').toString());
+    }
+
+    /** Seconds since 0001-01-01T00:00:00 less a day, ignoring the microseconds and offset. */
+    private long seconds() {
+        return (long)toOrdinal() * Gregorian.SECONDS_PER_DAY + hour * 3600 + minute * 60
+                + second;
+    }
+
+    /**
+     * Compare to another datetime, giving -1, 0 or 1. Datetimes are compared by their fields if
+     * they share a <code>tzinfo</code> or have the same offset, and otherwise as UTC.
+     */
+    private int compareTo(PyDatetime other) {
+        Integer myoff = null, otoff = null;
+        boolean baseCompare = tzinfo == other.tzinfo;
+        if (!baseCompare) {
+            myoff = utcoffset();
+            otoff = other.utcoffset();
+            baseCompare = myoff == null ? otoff == null : myoff.equals(otoff);
+        }
+        long mysecs = seconds(), otsecs = other.seconds();
+        if (!baseCompare) {
+            if (myoff == null || otoff == null) {
+                throw Py.TypeError("can't compare offset-naive and offset-aware datetimes");
+            }
+            mysecs -= myoff * 60;
+            otsecs -= otoff * 60;
+        }
+        if (mysecs != otsecs) {
+            return mysecs < otsecs ? -1 : 1;
+        }
+        return Integer.signum(microsecond - other.microsecond);
+    }
+
+    /**
+     * Whether to leave a comparison to the other object: it is date-like but not a date. (A date
+     * that is not a datetime compares unequal, not by its date, as in CPython.)
+     */
+    private static boolean deferDatetimeComparison(PyObject other) {
+        return !(other instanceof PyDate) && deferComparison(other);
+    }
+
+    @Override
+    public PyObject __eq__(PyObject other) {
+        return datetime___eq__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject datetime___eq__(PyObject other) {
+        if (other instanceof PyDatetime) {
+            return Py.newBoolean(compareTo((PyDatetime)other) == 0);
+        }
+        return deferDatetimeComparison(other) ? null : Py.False;
+    }
+
+    @Override
+    public PyObject __ne__(PyObject other) {
+        return datetime___ne__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject datetime___ne__(PyObject other) {
+        if (other instanceof PyDatetime) {
+            return Py.newBoolean(compareTo((PyDatetime)other) != 0);
+        }
+        return deferDatetimeComparison(other) ? null : Py.True;
+    }
+
+    @Override
+    public PyObject __lt__(PyObject other) {
+        return datetime___lt__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject datetime___lt__(PyObject other) {
+        if (other instanceof PyDatetime) {
+            return Py.newBoolean(compareTo((PyDatetime)other) < 0);
+        } else if (deferDatetimeComparison(other)) {
+            return null;
+        }
+        throw cmpError(this, other);
+    }
+
+    @Override
+    public PyObject __le__(PyObject other) {
+        return datetime___le__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject datetime___le__(PyObject other) {
+        if (other instanceof PyDatetime) {
+            return Py.newBoolean(compareTo((PyDatetime)other) <= 0);
+        } else if (deferDatetimeComparison(other)) {
+            return null;
+        }
+        throw cmpError(this, other);
+    }
+
+    @Override
+    public PyObject __gt__(PyObject other) {
+        return datetime___gt__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject datetime___gt__(PyObject other) {
+        if (other instanceof PyDatetime) {
+            return Py.newBoolean(compareTo((PyDatetime)other) > 0);
+        } else if (deferDatetimeComparison(other)) {
+            return null;
+        }
+        throw cmpError(this, other);
+    }
+
+    @Override
+    public PyObject __ge__(PyObject other) {
+        return datetime___ge__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject datetime___ge__(PyObject other) {
+        if (other instanceof PyDatetime) {
+            return Py.newBoolean(compareTo((PyDatetime)other) >= 0);
+        } else if (deferDatetimeComparison(other)) {
+            return null;
+        }
+        throw cmpError(this, other);
+    }
+
+    @Override
+    public int hashCode() {
+        return datetime___hash__();
+    }
+
+    @ExposedMethod
+    final int datetime___hash__() {
+        // Consistent with equality: the time in UTC, if aware
+        Integer offset = utcoffset();
+        long secs = seconds() - (offset == null ? 0 : offset * 60);
+        return (int)(secs ^ (secs >>> 32)) * 1000003 ^ microsecond;
+    }
+
+    /**
+     * This datetime moved by the days, seconds and microseconds given, with the
+     * <code>tzinfo</code> given.
+     *
+     * @throws OverflowError if the result is outside years 1 to 9999
+     */
+    private PyDatetime add(long days, long seconds, long microseconds, PyObject newTzinfo) {
+        long us = microsecond + microseconds;
+        long s = hour * 3600 + minute * 60 + second + seconds
+                + Gregorian.floorDiv(us, Gregorian.MICROS_PER_SECOND);
+        long d = toOrdinal() + days + Gregorian.floorDiv(s, Gregorian.SECONDS_PER_DAY);
+        int[] ymd = checkedOrd2ymd(d);
+        s = Gregorian.floorMod(s, Gregorian.SECONDS_PER_DAY);
+        return new PyDatetime(ymd[0], ymd[1], ymd[2], (int)(s / 3600), (int)(s / 60 % 60),
+                (int)(s % 60), (int)Gregorian.floorMod(us, Gregorian.MICROS_PER_SECOND),
+                newTzinfo);
+    }
+
+    @Override
+    public PyObject __add__(PyObject other) {
+        return datetime___add__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject datetime___add__(PyObject other) {
+        if (!(other instanceof PyTimedelta)) {
+            return null;
+        }
+        PyTimedelta delta = (PyTimedelta)other;
+        return add(delta.getDays(), delta.getSeconds(), delta.getMicroseconds(), tzinfo);
+    }
+
+    @Override
+    public PyObject __radd__(PyObject other) {
+        return datetime___radd__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject datetime___radd__(PyObject other) {
+        return datetime___add__(other);
+    }
+
+    @Override
+    public PyObject __sub__(PyObject other) {
+        return datetime___sub__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject datetime___sub__(PyObject other) {
+        if (other instanceof PyTimedelta) {
+            PyTimedelta delta = (PyTimedelta)other;
+            return add(-(long)delta.getDays(), -(long)delta.getSeconds(),
+                    -(long)delta.getMicroseconds(), tzinfo);
+        } else if (!(other instanceof PyDatetime)) {
+            return null;
+        }
+        PyDatetime o = (PyDatetime)other;
+        long seconds = seconds() - o.seconds();
+        if (tzinfo != o.tzinfo) {
+            Integer myoff = utcoffset(), otoff = o.utcoffset();
+            if (myoff == null ? otoff != null : !myoff.equals(otoff)) {
+                if (myoff == null || otoff == null) {
+                    throw Py.TypeError("can't subtract offset-naive and offset-aware datetimes");
+                }
+                seconds += (otoff - myoff) * 60;
+            }
+        }
+        return PyTimedelta.of(0, seconds, microsecond - o.microsecond);
+    }
+
+    @Override
+    public PyObject __reduce__() {
+        return datetime___reduce__();
+    }
+
+    @ExposedMethod(doc = "__reduce__() -> (cls, state)")
+    final PyObject datetime___reduce__() {
+        PyString state = Py.newString(getState() + new String(new char[] {(char)hour,
+                (char)minute, (char)second, (char)(microsecond >> 16),
+                (char)((microsecond >> 8) & 0xff), (char)(microsecond & 0xff)}));
+        PyTuple args = tzinfo == Py.None ? new PyTuple(state) : new PyTuple(state, tzinfo);
+        return new PyTuple(getType(), args);
+    }
+
+    @Override
+    public Object __tojava__(Class<?> c) {
+        Object result = toJava(c);
+        return result != null ? result : super.__tojava__(c);
+    }
+
+    @ExposedMethod(doc = "Java class -> this datetime as an instance of it, if possible.")
+    final PyObject datetime___tojava__(PyObject cls) {
+        Class<?> c = asJavaClass(cls);
+        return javaResult(c == null ? null : toJava(c));
+    }
+
+    /**
+     * Convert to the class given, if it is one the datetime supports, or return
+     * <code>null</code>.
+     */
+    private Object toJava(Class<?> c) {
+        if (c == Calendar.class || c == Timestamp.class || c == Object.class) {
+            Calendar calendar = Gregorian.javaCalendar(tzinfo, this);
+            calendar.set(getYear(), getMonth() - 1, getDay(), hour, minute, second);
+            calendar.set(Calendar.MILLISECOND, microsecond / 1000);
+            if (c == Calendar.class) {
+                return calendar;
+            }
+            Timestamp timestamp = new Timestamp(calendar.getTimeInMillis());
+            timestamp.setNanos(microsecond * 1000);
+            return timestamp;
+        } else if (c == LocalDateTime.class) {
+            return LocalDateTime.of(getYear(), getMonth(), getDay(), hour, minute, second,
+                    microsecond * 1000);
+        }
+        return null;
+    }
+
+    /* Traverseproc implementation */
+    @Override
+    public int traverse(Visitproc visit, Object arg) {
+        return visit.visit(tzinfo, arg);
+    }
+
+    @Override
+    public boolean refersDirectlyTo(PyObject ob) {
+        return ob != null && ob == tzinfo;
+    }
+}
@@ -0,0 +1,423 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.datetime;
+
+import java.sql.Time;
+import java.time.LocalTime;
+import java.util.Calendar;
+
+import org.python.core.ArgParser;
+import org.python.core.Py;
+import org.python.core.PyNewWrapper;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyTuple;
+import org.python.core.PyType;
+import org.python.core.PyUnicode;
+import org.python.core.Traverseproc;
+import org.python.core.Visitproc;
+import org.python.expose.ExposedGet;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedNew;
+import org.python.expose.ExposedType;
+import org.python.expose.MethodType;
+
+/**
+ * The <code>datetime.time</code> type: a time of day, possibly with time zone information (a
+ * <code>tzinfo</code>). Besides the Python interface, a time converts (<code>__tojava__</code>) to
+ * a {@link java.util.Calendar} or a {@link java.sql.Time} on 1 January 1970, or to a
+ * {@link java.time.LocalTime}.
+ */
+@ExposedType(name = "datetime.time", doc = PyTime.TIME_DOC)
+public class PyTime extends PyObject implements Traverseproc {
+
+    public static final PyType TYPE = PyType.fromClass(PyTime.class);
+
+    static final String TIME_DOC = "time([hour[, minute[, second[, microsecond[, tzinfo]]]]]) "
+            + "--> a time object\n\nAll arguments are optional. tzinfo may be None, or an "
+            + "instance of\na tzinfo subclass. The remaining arguments may be ints or longs.";
+
+    static {
+        TYPE.fastGetDict().__setitem__("min", new PyTime(0, 0, 0, 0, Py.None));
+        TYPE.fastGetDict().__setitem__("max", new PyTime(23, 59, 59, 999999, Py.None));
+        TYPE.fastGetDict().__setitem__("resolution", new PyTimedelta(0, 0, 1));
+    }
+
+    private final int hour;
+    private final int minute;
+    private final int second;
+    private final int microsecond;
+    /** A <code>tzinfo</code> or <code>None</code>. */
+    private final PyObject tzinfo;
+
+    /** A <code>time</code> of fields already validated. */
+    public PyTime(int hour, int minute, int second, int microsecond, PyObject tzinfo) {
+        this(TYPE, hour, minute, second, microsecond, tzinfo);
+    }
+
+    public PyTime(PyType subType, int hour, int minute, int second, int microsecond,
+            PyObject tzinfo) {
+        super(subType);
+        this.hour = hour;
+        this.minute = minute;
+        this.second = second;
+        this.microsecond = microsecond;
+        this.tzinfo = tzinfo;
+    }
+
+    @ExposedNew
+    static final PyObject time_new(PyNewWrapper new_, boolean init, PyType subtype,
+            PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("time", args, keywords, new String[] {"hour", "minute",
+                "second", "microsecond", "tzinfo"}, 0);
+        PyObject hour = ap.getPyObject(0, Py.Zero);
+        int[] fields;
+        PyObject tzinfo;
+        if (isState(hour)) {
+            // Pickle support
+            String state = ((PyString)hour).getString();
+            fields = new int[] {state.charAt(0), state.charAt(1), state.charAt(2),
+                    (state.charAt(3) << 16) | (state.charAt(4) << 8) | state.charAt(5)};
+            tzinfo = ap.getPyObject(1, Py.None);
+            if (!tzinfo.__nonzero__()) {
+                tzinfo = Py.None;
+            } else if (!(tzinfo instanceof PyTzinfo)) {
+                throw Py.TypeError("bad tzinfo state arg");
+            }
+        } else {
+            fields = Gregorian.checkTimeFields(hour, ap.getPyObject(1, Py.Zero),
+                    ap.getPyObject(2, Py.Zero), ap.getPyObject(3, Py.Zero));
+            tzinfo = ap.getPyObject(4, Py.None);
+            Gregorian.checkTzinfoArg(tzinfo);
+        }
+        if (new_.for_type == subtype) {
+            return new PyTime(fields[0], fields[1], fields[2], fields[3], tzinfo);
+        } else {
+            return new PyTimeDerived(subtype, fields[0], fields[1], fields[2], fields[3],
+                    tzinfo);
+        }
+    }
+
+    /** Whether the argument is the state of a pickled time, in which the hour is valid. */
+    private static boolean isState(PyObject arg) {
+        if (!(arg instanceof PyString) || arg instanceof PyUnicode) {
+            return false;
+        }
+        String state = ((PyString)arg).getString();
+        return state.length() == 6 && state.charAt(0) < 24;
+    }
+
+    public int getHour() {
+        return hour;
+    }
+
+    public int getMinute() {
+        return minute;
+    }
+
+    public int getSecond() {
+        return second;
+    }
+
+    public int getMicrosecond() {
+        return microsecond;
+    }
+
+    @ExposedGet(name = "tzinfo", doc = "timezone info object")
+    public PyObject getTzinfo() {
+        return tzinfo;
+    }
+
+    @ExposedGet(name = "hour", doc = "hour (0-23)")
+    public PyObject getHourObject() {
+        return Py.newInteger(hour);
+    }
+
+    @ExposedGet(name = "minute", doc = "minute (0-59)")
+    public PyObject getMinuteObject() {
+        return Py.newInteger(minute);
+    }
+
+    @ExposedGet(name = "second", doc = "second (0-59)")
+    public PyObject getSecondObject() {
+        return Py.newInteger(second);
+    }
+
+    @ExposedGet(name = "microsecond", doc = "microsecond (0-999999)")
+    public PyObject getMicrosecondObject() {
+        return Py.newInteger(microsecond);
+    }
+
+    /**
+     * Compare to another time, giving -1, 0 or 1. Times are compared by their fields if they share
+     * a <code>tzinfo</code> or have the same offset, and otherwise as UTC.
+     */
+    private int compareTo(PyTime other) {
+        Integer myoff = null, otoff = null;
+        boolean baseCompare = tzinfo == other.tzinfo;
+        if (!baseCompare) {
+            myoff = Gregorian.utcoffset(tzinfo, Py.None);
+            otoff = Gregorian.utcoffset(other.tzinfo, Py.None);
+            baseCompare = myoff == null ? otoff == null : myoff.equals(otoff);
+        }
+        if (baseCompare) {
+            return compare(hour * 60 + minute, second, microsecond, other.hour * 60 + other.minute,
+                    other.second, other.microsecond);
+        } else if (myoff == null || otoff == null) {
+            throw Py.TypeError("can't compare offset-naive and offset-aware times");
+        }
+        return compare(hour * 60 + minute - myoff, second, microsecond, other.hour * 60
+                + other.minute - otoff, other.second, other.microsecond);
+    }
+
+    private static int compare(long a0, int a1, int a2, long b0, int b1, int b2) {
+        if (a0 != b0) {
+            return a0 < b0 ? -1 : 1;
+        } else if (a1 != b1) {
+            return a1 < b1 ? -1 : 1;
+        }
+        return Integer.signum(a2 - b2);
+    }
+
+    @Override
+    public PyObject __eq__(PyObject other) {
+        return time___eq__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject time___eq__(PyObject other) {
+        if (other instanceof PyTime) {
+            return Py.newBoolean(compareTo((PyTime)other) == 0);
+        }
+        return Py.False;
+    }
+
+    @Override
+    public PyObject __ne__(PyObject other) {
+        return time___ne__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject time___ne__(PyObject other) {
+        if (other instanceof PyTime) {
+            return Py.newBoolean(compareTo((PyTime)other) != 0);
+        }
+        return Py.True;
+    }
+
+    @Override
+    public PyObject __lt__(PyObject other) {
+        return time___lt__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject time___lt__(PyObject other) {
+        return Py.newBoolean(compareOrRaise(other) < 0);
+    }
+
+    @Override
+    public PyObject __le__(PyObject other) {
+        return time___le__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject time___le__(PyObject other) {
+        return Py.newBoolean(compareOrRaise(other) <= 0);
+    }
+
+    @Override
+    public PyObject __gt__(PyObject other) {
+        return time___gt__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject time___gt__(PyObject other) {
+        return Py.newBoolean(compareOrRaise(other) > 0);
+    }
+
+    @Override
+    public PyObject __ge__(PyObject other) {
+        return time___ge__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject time___ge__(PyObject other) {
+        return Py.newBoolean(compareOrRaise(other) >= 0);
+    }
+
+    private int compareOrRaise(PyObject other) {
+        if (other instanceof PyTime) {
+            return compareTo((PyTime)other);
+        }
+        throw PyDate.cmpError(this, other);
+    }
+
+    @Override
+    public int hashCode() {
+        return time___hash__();
+    }
+
+    @ExposedMethod
+    final int time___hash__() {
+        // Consistent with equality: the time in UTC, if aware
+        Integer offset = Gregorian.utcoffset(tzinfo, Py.None);
+        int minutes = hour * 60 + minute - (offset == null ? 0 : offset);
+        return (minutes * 60 + second) * 1000003 ^ microsecond;
+    }
+
+    @Override
+    public PyString __repr__() {
+        return time___repr__();
+    }
+
+    @ExposedMethod
+    final PyString time___repr__() {
+        StringBuilder s = new StringBuilder("datetime.").append(getType().getName());
+        s.append('(').append(hour).append(", ").append(minute);
+        if (microsecond != 0) {
+            s.append(", ").append(second).append(", ").append(microsecond);
+        } else if (second != 0) {
+            s.append(", ").append(second);
+        }
+        if (tzinfo != Py.None) {
+            s.append(", tzinfo=").append(tzinfo.__repr__().toString());
+        }
+        return Py.newString(s.append(')').toString());
+    }
+
+    @ExposedMethod(doc = "Return string in ISO 8601 format, HH:MM:SS[.mmmmmm][+HH:MM].")
+    final PyObject time_isoformat() {
+        return Py.newString(isoformat());
+    }
+
+    private String isoformat() {
+        return Gregorian.formatTime(hour, minute, second, microsecond)
+                + Gregorian.formatOffset(Gregorian.utcoffset(tzinfo, Py.None), ":");
+    }
+
+    @Override
+    public PyString __str__() {
+        return time___str__();
+    }
+
+    @ExposedMethod
+    final PyString time___str__() {
+        return Py.newString(isoformat());
+    }
+
+    @ExposedMethod(doc = "format -> strftime() style string.")
+    final PyObject time_strftime(PyObject format) {
+        // The year must be at least 1900 for the underlying strftime
+        PyTuple timetuple = new PyTuple(Py.newInteger(1900), Py.One, Py.One,
+                Py.newInteger(hour), Py.newInteger(minute), Py.newInteger(second), Py.Zero,
+                Py.One, Py.newInteger(-1));
+        return Gregorian.strftime(format, timetuple, microsecond, tzinfo, Py.None);
+    }
+
+    @Override
+    public PyObject __format__(PyObject formatSpec) {
+        return time___format__(formatSpec);
+    }
+
+    @ExposedMethod(doc = "Formats self with strftime.")
+    final PyObject time___format__(PyObject formatSpec) {
+        return PyDate.format(this, formatSpec);
+    }
+
+    @ExposedMethod(doc = "Return self.tzinfo.utcoffset(self).")
+    final PyObject time_utcoffset() {
+        return Gregorian.offsetDelta(Gregorian.utcoffset(tzinfo, Py.None));
+    }
+
+    @ExposedMethod(doc = "Return self.tzinfo.tzname(self).")
+    final PyObject time_tzname() {
+        return Gregorian.tzname(tzinfo, Py.None);
+    }
+
+    @ExposedMethod(doc = "Return self.tzinfo.dst(self).")
+    final PyObject time_dst() {
+        return Gregorian.offsetDelta(Gregorian.dst(tzinfo, Py.None));
+    }
+
+    @ExposedMethod(doc = "Return time with new specified fields.")
+    final PyObject time_replace(PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("replace", args, keywords, new String[] {"hour", "minute",
+                "second", "microsecond", "tzinfo"}, 0);
+        int[] fields = Gregorian.checkTimeFields(ap.getPyObject(0, getHourObject()),
+                ap.getPyObject(1, getMinuteObject()), ap.getPyObject(2, getSecondObject()),
+                ap.getPyObject(3, getMicrosecondObject()));
+        PyObject newTzinfo = ap.getPyObject(4, tzinfo);
+        Gregorian.checkTzinfoArg(newTzinfo);
+        return new PyTime(fields[0], fields[1], fields[2], fields[3], newTzinfo);
+    }
+
+    @Override
+    public boolean __nonzero__() {
+        return time___nonzero__();
+    }
+
+    @ExposedMethod
+    final boolean time___nonzero__() {
+        if (second != 0 || microsecond != 0) {
+            return true;
+        }
+        Integer offset = Gregorian.utcoffset(tzinfo, Py.None);
+        return hour * 60 + minute != (offset == null ? 0 : offset);
+    }
+
+    @Override
+    public PyObject __reduce__() {
+        return time___reduce__();
+    }
+
+    @ExposedMethod(doc = "__reduce__() -> (cls, state)")
+    final PyObject time___reduce__() {
+        PyString state = Py.newString(new String(new char[] {(char)hour, (char)minute,
+                (char)second, (char)(microsecond >> 16), (char)((microsecond >> 8) & 0xff),
+                (char)(microsecond & 0xff)}));
+        PyTuple args = tzinfo == Py.None ? new PyTuple(state) : new PyTuple(state, tzinfo);
+        return new PyTuple(getType(), args);
+    }
+
+    @Override
+    public Object __tojava__(Class<?> c) {
+        Object result = toJava(c);
+        return result != null ? result : super.__tojava__(c);
+    }
+
+    @ExposedMethod(doc = "Java class -> this time as an instance of it, if possible.")
+    final PyObject time___tojava__(PyObject cls) {
+        Class<?> c = PyDate.asJavaClass(cls);
+        return PyDate.javaResult(c == null ? null : toJava(c));
+    }
+
+    /** Convert to the class given, if it is one the time supports, or return <code>null</code>. */
+    private Object toJava(Class<?> c) {
+        if (c == Calendar.class || c == Time.class || c == Object.class) {
+            Calendar calendar = Gregorian.javaCalendar(tzinfo, this);
+            // Clear out the current date from the calendar
+            calendar.setTimeInMillis(0);
+            calendar.set(Calendar.HOUR_OF_DAY, hour);
+            calendar.set(Calendar.MINUTE, minute);
+            calendar.set(Calendar.SECOND, second);
+            calendar.set(Calendar.MILLISECOND, microsecond / 1000);
+            if (c == Calendar.class) {
+                return calendar;
+            }
+            return new Time(calendar.getTimeInMillis());
+        } else if (c == LocalTime.class) {
+            return LocalTime.of(hour, minute, second, microsecond * 1000);
+        }
+        return null;
+    }
+
+    /* Traverseproc implementation */
+    @Override
+    public int traverse(Visitproc visit, Object arg) {
+        return visit.visit(tzinfo, arg);
+    }
+
+    @Override
+    public boolean refersDirectlyTo(PyObject ob) {
+        return ob != null && ob == tzinfo;
+    }
+}
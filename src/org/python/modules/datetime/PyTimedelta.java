@@ -0,0 +1,571 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.datetime;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.python.core.ArgParser;
+import org.python.core.Py;
+import org.python.core.PyFloat;
+import org.python.core.PyInteger;
+import org.python.core.PyLong;
+import org.python.core.PyNewWrapper;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyTuple;
+import org.python.core.PyType;
+import org.python.core.Untraversable;
+import org.python.expose.ExposedGet;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedNew;
+import org.python.expose.ExposedType;
+import org.python.expose.MethodType;
+
+/**
+ * The <code>datetime.timedelta</code> type: the difference between two dates or times, held as
+ * days, seconds (0..86399) and microseconds (0..999999), of which only the days may be negative.
+ */
+@Untraversable
+@ExposedType(name = "datetime.timedelta", doc = PyTimedelta.TIMEDELTA_DOC)
+public class PyTimedelta extends PyObject {
+
+    public static final PyType TYPE = PyType.fromClass(PyTimedelta.class);
+
+    static final String TIMEDELTA_DOC = "Difference between two datetime values.";
+
+    private static final int MAX_DAYS = 999999999;
+
+    private static final BigInteger MICROS_PER_DAY =
+            BigInteger.valueOf((long)Gregorian.SECONDS_PER_DAY * Gregorian.MICROS_PER_SECOND);
+    private static final BigInteger MICROS_PER_SECOND =
+            BigInteger.valueOf(Gregorian.MICROS_PER_SECOND);
+    private static final BigInteger SECONDS_PER_DAY =
+            BigInteger.valueOf(Gregorian.SECONDS_PER_DAY);
+
+    static {
+        TYPE.fastGetDict().__setitem__("min", new PyTimedelta(-MAX_DAYS, 0, 0));
+        TYPE.fastGetDict().__setitem__("max", new PyTimedelta(MAX_DAYS, 86399, 999999));
+        TYPE.fastGetDict().__setitem__("resolution", new PyTimedelta(0, 0, 1));
+    }
+
+    private final int days;
+    private final int seconds;
+    private final int microseconds;
+
+    /** A <code>timedelta</code> of fields already normalised. */
+    PyTimedelta(int days, int seconds, int microseconds) {
+        this(TYPE, days, seconds, microseconds);
+    }
+
+    public PyTimedelta(PyType subType, int days, int seconds, int microseconds) {
+        super(subType);
+        this.days = days;
+        this.seconds = seconds;
+        this.microseconds = microseconds;
+    }
+
+    @ExposedNew
+    static final PyObject timedelta_new(PyNewWrapper new_, boolean init, PyType subtype,
+            PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("timedelta", args, keywords, new String[] {"days",
+                "seconds", "microseconds", "milliseconds", "minutes", "hours", "weeks"}, 0);
+        PyObject[] values = new PyObject[7];
+        boolean allInt = true;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ap.getPyObject(i, Py.Zero);
+            allInt &= values[i] instanceof PyInteger;
+        }
+        int[] dsu = allInt ? normalize(values) : normalizeExactly(values);
+        if (new_.for_type == subtype) {
+            return new PyTimedelta(dsu[0], dsu[1], dsu[2]);
+        } else {
+            return new PyTimedeltaDerived(subtype, dsu[0], dsu[1], dsu[2]);
+        }
+    }
+
+    /** Normalise arguments that are all <code>int</code>, which cannot overflow a long. */
+    private static int[] normalize(PyObject[] values) {
+        long d = asInt(values[0]) + asInt(values[6]) * 7L;
+        long s = asInt(values[1]) + asInt(values[4]) * 60L + asInt(values[5]) * 3600L;
+        long us = asInt(values[2]) + asInt(values[3]) * 1000L;
+        return normalize(d, s, us);
+    }
+
+    private static int asInt(PyObject value) {
+        return ((PyInteger)value).getValue();
+    }
+
+    /**
+     * Normalise arguments that may be <code>long</code> or <code>float</code>, following
+     * <code>timedelta.__new__</code> in CPython's <code>datetime.py</code>, so that fractions
+     * carry exactly as they do there.
+     */
+    private static int[] normalizeExactly(PyObject[] values) {
+        String[] names = {"days", "seconds", "microseconds", "milliseconds", "minutes", "hours",
+                "weeks"};
+        for (int i = 0; i < values.length; i++) {
+            PyObject value = values[i];
+            if (!(value instanceof PyInteger || value instanceof PyLong
+                    || value instanceof PyFloat)) {
+                throw Py.TypeError(String.format("unsupported type for timedelta %s component: %s",
+                        names[i], value.getType().fastGetName()));
+            }
+        }
+        PyObject days = values[0]._add(values[6]._mul(Py.newInteger(7)));
+        PyObject seconds = values[1]._add(values[4]._mul(Py.newInteger(60)))
+                ._add(values[5]._mul(Py.newInteger(3600)));
+        PyObject microseconds = values[2]._add(values[3]._mul(Py.newInteger(1000)));
+
+        // Get rid of all fractions, and normalise s and us.
+        BigInteger d;
+        long s = 0;
+        double daysecondsfrac = 0.0;
+        if (days instanceof PyFloat) {
+            double v = ((PyFloat)days).getValue();
+            double whole = trunc(v);
+            double dayseconds = (v - whole) * Gregorian.SECONDS_PER_DAY;
+            double daysecondswhole = trunc(dayseconds);
+            daysecondsfrac = dayseconds - daysecondswhole;
+            s = (long)daysecondswhole;
+            d = toBigInteger(whole);
+        } else {
+            d = toBigInteger(days);
+        }
+
+        double secondsfrac = daysecondsfrac;
+        BigInteger secondswhole;
+        if (seconds instanceof PyFloat) {
+            double v = ((PyFloat)seconds).getValue();
+            double whole = trunc(v);
+            secondsfrac += v - whole;
+            secondswhole = toBigInteger(whole);
+        } else {
+            secondswhole = toBigInteger(seconds);
+        }
+        BigInteger[] qr = floorDivMod(secondswhole, SECONDS_PER_DAY);
+        d = d.add(qr[0]);
+        s += qr[1].longValue();
+
+        double usdouble = secondsfrac * 1e6;
+        long us;
+        if (microseconds instanceof PyFloat) {
+            BigInteger total = round(((PyFloat)microseconds).getValue() + usdouble);
+            qr = floorDivMod(total, MICROS_PER_DAY);
+            d = d.add(qr[0]);
+            us = qr[1].longValue();
+        } else {
+            // Round only the part less than a second, as the fraction is added to it
+            qr = floorDivMod(toBigInteger(microseconds), MICROS_PER_SECOND);
+            us = round(qr[1].longValue() + usdouble).longValue();
+            qr = floorDivMod(qr[0], SECONDS_PER_DAY);
+            d = d.add(qr[0]);
+            s += qr[1].longValue();
+        }
+
+        // Just a little bit of carrying possible for microseconds and seconds.
+        s += Gregorian.floorDiv(us, Gregorian.MICROS_PER_SECOND);
+        us = Gregorian.floorMod(us, Gregorian.MICROS_PER_SECOND);
+        d = d.add(BigInteger.valueOf(Gregorian.floorDiv(s, Gregorian.SECONDS_PER_DAY)));
+        s = Gregorian.floorMod(s, Gregorian.SECONDS_PER_DAY);
+        if (d.abs().compareTo(BigInteger.valueOf(MAX_DAYS)) > 0) {
+            throw Py.OverflowError("timedelta # of days is too large: " + d);
+        }
+        return new int[] {d.intValue(), (int)s, (int)us};
+    }
+
+    /** The whole part of a <code>double</code>, as <code>math.modf</code> gives it. */
+    private static double trunc(double v) {
+        return v < 0 ? Math.ceil(v) : Math.floor(v);
+    }
+
+    /** Round half away from zero, as <code>_round</code> in <code>datetime.py</code>. */
+    private static BigInteger round(double x) {
+        return toBigInteger(x >= 0.0 ? Math.floor(x + 0.5) : Math.ceil(x - 0.5));
+    }
+
+    private static BigInteger toBigInteger(double whole) {
+        if (Double.isInfinite(whole)) {
+            throw Py.OverflowError("cannot convert float infinity to integer");
+        } else if (Double.isNaN(whole)) {
+            throw Py.ValueError("cannot convert float NaN to integer");
+        }
+        return new BigDecimal(whole).toBigInteger();
+    }
+
+    private static BigInteger toBigInteger(PyObject value) {
+        if (value instanceof PyInteger) {
+            return BigInteger.valueOf(((PyInteger)value).getValue());
+        }
+        return ((PyLong)value).getValue();
+    }
+
+    /** Python's <code>divmod</code> of <code>a</code> by positive <code>b</code>. */
+    private static BigInteger[] floorDivMod(BigInteger a, BigInteger b) {
+        BigInteger[] qr = a.divideAndRemainder(b);
+        if (qr[1].signum() < 0) {
+            qr[0] = qr[0].subtract(BigInteger.ONE);
+            qr[1] = qr[1].add(b);
+        }
+        return qr;
+    }
+
+    /**
+     * Carry microseconds into seconds and seconds into days.
+     *
+     * @return normalised days, seconds and microseconds
+     * @throws OverflowError if the magnitude of the days exceeds 999999999
+     */
+    static int[] normalize(long d, long s, long us) {
+        s += Gregorian.floorDiv(us, Gregorian.MICROS_PER_SECOND);
+        us = Gregorian.floorMod(us, Gregorian.MICROS_PER_SECOND);
+        d += Gregorian.floorDiv(s, Gregorian.SECONDS_PER_DAY);
+        s = Gregorian.floorMod(s, Gregorian.SECONDS_PER_DAY);
+        if (Math.abs(d) > MAX_DAYS) {
+            throw Py.OverflowError("timedelta # of days is too large: " + d);
+        }
+        return new int[] {(int)d, (int)s, (int)us};
+    }
+
+    /** A <code>timedelta</code> of the sum of the fields given, which may be out of range. */
+    static PyTimedelta of(long d, long s, long us) {
+        int[] dsu = normalize(d, s, us);
+        return new PyTimedelta(dsu[0], dsu[1], dsu[2]);
+    }
+
+    private static PyTimedelta ofMicroseconds(BigInteger us) {
+        BigInteger[] qr = floorDivMod(us, MICROS_PER_DAY);
+        if (qr[0].abs().compareTo(BigInteger.valueOf(MAX_DAYS)) > 0) {
+            throw Py.OverflowError("timedelta # of days is too large: " + qr[0]);
+        }
+        long rest = qr[1].longValue();
+        return new PyTimedelta(qr[0].intValue(),
+                (int)(rest / Gregorian.MICROS_PER_SECOND), (int)(rest % Gregorian.MICROS_PER_SECOND));
+    }
+
+    private BigInteger toMicroseconds() {
+        return BigInteger.valueOf(days).multiply(MICROS_PER_DAY)
+                .add(BigInteger.valueOf(seconds).multiply(MICROS_PER_SECOND))
+                .add(BigInteger.valueOf(microseconds));
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    public int getMicroseconds() {
+        return microseconds;
+    }
+
+    @ExposedGet(name = "days", doc = "Number of days.")
+    public PyObject getDaysObject() {
+        return Py.newInteger(days);
+    }
+
+    @ExposedGet(name = "seconds", doc = "Number of seconds (>= 0 and less than 1 day).")
+    public PyObject getSecondsObject() {
+        return Py.newInteger(seconds);
+    }
+
+    @ExposedGet(name = "microseconds",
+            doc = "Number of microseconds (>= 0 and less than 1 second).")
+    public PyObject getMicrosecondsObject() {
+        return Py.newInteger(microseconds);
+    }
+
+    @ExposedMethod(doc = "Total seconds in the duration.")
+    final PyObject timedelta_total_seconds() {
+        return new PyLong(toMicroseconds()).__truediv__(Py.newInteger(Gregorian.MICROS_PER_SECOND));
+    }
+
+    @Override
+    public PyString __repr__() {
+        return timedelta___repr__();
+    }
+
+    @ExposedMethod
+    final PyString timedelta___repr__() {
+        String name = "datetime." + getType().getName();
+        if (microseconds != 0) {
+            return Py.newString(String.format("%s(%d, %d, %d)", name, days, seconds,
+                    microseconds));
+        } else if (seconds != 0) {
+            return Py.newString(String.format("%s(%d, %d)", name, days, seconds));
+        }
+        return Py.newString(String.format("%s(%d)", name, days));
+    }
+
+    @Override
+    public PyString __str__() {
+        return timedelta___str__();
+    }
+
+    @ExposedMethod
+    final PyString timedelta___str__() {
+        StringBuilder s = new StringBuilder();
+        if (days != 0) {
+            s.append(String.format("%d day%s, ", days, Math.abs(days) != 1 ? "s" : ""));
+        }
+        s.append(String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60));
+        if (microseconds != 0) {
+            s.append(String.format(".%06d", microseconds));
+        }
+        return Py.newString(s.toString());
+    }
+
+    @Override
+    public PyObject __add__(PyObject other) {
+        return timedelta___add__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___add__(PyObject other) {
+        if (!(other instanceof PyTimedelta)) {
+            return null;
+        }
+        // For CPython compatibility, the result is a timedelta, not of the type of self.
+        PyTimedelta o = (PyTimedelta)other;
+        return of((long)days + o.days, (long)seconds + o.seconds,
+                (long)microseconds + o.microseconds);
+    }
+
+    @Override
+    public PyObject __radd__(PyObject other) {
+        return timedelta___radd__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___radd__(PyObject other) {
+        return timedelta___add__(other);
+    }
+
+    @Override
+    public PyObject __sub__(PyObject other) {
+        return timedelta___sub__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___sub__(PyObject other) {
+        if (!(other instanceof PyTimedelta)) {
+            return null;
+        }
+        PyTimedelta o = (PyTimedelta)other;
+        return of((long)days - o.days, (long)seconds - o.seconds,
+                (long)microseconds - o.microseconds);
+    }
+
+    @Override
+    public PyObject __rsub__(PyObject other) {
+        return timedelta___rsub__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___rsub__(PyObject other) {
+        if (!(other instanceof PyTimedelta)) {
+            return null;
+        }
+        return ((PyTimedelta)other).timedelta___sub__(this);
+    }
+
+    @Override
+    public PyObject __neg__() {
+        return timedelta___neg__();
+    }
+
+    @ExposedMethod
+    final PyObject timedelta___neg__() {
+        return of(-(long)days, -(long)seconds, -(long)microseconds);
+    }
+
+    @Override
+    public PyObject __pos__() {
+        return timedelta___pos__();
+    }
+
+    @ExposedMethod
+    final PyObject timedelta___pos__() {
+        return this;
+    }
+
+    @Override
+    public PyObject __abs__() {
+        return timedelta___abs__();
+    }
+
+    @ExposedMethod
+    final PyObject timedelta___abs__() {
+        return days < 0 ? timedelta___neg__() : this;
+    }
+
+    @Override
+    public PyObject __mul__(PyObject other) {
+        return timedelta___mul__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___mul__(PyObject other) {
+        if (!(other instanceof PyInteger || other instanceof PyLong)) {
+            return null;
+        }
+        return ofMicroseconds(toMicroseconds().multiply(toBigInteger(other)));
+    }
+
+    @Override
+    public PyObject __rmul__(PyObject other) {
+        return timedelta___rmul__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___rmul__(PyObject other) {
+        return timedelta___mul__(other);
+    }
+
+    @Override
+    public PyObject __div__(PyObject other) {
+        return timedelta___div__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___div__(PyObject other) {
+        if (!(other instanceof PyInteger || other instanceof PyLong)) {
+            return null;
+        }
+        BigInteger divisor = toBigInteger(other);
+        if (divisor.signum() == 0) {
+            throw Py.ZeroDivisionError("integer division or modulo by zero");
+        }
+        BigInteger[] qr = toMicroseconds().divideAndRemainder(divisor);
+        BigInteger q = qr[0];
+        if (qr[1].signum() != 0 && qr[1].signum() != divisor.signum()) {
+            q = q.subtract(BigInteger.ONE);
+        }
+        return ofMicroseconds(q);
+    }
+
+    @Override
+    public PyObject __floordiv__(PyObject other) {
+        return timedelta___floordiv__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___floordiv__(PyObject other) {
+        return timedelta___div__(other);
+    }
+
+    /** Compare to another <code>timedelta</code>, giving -1, 0 or 1. */
+    private int compareTo(PyTimedelta other) {
+        if (days != other.days) {
+            return days < other.days ? -1 : 1;
+        } else if (seconds != other.seconds) {
+            return seconds < other.seconds ? -1 : 1;
+        }
+        return Integer.signum(microseconds - other.microseconds);
+    }
+
+    @Override
+    public PyObject __eq__(PyObject other) {
+        return timedelta___eq__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___eq__(PyObject other) {
+        if (other instanceof PyTimedelta) {
+            return Py.newBoolean(compareTo((PyTimedelta)other) == 0);
+        }
+        return Py.False;
+    }
+
+    @Override
+    public PyObject __ne__(PyObject other) {
+        return timedelta___ne__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___ne__(PyObject other) {
+        if (other instanceof PyTimedelta) {
+            return Py.newBoolean(compareTo((PyTimedelta)other) != 0);
+        }
+        return Py.True;
+    }
+
+    @Override
+    public PyObject __lt__(PyObject other) {
+        return timedelta___lt__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___lt__(PyObject other) {
+        return Py.newBoolean(compareOrRaise(other) < 0);
+    }
+
+    @Override
+    public PyObject __le__(PyObject other) {
+        return timedelta___le__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___le__(PyObject other) {
+        return Py.newBoolean(compareOrRaise(other) <= 0);
+    }
+
+    @Override
+    public PyObject __gt__(PyObject other) {
+        return timedelta___gt__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___gt__(PyObject other) {
+        return Py.newBoolean(compareOrRaise(other) > 0);
+    }
+
+    @Override
+    public PyObject __ge__(PyObject other) {
+        return timedelta___ge__(other);
+    }
+
+    @ExposedMethod(type = MethodType.BINARY)
+    final PyObject timedelta___ge__(PyObject other) {
+        return Py.newBoolean(compareOrRaise(other) >= 0);
+    }
+
+    private int compareOrRaise(PyObject other) {
+        if (other instanceof PyTimedelta) {
+            return compareTo((PyTimedelta)other);
+        }
+        throw PyDate.cmpError(this, other);
+    }
+
+    @Override
+    public int hashCode() {
+        return timedelta___hash__();
+    }
+
+    @ExposedMethod
+    final int timedelta___hash__() {
+        return (days * 31 + seconds) * 1000003 ^ microseconds;
+    }
+
+    @Override
+    public boolean __nonzero__() {
+        return timedelta___nonzero__();
+    }
+
+    @ExposedMethod
+    final boolean timedelta___nonzero__() {
+        return days != 0 || seconds != 0 || microseconds != 0;
+    }
+
+    @Override
+    public PyObject __reduce__() {
+        return timedelta___reduce__();
+    }
+
+    @ExposedMethod
+    final PyObject timedelta___reduce__() {
+        return new PyTuple(getType(), new PyTuple(Py.newInteger(days), Py.newInteger(seconds),
+                Py.newInteger(microseconds)));
+    }
+}
@@ -0,0 +1,847 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.mmap;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
+
+import jnr.constants.platform.Errno;
+
+import org.python.core.ArgParser;
+import org.python.core.BufferProtocol;
+import org.python.core.Py;
+import org.python.core.PyBUF;
+import org.python.core.PyBuffer;
+import org.python.core.PyException;
+import org.python.core.PyLong;
+import org.python.core.PyNewWrapper;
+import org.python.core.PyObject;
+import org.python.core.PySequenceIter;
+import org.python.core.PySlice;
+import org.python.core.PyString;
+import org.python.core.PyType;
+import org.python.core.PyUnicode;
+import org.python.core.Untraversable;
+import org.python.core.buffer.BaseBuffer;
+import org.python.core.buffer.SimpleNIOBuffer;
+import org.python.core.io.FileIO;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedNew;
+import org.python.expose.ExposedType;
+
+/**
+ * A memory-mapped file, or anonymous memory, as made by <code>mmap.mmap</code>. A file is mapped
+ * with <code>FileChannel.map</code> and anonymous memory is a direct <code>ByteBuffer</code>.
+ * <p>
+ * A map of up to 2GB is one <code>ByteBuffer</code>, which the object exports through the buffer
+ * protocol (as a {@link SimpleNIOBuffer}, strided slices of which are
+ * <code>Strided1DNIOBuffer</code>s), so that <code>struct.unpack_from</code>, <code>re</code>,
+ * <code>memoryview</code> and <code>buffer</code> read it where it is mapped. A larger map is held
+ * as several regions of 1GB, read and written through the methods of this class but not exported.
+ * <p>
+ * CPython keeps a duplicate of the file descriptor, which Java cannot make, so the map keeps the
+ * channel of the file it was made from. The mapped data stays valid once that file is closed, but
+ * <code>resize()</code> and <code>size()</code> then fail.
+ */
+@Untraversable
+@ExposedType(name = "mmap.mmap")
+public class PyMmap extends PyObject implements BufferProtocol {
+
+    public static final PyType TYPE = PyType.fromClass(PyMmap.class);
+
+    /** The access given by <code>flags</code> and <code>prot</code>, if no access is given. */
+    private static final int ACCESS_DEFAULT = 0;
+
+    /** A map larger than a <code>ByteBuffer</code> can be is split into regions this large. */
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_MASK = (1L << REGION_SHIFT) - 1;
+
+    /** Bytes moved at a time by <code>move()</code>. */
+    private static final int MOVE_CHUNK = 64 * 1024;
+
+    /** The mapped memory, as one buffer or in regions, or <code>null</code> once closed. */
+    private ByteBuffer[] regions;
+
+    /** The length of the map. */
+    private long size;
+
+    /** The current position of <code>read()</code>, <code>write()</code>, etc.. */
+    private long pos;
+
+    /** Where in the file the map starts. */
+    private long offset;
+
+    /** One of {@link mmap#ACCESS_READ}, {@link mmap#ACCESS_WRITE} or {@link mmap#ACCESS_COPY}. */
+    private int access;
+
+    /** The channel of the mapped file, or <code>null</code> for anonymous memory. */
+    private FileChannel channel;
+
+    /** Reference to a buffer exported by this object, which may still be in use. */
+    private WeakReference<BaseBuffer> export;
+
+    public PyMmap(PyType subType) {
+        super(subType);
+    }
+
+    @ExposedNew
+    static PyObject mmap___new__(PyNewWrapper new_, boolean init, PyType subtype,
+            PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser("mmap", args, keywords,
+                new String[] {"fileno", "length", "flags", "prot", "access", "offset"}, 2);
+        PyObject fileno = ap.getPyObject(0);
+        long length = index(ap.getPyObject(1));
+        int flags = ap.getInt(2, mmap.MAP_SHARED);
+        int prot = ap.getInt(3, mmap.PROT_WRITE | mmap.PROT_READ);
+        int access = ap.getInt(4, ACCESS_DEFAULT);
+        long offset = index(ap.getPyObject(5, Py.Zero));
+
+        PyMmap self = subtype == TYPE ? new PyMmap(subtype) : new PyMmapDerived(subtype);
+        self.map(fileno, length, flags, prot, access, offset);
+        return self;
+    }
+
+    /** Make the mapping (for <code>__new__</code>) following the rules of CPython on Unix. */
+    private void map(PyObject fileno, long length, int flags, int prot, int access, long offset) {
+        if (length < 0) {
+            throw Py.OverflowError("memory mapped length must be positive");
+        } else if (offset < 0) {
+            throw Py.OverflowError("memory mapped offset must be positive");
+        } else if (access != ACCESS_DEFAULT
+                && (flags != mmap.MAP_SHARED || prot != (mmap.PROT_WRITE | mmap.PROT_READ))) {
+            throw Py.ValueError("mmap can't specify both access and flags, prot.");
+        }
+
+        switch (access) {
+            case mmap.ACCESS_READ:
+            case mmap.ACCESS_WRITE:
+            case mmap.ACCESS_COPY:
+                break;
+            case ACCESS_DEFAULT:
+                if ((prot & mmap.PROT_WRITE) == 0) {
+                    access = mmap.ACCESS_READ;
+                } else if ((flags & mmap.MAP_PRIVATE) != 0) {
+                    access = mmap.ACCESS_COPY;
+                } else {
+                    access = mmap.ACCESS_WRITE;
+                }
+                break;
+            default:
+                throw Py.ValueError("mmap invalid access parameter.");
+        }
+        this.access = access;
+        this.offset = offset;
+
+        // A FileIO converts to an int too (not always usefully), so look for one first.
+        Object tojava = fileno.__tojava__(FileIO.class);
+        if (tojava == Py.NoConversion && fileno.isInteger() && fileno.asInt() == -1) {
+            // Anonymous memory
+            regions = allocate(length);
+            if (access == mmap.ACCESS_READ) {
+                for (int r = 0; r < regions.length; r++) {
+                    regions[r] = regions[r].asReadOnlyBuffer();
+                }
+            }
+            size = length;
+            return;
+        }
+
+        FileChannel channel = tojava == Py.NoConversion ? null : ((FileIO) tojava).getChannel();
+        if (channel == null || !channel.isOpen()) {
+            throw mmap.mmapError(Errno.EBADF);
+        }
+        long fileSize;
+        try {
+            fileSize = channel.size();
+        } catch (IOException ioe) {
+            throw mmap.mmapError(ioe);
+        }
+        if (length == 0) {
+            if (fileSize == 0) {
+                throw Py.ValueError("cannot mmap an empty file");
+            } else if (offset >= fileSize) {
+                throw Py.ValueError("mmap offset is greater than file size");
+            }
+            length = fileSize - offset;
+        } else if (offset > fileSize || fileSize - offset < length) {
+            throw Py.ValueError("mmap length is greater than file size");
+        }
+
+        regions = map(channel, mapMode(), offset, length);
+        size = length;
+        this.channel = channel;
+    }
+
+    /** The mode in which to map the file for our access. */
+    private FileChannel.MapMode mapMode() {
+        switch (access) {
+            case mmap.ACCESS_READ:
+                return FileChannel.MapMode.READ_ONLY;
+            case mmap.ACCESS_COPY:
+                return FileChannel.MapMode.PRIVATE;
+            default:
+                return FileChannel.MapMode.READ_WRITE;
+        }
+    }
+
+    /** Number of regions in a map of the given size: one unless it is too large for a buffer. */
+    private static int regionCount(long size) {
+        return size <= Integer.MAX_VALUE ? 1 : (int) ((size + REGION_MASK) >>> REGION_SHIFT);
+    }
+
+    /** Length of region <code>r</code> of <code>count</code> regions in a map of this size. */
+    private static int regionLength(long size, int r, int count) {
+        if (count == 1) {
+            return (int) size;
+        }
+        return (int) Math.min(1L << REGION_SHIFT, size - ((long) r << REGION_SHIFT));
+    }
+
+    /** Allocate anonymous memory of the given size (which Java fills with zeros). */
+    private static ByteBuffer[] allocate(long size) {
+        int count = regionCount(size);
+        ByteBuffer[] regions = new ByteBuffer[count];
+        for (int r = 0; r < count; r++) {
+            regions[r] = ByteBuffer.allocateDirect(regionLength(size, r, count));
+        }
+        return regions;
+    }
+
+    /** Map part of a file, in as many regions as its size requires. */
+    private static ByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long offset,
+            long size) {
+        int count = regionCount(size);
+        ByteBuffer[] regions = new ByteBuffer[count];
+        try {
+            for (int r = 0; r < count; r++) {
+                regions[r] = channel.map(mode, offset + ((long) r << REGION_SHIFT),
+                        regionLength(size, r, count));
+            }
+        } catch (NonReadableChannelException | NonWritableChannelException e) {
+            // The file was not opened for the access asked for
+            throw mmap.mmapError(Errno.EACCES);
+        } catch (IOException ioe) {
+            throw mmap.mmapError(ioe);
+        }
+        return regions;
+    }
+
+    /*
+     * ===========================================================================================
+     * Access to the mapped bytes by position in the map
+     * ===========================================================================================
+     */
+
+    /** The region holding the byte at the given position. */
+    private ByteBuffer region(long index) {
+        return regions.length == 1 ? regions[0] : regions[(int) (index >>> REGION_SHIFT)];
+    }
+
+    /** The index within its region of the byte at the given position. */
+    private int regionIndex(long index) {
+        return regions.length == 1 ? (int) index : (int) (index & REGION_MASK);
+    }
+
+    private byte get(long index) {
+        return region(index).get(regionIndex(index));
+    }
+
+    private void put(long index, byte b) {
+        region(index).put(regionIndex(index), b);
+    }
+
+    /** Copy bytes from the given position into an array. */
+    private void get(long index, byte[] dst, int off, int len) {
+        while (len > 0) {
+            ByteBuffer b = region(index).duplicate();
+            int i = regionIndex(index), n = Math.min(len, b.capacity() - i);
+            b.position(i);
+            b.get(dst, off, n);
+            index += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Copy the remaining bytes of a buffer to the given position. */
+    private void put(long index, ByteBuffer src) {
+        while (src.hasRemaining()) {
+            ByteBuffer b = region(index).duplicate();
+            int i = regionIndex(index), n = Math.min(src.remaining(), b.capacity() - i);
+            b.position(i);
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + n);
+            b.put(part);
+            src.position(src.position() + n);
+            index += n;
+        }
+    }
+
+    /** Return the bytes between two positions as a <code>str</code>. */
+    private PyString getString(long start, long end) {
+        long n = end - start;
+        if (n > Integer.MAX_VALUE) {
+            throw Py.OverflowError("mmap slice too large for a string");
+        }
+        byte[] bytes = new byte[(int) n];
+        get(start, bytes, 0, bytes.length);
+        return PyString.fromBytes(bytes);
+    }
+
+    /** Return the index of a byte string in the map between two positions, or -1. */
+    private long find(byte[] needle, long start, long end) {
+        int n = needle.length;
+        if (n == 0) {
+            return start <= end ? start : -1;
+        }
+        byte first = needle[0];
+        for (long i = start, last = end - n; i <= last; i++) {
+            if (get(i) == first) {
+                int j = 1;
+                while (j < n && get(i + j) == needle[j]) {
+                    j++;
+                }
+                if (j == n) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** As {@link #find(byte[], long, long)} but return the last occurrence. */
+    private long rfind(byte[] needle, long start, long end) {
+        int n = needle.length;
+        for (long i = end - n; i >= start; i--) {
+            int j = 0;
+            while (j < n && get(i + j) == needle[j]) {
+                j++;
+            }
+            if (j == n) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * ===========================================================================================
+     * Argument checks and conversions
+     * ===========================================================================================
+     */
+
+    private void checkValid() {
+        if (regions == null) {
+            throw Py.ValueError("mmap closed or invalid");
+        }
+    }
+
+    private void checkWritable() {
+        checkValid();
+        if (access == mmap.ACCESS_READ) {
+            throw Py.TypeError("mmap can't modify a readonly memory map.");
+        }
+    }
+
+    private void checkResizeable() {
+        checkValid();
+        if (access != mmap.ACCESS_WRITE) {
+            throw Py.TypeError("mmap can't resize a readonly or copy-on-write memory map.");
+        }
+    }
+
+    /**
+     * Test that the mapping may be replaced and raise a BufferError if not, as when
+     * <code>PyArray</code> is resized.
+     *
+     * @throws PyException {@code BufferError} if there are buffer exports preventing a resize
+     */
+    private void resizeCheck() throws PyException {
+        if (export != null) {
+            PyBuffer pybuf = export.get();
+            if (pybuf != null && !pybuf.isReleased()) {
+                throw Py.BufferError("cannot resize an mmap that is exporting buffers");
+            }
+            export = null;
+        }
+    }
+
+    /** The value of an integer argument, as a Python index. */
+    private static long index(PyObject obj) {
+        if (!obj.isIndex()) {
+            throw Py.TypeError(String.format("an integer is required, not '%.200s'",
+                    obj.getType().fastGetName()));
+        }
+        return obj.__index__().asLong();
+    }
+
+    /**
+     * The value of a slice index, or the limit it stands for if it is beyond the range of
+     * <code>long</code>, as <code>PySlice.calculateSliceIndex</code> limits to <code>int</code>.
+     */
+    private static long sliceIndex(PyObject obj) {
+        PyObject v = obj.__index__();
+        if (v instanceof PyLong) {
+            int sign = ((PyLong) v).getValue().signum();
+            if (((PyLong) v).getValue().bitLength() > 63) {
+                return sign < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+            }
+        }
+        return v.asLong();
+    }
+
+    /**
+     * The start, step and number of bytes of a slice of the map, as <code>PySlice.indicesEx</code>
+     * gives them, but as <code>long</code>s.
+     */
+    private long[] sliceIndices(PySlice slice) {
+        long step = slice.getStep() == Py.None ? 1 : sliceIndex(slice.getStep());
+        if (step == 0) {
+            throw Py.ValueError("slice step cannot be zero");
+        }
+        long start, stop;
+        if (slice.getStart() == Py.None) {
+            start = step < 0 ? size - 1 : 0;
+        } else {
+            start = clampSliceIndex(sliceIndex(slice.getStart()), step);
+        }
+        if (slice.getStop() == Py.None) {
+            stop = step < 0 ? -1 : size;
+        } else {
+            stop = clampSliceIndex(sliceIndex(slice.getStop()), step);
+        }
+        long length;
+        if ((step < 0 && stop >= start) || (step > 0 && start >= stop)) {
+            length = 0;
+        } else if (step < 0) {
+            length = (stop - start + 1) / step + 1;
+        } else {
+            length = (stop - start - 1) / step + 1;
+        }
+        return new long[] {start, step, length};
+    }
+
+    private long clampSliceIndex(long i, long step) {
+        if (i < 0) {
+            i += size;
+        }
+        if (i < 0) {
+            i = step < 0 ? -1 : 0;
+        }
+        if (i >= size) {
+            i = step < 0 ? size - 1 : size;
+        }
+        return i;
+    }
+
+    /** The position of an item, counting from the end if negative. */
+    private long itemIndex(PyObject key) {
+        long i = index(key);
+        if (i < 0) {
+            i += size;
+        }
+        if (i < 0 || i >= size) {
+            throw Py.IndexError("mmap index out of range");
+        }
+        return i;
+    }
+
+    /**
+     * The bytes of a string or object with the buffer interface, as the <code>s#</code> format of
+     * CPython takes them.
+     */
+    private static ByteBuffer bytesOf(PyObject obj) {
+        if (obj instanceof PyUnicode) {
+            obj = Py.newString(((PyUnicode) obj).encode());
+        }
+        if (obj instanceof PyString) {
+            PyString s = (PyString) obj;
+            byte[] bytes = s.getHeldBytes();
+            return ByteBuffer.wrap(bytes != null ? bytes : s.toBytes());
+        } else if (obj instanceof BufferProtocol) {
+            try (PyBuffer buf = ((BufferProtocol) obj).getBuffer(PyBUF.SIMPLE)) {
+                // The caller uses the bytes at once, so they need not be copied
+                return buf.getNIOByteBuffer();
+            } catch (ClassCastException e) {
+                // Only formally BufferProtocol
+            }
+        }
+        throw Py.TypeError(String.format("must be string or read-only buffer, not %.200s",
+                obj.getType().fastGetName()));
+    }
+
+    /** The remaining bytes of a buffer as an array. */
+    private static byte[] toArray(ByteBuffer bytes) {
+        byte[] array = new byte[bytes.remaining()];
+        bytes.get(array);
+        return array;
+    }
+
+    /*
+     * ===========================================================================================
+     * Exposed methods
+     * ===========================================================================================
+     */
+
+    @ExposedMethod
+    final synchronized void mmap_close() {
+        regions = null;
+        channel = null;
+        export = null;
+    }
+
+    @ExposedMethod(defaults = {"null", "null"})
+    final synchronized PyObject mmap_find(PyObject sub, PyObject start, PyObject end) {
+        checkValid();
+        long[] range = findRange(start, end);
+        return Py.newInteger(find(toArray(bytesOf(sub)), range[0], range[1]));
+    }
+
+    @ExposedMethod(defaults = {"null", "null"})
+    final synchronized PyObject mmap_rfind(PyObject sub, PyObject start, PyObject end) {
+        checkValid();
+        long[] range = findRange(start, end);
+        return Py.newInteger(rfind(toArray(bytesOf(sub)), range[0], range[1]));
+    }
+
+    /** The positions between which to find, which by default are the current one and the end. */
+    private long[] findRange(PyObject start, PyObject end) {
+        long[] range = {pos, size};
+        if (start != null) {
+            range[0] = index(start);
+        }
+        if (end != null) {
+            range[1] = index(end);
+        }
+        for (int i = 0; i < 2; i++) {
+            if (range[i] < 0) {
+                range[i] = Math.max(range[i] + size, 0);
+            } else if (range[i] > size) {
+                range[i] = size;
+            }
+        }
+        return range;
+    }
+
+    @ExposedMethod(defaults = {"0", "-1"})
+    final synchronized PyObject mmap_flush(long offset, long size) {
+        checkValid();
+        if (size == -1) {
+            size = this.size - offset;
+        }
+        if (offset < 0 || size < 0 || this.size - offset < size) {
+            throw Py.ValueError("flush values out of range");
+        }
+        if (access == mmap.ACCESS_WRITE && channel != null && size > 0) {
+            // Java can only flush a whole buffer: flush the regions overlapping those bytes.
+            int first = regions.length == 1 ? 0 : (int) (offset >>> REGION_SHIFT);
+            int last = regions.length == 1 ? 0 : (int) ((offset + size - 1) >>> REGION_SHIFT);
+            for (int r = first; r <= last; r++) {
+                ((MappedByteBuffer) regions[r]).force();
+            }
+        }
+        return Py.Zero;
+    }
+
+    @ExposedMethod
+    final synchronized void mmap_move(long dest, long src, long count) {
+        checkWritable();
+        if (dest < 0 || src < 0 || count < 0 || size - dest < count || size - src < count) {
+            throw Py.ValueError("source, destination, or count out of range");
+        }
+        byte[] chunk = new byte[(int) Math.min(count, MOVE_CHUNK)];
+        // Copy in the direction that reads each byte before it is overwritten.
+        for (long done = 0; done < count;) {
+            int n = (int) Math.min(chunk.length, count - done);
+            long at = dest <= src ? done : count - done - n;
+            get(src + at, chunk, 0, n);
+            put(dest + at, ByteBuffer.wrap(chunk, 0, n));
+            done += n;
+        }
+    }
+
+    @ExposedMethod
+    final synchronized PyString mmap_read(long num) {
+        checkValid();
+        long remaining = size - pos;
+        if (num < 0 || num > remaining) {
+            num = Math.max(remaining, 0);
+        }
+        PyString s = getString(pos, pos + num);
+        pos += num;
+        return s;
+    }
+
+    @ExposedMethod
+    final synchronized PyString mmap_read_byte() {
+        checkValid();
+        if (pos >= size) {
+            throw Py.ValueError("read byte out of range");
+        }
+        return Py.makeCharacter((char) (get(pos++) & 0xff));
+    }
+
+    @ExposedMethod
+    final synchronized PyString mmap_readline() {
+        checkValid();
+        long start = pos;
+        long eol = find(new byte[] {'\n'}, start, size);
+        pos = eol < 0 ? Math.max(size, start) : eol + 1;
+        return getString(start, pos);
+    }
+
+    @ExposedMethod
+    final synchronized void mmap_resize(long newsize) {
+        checkResizeable();
+        if (newsize < 0 || Long.MAX_VALUE - offset < newsize) {
+            throw Py.ValueError("new size out of range");
+        }
+        resizeCheck();
+        if (channel == null) {
+            // Anonymous memory: copy what remains into new memory
+            ByteBuffer[] old = regions;
+            long i = 0, n = Math.min(size, newsize);
+            regions = allocate(newsize);
+            for (ByteBuffer b : old) {
+                if (i >= n) {
+                    break;
+                }
+                b = b.duplicate();
+                b.clear();
+                b.limit((int) Math.min(b.capacity(), n - i));
+                put(i, b);
+                i += b.limit();
+            }
+        } else if (!channel.isOpen()) {
+            throw Py.SystemError("mmap cannot be resized after its file is closed");
+        } else {
+            // Mapping beyond the end extends the file, and then truncation shortens it.
+            regions = map(channel, FileChannel.MapMode.READ_WRITE, offset, newsize);
+            try {
+                channel.truncate(offset + newsize);
+            } catch (IOException ioe) {
+                throw mmap.mmapError(ioe);
+            }
+        }
+        size = newsize;
+        pos = Math.min(pos, size);
+    }
+
+    @ExposedMethod(defaults = "0")
+    final synchronized void mmap_seek(long dist, int how) {
+        checkValid();
+        long where;
+        switch (how) {
+            case 0:
+                where = dist;
+                break;
+            case 1:
+                where = pos + dist;
+                break;
+            case 2:
+                where = size + dist;
+                break;
+            default:
+                throw Py.ValueError("unknown seek type");
+        }
+        if (where > size || where < 0) {
+            throw Py.ValueError("seek out of range");
+        }
+        pos = where;
+    }
+
+    @ExposedMethod
+    final synchronized PyObject mmap_size() {
+        checkValid();
+        if (channel == null) {
+            return Py.newInteger(size);
+        } else if (!channel.isOpen()) {
+            throw mmap.mmapError(Errno.EBADF);
+        }
+        try {
+            return Py.newInteger(channel.size());
+        } catch (IOException ioe) {
+            throw mmap.mmapError(ioe);
+        }
+    }
+
+    @ExposedMethod
+    final synchronized PyObject mmap_tell() {
+        checkValid();
+        return Py.newInteger(pos);
+    }
+
+    @ExposedMethod
+    final synchronized void mmap_write(PyObject data) {
+        checkWritable();
+        ByteBuffer bytes = bytesOf(data);
+        if (size - pos < bytes.remaining()) {
+            throw Py.ValueError("data out of range");
+        }
+        long at = pos;
+        pos += bytes.remaining();
+        put(at, bytes);
+    }
+
+    @ExposedMethod
+    final synchronized void mmap_write_byte(PyObject c) {
+        checkWritable();
+        if (!(c instanceof PyString) || c.__len__() != 1) {
+            throw Py.TypeError("write_byte() argument 1 must be char, not "
+                    + c.getType().fastGetName());
+        }
+        if (pos >= size) {
+            throw Py.ValueError("write byte out of range");
+        }
+        put(pos++, (byte) ((PyString) c).getString().charAt(0));
+    }
+
+    /*
+     * ===========================================================================================
+     * Sequence behaviour
+     * ===========================================================================================
+     */
+
+    @Override
+    public int __len__() {
+        return mmap___len__();
+    }
+
+    @ExposedMethod
+    final synchronized int mmap___len__() {
+        checkValid();
+        if (size > Integer.MAX_VALUE) {
+            throw Py.OverflowError("mmap is too large for len(): use size()");
+        }
+        return (int) size;
+    }
+
+    @Override
+    public PyObject __finditem__(PyObject key) {
+        try {
+            return mmap___getitem__(key);
+        } catch (PyException pe) {
+            if (pe.match(Py.IndexError)) {
+                return null;
+            }
+            throw pe;
+        }
+    }
+
+    @Override
+    public PyObject __getitem__(PyObject key) {
+        return mmap___getitem__(key);
+    }
+
+    @ExposedMethod
+    final synchronized PyObject mmap___getitem__(PyObject key) {
+        checkValid();
+        if (!(key instanceof PySlice)) {
+            return Py.makeCharacter((char) (get(itemIndex(key)) & 0xff));
+        }
+        long[] slice = sliceIndices((PySlice) key);
+        long start = slice[0], step = slice[1], length = slice[2];
+        if (step == 1) {
+            return getString(start, start + length);
+        } else if (length > Integer.MAX_VALUE) {
+            throw Py.OverflowError("mmap slice too large for a string");
+        }
+        byte[] bytes = new byte[(int) length];
+        for (int i = 0; i < bytes.length; i++, start += step) {
+            bytes[i] = get(start);
+        }
+        return PyString.fromBytes(bytes);
+    }
+
+    @Override
+    public void __setitem__(PyObject key, PyObject value) {
+        mmap___setitem__(key, value);
+    }
+
+    @ExposedMethod
+    final synchronized void mmap___setitem__(PyObject key, PyObject value) {
+        checkWritable();
+        if (!(key instanceof PySlice)) {
+            long i = itemIndex(key);
+            if (!(value instanceof PyString) || value.__len__() != 1) {
+                throw Py.IndexError("mmap assignment must be single-character string");
+            }
+            put(i, (byte) ((PyString) value).getString().charAt(0));
+            return;
+        }
+        if (!(value instanceof PyString)) {
+            throw Py.IndexError("mmap slice assignment must be a string");
+        }
+        long[] slice = sliceIndices((PySlice) key);
+        long start = slice[0], step = slice[1], length = slice[2];
+        ByteBuffer bytes = bytesOf(value);
+        if (bytes.remaining() != length) {
+            throw Py.IndexError("mmap slice assignment is wrong size");
+        }
+        if (step == 1) {
+            put(start, bytes);
+        } else {
+            while (bytes.hasRemaining()) {
+                put(start, bytes.get());
+                start += step;
+            }
+        }
+    }
+
+    @Override
+    public void __delitem__(PyObject key) {
+        mmap___delitem__(key);
+    }
+
+    @ExposedMethod
+    final void mmap___delitem__(PyObject key) {
+        throw Py.TypeError("mmap object doesn't support item deletion");
+    }
+
+    @Override
+    public PyObject __iter__() {
+        return mmap___iter__();
+    }
+
+    @ExposedMethod
+    final PyObject mmap___iter__() {
+        return new PySequenceIter(this);
+    }
+
+    /*
+     * ===========================================================================================
+     * Buffer protocol
+     * ===========================================================================================
+     */
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The buffer is over the mapped memory itself, and is writable unless the map was made for
+     * reading only. Only a map of at most 2GB (in one region) may be exported.
+     */
+    @Override
+    public synchronized PyBuffer getBuffer(int flags) throws PyException {
+        checkValid();
+        BaseBuffer pybuf = null;
+        if (export != null) {
+            // As for PyArray: an exported buffer stays valid until resizeCheck() discards it.
+            pybuf = export.get();
+            if (pybuf != null) {
+                pybuf = pybuf.getBufferAgain(flags);
+            }
+        }
+        if (pybuf == null) {
+            if (regions.length > 1) {
+                throw Py.BufferError("mmap larger than 2GB cannot export a buffer");
+            }
+            pybuf = new SimpleNIOBuffer(flags, this, regions[0], 0, (int) size);
+            export = new WeakReference<BaseBuffer>(pybuf);
+        }
+        return pybuf;
+    }
+}
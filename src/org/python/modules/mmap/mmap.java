@@ -0,0 +1,79 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.mmap;
+
+import java.io.IOException;
+
+import jnr.constants.Constant;
+import jnr.posix.util.Platform;
+
+import org.python.core.ClassDictInit;
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyStringMap;
+import org.python.core.PyTuple;
+import org.python.modules.posix.PosixModule;
+
+/**
+ * The Python <code>mmap</code> module: memory-mapped files, and anonymous memory, made with
+ * <code>FileChannel.map</code> and direct <code>ByteBuffer</code>s. The mapped object is
+ * {@link PyMmap}.
+ */
+public class mmap implements ClassDictInit {
+
+    public static final PyString __doc__ = new PyString(
+            "Memory-mapped files, read and written like strings or files.\n\n"
+            + "A map is made with mmap(fileno, length[, flags[, prot[, access[, offset]]]]),\n"
+            + "where fileno is the fileno() of a file open for reading (and writing, to\n"
+            + "write through the map), or -1 for anonymous memory.");
+
+    public static final int ACCESS_READ = 1;
+    public static final int ACCESS_WRITE = 2;
+    public static final int ACCESS_COPY = 3;
+
+    public static final int MAP_SHARED = 1;
+    public static final int MAP_PRIVATE = 2;
+    public static final int MAP_ANONYMOUS = Platform.IS_MAC ? 0x1000 : 0x20;
+    public static final int MAP_ANON = MAP_ANONYMOUS;
+
+    public static final int PROT_READ = 1;
+    public static final int PROT_WRITE = 2;
+    public static final int PROT_EXEC = 4;
+
+    /**
+     * The size of a page of memory. Java does not reveal it, so this is the size on the common
+     * platforms.
+     */
+    public static final int PAGESIZE = 4096;
+
+    /** The granularity of offsets in the file at which CPython may map it. */
+    public static final int ALLOCATIONGRANULARITY = Platform.IS_WINDOWS ? 65536 : PAGESIZE;
+
+    public static final PyObject error =
+            Py.makeClass("error", Py.EnvironmentError, exceptionNamespace());
+
+    public static void classDictInit(PyObject dict) {
+        dict.__setitem__("mmap", PyMmap.TYPE);
+        dict.__setitem__("classDictInit", null);
+    }
+
+    private static PyObject exceptionNamespace() {
+        PyObject dict = new PyStringMap();
+        dict.__setitem__("__module__", new PyString("mmap"));
+        return dict;
+    }
+
+    /** Return an <code>mmap.error</code> for the given error number. */
+    static PyException mmapError(Constant errno) {
+        int value = errno.intValue();
+        return new PyException(error, new PyTuple(Py.newInteger(value),
+                PosixModule.strerror(value)));
+    }
+
+    /** Return an <code>mmap.error</code> reporting a Java <code>IOException</code>. */
+    static PyException mmapError(IOException ioe) {
+        String message = ioe.getMessage();
+        return new PyException(error, message != null ? message : ioe.toString());
+    }
+}
@@ -0,0 +1,85 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.posix;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import io.netty.channel.FileRegion;
+import io.netty.util.AbstractReferenceCounted;
+
+/**
+ * A region of a file written to a Netty channel by <code>os.sendfile</code>, which the transport
+ * sends with <code>FileChannel.transferTo</code>. Unlike Netty's <code>DefaultFileRegion</code>,
+ * it does not close the file when released, since the file belongs to the Python program.
+ */
+class FileChannelRegion extends AbstractReferenceCounted implements FileRegion {
+
+    private final FileChannel file;
+    private final long position;
+    private final long count;
+    private long transferred;
+
+    FileChannelRegion(FileChannel file, long position, long count) {
+        this.file = file;
+        this.position = position;
+        this.count = count;
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    @Deprecated
+    public long transfered() {
+        return transferred;
+    }
+
+    @Override
+    public long transferred() {
+        return transferred;
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        long n = file.transferTo(this.position + position, count - position, target);
+        if (n > 0) {
+            transferred += n;
+        }
+        return n;
+    }
+
+    @Override
+    public FileRegion retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public FileRegion retain(int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public FileRegion touch() {
+        return this;
+    }
+
+    @Override
+    public FileRegion touch(Object hint) {
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        // The file stays open.
+    }
+}
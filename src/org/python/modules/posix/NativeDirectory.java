@@ -0,0 +1,149 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.posix;
+
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+
+import jnr.ffi.LibraryLoader;
+import jnr.ffi.Pointer;
+import jnr.ffi.annotations.In;
+
+/**
+ * A directory read with the C library's <code>opendir</code> and <code>readdir</code>, which,
+ * unlike a <code>java.nio.file.DirectoryStream</code>, gives the type of each entry (its
+ * <code>d_type</code>) and its inode number without a further <code>stat</code>.
+ * <p>
+ * This is only available where the layout of <code>struct dirent</code> is known (64-bit Linux)
+ * and the POSIX support is native. Elsewhere {@link #open(Path)} returns <code>null</code> and the
+ * caller should use a <code>DirectoryStream</code>.
+ */
+final class NativeDirectory {
+
+    /** Values of <code>d_type</code>. */
+    static final int DT_UNKNOWN = 0, DT_DIR = 4, DT_REG = 8, DT_LNK = 10;
+
+    /** Offsets in the 64-bit Linux <code>struct dirent</code>. */
+    private static final int D_INO = 0, D_TYPE = 18, D_NAME = 19;
+
+    /** The functions of the C library used. */
+    public interface LibC {
+
+        Pointer opendir(@In byte[] name);
+
+        Pointer readdir(Pointer dirp);
+
+        int closedir(Pointer dirp);
+    }
+
+    /** Lazily loaded C library, or <code>null</code> if not available here. */
+    private static class Holder {
+
+        static final LibC libc = load();
+
+        private static LibC load() {
+            jnr.ffi.Platform platform = jnr.ffi.Platform.getNativePlatform();
+            if (platform.getOS() != jnr.ffi.Platform.OS.LINUX
+                    || jnr.ffi.Runtime.getSystemRuntime().addressSize() != 8) {
+                return null;
+            }
+            try {
+                if (!PosixModule.getPOSIX().isNative()) {
+                    return null;
+                }
+                return LibraryLoader.create(LibC.class).failImmediately()
+                        .load(platform.getStandardCLibraryName());
+            } catch (Throwable t) {
+                // SecurityManager, missing native support, or some other reason not to
+                return null;
+            }
+        }
+    }
+
+    /** The encoding Java uses for file names, which is that of the names we read. */
+    private static final Charset NAME_ENCODING = nameEncoding();
+
+    private static Charset nameEncoding() {
+        try {
+            return Charset.forName(System.getProperty("sun.jnu.encoding"));
+        } catch (RuntimeException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    private final LibC libc;
+    private Pointer dirp;
+
+    /** The current entry, as set by {@link #next()}. */
+    private String name;
+    private int type;
+    private long inode;
+
+    private NativeDirectory(LibC libc, Pointer dirp) {
+        this.libc = libc;
+        this.dirp = dirp;
+    }
+
+    /**
+     * Open the directory at the absolute path given, returning <code>null</code> if native
+     * directory reading is not available, or if the directory cannot be opened (in which case the
+     * caller should open it in some way that reports why).
+     */
+    static NativeDirectory open(Path path) {
+        LibC libc = Holder.libc;
+        if (libc == null) {
+            return null;
+        }
+        byte[] bytes = path.toString().getBytes(NAME_ENCODING);
+        byte[] name = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, name, 0, bytes.length);
+        Pointer dirp = libc.opendir(name);
+        return dirp == null ? null : new NativeDirectory(libc, dirp);
+    }
+
+    /**
+     * Advance to the next entry other than <code>.</code> and <code>..</code>, returning
+     * <code>false</code> (and closing the directory) when there are no more.
+     */
+    boolean next() {
+        while (dirp != null) {
+            Pointer entry = libc.readdir(dirp);
+            if (entry == null) {
+                close();
+                break;
+            }
+            int length = entry.indexOf(D_NAME, (byte) 0);
+            byte[] bytes = new byte[length];
+            entry.get(D_NAME, bytes, 0, length);
+            if (bytes[0] == '.' && (length == 1 || (length == 2 && bytes[1] == '.'))) {
+                continue;
+            }
+            name = new String(bytes, NAME_ENCODING);
+            type = entry.getByte(D_TYPE) & 0xff;
+            inode = entry.getLong(D_INO);
+            return true;
+        }
+        return false;
+    }
+
+    /** The name of the current entry. */
+    String name() {
+        return name;
+    }
+
+    /** The <code>d_type</code> of the current entry, which may be {@link #DT_UNKNOWN}. */
+    int type() {
+        return type;
+    }
+
+    /** The inode number of the current entry. */
+    long inode() {
+        return inode;
+    }
+
+    void close() {
+        if (dirp != null) {
+            libc.closedir(dirp);
+            dirp = null;
+        }
+    }
+}
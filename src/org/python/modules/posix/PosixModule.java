@@ -12,7 +12,10 @@ import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.Pipe;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
@@ -25,10 +28,15 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.DosFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.handler.ssl.SslHandler;
+
 import jnr.constants.Constant;
 import jnr.constants.platform.Errno;
 import jnr.constants.platform.Sysconf;
@@ -100,6 +108,12 @@ public class PosixModule implements ClassDictInit {
     private static final int W_OK = 1 << 1;
     private static final int R_OK = 1 << 2;
 
+    /** The stat and lstat functions, which are the same on Windows. */
+    private static final PyObject statFunction =
+            os == OS.NT ? new WindowsStatFunction() : new StatFunction();
+    private static final PyObject lstatFunction =
+            os == OS.NT ? statFunction : new LstatFunction();
+
     /** Lazily initialized singleton source for urandom. */
     private static class UrandomSource {
         static final SecureRandom INSTANCE = new SecureRandom();
@@ -136,17 +150,12 @@ public class PosixModule implements ClassDictInit {
         dict.__setitem__("environ", getEnviron());
         dict.__setitem__("error", Py.OSError);
         dict.__setitem__("stat_result", PyStatResult.TYPE);
+        dict.__setitem__("DirEntry", PyDirEntry.TYPE);
 
         // Faster call paths, because __call__ is defined
         dict.__setitem__("fstat", new FstatFunction());
-        if (os == OS.NT) {
-            WindowsStatFunction stat = new WindowsStatFunction();
-            dict.__setitem__("lstat", stat);
-            dict.__setitem__("stat", stat);
-        } else {
-            dict.__setitem__("lstat", new LstatFunction());
-            dict.__setitem__("stat", new StatFunction());
-        }
+        dict.__setitem__("lstat", lstatFunction);
+        dict.__setitem__("stat", statFunction);
 
         // Hide from Python
         Hider.hideFunctions(PosixModule.class, dict, os, nativePosix);
@@ -843,7 +852,11 @@ public class PosixModule implements ClassDictInit {
         Object javaobj = fd.__tojava__(RawIOBase.class);
         if (javaobj != Py.NoConversion) {
             try {
-                return new PyString(StringUtil.fromBytes(((RawIOBase) javaobj).read(buffersize)));
+                ByteBuffer buffer = ((RawIOBase) javaobj).read(buffersize);
+                // The str adopts a copy of just the bytes read (not widened to a String)
+                return PyString.fromBytes(Arrays.copyOfRange(buffer.array(),
+                        buffer.arrayOffset() + buffer.position(),
+                        buffer.arrayOffset() + buffer.limit()));
             } catch (PyException pye) {
                 throw badFD();
             }
@@ -905,6 +918,156 @@ public class PosixModule implements ClassDictInit {
         }
     }
 
+    public static PyString __doc__scandir = new PyString(
+        "scandir(path='.') -> iterator of DirEntry objects\n\n" +
+        "Return an iterator of DirEntry objects for the entries in the directory.\n\n" +
+        "Each entry knows its name and path, and whether it is a directory, file or\n" +
+        "symbolic link, without a further stat where the directory itself reveals it.\n" +
+        "The entries are in arbitrary order, and do not include '.' and '..'.");
+    public static PyObject scandir() {
+        return scandir(Py.newString("."));
+    }
+
+    public static PyObject scandir(PyObject path) {
+        return new PyScandirIterator(path, absolutePath(path));
+    }
+
+    public static PyString __doc__sendfile = new PyString(
+        "sendfile(out, in, offset, count) -> byteswritten\n\n" +
+        "Copy count bytes from file descriptor in, starting at offset, to file\n" +
+        "descriptor or socket out, without the data passing through Python objects.\n" +
+        "If offset is None, copy from the current position of in, and advance it.\n" +
+        "Return the number of bytes copied, which is 0 at the end of the file.");
+    public static long sendfile(PyObject out, PyObject in, PyObject offset, long count) {
+        FileChannel source = sendfileSource(in);
+        try {
+            long position = offset == Py.None ? source.position() : offset.asLong();
+            if (position < 0 || count < 0) {
+                throw Py.OSError(Errno.EINVAL);
+            }
+            count = Math.max(0, Math.min(count, source.size() - position));
+            long sent;
+            Object javaobj = out.__tojava__(RawIOBase.class);
+            if (javaobj != Py.NoConversion) {
+                RawIOBase raw = (RawIOBase) javaobj;
+                Channel channel = raw.getChannel();
+                if (raw.closed() || !(channel instanceof WritableByteChannel)) {
+                    throw badFD();
+                }
+                sent = count == 0 ? 0
+                        : source.transferTo(position, count, (WritableByteChannel) channel);
+            } else {
+                sent = sendfile(out, source, position, count);
+            }
+            if (offset == Py.None) {
+                source.position(position + sent);
+            }
+            return sent;
+        } catch (NonReadableChannelException | NonWritableChannelException ex) {
+            throw badFD();
+        } catch (IOException ioe) {
+            throw Py.OSError(ioe);
+        }
+    }
+
+    /** The channel of a file descriptor <code>sendfile</code> may copy from. */
+    private static FileChannel sendfileSource(PyObject in) {
+        Object javaobj = in.__tojava__(RawIOBase.class);
+        if (javaobj == Py.NoConversion || ((RawIOBase) javaobj).closed()) {
+            throw badFD();
+        }
+        Channel channel = ((RawIOBase) javaobj).getChannel();
+        if (!(channel instanceof FileChannel)) {
+            // As the platform sendfile, which can only copy from a file it can map
+            throw Py.OSError(Errno.EINVAL);
+        }
+        return (FileChannel) channel;
+    }
+
+    /** The Netty channel of a socket (as from its <code>fileno()</code>). */
+    private static io.netty.channel.Channel nettyChannel(PyObject sock) {
+        PyObject channel = sock.__findattr__("channel");
+        Object javaobj = channel == null ? Py.NoConversion
+                : channel.__tojava__(io.netty.channel.Channel.class);
+        if (javaobj == Py.NoConversion) {
+            throw badFD();
+        }
+        return (io.netty.channel.Channel) javaobj;
+    }
+
+    /**
+     * Write a region of a file to a socket, as its <code>send</code> would: a socket with a
+     * timeout (or none) waits as that allows, through its own <code>_handle_channel_future</code>,
+     * and a non-blocking one sends only what the channel will take without becoming unwritable.
+     * The transport copies the region from the file with <code>FileChannel.transferTo</code>,
+     * except that where the socket encrypts (has an <code>SslHandler</code>), or is non-blocking,
+     * a chunk is read into a direct buffer for it. (Netty does not count a file region against
+     * the writability of a channel.)
+     */
+    private static long sendfile(PyObject sock, FileChannel source, long position, long count)
+            throws IOException {
+        io.netty.channel.Channel channel = nettyChannel(sock);
+        if (count == 0) {
+            return 0;
+        }
+        PyObject canWrite = sock.__findattr__("_can_write");
+        if (canWrite != null && !canWrite.__nonzero__()) {
+            throw socketError(Errno.ENOTCONN, "Socket not connected");
+        }
+        PyObject timeout = sock.__findattr__("timeout");
+        boolean nonBlocking = timeout != null && timeout != Py.None && timeout.asDouble() == 0;
+        if (nonBlocking) {
+            long writable = channel.bytesBeforeUnwritable();
+            if (writable == 0) {
+                throw socketError(Errno.EAGAIN, "Resource temporarily unavailable");
+            }
+            count = Math.min(count, writable);
+        }
+        Object message;
+        if (nonBlocking || channel.pipeline().get(SslHandler.class) != null) {
+            int length = (int) Math.min(count, SENDFILE_CHUNK);
+            ByteBuf buf = channel.alloc().directBuffer(length);
+            try {
+                count = Math.max(0, buf.writeBytes(source, position, length));
+            } catch (IOException ioe) {
+                buf.release();
+                throw ioe;
+            }
+            message = buf;
+        } else {
+            message = new FileChannelRegion(source, position, count);
+        }
+        ChannelFuture future = channel.writeAndFlush(message);
+        try {
+            sock.invoke("_handle_channel_future", Py.java2py(future), Py.newString("sendfile"));
+        } catch (PyException pye) {
+            Object cause = pye.value == null ? null : pye.value.__tojava__(Throwable.class);
+            if (cause instanceof Throwable) {
+                throw socketException((Throwable) cause);
+            }
+            throw pye;
+        }
+        if (future.isDone() && !future.isSuccess()) {
+            throw socketException(future.cause());
+        }
+        return count;
+    }
+
+    /** The most <code>sendfile</code> reads at a time into a buffer for a socket. */
+    private static final int SENDFILE_CHUNK = 64 * 1024;
+
+    /** A <code>socket.error</code>, as the socket itself would raise. */
+    private static PyException socketError(Errno errno, String message) {
+        return new PyException(imp.load("_socket").__getattr__("error"),
+                new PyTuple(Py.newInteger(errno.intValue()), Py.newString(message)));
+    }
+
+    /** The socket exception for a Java one, as mapped by <code>_socket._map_exception</code>. */
+    private static PyException socketException(Throwable t) {
+        PyObject exc = imp.load("_socket").invoke("_map_exception", Py.java2py(t));
+        return new PyException(exc.getType(), exc);
+    }
+
     public static PyString __doc__setpgrp = new PyString(
         "setpgrp()\n\n" +
         "Make this process a session leader.");
@@ -1393,6 +1556,11 @@ public class PosixModule implements ClassDictInit {
         }
     }
 
+    /** Return <code>stat(path)</code>, or <code>lstat(path)</code> if not following links. */
+    static PyObject stat(PyObject path, boolean followSymlinks) {
+        return (followSymlinks ? statFunction : lstatFunction).__call__(path);
+    }
+
     @Untraversable
     static class LstatFunction extends PyBuiltinFunctionNarrow {
         LstatFunction() {
@@ -0,0 +1,216 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.posix;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import jnr.constants.platform.Errno;
+
+import org.python.core.ArgParser;
+import org.python.core.Py;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.core.PyType;
+import org.python.core.Traverseproc;
+import org.python.core.Visitproc;
+import org.python.expose.ExposedGet;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedType;
+
+/**
+ * An entry of a directory, as produced by <code>os.scandir</code>. The type of the entry is known
+ * from the directory itself where the platform gives it, and otherwise the attributes are read
+ * (once) when first needed, so that a program asking only <code>is_dir()</code> of each entry
+ * makes at most one <code>stat</code> per entry, and on Linux none.
+ */
+@ExposedType(name = "DirEntry", isBaseType = false)
+public class PyDirEntry extends PyObject implements Traverseproc {
+
+    public static final PyType TYPE = PyType.fromClass(PyDirEntry.class);
+
+    static {
+        // Can only determine the module name during runtime
+        TYPE.setName(PosixModule.getOSName() + "." + TYPE.fastGetName());
+    }
+
+    /** The name of the entry, <code>str</code> or <code>unicode</code> as the scandir path. */
+    @ExposedGet
+    public final PyObject name;
+
+    /** The path of the entry, the scandir path joined to the name. */
+    @ExposedGet
+    public final PyObject path;
+
+    /** The absolute path of the directory, and the entry's, made when first needed. */
+    private final Path directory;
+    private Path file;
+
+    /** The name as Java knows it, to resolve against the directory. */
+    private final String javaName;
+
+    /** The <code>d_type</code> of the entry, or <code>DT_UNKNOWN</code>. */
+    private final int type;
+
+    /** The inode number of the entry, or -1 if not known from the directory. */
+    private final long inode;
+
+    /** Cached attributes, of the entry itself and, for a link, its target. */
+    private BasicFileAttributes linkAttributes, attributes;
+
+    /** Cached results of <code>stat()</code>. */
+    private PyObject lstat, stat;
+
+    PyDirEntry(PyObject name, PyObject path, Path directory, String javaName, int type,
+            long inode) {
+        super(TYPE);
+        this.name = name;
+        this.path = path;
+        this.directory = directory;
+        this.javaName = javaName;
+        this.type = type;
+        this.inode = inode;
+    }
+
+    private Path file() {
+        if (file == null) {
+            file = directory.resolve(javaName);
+        }
+        return file;
+    }
+
+    /**
+     * The attributes of the entry, or of the target if it is a link and
+     * <code>followSymlinks</code>, or <code>null</code> if the entry (or target) no longer exists.
+     */
+    private BasicFileAttributes attributes(boolean followSymlinks) {
+        if (linkAttributes == null) {
+            linkAttributes = readAttributes(LinkOption.NOFOLLOW_LINKS);
+            if (linkAttributes == null) {
+                return null;
+            }
+        }
+        if (!followSymlinks || !linkAttributes.isSymbolicLink()) {
+            return linkAttributes;
+        }
+        if (attributes == null) {
+            attributes = readAttributes();
+        }
+        return attributes;
+    }
+
+    private BasicFileAttributes readAttributes(LinkOption... options) {
+        try {
+            return Files.readAttributes(file(), BasicFileAttributes.class, options);
+        } catch (NoSuchFileException ex) {
+            return null;
+        } catch (AccessDeniedException ex) {
+            throw Py.OSError(Errno.EACCES, path);
+        } catch (IOException ioe) {
+            throw Py.OSError(ioe);
+        } catch (SecurityException ex) {
+            throw Py.OSError(Errno.EACCES, path);
+        }
+    }
+
+    /** Whether the entry (or the target of a link if followed) has the <code>d_type</code>. */
+    private boolean isType(int expected, boolean followSymlinks) {
+        if (type != NativeDirectory.DT_UNKNOWN
+                && !(followSymlinks && type == NativeDirectory.DT_LNK)) {
+            return type == expected;
+        }
+        BasicFileAttributes a = attributes(followSymlinks);
+        if (a == null) {
+            return false;
+        } else if (expected == NativeDirectory.DT_DIR) {
+            return a.isDirectory();
+        } else if (expected == NativeDirectory.DT_REG) {
+            return a.isRegularFile();
+        } else {
+            return a.isSymbolicLink();
+        }
+    }
+
+    private static boolean followSymlinks(String method, PyObject[] args, String[] keywords) {
+        ArgParser ap = new ArgParser(method, args, keywords, new String[] {"follow_symlinks"}, 0);
+        return ap.getPyObject(0, Py.True).__nonzero__();
+    }
+
+    @ExposedMethod(doc = "is_dir(follow_symlinks=True) -> bool\n\n"
+            + "Return True if the entry is a directory (or a link to one, if followed).")
+    final boolean DirEntry_is_dir(PyObject[] args, String[] keywords) {
+        return isType(NativeDirectory.DT_DIR, followSymlinks("is_dir", args, keywords));
+    }
+
+    @ExposedMethod(doc = "is_file(follow_symlinks=True) -> bool\n\n"
+            + "Return True if the entry is a file (or a link to one, if followed).")
+    final boolean DirEntry_is_file(PyObject[] args, String[] keywords) {
+        return isType(NativeDirectory.DT_REG, followSymlinks("is_file", args, keywords));
+    }
+
+    @ExposedMethod(doc = "is_symlink() -> bool\n\nReturn True if the entry is a symbolic link.")
+    final boolean DirEntry_is_symlink() {
+        return isType(NativeDirectory.DT_LNK, false);
+    }
+
+    @ExposedMethod(doc = "stat(follow_symlinks=True) -> stat result\n\n"
+            + "Return the stat of the entry (or of the target of a link, if followed), cached\n"
+            + "from the first call.")
+    final PyObject DirEntry_stat(PyObject[] args, String[] keywords) {
+        return stat(followSymlinks("stat", args, keywords));
+    }
+
+    private PyObject stat(boolean followSymlinks) {
+        if (!followSymlinks) {
+            if (lstat == null) {
+                lstat = PosixModule.stat(path, false);
+            }
+            return lstat;
+        } else if (stat == null) {
+            stat = DirEntry_is_symlink() ? PosixModule.stat(path, true) : stat(false);
+        }
+        return stat;
+    }
+
+    @ExposedMethod(doc = "inode() -> int\n\nReturn the inode number of the entry.")
+    final PyObject DirEntry_inode() {
+        if (inode < 0) {
+            return stat(false).__getattr__("st_ino");
+        }
+        return Py.newInteger(inode);
+    }
+
+    @Override
+    public PyString __repr__() {
+        return DirEntry___repr__();
+    }
+
+    @ExposedMethod
+    final PyString DirEntry___repr__() {
+        return Py.newString(String.format("<DirEntry %s>", name.__repr__()));
+    }
+
+    /* Traverseproc implementation */
+    @Override
+    public int traverse(Visitproc visit, Object arg) {
+        int retVal;
+        for (PyObject ob : new PyObject[] {name, path, lstat, stat}) {
+            if (ob != null) {
+                retVal = visit.visit(ob, arg);
+                if (retVal != 0) {
+                    return retVal;
+                }
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean refersDirectlyTo(PyObject ob) {
+        return ob != null && (ob == name || ob == path || ob == lstat || ob == stat);
+    }
+}
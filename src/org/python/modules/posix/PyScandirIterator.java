@@ -0,0 +1,183 @@
+/* Copyright (c) Jython Developers */
+package org.python.modules.posix;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import jnr.constants.platform.Errno;
+
+import org.python.core.Py;
+import org.python.core.PyException;
+import org.python.core.PyIterator;
+import org.python.core.PyObject;
+import org.python.core.PyType;
+import org.python.core.PyUnicode;
+import org.python.core.finalization.FinalizableBuiltin;
+import org.python.core.finalization.FinalizeTrigger;
+import org.python.expose.ExposedMethod;
+import org.python.expose.ExposedType;
+
+/**
+ * The iterator returned by <code>os.scandir</code>, producing a {@link PyDirEntry} for each entry
+ * of a directory. The directory is read natively where {@link NativeDirectory} is available, and
+ * otherwise through a <code>DirectoryStream</code>. It is closed when the entries are exhausted,
+ * by <code>close()</code> or the end of a <code>with</code> block, or failing those, when the
+ * iterator is finalized.
+ */
+@ExposedType(name = "ScandirIterator", isBaseType = false)
+public class PyScandirIterator extends PyIterator implements FinalizableBuiltin {
+
+    public static final PyType TYPE = PyType.fromClass(PyScandirIterator.class);
+
+    static {
+        // Can only determine the module name during runtime
+        TYPE.setName(PosixModule.getOSName() + "." + TYPE.fastGetName());
+    }
+
+    /** The path given to scandir, used in errors. */
+    private final PyObject path;
+
+    /** Whether names and paths are <code>unicode</code> (otherwise <code>str</code>). */
+    private final boolean unicode;
+
+    /** The absolute path of the directory. */
+    private final Path directory;
+
+    /** What to prefix a name with to make the path of an entry. */
+    private final String prefix;
+
+    /** The directory when read natively, otherwise <code>null</code>. */
+    private NativeDirectory nativeDirectory;
+
+    /** The directory when read as a stream, otherwise <code>null</code>. */
+    private DirectoryStream<Path> stream;
+    private Iterator<Path> entries;
+
+    PyScandirIterator(PyObject path, Path directory) {
+        super(TYPE);
+        this.path = path;
+        this.unicode = path instanceof PyUnicode;
+        this.directory = directory;
+        String pathStr = Py.fileSystemDecode(path);
+        if (pathStr.endsWith("/") || pathStr.endsWith(File.separator)) {
+            this.prefix = pathStr;
+        } else {
+            this.prefix = pathStr + File.separator;
+        }
+        nativeDirectory = NativeDirectory.open(directory);
+        if (nativeDirectory == null) {
+            try {
+                stream = Files.newDirectoryStream(directory);
+                entries = stream.iterator();
+            } catch (IOException ioe) {
+                throw error(ioe);
+            } catch (SecurityException ex) {
+                throw Py.OSError(Errno.EACCES, path);
+            }
+        }
+        FinalizeTrigger.ensureFinalizer(this);
+    }
+
+    private PyException error(IOException ioe) {
+        if (ioe instanceof NoSuchFileException) {
+            return Py.OSError(Errno.ENOENT, path);
+        } else if (ioe instanceof NotDirectoryException) {
+            return Py.OSError(Errno.ENOTDIR, path);
+        } else if (ioe instanceof AccessDeniedException) {
+            return Py.OSError(Errno.EACCES, path);
+        } else {
+            return Py.OSError(ioe);
+        }
+    }
+
+    private PyObject asPyName(String name) {
+        return unicode ? Py.newUnicode(name) : Py.fileSystemEncode(name);
+    }
+
+    @Override
+    public synchronized PyObject __iternext__() {
+        String name;
+        int type = NativeDirectory.DT_UNKNOWN;
+        long inode = -1;
+        if (nativeDirectory != null) {
+            if (!nativeDirectory.next()) {
+                nativeDirectory = null;
+                return null;
+            }
+            name = nativeDirectory.name();
+            type = nativeDirectory.type();
+            inode = nativeDirectory.inode();
+        } else if (entries != null) {
+            try {
+                if (!entries.hasNext()) {
+                    close();
+                    return null;
+                }
+                name = entries.next().getFileName().toString();
+            } catch (DirectoryIteratorException ex) {
+                close();
+                throw error(ex.getCause());
+            }
+        } else {
+            return null;
+        }
+        return new PyDirEntry(asPyName(name), asPyName(prefix + name), directory, name, type,
+                inode);
+    }
+
+    @ExposedMethod(doc = "x.next() -> the next value, or raise StopIteration")
+    final PyObject ScandirIterator_next() {
+        return next();
+    }
+
+    @ExposedMethod
+    final PyObject ScandirIterator___iter__() {
+        return this;
+    }
+
+    /** Close the directory, after which the iterator produces no more entries. */
+    public synchronized void close() {
+        if (nativeDirectory != null) {
+            nativeDirectory.close();
+            nativeDirectory = null;
+        }
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ioe) {
+                // Nothing useful to do: we are finished with it anyway.
+            }
+            stream = null;
+            entries = null;
+        }
+    }
+
+    @ExposedMethod(doc = "close()\n\nClose the directory, releasing its resources.")
+    final void ScandirIterator_close() {
+        close();
+    }
+
+    @ExposedMethod
+    final PyObject ScandirIterator___enter__() {
+        return this;
+    }
+
+    @ExposedMethod
+    final boolean ScandirIterator___exit__(PyObject type, PyObject value, PyObject traceback) {
+        close();
+        return false;
+    }
+
+    @Override
+    public void __del_builtin__() {
+        close();
+    }
+}
@@ -0,0 +1,169 @@
+package org.python.modules.random;
+
+import java.math.BigInteger;
+
+/**
+ * The MT19937 generator of Matsumoto and Nishimura, as in CPython's <code>_randommodule.c</code>,
+ * so that a given seed or state produces the same sequence of numbers as it does in CPython. The
+ * 32-bit words of state are held in Java <code>int</code>s, the arithmetic on which is the same as
+ * on <code>unsigned long</code> masked to 32 bits.
+ * <p>
+ * This class is not thread safe: {@link PyRandom} either locks it or gives each thread its own.
+ */
+final class MersenneTwister {
+
+    /** Number of words of state. */
+    static final int N = 624;
+    private static final int M = 397;
+    private static final int MATRIX_A = 0x9908b0df;
+    private static final int UPPER_MASK = 0x80000000;
+    private static final int LOWER_MASK = 0x7fffffff;
+
+    /** The state vector. */
+    private final int[] mt = new int[N];
+
+    /** Index in {@link #mt} of the next word to temper, or {@link #N} to generate more. */
+    private int index = N;
+
+    /** Initialise the state from one word. */
+    private void init_genrand(int s) {
+        mt[0] = s;
+        for (int i = 1; i < N; i++) {
+            mt[i] = 1812433253 * (mt[i - 1] ^ (mt[i - 1] >>> 30)) + i;
+        }
+        index = N;
+    }
+
+    /** Initialise the state from an array of words (of at least one word). */
+    void init_by_array(int[] key) {
+        int i = 1, j = 0, n = key.length;
+        init_genrand(19650218);
+        for (int k = Math.max(N, n); k > 0; k--) {
+            mt[i] = (mt[i] ^ ((mt[i - 1] ^ (mt[i - 1] >>> 30)) * 1664525)) + key[j] + j;
+            i++;
+            j++;
+            if (i >= N) {
+                mt[0] = mt[N - 1];
+                i = 1;
+            }
+            if (j >= n) {
+                j = 0;
+            }
+        }
+        for (int k = N - 1; k > 0; k--) {
+            mt[i] = (mt[i] ^ ((mt[i - 1] ^ (mt[i - 1] >>> 30)) * 1566083941)) - i;
+            i++;
+            if (i >= N) {
+                mt[0] = mt[N - 1];
+                i = 1;
+            }
+        }
+        mt[0] = UPPER_MASK; // MSB is 1, assuring a non-zero initial array
+    }
+
+    /** Generate the next {@link #N} words of state. */
+    private void generate() {
+        int kk, y;
+        for (kk = 0; kk < N - M; kk++) {
+            y = (mt[kk] & UPPER_MASK) | (mt[kk + 1] & LOWER_MASK);
+            mt[kk] = mt[kk + M] ^ (y >>> 1) ^ ((y & 1) * MATRIX_A);
+        }
+        for (; kk < N - 1; kk++) {
+            y = (mt[kk] & UPPER_MASK) | (mt[kk + 1] & LOWER_MASK);
+            mt[kk] = mt[kk + (M - N)] ^ (y >>> 1) ^ ((y & 1) * MATRIX_A);
+        }
+        y = (mt[N - 1] & UPPER_MASK) | (mt[0] & LOWER_MASK);
+        mt[N - 1] = mt[M - 1] ^ (y >>> 1) ^ ((y & 1) * MATRIX_A);
+        index = 0;
+    }
+
+    /** Return the next 32 random bits (<code>genrand_int32</code>). */
+    int nextInt() {
+        if (index >= N) {
+            generate();
+        }
+        int y = mt[index++];
+        y ^= (y >>> 11);
+        y ^= (y << 7) & 0x9d2c5680;
+        y ^= (y << 15) & 0xefc60000;
+        y ^= (y >>> 18);
+        return y;
+    }
+
+    /** Return a random number on [0,1) with 53-bit resolution (<code>genrand_res53</code>). */
+    double random() {
+        int a = nextInt() >>> 5, b = nextInt() >>> 6;
+        return (a * 67108864.0 + b) * (1.0 / 9007199254740992.0);
+    }
+
+    /** Fill an array with the results of as many calls to {@link #random()}. */
+    void random(double[] result) {
+        for (int i = 0; i < result.length; i++) {
+            result[i] = random();
+        }
+    }
+
+    /**
+     * Return a non-negative integer of <code>k</code> random bits, taking words in the order (and
+     * so giving the same result) as CPython's <code>random_getrandbits</code>.
+     *
+     * @param k number of bits, greater than zero
+     */
+    BigInteger getrandbits(int k) {
+        if (k <= 32) {
+            return BigInteger.valueOf((nextInt() >>> (32 - k)) & 0xffffffffL);
+        }
+        // Words are least significant first, in a big-endian byte array.
+        int words = (k - 1) / 32 + 1;
+        byte[] bytes = new byte[words * 4];
+        for (int i = bytes.length - 1; i > 0; i -= 4, k -= 32) {
+            int r = nextInt();
+            if (k < 32) {
+                r >>>= 32 - k;
+            }
+            bytes[i] = (byte) r;
+            bytes[i - 1] = (byte) (r >>> 8);
+            bytes[i - 2] = (byte) (r >>> 16);
+            bytes[i - 3] = (byte) (r >>> 24);
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * Change the state by swapping words then adding to them (<code>random_jumpahead</code>).
+     *
+     * @param swap for each i from <code>N-1</code> down to 2, <code>swap[i]</code> is the word to
+     *            exchange with word i, the jump argument modulo i
+     */
+    void jumpahead(int[] swap) {
+        for (int i = N - 1; i > 1; i--) {
+            int j = swap[i], tmp = mt[i];
+            mt[i] = mt[j];
+            mt[j] = tmp;
+        }
+        int nonzero = 0;
+        for (int i = 0; i < N; i++) {
+            mt[i] += i + 1;
+            nonzero |= mt[i];
+        }
+        // Ensure the state is non-zero.
+        if (nonzero == 0) {
+            mt[0] = UPPER_MASK;
+        }
+        index = N;
+    }
+
+    /** Return a copy of the state, with the index as its last element. */
+    int[] getstate() {
+        int[] state = new int[N + 1];
+        System.arraycopy(mt, 0, state, 0, N);
+        state[N] = index;
+        return state;
+    }
+
+    /** Set the state from {@link #N} words and an index in the range 0 to {@link #N}. */
+    void setstate(int[] words, int index) {
+        System.arraycopy(words, 0, mt, 0, N);
+        this.index = index;
+    }
+}
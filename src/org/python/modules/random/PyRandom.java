@@ -1,25 +1,34 @@
 package org.python.modules.random;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.math.BigInteger;
-import java.util.Random;
 
+import org.python.core.Options;
 import org.python.core.Py;
 import org.python.core.PyFloat;
 import org.python.core.PyInteger;
+import org.python.core.PyList;
 import org.python.core.PyLong;
 import org.python.core.PyObject;
 import org.python.core.PyTuple;
 import org.python.core.PyType;
 import org.python.core.Untraversable;
+import org.python.expose.ExposedGet;
 import org.python.expose.ExposedMethod;
 import org.python.expose.ExposedNew;
+import org.python.expose.ExposedSet;
 import org.python.expose.ExposedType;
 
+/**
+ * The Mersenne Twister random number generator underlying Python's <code>random.Random</code>,
+ * producing the same sequences as CPython for the same seed or state.
+ * <p>
+ * An instance is safe to share between threads: by default each call locks the generator. If
+ * <code>perthread</code> is set (the registry setting <code>python.random.perthread</code> sets it
+ * for new instances), each thread instead draws, without locking, from a generator of its own,
+ * seeded from the instance's generator the first time the thread uses it. The state seen and set
+ * by <code>seed</code>, <code>getstate</code>, <code>setstate</code> and <code>jumpahead</code> is
+ * then that of the instance's generator, and changing it starts every thread afresh from it.
+ */
 @Untraversable
 @ExposedType(name = "_random.Random")
 public class PyRandom extends PyObject {
@@ -32,30 +41,89 @@ public class PyRandom extends PyObject {
 
     public PyRandom(PyType subType) {
         super(subType);
+        long t = System.nanoTime(), s = System.currentTimeMillis();
+        generator.init_by_array(new int[] {(int) t, (int) (t >>> 32), (int) s, (int) (s >>> 32),
+                System.identityHashCode(this)});
+        perthread = Options.randomPerThread;
     }
 
-    // added functions
-    protected Random javaRandom = new Random();
+    /** The generator, or in per-thread mode the one from which each thread's is seeded. */
+    private final MersenneTwister generator = new MersenneTwister();
+
+    /** Whether each thread has its own generator. */
+    private volatile boolean perthread;
+
+    /** Generators of threads in per-thread mode, replaced whenever the state is changed. */
+    private volatile ThreadLocal<MersenneTwister> local = new ThreadLocal<MersenneTwister>();
+
+    @ExposedGet(name = "perthread")
+    public boolean getPerthread() {
+        return perthread;
+    }
+
+    @ExposedSet(name = "perthread")
+    public void setPerthread(boolean perthread) {
+        this.local = new ThreadLocal<MersenneTwister>();
+        this.perthread = perthread;
+    }
+
+    /** Return the current thread's own generator (in per-thread mode). */
+    private MersenneTwister local() {
+        ThreadLocal<MersenneTwister> local = this.local;
+        MersenneTwister mt = local.get();
+        if (mt == null) {
+            int[] key = new int[MersenneTwister.N];
+            synchronized (generator) {
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = generator.nextInt();
+                }
+            }
+            mt = new MersenneTwister();
+            mt.init_by_array(key);
+            local.set(mt);
+        }
+        return mt;
+    }
+
+    /** Discard the generators of threads, after a change to the state of {@link #generator}. */
+    private void restart() {
+        if (perthread) {
+            local = new ThreadLocal<MersenneTwister>();
+        }
+    }
 
     /**
-     * Sets the seed of the internal number generated to seed. If seed is a PyInteger or PyLong, it
-     * uses the value, else it uses the hash function of PyObject
+     * Sets the state of the generator from seed, as CPython does. A PyInteger or PyLong is used by
+     * its absolute value, anything else by its hash, and None by the time.
      */
     @ExposedMethod(defaults = "null")
     final void Random_seed(PyObject seed) {
-        long n;
-        if (seed == null) {
-            seed = new PyLong(System.currentTimeMillis());
-        }
-        if (seed instanceof PyLong) {
-            PyLong max = new PyLong(Long.MAX_VALUE);
-            n = seed.__mod__(max).asLong();
-        } else if (seed instanceof PyInteger) {
-            n = seed.asLong();
+        BigInteger n;
+        if (seed == null || seed == Py.None) {
+            n = BigInteger.valueOf(System.currentTimeMillis());
+        } else if (seed instanceof PyInteger || seed instanceof PyLong) {
+            n = ((PyLong) seed.__long__()).getValue().abs();
         } else {
-            n = seed.hashCode();
+            // The hash as a C unsigned long
+            n = BigInteger.valueOf(seed.hashCode());
+            if (n.signum() < 0) {
+                n = n.add(BigInteger.ONE.shiftLeft(64));
+            }
+        }
+
+        // Split n into 32-bit words, least significant first.
+        byte[] bytes = n.toByteArray();
+        int[] key = new int[Math.max(1, (n.bitLength() + 31) / 32)];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[bytes.length - 1 - i] & 0xff;
+            if (i / 4 < key.length) {
+                key[i / 4] |= b << (8 * (i % 4));
+            }
         }
-        this.javaRandom.setSeed(n);
+        synchronized (generator) {
+            generator.init_by_array(key);
+        }
+        restart();
     }
 
     @ExposedNew
@@ -68,9 +136,16 @@ public class PyRandom extends PyObject {
             throw Py.TypeError(String.format("jumpahead requires an integer, not '%s'",
                                              arg0.getType().fastGetName()));
         }
-        for (long i = arg0.asLong(); i > 0; i--) {
-            this.javaRandom.nextInt();
+        int[] swap = new int[MersenneTwister.N];
+        BigInteger n = ((PyLong) arg0.__long__()).getValue();
+        for (int i = MersenneTwister.N - 1; i > 1; i--) {
+            // Python's modulo: not negative for positive i
+            swap[i] = n.mod(BigInteger.valueOf(i)).intValue();
+        }
+        synchronized (generator) {
+            generator.jumpahead(swap);
         }
+        restart();
     }
 
     @ExposedMethod
@@ -78,62 +153,99 @@ public class PyRandom extends PyObject {
         if (!(arg0 instanceof PyTuple)) {
             throw Py.TypeError("state vector must be a tuple");
         }
+        PyObject[] state = ((PyTuple) arg0).getArray();
+        if (state.length != MersenneTwister.N + 1) {
+            throw Py.ValueError("state vector is the wrong size");
+        }
+        int[] words = new int[MersenneTwister.N];
+        for (int i = 0; i < words.length; i++) {
+            // Only the low 32 bits are used.
+            words[i] = unsignedValue(state[i]).intValue();
+        }
+        BigInteger index = unsignedValue(state[MersenneTwister.N]);
+        if (index.compareTo(BigInteger.valueOf(MersenneTwister.N)) > 0) {
+            throw Py.ValueError("invalid state");
+        }
+        synchronized (generator) {
+            generator.setstate(words, index.intValue());
+        }
+        restart();
+    }
 
-        try {
-            Object arr[]=((PyTuple)arg0).toArray();
-            byte b[]=new byte[arr.length];
-            for(int i=0;i<arr.length;i++) {
-                if (arr[i] instanceof Integer) {
-                    b[i]=((Integer)arr[i]).byteValue();
-                } else {
-                    throw Py.TypeError("state vector of unexpected type: "+
-                            arr[i].getClass());
-                }
-            }
-            ByteArrayInputStream bin=new ByteArrayInputStream(b);
-            ObjectInputStream oin=new ObjectInputStream(bin);
-            this.javaRandom=(java.util.Random)oin.readObject();
-        } catch (IOException e) {
-            throw Py.SystemError("state vector invalid: "+e.getMessage());
-        } catch (ClassNotFoundException e) {
-            throw Py.SystemError("state vector invalid: "+e.getMessage());
+    /** The value of an element of a state vector, which must be a non-negative integer. */
+    private static BigInteger unsignedValue(PyObject item) {
+        if (!(item instanceof PyInteger || item instanceof PyLong)) {
+            throw Py.TypeError("state vector items must be integers");
+        }
+        BigInteger value = ((PyLong) item.__long__()).getValue();
+        if (value.signum() < 0) {
+            throw Py.OverflowError("can't convert negative value to unsigned long");
         }
+        return value;
     }
 
     @ExposedMethod
     final PyObject Random_getstate() {
-        try {
-            ByteArrayOutputStream bout=new ByteArrayOutputStream();
-            ObjectOutputStream oout=new ObjectOutputStream(bout);
-            oout.writeObject(this.javaRandom);
-            byte b[]=bout.toByteArray();
-            PyInteger retarr[]=new PyInteger[b.length];
-            for (int i=0;i<b.length;i++) {
-                retarr[i]=new PyInteger(b[i]);
-            }
-            PyTuple ret=new PyTuple(retarr);
-            return ret;
-        } catch (IOException e) {
-            throw Py.SystemError("creation of state vector failed: "+
-                    e.getMessage());
+        int[] state;
+        synchronized (generator) {
+            state = generator.getstate();
         }
+        PyObject[] items = new PyObject[state.length];
+        for (int i = 0; i < MersenneTwister.N; i++) {
+            items[i] = Py.newLong(state[i] & 0xffffffffL);
+        }
+        items[MersenneTwister.N] = Py.newInteger(state[MersenneTwister.N]);
+        return new PyTuple(items);
     }
 
     /**
      * Generate a random number on [0,1) with 53-bit resolution. Implementation lifted from
-     * _randommodule.c:random_random(), but we use &gt;&gt;&gt; instead of &gt;&gt; to avoid sign
-     * problems.
+     * _randommodule.c:random_random().
      */
     @ExposedMethod
     final PyObject Random_random() {
-        long a=this.javaRandom.nextInt()>>>5;
-        long b=this.javaRandom.nextInt()>>>6;
-        double ret=(a*67108864.0+b)*(1.0/9007199254740992.0);
-        return new PyFloat(ret);
+        if (perthread) {
+            return new PyFloat(local().random());
+        }
+        synchronized (generator) {
+            return new PyFloat(generator.random());
+        }
     }
-    
+
+    /**
+     * Return a list of <code>n</code> random numbers on [0,1), the same as from <code>n</code>
+     * calls to <code>random()</code>, generated together.
+     */
+    @ExposedMethod
+    final PyObject Random_randoms(int n) {
+        if (n < 0) {
+            throw Py.ValueError("number of values must not be negative");
+        }
+        double[] values = new double[n];
+        if (perthread) {
+            local().random(values);
+        } else {
+            synchronized (generator) {
+                generator.random(values);
+            }
+        }
+        PyObject[] items = new PyObject[n];
+        for (int i = 0; i < n; i++) {
+            items[i] = new PyFloat(values[i]);
+        }
+        return new PyList(items);
+    }
+
     @ExposedMethod
     final PyLong Random_getrandbits(int k) {
-        return new PyLong(new BigInteger(k, javaRandom));
+        if (k <= 0) {
+            throw Py.ValueError("number of bits must be greater than zero");
+        }
+        if (perthread) {
+            return new PyLong(local().getrandbits(k));
+        }
+        synchronized (generator) {
+            return new PyLong(generator.getrandbits(k));
+        }
     }
 }
@@ -0,0 +1,171 @@
+package org.python.modules.sre;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The subject of a match, seen as a sequence of code points indexed as {@code SRE_STATE} indexes
+ * it. The matcher reads the subject of a match through this class rather than from a copy of
+ * it, so that a <code>str</code>, or a <code>unicode</code> in the basic plane, is matched directly
+ * over the <code>String</code> or bytes that hold it. Only a <code>unicode</code> containing
+ * supplementary characters has to be converted to an array of code points, since there the indexes
+ * of code points and of UTF-16 code units differ.
+ * <p>
+ * This class is public only so that code generated by {@link SRE_JIT} may call it.
+ */
+public abstract class CharSource {
+
+    /** Number of code points in the subject. */
+    public final int length;
+
+    CharSource(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Return the code point at the given index.
+     *
+     * @param index of code point, in the range 0 to {@link #length}-1
+     * @return the code point
+     */
+    public abstract int charAt(int index);
+
+    /**
+     * Return the index of the first occurrence of a literal that starts at or after
+     * <code>from</code> and ends at or before <code>to</code>, or -1 if there is none.
+     *
+     * @param literal code points to find
+     * @param text the same code points as a <code>String</code>
+     * @param from index at which to start looking
+     * @param to index at which the subject is considered to end
+     * @return index of literal or -1
+     */
+    int indexOf(int[] literal, String text, int from, int to) {
+        int n = literal.length, first = literal[0];
+        for (int i = from, last = to - n; i <= last; i++) {
+            if (charAt(i) == first) {
+                int j = 1;
+                while (j < n && charAt(i + j) == literal[j]) {
+                    j++;
+                }
+                if (j == n) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /** Source reading the characters of a <code>String</code> with no surrogate pairs. */
+    static final class OfString extends CharSource {
+
+        private final String string;
+
+        OfString(String string) {
+            super(string.length());
+            this.string = string;
+        }
+
+        @Override
+        public int charAt(int index) {
+            return string.charAt(index);
+        }
+
+        @Override
+        int indexOf(int[] literal, String text, int from, int to) {
+            // String.indexOf is an intrinsic, much faster than a loop over charAt.
+            int i = string.indexOf(text, from);
+            return i + text.length() <= to ? i : -1;
+        }
+    }
+
+    /** Source reading unsigned bytes. */
+    static final class OfBytes extends CharSource {
+
+        private final byte[] bytes;
+
+        OfBytes(byte[] bytes) {
+            super(bytes.length);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int charAt(int index) {
+            return bytes[index] & 0xff;
+        }
+
+        @Override
+        int indexOf(int[] literal, String text, int from, int to) {
+            int n = literal.length, first = literal[0];
+            if (first > 0xff) {
+                return -1;
+            }
+            byte b = (byte) first;
+            for (int i = from, last = to - n; i <= last; i++) {
+                if (bytes[i] == b) {
+                    int j = 1;
+                    while (j < n && (bytes[i + j] & 0xff) == literal[j]) {
+                        j++;
+                    }
+                    if (j == n) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** Source reading unsigned bytes from a buffer, such as the memory of an <code>mmap</code>. */
+    static final class OfByteBuffer extends CharSource {
+
+        private final ByteBuffer buffer;
+
+        /** Read the bytes between the position and the limit of the buffer. */
+        OfByteBuffer(ByteBuffer buffer) {
+            super(buffer.remaining());
+            this.buffer = buffer.slice();
+        }
+
+        @Override
+        public int charAt(int index) {
+            return buffer.get(index) & 0xff;
+        }
+
+        @Override
+        int indexOf(int[] literal, String text, int from, int to) {
+            int n = literal.length, first = literal[0];
+            if (first > 0xff) {
+                return -1;
+            }
+            byte b = (byte) first;
+            for (int i = from, last = to - n; i <= last; i++) {
+                if (buffer.get(i) == b) {
+                    int j = 1;
+                    while (j < n && (buffer.get(i + j) & 0xff) == literal[j]) {
+                        j++;
+                    }
+                    if (j == n) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** Source reading an array of code points. */
+    static final class OfCodePoints extends CharSource {
+
+        private final int[] codePoints;
+
+        OfCodePoints(int[] codePoints) {
+            super(codePoints.length);
+            this.codePoints = codePoints;
+        }
+
+        @Override
+        public int charAt(int index) {
+            return codePoints[index];
+        }
+    }
+}
@@ -21,7 +21,7 @@ import java.math.BigInteger;
 
 
 public class MatchObject extends PyObject implements Traverseproc {
-    public PyString string; /* link to the target string */
+    public PyObject string; /* link to the target string */
     public PyObject regs; /* cached list of matching spans */
     PatternObject pattern; /* link to the regex (pattern) object */
     int pos, endpos; /* current target slice */
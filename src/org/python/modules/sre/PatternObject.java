@@ -32,6 +32,12 @@ public class PatternObject extends PyObject implements Traverseproc {
     public int flags;
     org.python.core.PyObject indexgroup;
     public int codesize;
+    /* number of states made for matching, until the pattern is compiled (then -1) */
+    private int uses;
+    /* the pattern compiled to a JVM class, or null while it is interpreted */
+    private volatile SRE_JIT.Program program;
+    /* a literal every match contains, used to skip where a search cannot match, or null */
+    private final Prefilter prefilter;
 
 
     public PatternObject(PyString pattern, int flags, int[] code,
@@ -45,6 +51,7 @@ public class PatternObject extends PyObject implements Traverseproc {
         this.groups  = groups;
         this.groupindex = groupindex;
         this.indexgroup = indexgroup;
+        this.prefilter = Options.srePrefilter ? Prefilter.of(code) : null;
     }
 
     @ExposedGet(name = "pattern")
@@ -74,13 +81,13 @@ public class PatternObject extends PyObject implements Traverseproc {
     public PyObject match(PyObject[] args, String[] kws) {
         ArgParser ap = new ArgParser("match", args, kws,
                                      "string", "pos", "endpos");
-        PyString string = extractPyString(ap, 0);
+        PyObject string = extractSubject(ap, 0);
         int start = ap.getInt(1, 0);
-        int end = ap.getInt(2, string.__len__());
-        SRE_STATE state = new SRE_STATE(string, start, end, flags);
+        int end = ap.getInt(2, Integer.MAX_VALUE);
+        SRE_STATE state = newState(string, start, end);
 
         state.ptr = state.start;
-        int status = state.SRE_MATCH(code, 0, 1);
+        int status = state.match(code, 0);
 
         MatchObject matchObject = _pattern_new_match(state, string, status);
         return matchObject != null ? matchObject : Py.None;
@@ -90,11 +97,11 @@ public class PatternObject extends PyObject implements Traverseproc {
     public PyObject search(PyObject[] args, String[] kws) {
         ArgParser ap = new ArgParser("search", args, kws,
                                      "string", "pos", "endpos");
-        PyString string = extractPyString(ap, 0);
+        PyObject string = extractSubject(ap, 0);
         int start = ap.getInt(1, 0);
-        int end = ap.getInt(2, string.__len__());
+        int end = ap.getInt(2, Integer.MAX_VALUE);
 
-        SRE_STATE state = new SRE_STATE(string, start, end, flags);
+        SRE_STATE state = newState(string, start, end);
 
         int status = state.SRE_SEARCH(code, 0);
 
@@ -149,7 +156,7 @@ public class PatternObject extends PyObject implements Traverseproc {
             }
         }
 
-        SRE_STATE state = new SRE_STATE(string, 0, Integer.MAX_VALUE, flags);
+        SRE_STATE state = newState(string, 0, Integer.MAX_VALUE);
 
         PyList list = new PyList();
 
@@ -221,7 +228,7 @@ public class PatternObject extends PyObject implements Traverseproc {
         PyString string = extractPyString(ap, 0);
         int maxsplit = ap.getInt(1, 0);
 
-        SRE_STATE state = new SRE_STATE(string, 0, Integer.MAX_VALUE, flags);
+        SRE_STATE state = newState(string, 0, Integer.MAX_VALUE);
 
         PyList list = new PyList();
 
@@ -278,7 +285,7 @@ public class PatternObject extends PyObject implements Traverseproc {
         int start = ap.getInt(1, 0);
         int end = ap.getInt(2, Integer.MAX_VALUE);
 
-        SRE_STATE state = new SRE_STATE(string, start, end, flags);
+        SRE_STATE state = newState(string, start, end);
 
         final List<PyObject> list = new ArrayList<PyObject>();
 
@@ -333,13 +340,12 @@ public class PatternObject extends PyObject implements Traverseproc {
     public ScannerObject scanner(PyObject[] args, String[] kws) {
         ArgParser ap = new ArgParser("scanner", args, kws,
                                      "pattern", "pos", "endpos");
-        PyString string = extractPyString(ap, 0);
+        PyObject string = extractSubject(ap, 0);
 
         ScannerObject self = new ScannerObject();
-        self.state = new SRE_STATE(string,
-                                   ap.getInt(1, 0),
-                                   ap.getInt(2, Integer.MAX_VALUE),
-                                   flags);
+        self.state = newState(string,
+                              ap.getInt(1, 0),
+                              ap.getInt(2, Integer.MAX_VALUE));
         self.pattern = this;
         self.string = string;
         return self;
@@ -347,6 +353,36 @@ public class PatternObject extends PyObject implements Traverseproc {
 
 
 
+    /**
+     * Create the state for matching this pattern against a string. Once the pattern has been used
+     * {@link Options#sreJitThreshold} times, this compiles it (see {@link SRE_JIT}), and states
+     * created after that use the compiled form.
+     */
+    SRE_STATE newState(PyObject string, int start, int end) {
+        SRE_STATE state;
+        if (string instanceof PyString) {
+            state = new SRE_STATE((PyString) string, start, end, flags);
+        } else {
+            // A buffer from extractSubject: read its memory in place
+            try (PyBuffer buf = ((BufferProtocol) string).getBuffer(PyBUF.SIMPLE)) {
+                CharSource source = new CharSource.OfByteBuffer(buf.getNIOByteBuffer());
+                state = new SRE_STATE(source, start, end, flags);
+            }
+        }
+        SRE_JIT.Program p = program;
+        if (p == null && uses >= 0) {
+            int threshold = Options.sreJitThreshold;
+            if (threshold >= 0 && ++uses > threshold) {
+                // Compile once only, even if compilation fails.
+                uses = -1;
+                p = program = SRE_JIT.compile(code);
+            }
+        }
+        state.program = p;
+        state.prefilter = prefilter;
+        return state;
+    }
+
     private void _error(int status) {
         if (status == SRE_STATE.SRE_ERROR_RECURSION_LIMIT)
             throw Py.RuntimeError("maximum recursion limit exceeded");
@@ -355,7 +391,7 @@ public class PatternObject extends PyObject implements Traverseproc {
     }
 
 
-    MatchObject _pattern_new_match(SRE_STATE state, PyString string,
+    MatchObject _pattern_new_match(SRE_STATE state, PyObject string,
                                    int status)
     {
         /* create match object (from state object) */
@@ -399,6 +435,27 @@ public class PatternObject extends PyObject implements Traverseproc {
         return null;
     }
 
+    /**
+     * Return the subject of a match, search or scanner. This is the object itself if it is a
+     * <code>str</code> or <code>unicode</code>, or if it is an object with the buffer interface
+     * over memory outside the Java heap (such as an <code>mmap</code>), which the matcher then
+     * reads in place and from which groups are sliced. Other objects are copied as by
+     * {@link #extractPyString(ArgParser, int)}.
+     */
+    private static PyObject extractSubject(ArgParser ap, int pos) {
+        PyObject obj = ap.getPyObject(pos);
+        if (obj instanceof BufferProtocol && !(obj instanceof PyString)) {
+            try (PyBuffer buf = ((BufferProtocol) obj).getBuffer(PyBUF.SIMPLE)) {
+                if (buf.getNIOByteBuffer().isDirect()) {
+                    return obj;
+                }
+            } catch (ClassCastException e) {
+                // Not really a buffer: extractPyString will complain
+            }
+        }
+        return extractPyString(ap, pos);
+    }
+
     private static PyString extractPyString(ArgParser ap, int pos) {
         PyObject obj = ap.getPyObject(pos);
 
@@ -409,8 +466,10 @@ public class PatternObject extends PyObject implements Traverseproc {
         } else {
             // Try to get a byte-oriented buffer
             try (PyBuffer buf = ((BufferProtocol) obj).getBuffer(PyBUF.SIMPLE)) {
-                // ... and wrap those bytes as a PyString
-                return new PyString(buf.toString());
+                // ... and wrap a copy of those bytes as a PyString (without making a String)
+                byte[] bytes = new byte[buf.getLen()];
+                buf.copyTo(bytes, 0);
+                return PyString.fromBytes(bytes);
             } catch (ClassCastException e) {
                 throw Py.TypeError("expected string or buffer, but got " + obj.getType());
             }
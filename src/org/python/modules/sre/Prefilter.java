@@ -0,0 +1,214 @@
+package org.python.modules.sre;
+
+import static org.python.modules.sre.SRE_STATE.*;
+
+import java.util.Arrays;
+
+import org.python.modules._sre;
+
+/**
+ * A literal string that every match of a pattern must contain, found by inspecting the opcode
+ * program, together with how far into a match it may lie. {@link SRE_STATE#SRE_SEARCH(int[], int)}
+ * uses it to reject a subject that does not contain the literal without trying to match at every
+ * position, and to skip positions too far before the next occurrence of it for a match starting
+ * there to reach it. For example, <code>ERROR \[(\w+)\]</code> requires <code>"ERROR ["</code> at
+ * offset 0, so a search for it is a search for that text, and <code>\d+ ms</code> requires
+ * <code>" ms"</code> but at no fixed offset, so lines without it are rejected but the matcher is
+ * still tried at each position before it.
+ * <p>
+ * The literal sought is the longest run of consecutive {@code LITERAL} opcodes in the main sequence
+ * of the program (not within branches, repeats or assertions), since those characters are matched
+ * wherever the pattern matches.
+ */
+final class Prefilter {
+
+    /** The code points every match contains. */
+    final int[] literal;
+    /** {@link #literal} as a <code>String</code>, for searching a <code>String</code>. */
+    final String text;
+    /**
+     * The greatest distance from the start of a match to the start of {@link #literal}, or -1 if it
+     * is unbounded.
+     */
+    final int maxOffset;
+
+    private Prefilter(int[] literal, int length, int maxOffset) {
+        this.literal = Arrays.copyOf(literal, length);
+        this.text = new String(this.literal, 0, length);
+        this.maxOffset = maxOffset;
+    }
+
+    /**
+     * Find in the program a literal that every match contains.
+     *
+     * @param code the opcode program of a pattern
+     * @return the prefilter for the pattern, or <code>null</code> if there is no required literal
+     */
+    static Prefilter of(int[] code) {
+        int p = 0;
+        if (code[p] == SRE_OP_INFO) {
+            p += 1 + code[p + 1];
+        }
+        // Maximum width of the text matched by code before p, or -1 if unbounded
+        int width = 0;
+        // The current run of literals, and the best (longest) so far
+        int[] run = new int[16];
+        int runLength = 0, runOffset = 0;
+        int[] best = null;
+        int bestLength = 0, bestOffset = 0;
+
+        while (p < code.length) {
+            int op = code[p];
+            if (op == SRE_OP_LITERAL) {
+                if (runLength == 0) {
+                    runOffset = width;
+                } else if (runLength == run.length) {
+                    run = Arrays.copyOf(run, runLength * 2);
+                }
+                run[runLength++] = code[p + 1];
+                width = add(width, 1);
+                p += 2;
+                continue;
+            } else if (op == SRE_OP_MARK || op == SRE_OP_AT) {
+                // Zero width: consecutive literals either side are still adjacent in the subject.
+                p += 2;
+                continue;
+            }
+            // Any other opcode ends the run.
+            if (runLength > bestLength) {
+                best = run;
+                bestLength = runLength;
+                bestOffset = runOffset;
+                run = new int[16];
+            }
+            runLength = 0;
+            int next = next(code, p);
+            if (op == SRE_OP_SUCCESS || next < 0) {
+                break;
+            }
+            width = add(width, width(code, p));
+            p = next;
+        }
+
+        return bestLength == 0 ? null : new Prefilter(best, bestLength, bestOffset);
+    }
+
+    /**
+     * The index of the first occurrence of the literal in <code>str</code> that starts at or after
+     * <code>from</code> and ends at or before <code>to</code>, or -1 if there is none.
+     */
+    int find(CharSource str, int from, int to) {
+        return str.indexOf(literal, text, from, to);
+    }
+
+    /** Sum of widths where -1 means unbounded. */
+    private static int add(int a, int b) {
+        return a < 0 || b < 0 ? -1 : bounded((long) a + b);
+    }
+
+    /** The given width, or -1 (unbounded) if it is too big to be useful. */
+    private static int bounded(long width) {
+        return width > Integer.MAX_VALUE / 2 ? -1 : (int) width;
+    }
+
+    /**
+     * The index of the opcode after the one at <code>p</code> in a sequence, or -1 if it is not
+     * one that we know how to step over.
+     */
+    private static int next(int[] code, int p) {
+        switch (code[p]) {
+            case SRE_OP_SUCCESS:
+            case SRE_OP_FAILURE:
+            case SRE_OP_ANY:
+            case SRE_OP_ANY_ALL:
+                return p + 1;
+            case SRE_OP_AT:
+            case SRE_OP_CATEGORY:
+            case SRE_OP_GROUPREF:
+            case SRE_OP_GROUPREF_IGNORE:
+            case SRE_OP_LITERAL:
+            case SRE_OP_LITERAL_IGNORE:
+            case SRE_OP_MARK:
+            case SRE_OP_NOT_LITERAL:
+            case SRE_OP_NOT_LITERAL_IGNORE:
+                return p + 2;
+            case SRE_OP_ASSERT:
+            case SRE_OP_ASSERT_NOT:
+            case SRE_OP_IN:
+            case SRE_OP_IN_IGNORE:
+            case SRE_OP_REPEAT_ONE:
+            case SRE_OP_MIN_REPEAT_ONE:
+                return p + 1 + code[p + 1];
+            case SRE_OP_REPEAT:
+                // <REPEAT> <skip> <1=min> <2=max> item <UNTIL> tail
+                return p + 2 + code[p + 1];
+            case SRE_OP_BRANCH:
+                // <BRANCH> <0=skip> code <JUMP> ... <NULL>
+                for (p++; code[p] != 0; p += code[p]) {}
+                return p + 1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * The maximum width of the text matched by the opcode at <code>p</code>, or -1 if it is
+     * unbounded or not known.
+     */
+    private static int width(int[] code, int p) {
+        switch (code[p]) {
+            case SRE_OP_AT:
+            case SRE_OP_MARK:
+            case SRE_OP_ASSERT:
+            case SRE_OP_ASSERT_NOT:
+                return 0;
+            case SRE_OP_ANY:
+            case SRE_OP_ANY_ALL:
+            case SRE_OP_CATEGORY:
+            case SRE_OP_IN:
+            case SRE_OP_IN_IGNORE:
+            case SRE_OP_LITERAL:
+            case SRE_OP_LITERAL_IGNORE:
+            case SRE_OP_NOT_LITERAL:
+            case SRE_OP_NOT_LITERAL_IGNORE:
+                return 1;
+            case SRE_OP_REPEAT_ONE:
+            case SRE_OP_MIN_REPEAT_ONE:
+                // The item is a single character.
+                return code[p + 3] == _sre.MAXREPEAT ? -1 : code[p + 3];
+            case SRE_OP_REPEAT: {
+                int item = sequenceWidth(code, p + 4, p + 1 + code[p + 1]);
+                return item < 0 || code[p + 3] == _sre.MAXREPEAT ? -1
+                        : bounded((long) item * code[p + 3]);
+            }
+            case SRE_OP_BRANCH: {
+                int max = 0;
+                for (int q = p + 1; code[q] != 0; q += code[q]) {
+                    // Each alternative ends with <JUMP> <skip>
+                    int w = sequenceWidth(code, q + 1, q + code[q] - 2);
+                    if (w < 0) {
+                        return -1;
+                    }
+                    max = Math.max(max, w);
+                }
+                return max;
+            }
+            default:
+                return -1;
+        }
+    }
+
+    /** The maximum width of the opcodes from <code>p</code> up to <code>end</code>, or -1. */
+    private static int sequenceWidth(int[] code, int p, int end) {
+        int width = 0;
+        while (p < end && width >= 0) {
+            int next = next(code, p);
+            if (next < 0) {
+                return -1;
+            }
+            width = add(width, width(code, p));
+            p = next;
+        }
+        return width;
+    }
+}
@@ -0,0 +1,993 @@
+package org.python.modules.sre;
+
+import static org.objectweb.asm.Opcodes.*;
+import static org.python.modules.sre.SRE_STATE.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.python.core.BytecodeLoader;
+
+/**
+ * Compiler from the opcode program of a regular expression (as produced by {@code sre_compile})
+ * to a JVM class specialised to that program. {@link PatternObject} uses this once a pattern has
+ * been used {@link org.python.core.Options#sreJitThreshold} times.
+ * <p>
+ * The compiled class has one method for each point at which {@link SRE_STATE#SRE_MATCH(int[], int,
+ * int)} would be entered (recursively) for the program, and that method does exactly what
+ * {@code SRE_MATCH} would do from there, but with the opcode dispatch, operand fetches and skips
+ * resolved at compile time. Character sets are unrolled into tests, and the single character
+ * repeats are compiled into tight loops. Where the program uses an opcode the compiler does not
+ * handle, the generated code calls the interpreter for the rest of the match, so the result is
+ * always exactly that of the interpreter.
+ */
+final class SRE_JIT {
+
+    /** Returned by {@link Program#match(SRE_STATE, int)} for a program index it does not know. */
+    static final int NOT_COMPILED = Integer.MIN_VALUE;
+
+    /** Opcodes compiled for one pattern, beyond which the interpreter is called instead. */
+    private static final int MAX_OPS = 1000;
+
+    /** Used to give each generated class a distinct name. */
+    private static final AtomicInteger serial = new AtomicInteger();
+
+    /**
+     * Base of the classes generated for compiled patterns. The static methods give the generated
+     * code (which is in another class loader, so not in this package at run time) access to the
+     * matching state.
+     */
+    public abstract static class Program {
+
+        /** The opcode program this class was compiled from. */
+        protected final int[] code;
+
+        protected Program(int[] code) {
+            this.code = code;
+        }
+
+        /**
+         * Equivalent to {@code state.SRE_MATCH(code, pidx, 1)}, if <code>pidx</code> is one of the
+         * entry points compiled.
+         *
+         * @return the status from matching or {@link SRE_JIT#NOT_COMPILED}
+         */
+        public abstract int match(SRE_STATE state, int pidx);
+
+        protected static int getPtr(SRE_STATE state) {
+            return state.ptr;
+        }
+
+        protected static void setPtr(SRE_STATE state, int ptr) {
+            state.ptr = ptr;
+        }
+
+        protected static int getEnd(SRE_STATE state) {
+            return state.end;
+        }
+
+        protected static CharSource getStr(SRE_STATE state) {
+            return state.str;
+        }
+
+        protected static int getLastmark(SRE_STATE state) {
+            return state.lastmark;
+        }
+
+        protected static int getLastindex(SRE_STATE state) {
+            return state.lastindex;
+        }
+
+        protected static boolean hasRepeat(SRE_STATE state) {
+            return state.repeat != null;
+        }
+
+        /** As <code>SRE_OP_MARK</code>. */
+        protected static void mark(SRE_STATE state, int i, int ptr) {
+            if ((i & 1) != 0) {
+                state.lastindex = i / 2 + 1;
+            }
+            if (i > state.lastmark) {
+                state.lastmark = i;
+            }
+            state.mark[i] = ptr;
+        }
+
+        protected static void lastmarkRestore(SRE_STATE state, int lastmark, int lastindex) {
+            state.LASTMARK_RESTORE(lastmark, lastindex);
+        }
+
+        protected static int markSave(SRE_STATE state, int lastmark) {
+            return state.mark_save(0, lastmark);
+        }
+
+        protected static void markRestore(SRE_STATE state, int lastmark, int base) {
+            state.mark_restore(0, lastmark, base);
+        }
+
+        protected static boolean at(SRE_STATE state, int ptr, int at) {
+            return state.SRE_AT(ptr, at);
+        }
+
+        protected static boolean category(SRE_STATE state, int category, int ch) {
+            return state.sre_category(category, ch);
+        }
+
+        protected static boolean charset(SRE_STATE state, int[] set, int setidx, int ch) {
+            return state.SRE_CHARSET(set, setidx, ch);
+        }
+
+        protected static int lower(SRE_STATE state, int ch) {
+            return state.lower(ch);
+        }
+
+        /** As {@code SRE_COUNT} (which works from {@code state.ptr}). */
+        protected static int count(SRE_STATE state, int[] code, int pidx, int max, int level) {
+            return state.SRE_COUNT(code, pidx, max, level);
+        }
+
+        /** As {@code SRE_COUNT} with a maximum of one, as used in minimising repeats. */
+        protected static int countOne(SRE_STATE state, int[] code, int pidx, int level) {
+            int c = state.SRE_COUNT(code, pidx, 1, level);
+            if (c > 1) {
+                throw new IllegalStateException("c should be 1!");
+            }
+            return c;
+        }
+
+        /** Continue matching in the interpreter (which works from {@code state.ptr}). */
+        protected static int interpret(SRE_STATE state, int[] code, int pidx, int level) {
+            return state.SRE_MATCH(code, pidx, level);
+        }
+    }
+
+    private static final String PROGRAM = "org/python/modules/sre/SRE_JIT$Program";
+    private static final String STATE = "org/python/modules/sre/SRE_STATE";
+    private static final String SOURCE = "org/python/modules/sre/CharSource";
+    /** Descriptor of the generated method for each entry to {@code SRE_MATCH}. */
+    private static final String MATCH_DESC = "(L" + STATE + ";I)I";
+
+    /* Local variables of a generated method. */
+    private static final int THIS = 0, S = 1, LEVEL = 2, PTR = 3, END = 4, STR = 5, I = 6,
+            COUNT = 7, LASTMARK = 8, LASTINDEX = 9, MSB = 10, CH = 11, P = 12, LIM = 13;
+
+    private final int[] code;
+    private final String className;
+    private final ClassWriter cw;
+    /** Program indexes for which a method has been or will be generated. */
+    private final Map<Integer, String> methods = new HashMap<>();
+    private final Deque<Integer> pending = new ArrayDeque<>();
+    private int budget = MAX_OPS;
+
+    /* State while generating one method. */
+    private MethodVisitor mv;
+    private Map<Integer, Label> labels;
+    private Label fail;
+
+    private SRE_JIT(int[] code) {
+        this.code = code;
+        this.className = "org/python/modules/sre/SRE_JIT$Compiled" + serial.incrementAndGet();
+        this.cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+    }
+
+    /**
+     * Compile the given opcode program to a {@link Program}, or return <code>null</code> if that
+     * fails for any reason (in which case the pattern continues to be interpreted).
+     */
+    static Program compile(int[] code) {
+        try {
+            SRE_JIT jit = new SRE_JIT(code);
+            byte[] bytes = jit.generate();
+            Class<?> c = BytecodeLoader.makeClass(jit.className.replace('/', '.'), bytes,
+                    Program.class);
+            return (Program) c.getConstructor(int[].class).newInstance((Object) code);
+        } catch (RuntimeException | ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private byte[] generate() {
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, PROGRAM, null);
+
+        mv = cw.visitMethod(ACC_PUBLIC, "<init>", "([I)V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKESPECIAL, PROGRAM, "<init>", "([I)V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        int[] entries = entryPoints();
+        generateEntry(entries);
+        for (int pidx : entries) {
+            method(pidx);
+        }
+        while (!pending.isEmpty()) {
+            generateMethod(pending.poll());
+        }
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * The program indexes at which {@code PatternObject} and {@code SRE_SEARCH} begin a match: the
+     * start, after the info block, and after a literal or literal prefix found by the search.
+     */
+    private int[] entryPoints() {
+        int pidx = 0;
+        int[] entries = {0, 0, 0, 0};
+        int n = 1;
+        if (code[0] == SRE_OP_INFO) {
+            pidx = code[1] + 1;
+            entries[n++] = pidx;
+            if ((code[2] & SRE_INFO_PREFIX) != 0) {
+                entries[n++] = pidx + 2 * code[6];
+            }
+        }
+        if (code[pidx] == SRE_OP_LITERAL) {
+            entries[n++] = pidx + 2;
+        }
+        return Arrays.stream(entries, 0, n).distinct().sorted().toArray();
+    }
+
+    /** Generate {@link Program#match(SRE_STATE, int)} to dispatch to the entry points. */
+    private void generateEntry(int[] entries) {
+        mv = cw.visitMethod(ACC_PUBLIC, "match", MATCH_DESC, null, null);
+        mv.visitCode();
+        Label[] targets = new Label[entries.length];
+        for (int k = 0; k < entries.length; k++) {
+            targets[k] = new Label();
+        }
+        Label dflt = new Label();
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitLookupSwitchInsn(dflt, entries, targets);
+        for (int k = 0; k < entries.length; k++) {
+            mv.visitLabel(targets[k]);
+            mv.visitVarInsn(ALOAD, THIS);
+            mv.visitVarInsn(ALOAD, S);
+            mv.visitInsn(ICONST_1);
+            mv.visitMethodInsn(INVOKESPECIAL, className, method(entries[k]), MATCH_DESC, false);
+            mv.visitInsn(IRETURN);
+        }
+        mv.visitLabel(dflt);
+        mv.visitLdcInsn(NOT_COMPILED);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /** The name of the method equivalent to {@code SRE_MATCH} at <code>pidx</code>. */
+    private String method(int pidx) {
+        String name = methods.get(pidx);
+        if (name == null) {
+            name = "m" + pidx;
+            methods.put(pidx, name);
+            pending.add(pidx);
+        }
+        return name;
+    }
+
+    /** Generate the method equivalent to {@code SRE_MATCH(code, pidx, level)}. */
+    private void generateMethod(int pidx) {
+        mv = cw.visitMethod(ACC_PRIVATE, methods.get(pidx), MATCH_DESC, null, null);
+        labels = new HashMap<>();
+        fail = new Label();
+        mv.visitCode();
+
+        // if (level > USE_RECURSION_LIMIT) return SRE_ERROR_RECURSION_LIMIT;
+        Label ok = new Label();
+        mv.visitVarInsn(ILOAD, LEVEL);
+        push(USE_RECURSION_LIMIT);
+        mv.visitJumpInsn(IF_ICMPLE, ok);
+        push(SRE_ERROR_RECURSION_LIMIT);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(ok);
+
+        callState("getPtr", "I");
+        mv.visitVarInsn(ISTORE, PTR);
+        callState("getEnd", "I");
+        mv.visitVarInsn(ISTORE, END);
+        callState("getStr", "L" + SOURCE + ";");
+        mv.visitVarInsn(ASTORE, STR);
+
+        if (code[pidx] == SRE_OP_INFO) {
+            // Optimisation info block: fail if there is not room for the minimum length.
+            int min = code[pidx + 3];
+            if (min != 0) {
+                mv.visitVarInsn(ILOAD, END);
+                mv.visitVarInsn(ILOAD, PTR);
+                mv.visitInsn(ISUB);
+                push(min);
+                mv.visitJumpInsn(IF_ICMPLT, fail);
+            }
+            pidx += code[pidx + 1] + 1;
+        }
+
+        generateSequence(pidx);
+
+        mv.visitLabel(fail);
+        mv.visitInsn(ICONST_0);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /** Generate code for the opcodes from <code>pidx</code>, as the main loop of SRE_MATCH. */
+    private void generateSequence(int pidx) {
+        for (;;) {
+            Label here = labels.get(pidx);
+            if (here != null) {
+                mv.visitJumpInsn(GOTO, here);
+                return;
+            }
+            here = new Label();
+            labels.put(pidx, here);
+            mv.visitLabel(here);
+
+            if (--budget < 0) {
+                generateInterpret(pidx);
+                return;
+            }
+
+            switch (code[pidx]) {
+
+                case SRE_OP_MARK:
+                    mv.visitVarInsn(ALOAD, S);
+                    push(code[pidx + 1]);
+                    mv.visitVarInsn(ILOAD, PTR);
+                    callStatic("mark", "(L" + STATE + ";II)V");
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_LITERAL:
+                    loadCharOrFail();
+                    push(code[pidx + 1]);
+                    mv.visitJumpInsn(IF_ICMPNE, fail);
+                    mv.visitIincInsn(PTR, 1);
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_NOT_LITERAL:
+                    loadCharOrFail();
+                    push(code[pidx + 1]);
+                    mv.visitJumpInsn(IF_ICMPEQ, fail);
+                    mv.visitIincInsn(PTR, 1);
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_SUCCESS:
+                    storePtr();
+                    mv.visitInsn(ICONST_1);
+                    mv.visitInsn(IRETURN);
+                    return;
+
+                case SRE_OP_AT:
+                    mv.visitVarInsn(ALOAD, S);
+                    mv.visitVarInsn(ILOAD, PTR);
+                    push(code[pidx + 1]);
+                    callStatic("at", "(L" + STATE + ";II)Z");
+                    mv.visitJumpInsn(IFEQ, fail);
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_CATEGORY:
+                    loadCharOrFail();
+                    mv.visitVarInsn(ISTORE, CH);
+                    generateCategory(code[pidx + 1]);
+                    mv.visitJumpInsn(IFEQ, fail);
+                    mv.visitIincInsn(PTR, 1);
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_ANY:
+                    loadCharOrFail();
+                    push('\n');
+                    mv.visitJumpInsn(IF_ICMPEQ, fail);
+                    mv.visitIincInsn(PTR, 1);
+                    pidx += 1;
+                    break;
+
+                case SRE_OP_ANY_ALL:
+                    mv.visitVarInsn(ILOAD, PTR);
+                    mv.visitVarInsn(ILOAD, END);
+                    mv.visitJumpInsn(IF_ICMPGE, fail);
+                    mv.visitIincInsn(PTR, 1);
+                    pidx += 1;
+                    break;
+
+                case SRE_OP_IN:
+                    loadCharOrFail();
+                    mv.visitVarInsn(ISTORE, CH);
+                    generateCharset(pidx + 2, fail);
+                    mv.visitIincInsn(PTR, 1);
+                    pidx += 1 + code[pidx + 1];
+                    break;
+
+                case SRE_OP_LITERAL_IGNORE:
+                case SRE_OP_NOT_LITERAL_IGNORE:
+                    loadCharOrFail();
+                    lower();
+                    push(code[pidx + 1]);
+                    lower();
+                    mv.visitJumpInsn(code[pidx] == SRE_OP_LITERAL_IGNORE ? IF_ICMPNE : IF_ICMPEQ,
+                            fail);
+                    mv.visitIincInsn(PTR, 1);
+                    pidx += 2;
+                    break;
+
+                case SRE_OP_IN_IGNORE:
+                    loadCharOrFail();
+                    lower();
+                    mv.visitVarInsn(ISTORE, CH);
+                    generateCharset(pidx + 2, fail);
+                    mv.visitIincInsn(PTR, 1);
+                    pidx += 1 + code[pidx + 1];
+                    break;
+
+                case SRE_OP_JUMP:
+                case SRE_OP_INFO:
+                    pidx += 1 + code[pidx + 1];
+                    break;
+
+                case SRE_OP_BRANCH:
+                    generateBranch(pidx + 1);
+                    return;
+
+                case SRE_OP_REPEAT_ONE:
+                    generateRepeatOne(pidx + 1);
+                    return;
+
+                case SRE_OP_MIN_REPEAT_ONE:
+                    generateMinRepeatOne(pidx + 1);
+                    return;
+
+                case SRE_OP_FAILURE:
+                    mv.visitJumpInsn(GOTO, fail);
+                    return;
+
+                default:
+                    // Not compiled: the interpreter carries on from here.
+                    generateInterpret(pidx);
+                    return;
+            }
+        }
+    }
+
+    /** Continue in the interpreter at <code>pidx</code> (at the same level). */
+    private void generateInterpret(int pidx) {
+        storePtr();
+        mv.visitVarInsn(ALOAD, S);
+        loadCode();
+        push(pidx);
+        mv.visitVarInsn(ILOAD, LEVEL);
+        callStatic("interpret", "(L" + STATE + ";[III)I");
+        mv.visitInsn(IRETURN);
+    }
+
+    /** <code>&lt;BRANCH&gt; &lt;0=skip&gt; code &lt;JUMP&gt; ... &lt;NULL&gt;</code> */
+    private void generateBranch(int pidx) {
+        saveLastmark();
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, MSB);
+        Label noRepeat = new Label();
+        mv.visitVarInsn(ALOAD, S);
+        callStatic("hasRepeat", "(L" + STATE + ";)Z");
+        mv.visitJumpInsn(IFEQ, noRepeat);
+        mv.visitVarInsn(ALOAD, S);
+        mv.visitVarInsn(ILOAD, LASTMARK);
+        callStatic("markSave", "(L" + STATE + ";I)I");
+        mv.visitVarInsn(ISTORE, MSB);
+        mv.visitLabel(noRepeat);
+
+        for (; code[pidx] != 0; pidx += code[pidx]) {
+            Label next = new Label();
+            if (code[pidx + 1] == SRE_OP_LITERAL) {
+                loadCharOr(next);
+                push(code[pidx + 2]);
+                mv.visitJumpInsn(IF_ICMPNE, next);
+            } else if (code[pidx + 1] == SRE_OP_IN) {
+                loadCharOr(next);
+                mv.visitVarInsn(ISTORE, CH);
+                generateCharset(pidx + 3, next);
+            }
+            storePtr();
+            callMatch(pidx + 1);
+            returnIfNonZero();
+
+            Label noRestore = new Label();
+            mv.visitVarInsn(ALOAD, S);
+            callStatic("hasRepeat", "(L" + STATE + ";)Z");
+            mv.visitJumpInsn(IFEQ, noRestore);
+            mv.visitVarInsn(ALOAD, S);
+            mv.visitVarInsn(ILOAD, LASTMARK);
+            mv.visitVarInsn(ILOAD, MSB);
+            callStatic("markRestore", "(L" + STATE + ";II)V");
+            mv.visitLabel(noRestore);
+            restoreLastmark();
+            mv.visitLabel(next);
+        }
+        mv.visitJumpInsn(GOTO, fail);
+    }
+
+    /** <code>&lt;REPEAT_ONE&gt; &lt;skip&gt; &lt;1=min&gt; &lt;2=max&gt; item &lt;SUCCESS&gt; tail</code> */
+    private void generateRepeatOne(int pidx) {
+        int mincount = code[pidx + 1];
+        int tail = pidx + code[pidx];
+
+        // if (ptr + mincount > end) return 0;
+        mv.visitVarInsn(ILOAD, PTR);
+        push(mincount);
+        mv.visitInsn(IADD);
+        mv.visitVarInsn(ILOAD, END);
+        mv.visitJumpInsn(IF_ICMPGT, fail);
+
+        storePtr();
+        generateCount(pidx + 3, code[pidx + 2], COUNT);
+
+        // ptr += count; if (count < mincount) return 0;
+        mv.visitVarInsn(ILOAD, PTR);
+        mv.visitVarInsn(ILOAD, COUNT);
+        mv.visitInsn(IADD);
+        mv.visitVarInsn(ISTORE, PTR);
+        mv.visitVarInsn(ILOAD, COUNT);
+        push(mincount);
+        mv.visitJumpInsn(IF_ICMPLT, fail);
+
+        if (code[tail] == SRE_OP_SUCCESS) {
+            // Tail is empty: we're finished.
+            storePtr();
+            mv.visitInsn(ICONST_1);
+            mv.visitInsn(IRETURN);
+            return;
+        }
+
+        saveLastmark();
+        Label loop = new Label();
+        mv.visitLabel(loop);
+        // while (count >= mincount) ...
+        mv.visitVarInsn(ILOAD, COUNT);
+        push(mincount);
+        mv.visitJumpInsn(IF_ICMPLT, fail);
+
+        if (code[tail] == SRE_OP_LITERAL) {
+            // Tail starts with a literal: skip positions where the tail cannot match.
+            Label found = new Label(), back = new Label();
+            mv.visitVarInsn(ILOAD, PTR);
+            mv.visitVarInsn(ILOAD, END);
+            mv.visitJumpInsn(IF_ICMPGE, back);
+            loadChar();
+            push(code[tail + 1]);
+            mv.visitJumpInsn(IF_ICMPEQ, found);
+            mv.visitLabel(back);
+            mv.visitIincInsn(PTR, -1);
+            mv.visitIincInsn(COUNT, -1);
+            mv.visitJumpInsn(GOTO, loop);
+            mv.visitLabel(found);
+            storePtr();
+            callMatch(tail);
+            Label next = new Label();
+            mv.visitJumpInsn(IFEQ, next);
+            mv.visitInsn(ICONST_1);
+            mv.visitInsn(IRETURN);
+            mv.visitLabel(next);
+        } else {
+            storePtr();
+            callMatch(tail);
+            returnIfNonZero();
+        }
+        mv.visitIincInsn(PTR, -1);
+        mv.visitIincInsn(COUNT, -1);
+        restoreLastmark();
+        mv.visitJumpInsn(GOTO, loop);
+    }
+
+    /** <code>&lt;MIN_REPEAT_ONE&gt; &lt;skip&gt; &lt;1=min&gt; &lt;2=max&gt; item &lt;SUCCESS&gt; tail</code> */
+    private void generateMinRepeatOne(int pidx) {
+        int mincount = code[pidx + 1];
+        int maxcount = code[pidx + 2];
+        int tail = pidx + code[pidx];
+
+        // if (ptr + mincount > end) return 0;
+        mv.visitVarInsn(ILOAD, PTR);
+        push(mincount);
+        mv.visitInsn(IADD);
+        mv.visitVarInsn(ILOAD, END);
+        mv.visitJumpInsn(IF_ICMPGT, fail);
+
+        storePtr();
+        if (mincount == 0) {
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, COUNT);
+        } else {
+            generateCount(pidx + 3, mincount, COUNT);
+            mv.visitVarInsn(ILOAD, COUNT);
+            push(mincount);
+            mv.visitJumpInsn(IF_ICMPLT, fail);
+            mv.visitVarInsn(ILOAD, PTR);
+            mv.visitVarInsn(ILOAD, COUNT);
+            mv.visitInsn(IADD);
+            mv.visitVarInsn(ISTORE, PTR);
+        }
+
+        if (code[tail] == SRE_OP_SUCCESS) {
+            // Tail is empty: we're finished.
+            storePtr();
+            mv.visitInsn(ICONST_1);
+            mv.visitInsn(IRETURN);
+            return;
+        }
+
+        saveLastmark();
+        Label loop = new Label();
+        mv.visitLabel(loop);
+        if (maxcount != 65535) {
+            // while (count <= max) ...
+            mv.visitVarInsn(ILOAD, COUNT);
+            push(maxcount);
+            mv.visitJumpInsn(IF_ICMPGT, fail);
+        }
+        storePtr();
+        callMatch(tail);
+        returnIfNonZero();
+
+        // Try to match one more item.
+        storePtr();
+        if (isCountInline(pidx + 3)) {
+            generateCount(pidx + 3, 1, I);
+        } else {
+            mv.visitVarInsn(ALOAD, S);
+            loadCode();
+            push(pidx + 3);
+            mv.visitVarInsn(ILOAD, LEVEL);
+            mv.visitInsn(ICONST_1);
+            mv.visitInsn(IADD);
+            callStatic("countOne", "(L" + STATE + ";[III)I");
+            mv.visitVarInsn(ISTORE, I);
+            returnIfNegative(I);
+        }
+        mv.visitVarInsn(ILOAD, I);
+        mv.visitJumpInsn(IFEQ, fail);
+        mv.visitIincInsn(PTR, 1);
+        mv.visitIincInsn(COUNT, 1);
+        restoreLastmark();
+        mv.visitJumpInsn(GOTO, loop);
+    }
+
+    /** True if {@link #generateCount(int, int, int)} compiles the item at pidx as a loop. */
+    private boolean isCountInline(int pidx) {
+        switch (code[pidx]) {
+            case SRE_OP_IN:
+            case SRE_OP_ANY:
+            case SRE_OP_ANY_ALL:
+            case SRE_OP_LITERAL:
+            case SRE_OP_NOT_LITERAL:
+                return code[pidx] != SRE_OP_IN || isCharsetInline(pidx + 2);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Generate the equivalent of {@code SRE_COUNT(code, pidx, maxcount, level + 1)}, with
+     * {@code state.ptr} equal to the local <code>ptr</code>, leaving the result in the local
+     * variable <code>result</code>, or returning if it is an error.
+     */
+    private void generateCount(int pidx, int maxcount, int result) {
+        if (!isCountInline(pidx)) {
+            mv.visitVarInsn(ALOAD, S);
+            loadCode();
+            push(pidx);
+            push(maxcount);
+            mv.visitVarInsn(ILOAD, LEVEL);
+            mv.visitInsn(ICONST_1);
+            mv.visitInsn(IADD);
+            callStatic("count", "(L" + STATE + ";[IIII)I");
+            mv.visitVarInsn(ISTORE, result);
+            returnIfNegative(result);
+            return;
+        }
+
+        // lim = end, but if (maxcount < end - ptr && maxcount != 65535) lim = ptr + maxcount
+        mv.visitVarInsn(ILOAD, END);
+        mv.visitVarInsn(ISTORE, LIM);
+        if (maxcount != 65535) {
+            Label skip = new Label();
+            mv.visitVarInsn(ILOAD, END);
+            mv.visitVarInsn(ILOAD, PTR);
+            mv.visitInsn(ISUB);
+            push(maxcount);
+            mv.visitJumpInsn(IF_ICMPLE, skip);
+            mv.visitVarInsn(ILOAD, PTR);
+            push(maxcount);
+            mv.visitInsn(IADD);
+            mv.visitVarInsn(ISTORE, LIM);
+            mv.visitLabel(skip);
+        }
+
+        if (code[pidx] == SRE_OP_ANY_ALL) {
+            mv.visitVarInsn(ILOAD, LIM);
+            mv.visitVarInsn(ISTORE, P);
+        } else {
+            mv.visitVarInsn(ILOAD, PTR);
+            mv.visitVarInsn(ISTORE, P);
+            Label loop = new Label(), done = new Label();
+            mv.visitLabel(loop);
+            mv.visitVarInsn(ILOAD, P);
+            mv.visitVarInsn(ILOAD, LIM);
+            mv.visitJumpInsn(IF_ICMPGE, done);
+            mv.visitVarInsn(ALOAD, STR);
+            mv.visitVarInsn(ILOAD, P);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SOURCE, "charAt", "(I)I", false);
+            switch (code[pidx]) {
+                case SRE_OP_IN:
+                    mv.visitVarInsn(ISTORE, CH);
+                    generateCharset(pidx + 2, done);
+                    break;
+                case SRE_OP_ANY:
+                    push('\n');
+                    mv.visitJumpInsn(IF_ICMPEQ, done);
+                    break;
+                case SRE_OP_LITERAL:
+                    push(code[pidx + 1]);
+                    mv.visitJumpInsn(IF_ICMPNE, done);
+                    break;
+                case SRE_OP_NOT_LITERAL:
+                    push(code[pidx + 1]);
+                    mv.visitJumpInsn(IF_ICMPEQ, done);
+                    break;
+            }
+            mv.visitIincInsn(P, 1);
+            mv.visitJumpInsn(GOTO, loop);
+            mv.visitLabel(done);
+        }
+
+        // result = p - ptr
+        mv.visitVarInsn(ILOAD, P);
+        mv.visitVarInsn(ILOAD, PTR);
+        mv.visitInsn(ISUB);
+        mv.visitVarInsn(ISTORE, result);
+    }
+
+    /** True if the set at <code>setidx</code> uses only the operations we unroll. */
+    private boolean isCharsetInline(int setidx) {
+        for (;;) {
+            switch (code[setidx++]) {
+                case SRE_OP_FAILURE:
+                    return true;
+                case SRE_OP_LITERAL:
+                case SRE_OP_CATEGORY:
+                    setidx += 1;
+                    break;
+                case SRE_OP_CHARSET:
+                    setidx += 8;
+                    break;
+                case SRE_OP_RANGE:
+                    setidx += 2;
+                    break;
+                case SRE_OP_NEGATE:
+                    break;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Generate a test of the character in local <code>ch</code> against the set at
+     * <code>setidx</code> (as {@code SRE_CHARSET}), jumping to <code>notIn</code> if it is not a
+     * member, and falling through if it is.
+     */
+    private void generateCharset(int setidx, Label notIn) {
+        if (!isCharsetInline(setidx)) {
+            mv.visitVarInsn(ALOAD, S);
+            loadCode();
+            push(setidx);
+            mv.visitVarInsn(ILOAD, CH);
+            callStatic("charset", "(L" + STATE + ";[III)Z");
+            mv.visitJumpInsn(IFEQ, notIn);
+            return;
+        }
+
+        Label in = new Label();
+        boolean ok = true;
+        for (;;) {
+            Label skip;
+            switch (code[setidx++]) {
+                case SRE_OP_FAILURE:
+                    mv.visitJumpInsn(GOTO, ok ? notIn : in);
+                    mv.visitLabel(in);
+                    return;
+
+                case SRE_OP_LITERAL:
+                    mv.visitVarInsn(ILOAD, CH);
+                    push(code[setidx++]);
+                    mv.visitJumpInsn(IF_ICMPEQ, ok ? in : notIn);
+                    break;
+
+                case SRE_OP_CATEGORY:
+                    generateCategory(code[setidx++]);
+                    mv.visitJumpInsn(IFNE, ok ? in : notIn);
+                    break;
+
+                case SRE_OP_CHARSET:
+                    // (ch < 256 && (set[setidx + (ch >> 5)] & (1 << (ch & 31))) != 0)
+                    skip = new Label();
+                    mv.visitVarInsn(ILOAD, CH);
+                    push(256);
+                    mv.visitJumpInsn(IF_ICMPGE, skip);
+                    loadCode();
+                    push(setidx);
+                    mv.visitVarInsn(ILOAD, CH);
+                    mv.visitInsn(ICONST_5);
+                    mv.visitInsn(ISHR);
+                    mv.visitInsn(IADD);
+                    mv.visitInsn(IALOAD);
+                    mv.visitInsn(ICONST_1);
+                    mv.visitVarInsn(ILOAD, CH);
+                    push(31);
+                    mv.visitInsn(IAND);
+                    mv.visitInsn(ISHL);
+                    mv.visitInsn(IAND);
+                    mv.visitJumpInsn(IFNE, ok ? in : notIn);
+                    mv.visitLabel(skip);
+                    setidx += 8;
+                    break;
+
+                case SRE_OP_RANGE:
+                    skip = new Label();
+                    mv.visitVarInsn(ILOAD, CH);
+                    push(code[setidx]);
+                    mv.visitJumpInsn(IF_ICMPLT, skip);
+                    mv.visitVarInsn(ILOAD, CH);
+                    push(code[setidx + 1]);
+                    mv.visitJumpInsn(IF_ICMPLE, ok ? in : notIn);
+                    mv.visitLabel(skip);
+                    setidx += 2;
+                    break;
+
+                case SRE_OP_NEGATE:
+                    ok = !ok;
+                    break;
+            }
+        }
+    }
+
+    /** Leave on the stack whether the character in local <code>ch</code> is in the category. */
+    private void generateCategory(int category) {
+        switch (category) {
+            case SRE_CATEGORY_LINEBREAK:
+            case SRE_CATEGORY_NOT_LINEBREAK: {
+                // ch == '\n' (or not)
+                Label yes = new Label(), done = new Label();
+                mv.visitVarInsn(ILOAD, CH);
+                push('\n');
+                mv.visitJumpInsn(category == SRE_CATEGORY_LINEBREAK ? IF_ICMPEQ : IF_ICMPNE, yes);
+                mv.visitInsn(ICONST_0);
+                mv.visitJumpInsn(GOTO, done);
+                mv.visitLabel(yes);
+                mv.visitInsn(ICONST_1);
+                mv.visitLabel(done);
+                break;
+            }
+            default:
+                mv.visitVarInsn(ALOAD, S);
+                push(category);
+                mv.visitVarInsn(ILOAD, CH);
+                callStatic("category", "(L" + STATE + ";II)Z");
+        }
+    }
+
+    /** Load <code>str.charAt(ptr)</code>, but first fail the match if <code>ptr &gt;= end</code>. */
+    private void loadCharOrFail() {
+        loadCharOr(fail);
+    }
+
+    /** Load <code>str.charAt(ptr)</code>, but first jump to the label if <code>ptr &gt;= end</code>. */
+    private void loadCharOr(Label atEnd) {
+        mv.visitVarInsn(ILOAD, PTR);
+        mv.visitVarInsn(ILOAD, END);
+        mv.visitJumpInsn(IF_ICMPGE, atEnd);
+        loadChar();
+    }
+
+    private void loadChar() {
+        mv.visitVarInsn(ALOAD, STR);
+        mv.visitVarInsn(ILOAD, PTR);
+        mv.visitMethodInsn(INVOKEVIRTUAL, SOURCE, "charAt", "(I)I", false);
+    }
+
+    /** Replace the character on the stack by its lower case (as {@code SRE_STATE.lower}). */
+    private void lower() {
+        mv.visitVarInsn(ALOAD, S);
+        mv.visitInsn(SWAP);
+        callStatic("lower", "(L" + STATE + ";I)I");
+    }
+
+    private void loadCode() {
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitFieldInsn(GETFIELD, className, "code", "[I");
+    }
+
+    /** <code>state.ptr = ptr</code> */
+    private void storePtr() {
+        mv.visitVarInsn(ALOAD, S);
+        mv.visitVarInsn(ILOAD, PTR);
+        callStatic("setPtr", "(L" + STATE + ";I)V");
+    }
+
+    /** Call the method equivalent to {@code SRE_MATCH(code, pidx, level + 1)}. */
+    private void callMatch(int pidx) {
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitVarInsn(ALOAD, S);
+        mv.visitVarInsn(ILOAD, LEVEL);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IADD);
+        mv.visitMethodInsn(INVOKESPECIAL, className, method(pidx), MATCH_DESC, false);
+    }
+
+    /** Return the int on the stack if it is not zero, else pop it. */
+    private void returnIfNonZero() {
+        Label zero = new Label();
+        mv.visitVarInsn(ISTORE, I);
+        mv.visitVarInsn(ILOAD, I);
+        mv.visitJumpInsn(IFEQ, zero);
+        mv.visitVarInsn(ILOAD, I);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(zero);
+    }
+
+    private void returnIfNegative(int local) {
+        Label ok = new Label();
+        mv.visitVarInsn(ILOAD, local);
+        mv.visitJumpInsn(IFGE, ok);
+        mv.visitVarInsn(ILOAD, local);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(ok);
+    }
+
+    private void saveLastmark() {
+        callState("getLastmark", "I");
+        mv.visitVarInsn(ISTORE, LASTMARK);
+        callState("getLastindex", "I");
+        mv.visitVarInsn(ISTORE, LASTINDEX);
+    }
+
+    private void restoreLastmark() {
+        mv.visitVarInsn(ALOAD, S);
+        mv.visitVarInsn(ILOAD, LASTMARK);
+        mv.visitVarInsn(ILOAD, LASTINDEX);
+        callStatic("lastmarkRestore", "(L" + STATE + ";II)V");
+    }
+
+    /** Call a static accessor of {@link Program} taking the state and returning the given type. */
+    private void callState(String name, String returnType) {
+        mv.visitVarInsn(ALOAD, S);
+        callStatic(name, "(L" + STATE + ";)" + returnType);
+    }
+
+    private void callStatic(String name, String desc) {
+        mv.visitMethodInsn(INVOKESTATIC, PROGRAM, name, desc, false);
+    }
+
+    /** Push an int constant, using the shortest instruction. */
+    private void push(int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.google.common.cache.Weigher;
 import org.python.core.Options;
 import org.python.core.Py;
 import org.python.core.PyString;
+import org.python.core.PyUnicode;
 
 public class SRE_STATE {
 
@@ -255,7 +256,7 @@ for line in sys.stdin:
         mark_stack_size = mark_stack_base = 0;
     }
 
-    private int mark_save(int lo, int hi) { // XXX => data_stack_grow in 2.4
+    int mark_save(int lo, int hi) { // XXX => data_stack_grow in 2.4
         if (hi <= lo)
             return mark_stack_base;
 
@@ -294,7 +295,7 @@ for line in sys.stdin:
         return mark_stack_base;
     }
 
-    private void mark_restore(int lo, int hi, int mark_stack_base) {
+    void mark_restore(int lo, int hi, int mark_stack_base) {
 
         if (hi <= lo)
             return;
@@ -319,13 +320,13 @@ for line in sys.stdin:
             return ptr == beginning;
 
         case SRE_AT_BEGINNING_LINE:
-            return (ptr == beginning || SRE_IS_LINEBREAK(str[ptr-1]));
+            return (ptr == beginning || SRE_IS_LINEBREAK(str.charAt(ptr-1)));
 
         case SRE_AT_END:
-            return (ptr+1 == end && SRE_IS_LINEBREAK(str[ptr])) || ptr == end;
+            return (ptr+1 == end && SRE_IS_LINEBREAK(str.charAt(ptr))) || ptr == end;
 
         case SRE_AT_END_LINE:
-            return ptr == end || SRE_IS_LINEBREAK(str[ptr]);
+            return ptr == end || SRE_IS_LINEBREAK(str.charAt(ptr));
 
         case SRE_AT_END_STRING:
             return ptr == end;
@@ -334,24 +335,24 @@ for line in sys.stdin:
             /* word boundary */
             if (beginning == end)
                 return false;
-            thatp = (ptr > beginning) ? SRE_IS_WORD(str[ptr-1]) : false;
-            thisp = (ptr < end) ? SRE_IS_WORD(str[ptr]) : false;
+            thatp = (ptr > beginning) ? SRE_IS_WORD(str.charAt(ptr-1)) : false;
+            thisp = (ptr < end) ? SRE_IS_WORD(str.charAt(ptr)) : false;
             return thisp != thatp;
 
         case SRE_AT_NON_BOUNDARY:
             /* word non-boundary */
             if (beginning == end)
                 return false;
-            thatp = (ptr > beginning) ? SRE_IS_WORD(str[ptr-1]) : false;
-            thisp = (ptr < end) ? SRE_IS_WORD(str[ptr]) : false;
+            thatp = (ptr > beginning) ? SRE_IS_WORD(str.charAt(ptr-1)) : false;
+            thisp = (ptr < end) ? SRE_IS_WORD(str.charAt(ptr)) : false;
             return thisp == thatp;
 
         case SRE_AT_LOC_BOUNDARY:
         case SRE_AT_UNI_BOUNDARY:
             if (beginning == end)
                 return false;
-            thatp = (ptr > beginning) ? SRE_LOC_IS_WORD(str[ptr-1]) : false;
-            thisp = (ptr < end) ? SRE_LOC_IS_WORD(str[ptr]) : false;
+            thatp = (ptr > beginning) ? SRE_LOC_IS_WORD(str.charAt(ptr-1)) : false;
+            thisp = (ptr < end) ? SRE_LOC_IS_WORD(str.charAt(ptr)) : false;
             return thisp != thatp;
 
         case SRE_AT_LOC_NON_BOUNDARY:
@@ -359,8 +360,8 @@ for line in sys.stdin:
             /* word non-boundary */
             if (beginning == end)
                 return false;
-            thatp = (ptr > beginning) ? SRE_LOC_IS_WORD(str[ptr-1]) : false;
-            thisp = (ptr < end) ? SRE_LOC_IS_WORD(str[ptr]) : false;
+            thatp = (ptr > beginning) ? SRE_LOC_IS_WORD(str.charAt(ptr-1)) : false;
+            thisp = (ptr < end) ? SRE_LOC_IS_WORD(str.charAt(ptr)) : false;
             return thisp == thatp;
         }
 
@@ -458,7 +459,7 @@ for line in sys.stdin:
         }
     }
 
-    private int SRE_COUNT(int[] pattern, int pidx, int maxcount, int level) {
+    int SRE_COUNT(int[] pattern, int pidx, int maxcount, int level) {
         int chr;
         int ptr = this.ptr;
         int end = this.end;
@@ -473,14 +474,14 @@ for line in sys.stdin:
         case SRE_OP_IN:
             /* repeated set */
 //            TRACE(pidx, ptr, "COUNT IN");
-            while (ptr < end && SRE_CHARSET(pattern, pidx + 2, str[ptr]))
+            while (ptr < end && SRE_CHARSET(pattern, pidx + 2, str.charAt(ptr)))
                 ptr++;
             break;
 
         case SRE_OP_ANY:
             /* repeated dot wildcard. */
 //            TRACE(pidx, ptr, "COUNT ANY");
-            while (ptr < end && !SRE_IS_LINEBREAK(str[ptr]))
+            while (ptr < end && !SRE_IS_LINEBREAK(str.charAt(ptr)))
                 ptr++;
             break;
 
@@ -495,7 +496,7 @@ for line in sys.stdin:
             /* repeated literal */
             chr = pattern[pidx+1];
 //            TRACE(pidx, ptr, "COUNT LITERAL " + chr);
-            while (ptr < end && str[ptr] == chr)
+            while (ptr < end && str.charAt(ptr) == chr)
                 ptr++;
             break;
 
@@ -503,7 +504,7 @@ for line in sys.stdin:
             /* repeated literal */
             chr = pattern[pidx+1];
 //            TRACE(pidx, ptr, "COUNT LITERAL_IGNORE " + chr);
-            while (ptr < end && lower(str[ptr]) == chr)
+            while (ptr < end && lower(str.charAt(ptr)) == chr)
                 ptr++;
             break;
 
@@ -511,7 +512,7 @@ for line in sys.stdin:
             /* repeated non-literal */
             chr = pattern[pidx+1];
 //            TRACE(pidx, ptr, "COUNT NOT_LITERAL " + chr);
-            while (ptr < end && str[ptr] != chr)
+            while (ptr < end && str.charAt(ptr) != chr)
                 ptr++;
             break;
 
@@ -519,7 +520,7 @@ for line in sys.stdin:
             /* repeated non-literal */
             chr = pattern[pidx+1];
 //            TRACE(pidx, ptr, "COUNT NOT_LITERAL_IGNORE " + chr);
-            while (ptr < end && lower(str[ptr]) != chr)
+            while (ptr < end && lower(str.charAt(ptr)) != chr)
                 ptr++;
             break;
 
@@ -587,7 +588,7 @@ for line in sys.stdin:
                 /* <LITERAL> <code> */
 //                TRACE(pidx, ptr, "LITERAL " + pattern[pidx]);
 
-                if (ptr >= end || str[ptr] != pattern[pidx])
+                if (ptr >= end || str.charAt(ptr) != pattern[pidx])
                     return 0;
                 pidx++;
                 ptr++;
@@ -597,7 +598,7 @@ for line in sys.stdin:
                 /* match anything that is not literal character */
                 /* args: <code> */
 //                TRACE(pidx, ptr, "NOT_LITERAL " + pattern[pidx]);
-                if (ptr >= end || str[ptr] == pattern[pidx])
+                if (ptr >= end || str.charAt(ptr) == pattern[pidx])
                     return 0;
                 pidx++;
                 ptr++;
@@ -623,7 +624,7 @@ for line in sys.stdin:
                 /* <CATEGORY> <code> */
 //                TRACE(pidx, ptr, "CATEGORY " + pattern[pidx]);
 
-                if (ptr >= end || !sre_category(pattern[pidx], str[ptr]))
+                if (ptr >= end || !sre_category(pattern[pidx], str.charAt(ptr)))
                     return 0;
 
                 pidx++;
@@ -633,7 +634,7 @@ for line in sys.stdin:
             case SRE_OP_ANY:
                 /* match anything */
 //                TRACE(pidx, ptr, "ANY");
-                if (ptr >= end || SRE_IS_LINEBREAK(str[ptr]))
+                if (ptr >= end || SRE_IS_LINEBREAK(str.charAt(ptr)))
                     return 0;
                 ptr++;
                 break;
@@ -651,7 +652,7 @@ for line in sys.stdin:
                 /* match set member (or non_member) */
                 /* <IN> <skip> <set> */
 //                TRACE(pidx, ptr, "IN");
-                if (ptr >= end || !SRE_CHARSET(pattern, pidx + 1, str[ptr]))
+                if (ptr >= end || !SRE_CHARSET(pattern, pidx + 1, str.charAt(ptr)))
                     return 0;
                 pidx += pattern[pidx];
                 ptr++;
@@ -659,7 +660,7 @@ for line in sys.stdin:
 
             case SRE_OP_LITERAL_IGNORE:
 //                TRACE(pidx, ptr, "LITERAL_IGNORE " + pattern[pidx]);
-                if (ptr >= end || lower(str[ptr]) != lower(pattern[pidx]))
+                if (ptr >= end || lower(str.charAt(ptr)) != lower(pattern[pidx]))
                     return 0;
                 pidx++;
                 ptr++;
@@ -667,7 +668,7 @@ for line in sys.stdin:
 
             case SRE_OP_NOT_LITERAL_IGNORE:
 //                TRACE(pidx, ptr, "NOT_LITERAL_IGNORE " + pattern[pidx]);
-                if (ptr >= end || lower(str[ptr]) == lower(pattern[pidx]))
+                if (ptr >= end || lower(str.charAt(ptr)) == lower(pattern[pidx]))
                     return 0;
                 pidx++;
                 ptr++;
@@ -676,7 +677,7 @@ for line in sys.stdin:
             case SRE_OP_IN_IGNORE:
 //                TRACE(pidx, ptr, "IN_IGNORE");
                 if (ptr >= end ||
-                        !SRE_CHARSET(pattern, pidx + 1, lower(str[ptr])))
+                        !SRE_CHARSET(pattern, pidx + 1, lower(str.charAt(ptr))))
                     return 0;
                 pidx += pattern[pidx];
                 ptr++;
@@ -702,12 +703,12 @@ for line in sys.stdin:
                     }
                     for(; pattern[pidx] != 0; pidx += pattern[pidx]) {
                         if(pattern[pidx + 1] == SRE_OP_LITERAL
-                                && (ptr >= end || str[ptr] != pattern[pidx + 2]))
+                                && (ptr >= end || str.charAt(ptr) != pattern[pidx + 2]))
                             continue;
                         if(pattern[pidx + 1] == SRE_OP_IN
                                 && (ptr >= end || !SRE_CHARSET(pattern,
                                                                pidx + 3,
-                                                               str[ptr])))
+                                                               str.charAt(ptr))))
                             continue;
                         this.ptr = ptr;
                         i = SRE_MATCH(pattern, pidx + 1, level + 1);
@@ -767,7 +768,7 @@ for line in sys.stdin:
                     chr = pattern[pidx + pattern[pidx]+1];
                     for (;;) {
                         while (count >= mincount &&
-                               (ptr >= end || str[ptr] != chr)) {
+                               (ptr >= end || str.charAt(ptr) != chr)) {
                             ptr--;
                             count--;
                         }
@@ -1001,7 +1002,7 @@ for line in sys.stdin:
                 if (p == -1 || e == -1 || e < p)
                     return 0;
                 while (p < e) {
-                    if (ptr >= end || str[ptr] != str[p])
+                    if (ptr >= end || str.charAt(ptr) != str.charAt(p))
                         return 0;
                     p++;
                     ptr++;
@@ -1018,7 +1019,7 @@ for line in sys.stdin:
                 if (p == -1 || e == -1 || e < p)
                     return 0;
                 while (p < e) {
-                    if (ptr >= end || lower(str[ptr]) != lower(str[p]))
+                    if (ptr >= end || lower(str.charAt(ptr)) != lower(str.charAt(p)))
                         return 0;
                     p++;
                     ptr++;
@@ -1082,7 +1083,22 @@ for line in sys.stdin:
         /* return SRE_ERROR_ILLEGAL; -- see python-dev discussion */
     }
 
-    private void LASTMARK_RESTORE(int lastmark, int lastindex) {
+    /**
+     * Match from the given index in the pattern, at the outermost level, as
+     * <code>SRE_MATCH(pattern, pidx, 1)</code>, but using the compiled form of the pattern if
+     * there is one.
+     */
+    final int match(int[] pattern, int pidx) {
+        if (program != null) {
+            int status = program.match(this, pidx);
+            if (status != SRE_JIT.NOT_COMPILED) {
+                return status;
+            }
+        }
+        return SRE_MATCH(pattern, pidx, 1);
+    }
+
+    void LASTMARK_RESTORE(int lastmark, int lastindex) {
         if(this.lastmark > lastmark) {
             while(this.lastmark > lastmark)
                 mark[this.lastmark--] = -1;
@@ -1090,6 +1106,21 @@ for line in sys.stdin:
         }
     }
 
+    /**
+     * Return the first position at or after <code>ptr</code> where a match could start, given
+     * that it must contain the literal of the {@link #prefilter}, or -1 if there is none.
+     */
+    private int prefiltered(int ptr) {
+        int hit = prefilterHit;
+        if (hit < ptr) {
+            prefilterHit = hit = prefilter.find(str, ptr, end);
+            if (hit < 0)
+                return -1;
+        }
+        int maxOffset = prefilter.maxOffset;
+        return maxOffset < 0 ? ptr : Math.max(ptr, hit - maxOffset);
+    }
+
     int SRE_SEARCH(int[] pattern, int pidx) {
         int ptr = this.start;
         int end = this.end;
@@ -1131,6 +1162,13 @@ for line in sys.stdin:
             pidx += 1 + pattern[pidx+1];
         }
 
+        if (prefilter != null) {
+            /* every match contains a known literal: skip to where it could be */
+            prefilterHit = -1;
+            ptr = prefiltered(ptr);
+            if (ptr < 0)
+                return 0;
+        }
 
         if (prefix_len > 1) {
             /* pattern starts with a known prefix.  use the overlap
@@ -1139,7 +1177,7 @@ for line in sys.stdin:
             end = this.end;
             while (ptr < end) {
                 for (;;) {
-                    if (str[ptr] != pattern[prefix+i]) {
+                    if (str.charAt(ptr) != pattern[prefix+i]) {
                         if (i == 0)
                             break;
                         else
@@ -1152,8 +1190,7 @@ for line in sys.stdin:
                             this.ptr = ptr + 1 - prefix_len + prefix_skip;
                             if ((flags & SRE_INFO_LITERAL) != 0)
                                 return 1; /* we got all of it */
-                            status = SRE_MATCH(pattern,
-                                               pidx + 2*prefix_skip, 1);
+                            status = match(pattern, pidx + 2*prefix_skip);
                             if (status != 0)
                                 return status;
                             /* close but no cigar -- try again */
@@ -1173,16 +1210,25 @@ for line in sys.stdin:
             int chr = pattern[pidx + 1];
             end = this.end;
             for (;;) {
-                while (ptr < end && str[ptr] != chr)
+                while (ptr < end && str.charAt(ptr) != chr)
                     ptr++;
                 if (ptr == end)
                     return 0;
+                if (prefilter != null) {
+                    int next = prefiltered(ptr);
+                    if (next < 0)
+                        return 0;
+                    if (next != ptr) {
+                        ptr = next;
+                        continue;
+                    }
+                }
 //                TRACE(pidx, ptr, "SEARCH LITERAL");
                 this.start = ptr;
                 this.ptr = ++ptr;
                 if ((flags & SRE_INFO_LITERAL) != 0)
                     return 1;
-                status = SRE_MATCH(pattern, pidx + 2, 1);
+                status = match(pattern, pidx + 2);
                 if (status != 0)
                     break;
             }
@@ -1191,14 +1237,23 @@ for line in sys.stdin:
             /* pattern starts with a character from a known set */
             end = this.end;
             for (;;) {
-                while (ptr < end && !SRE_CHARSET(pattern, charset, str[ptr]))
+                while (ptr < end && !SRE_CHARSET(pattern, charset, str.charAt(ptr)))
                     ptr++;
                 if (ptr == end)
                     return 0;
+                if (prefilter != null) {
+                    int next = prefiltered(ptr);
+                    if (next < 0)
+                        return 0;
+                    if (next != ptr) {
+                        ptr = next;
+                        continue;
+                    }
+                }
 //                TRACE(pidx, ptr, "SEARCH CHARSET");
                 this.start = ptr;
                 this.ptr = ptr;
-                status = SRE_MATCH(pattern, pidx, 1);
+                status = match(pattern, pidx);
                 if (status != 0)
                     break;
                 ptr++;
@@ -1207,9 +1262,14 @@ for line in sys.stdin:
         } else {
             /* general case */
             while (ptr <= end) {
+                if (prefilter != null) {
+                    ptr = prefiltered(ptr);
+                    if (ptr < 0 || ptr > end)
+                        return 0;
+                }
 //                TRACE(pidx, ptr, "SEARCH");
                 this.start = this.ptr = ptr++;
-                status = SRE_MATCH(pattern, pidx, 1);
+                status = match(pattern, pidx);
                 if (status != 0)
                     break;
             }
@@ -1225,7 +1285,7 @@ for line in sys.stdin:
     int end; /* end of original string */
 
     /* attributes for the match object */
-    int[] str;
+    CharSource str;
     int pos;
     int endpos;
 
@@ -1252,6 +1312,13 @@ for line in sys.stdin:
     /* duplicated from the PatternObject */
     int flags;
 
+    /* the compiled form of the pattern, or null to interpret it */
+    SRE_JIT.Program program;
+
+    /* a literal every match contains, or null, and where it was last found */
+    Prefilter prefilter;
+    private int prefilterHit;
+
     private enum CACHE {
         INSTANCE(Options.sreCacheSpec);
         private LoadingCache<PyString, int[]> cache;
@@ -1294,8 +1361,13 @@ for line in sys.stdin:
     }
 
     public SRE_STATE(PyString str, int start, int end, int flags) {
-        this.str = CACHE.INSTANCE.get(str);
-        int size = str.__len__();
+        this(source(str), start, end, flags);
+    }
+
+    /** Construct a state for matching in a subject read through the given source. */
+    SRE_STATE(CharSource str, int start, int end, int flags) {
+        this.str = str;
+        int size = str.length;
 
         this.charsize = 1;
 
@@ -1321,6 +1393,26 @@ for line in sys.stdin:
         this.flags = flags;
     }
 
+    /**
+     * Return a source for matching in the given string. A <code>str</code> held as bytes is read
+     * from the bytes, and any other <code>str</code>, or a basic plane <code>unicode</code>, from
+     * its <code>String</code>. Only a <code>unicode</code> with supplementary characters is
+     * converted to code points (and those are cached).
+     */
+    private static CharSource source(PyString str) {
+        if (str instanceof PyUnicode) {
+            if (!str.isBasicPlane()) {
+                return new CharSource.OfCodePoints(CACHE.INSTANCE.get(str));
+            }
+        } else {
+            byte[] bytes = str.getHeldBytes();
+            if (bytes != null) {
+                return new CharSource.OfBytes(bytes);
+            }
+        }
+        return new CharSource.OfString(str.getString());
+    }
+
     public static int getlower(int ch, int flags) {
         if ((flags & SRE_FLAG_LOCALE) != 0)
              return ((ch) < 256 ? Character.toLowerCase((char) ch) : ch);
@@ -1329,8 +1421,11 @@ for line in sys.stdin:
         return ((ch) < 128 ? (char)sre_char_lower[ch] : ch);
     }
 
-    // XXX - this is not UTF-16 compliant; also depends on whether from PyString or PyUnicode
-
+    /**
+     * Return the text of a group, given the <code>String</code> of the subject. Marks are code
+     * point indexes, so when the subject has supplementary characters they are translated to
+     * UTF-16 indexes in <code>string</code>.
+     */
     String getslice(int index, String string, boolean empty) {
         int i, j;
 
@@ -1346,6 +1441,10 @@ for line in sys.stdin:
         } else {
             i = mark[index];
             j = mark[index+1];
+            if (str instanceof CharSource.OfCodePoints) {
+                i = string.offsetByCodePoints(0, i);
+                j = string.offsetByCodePoints(i, j - mark[index]);
+            }
         }
 
         return string.substring(i, j);
@@ -19,14 +19,14 @@ import org.python.core.*;
 
 public class ScannerObject extends PyObject implements Traverseproc {
     public PatternObject pattern;
-    PyString string;
+    PyObject string;
     SRE_STATE state;
 
     public MatchObject match() {
         state.state_reset();
         state.ptr = state.start;
 
-        int status = state.SRE_MATCH(pattern.code, 0, 1);
+        int status = state.match(pattern.code, 0);
         MatchObject match = pattern._pattern_new_match(state, string, status);
 
         if (status == 0 || state.ptr == state.start)
@@ -5,21 +5,28 @@
 
 package org.python.modules;
 
+import org.python.core.ArgParser;
+import org.python.core.BufferProtocol;
 import org.python.core.ClassDictInit;
 import org.python.core.Py;
-import org.python.core.Py2kBuffer;
 import org.python.core.PyArray;
-import org.python.core.PyByteArray;
+import org.python.core.PyBUF;
+import org.python.core.PyBuffer;
 import org.python.core.PyException;
 import org.python.core.PyFloat;
-import org.python.core.PyList;
+import org.python.core.PyIterator;
 import org.python.core.PyLong;
 import org.python.core.PyObject;
 import org.python.core.PyString;
 import org.python.core.PyStringMap;
 import org.python.core.PyTuple;
+import org.python.core.util.StringUtil;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 //@formatter:off
@@ -307,10 +314,16 @@ public class struct implements ClassDictInit {
             return cnt;
         }
 
-        void doUnpack(ByteStream buf, int count, PyList list) {
+        int doUnpack(ByteStream buf, int count, PyObject[] res, int i) {
             while (count-- > 0) {
-                list.append(Py.java2py(unpack(buf)));
+                res[i++] = Py.java2py(unpack(buf));
             }
+            return i;
+        }
+
+        /** The number of values packed into (or unpacked from) <code>count</code> items. */
+        int values(int count) {
+            return count;
         }
 
         int get_int(PyObject value) {
@@ -380,85 +393,109 @@ public class struct implements ClassDictInit {
         }
     }
 
+    /**
+     * The bytes being packed or unpacked. When packing, {@link #data} grows as bytes are written.
+     * When unpacking, the bytes are read from {@link #in}, which is usually a view of the storage of
+     * the source object itself, so nothing is copied.
+     */
     static class ByteStream {
 
-        char[] data;
-        int len;
+        byte[] data;
         int pos;
+        ByteBuffer in;
+        int start;
 
         ByteStream() {
-            data = new char[10];
-            len = 0;
+            this(10);
+        }
+
+        ByteStream(int capacity) {
+            data = new byte[Math.max(capacity, 1)];
             pos = 0;
         }
 
+        /** Read from the position of <code>in</code> onwards. */
+        ByteStream(ByteBuffer in) {
+            this.in = in;
+            start = in.position();
+        }
+
         ByteStream(String s) {
             this(s, 0);
         }
 
         ByteStream(String s, int offset) {
-            int size = s.length() - offset;
-            data = new char[size];
-            s.getChars(offset, s.length(), data, 0);
-            len = size;
-            pos = 0;
+            this(s, offset, s.length() - offset);
+        }
 
-// System.out.println("s.length()=" + s.length() + ",offset=" + offset + ",size=" + size + ",data="
-// + Arrays.toString(data));
+        /** Read <code>length</code> characters of <code>s</code> as bytes, from the offset. */
+        ByteStream(String s, int offset, int length) {
+            this(ByteBuffer.wrap(toBytes(s, offset, length)));
         }
 
-        int readByte() {
-            return data[pos++] & 0xFF;
+        private static byte[] toBytes(String s, int offset, int length) {
+            byte[] b = new byte[length];
+            for (int i = 0; i < length; i++) {
+                b[i] = (byte) s.charAt(offset + i);
+            }
+            return b;
         }
 
-        void read(char[] buf, int pos, int len) {
-            System.arraycopy(data, this.pos, buf, pos, len);
-            this.pos += len;
+        int readByte() {
+            return in.get() & 0xFF;
         }
 
-        String readString(int l) {
-            char[] data = new char[l];
-            read(data, 0, l);
-            return new String(data);
+        byte[] readBytes(int l) {
+            byte[] b = new byte[l];
+            in.get(b);
+            return b;
         }
 
         private void ensureCapacity(int l) {
-            if (pos + l >= data.length) {
-                char[] b = new char[(pos + l) * 2];
-                System.arraycopy(data, 0, b, 0, pos);
-                data = b;
+            if (pos + l > data.length) {
+                data = Arrays.copyOf(data, (pos + l) * 2);
             }
         }
 
         void writeByte(int b) {
             ensureCapacity(1);
-            data[pos++] = (char) (b & 0xFF);
+            data[pos++] = (byte) b;
         }
 
-        void write(char[] buf, int pos, int len) {
+        void write(byte[] buf, int pos, int len) {
             ensureCapacity(len);
             System.arraycopy(buf, pos, data, this.pos, len);
             this.pos += len;
         }
 
         void writeString(String s, int pos, int len) {
-            char[] data = new char[len];
-            s.getChars(pos, len, data, 0);
-            write(data, 0, len);
+            ensureCapacity(len);
+            for (int i = 0; i < len; i++) {
+                data[this.pos++] = (byte) s.charAt(pos + i);
+            }
         }
 
-        int skip(int l) {
-            pos += l;
-            return pos;
+        void skip(int l) {
+            if (in != null) {
+                in.position(in.position() + l);
+            } else {
+                pos += l;
+            }
         }
 
+        /** The number of bytes written or read so far. */
         int size() {
-            return pos;
+            return in != null ? in.position() - start : pos;
+        }
+
+        /** The bytes written as a <code>str</code>, adopting {@link #data} if it is exactly full. */
+        PyString toPyString() {
+            return PyString.fromBytes(pos == data.length ? data : Arrays.copyOf(data, pos));
         }
 
         @Override
         public String toString() {
-            return new String(data, 0, pos);
+            return StringUtil.fromBytes(data, 0, pos);
         }
     }
 
@@ -473,10 +510,14 @@ public class struct implements ClassDictInit {
         }
 
         @Override
-        void doUnpack(ByteStream buf, int count, PyList list) {
-            while (count-- > 0) {
-                buf.readByte();
-            }
+        int doUnpack(ByteStream buf, int count, PyObject[] res, int i) {
+            buf.skip(count);
+            return i;
+        }
+
+        @Override
+        int values(int count) {
+            return 0;
         }
     }
 
@@ -490,9 +531,16 @@ public class struct implements ClassDictInit {
                 throw StructError("argument for 's' must be a string");
             }
 
-            String s = value.toString();
-            int len = s.length();
-            buf.writeString(s, 0, Math.min(count, len));
+            byte[] b = ((PyString) value).getHeldBytes();
+            int len;
+            if (b != null) {
+                len = b.length;
+                buf.write(b, 0, Math.min(count, len));
+            } else {
+                String s = value.toString();
+                len = s.length();
+                buf.writeString(s, 0, Math.min(count, len));
+            }
             if (len < count) {
                 count -= len;
                 for (int i = 0; i < count; i++) {
@@ -503,8 +551,14 @@ public class struct implements ClassDictInit {
         }
 
         @Override
-        void doUnpack(ByteStream buf, int count, PyList list) {
-            list.append(Py.newString(buf.readString(count)));
+        int doUnpack(ByteStream buf, int count, PyObject[] res, int i) {
+            res[i++] = PyString.fromBytes(buf.readBytes(count));
+            return i;
+        }
+
+        @Override
+        int values(int count) {
+            return 1;
         }
     }
 
@@ -523,13 +577,14 @@ public class struct implements ClassDictInit {
         }
 
         @Override
-        void doUnpack(ByteStream buf, int count, PyList list) {
+        int doUnpack(ByteStream buf, int count, PyObject[] res, int i) {
             int n = buf.readByte();
             if (n >= count) {
                 n = count - 1;
             }
-            super.doUnpack(buf, n, list);
+            i = super.doUnpack(buf, n, res, i);
             buf.skip(Math.max(count - n - 1, 0));
+            return i;
         }
     }
 
@@ -949,7 +1004,7 @@ public class struct implements ClassDictInit {
     //@formatter:on
 
     static FormatDef[] whichtable(String pfmt) {
-        char c = pfmt.charAt(0);
+        char c = pfmt.isEmpty() ? '@' : pfmt.charAt(0);
         switch (c) {
             case '<':
                 return lilendian_table;
@@ -981,52 +1036,211 @@ public class struct implements ClassDictInit {
         return size;
     }
 
-    static int calcsize(String format, FormatDef[] f) {
-        int size = 0;
+    /**
+     * A format string parsed into the sequence of items to pack or unpack, so that the work of
+     * parsing it is done once. Plans are cached by {@link struct#plan(String)} for the module
+     * functions, and held by each {@link PyStruct}.
+     */
+    static final class Plan {
+
+        final String format;
+        /** The conversion and repeat count of each item, in order. */
+        private final FormatDef[] items;
+        private final int[] counts;
+        /** The size in bytes of the packed struct. */
+        final int size;
+        /** The number of values packed into (or unpacked from) the struct. */
+        final int values;
+
+        Plan(String format) {
+            this.format = format;
+            FormatDef[] f = whichtable(format);
+            int n = 0;
+            FormatDef[] items = new FormatDef[format.length()];
+            int[] counts = new int[format.length()];
+            int size = 0, values = 0;
+
+            int len = format.length();
+            for (int j = 0; j < len; j++) {
+                char c = format.charAt(j);
+                if (j == 0 && (c == '@' || c == '<' || c == '>' || c == '=' || c == '!')) {
+                    continue;
+                }
+                if (Character.isWhitespace(c)) {
+                    continue;
+                }
+                int num = 1;
+                if (Character.isDigit(c)) {
+                    num = Character.digit(c, 10);
+                    while (++j < len && Character.isDigit((c = format.charAt(j)))) {
+                        int x = num * 10 + Character.digit(c, 10);
+                        if (x / 10 != num) {
+                            throw StructError("overflow in item count");
+                        }
+                        num = x;
+                    }
+                    if (j >= len) {
+                        break;
+                    }
+                }
+
+                FormatDef e = getentry(c, f);
 
-        int len = format.length();
-        for (int j = 0; j < len; j++) {
-            char c = format.charAt(j);
-            if (j == 0 && (c == '@' || c == '<' || c == '>' || c == '=' || c == '!')) {
-                continue;
+                int itemsize = e.size;
+                size = align(size, e);
+                int x = num * itemsize;
+                size += x;
+                if (x / itemsize != num || size < 0) {
+                    throw StructError("total struct size too long");
+                }
+                items[n] = e;
+                counts[n++] = num;
+                values += e.values(num);
+            }
+
+            this.items = Arrays.copyOf(items, n);
+            this.counts = Arrays.copyOf(counts, n);
+            this.size = size;
+            this.values = values;
+        }
+
+        /** Pack the arguments from <code>start</code> onwards. */
+        ByteStream pack(int start, PyObject[] args) {
+            ByteStream res = new ByteStream(size);
+            int i = start;
+            for (int k = 0; k < items.length; k++) {
+                FormatDef e = items[k];
+                // Fill pad bytes with zeros
+                int nres = align(res.size(), e) - res.size();
+                while (nres-- > 0) {
+                    res.writeByte(0);
+                }
+                i += e.doPack(res, counts[k], i, args);
             }
-            if (Character.isWhitespace(c)) {
-                continue;
+
+            if (i < args.length) {
+                throw StructError("too many arguments for pack format");
             }
-            int num = 1;
-            if (Character.isDigit(c)) {
-                num = Character.digit(c, 10);
-                while (++j < len && Character.isDigit((c = format.charAt(j)))) {
-                    int x = num * 10 + Character.digit(c, 10);
-                    if (x / 10 != num) {
-                        throw StructError("overflow in item count");
-                    }
-                    num = x;
+            return res;
+        }
+
+        /** Unpack {@link #size} bytes from the stream. */
+        PyTuple unpack(ByteStream str) {
+            PyObject[] res = new PyObject[values];
+            int i = 0;
+            for (int k = 0; k < items.length; k++) {
+                FormatDef e = items[k];
+                str.skip(align(str.size(), e) - str.size());
+                i = e.doUnpack(str, counts[k], res, i);
+            }
+            return new PyTuple(res, false);
+        }
+
+        /**
+         * Unpack {@link #size} bytes from the source object at the given offset, reading a
+         * <code>str</code> held as bytes, or the storage behind a buffer, in place. The caller has
+         * checked the bounds.
+         */
+        PyTuple unpack(PyObject source, int offset) {
+            if (source instanceof PyString) {
+                PyString s = (PyString) source;
+                byte[] b = s.getHeldBytes();
+                if (b != null) {
+                    return unpack(new ByteStream(ByteBuffer.wrap(b, offset, size)));
+                }
+                return unpack(new ByteStream(s.getString(), offset, size));
+            }
+            try (PyBuffer buf = getBuffer(source, PyBUF.SIMPLE)) {
+                ByteBuffer bb = buf.getNIOByteBuffer();
+                bb.position(bb.position() + offset);
+                return unpack(new ByteStream(bb));
+            }
+        }
+
+        /** Pack the arguments from <code>start</code> onwards into the buffer at the offset. */
+        void pack_into(PyObject target, int offset, int start, PyObject[] args) {
+            ByteStream res = pack(start, args);
+            if (target instanceof PyArray) {
+                // An array exports only a read-only view: set its items instead.
+                PyArray array = (PyArray) target;
+                if (size > array.__len__()) {
+                    throw StructError("pack_into requires a buffer of at least " + size
+                            + " bytes, got " + array.__len__());
                 }
-                if (j >= len) {
-                    break;
+                for (int i = 0; i < size; i++, offset++) {
+                    array.set(offset, (char) (res.data[i] & 0xFF));
                 }
+                return;
+            }
+            try (PyBuffer buf = getBuffer(target, PyBUF.WRITABLE)) {
+                int len = buf.getLen();
+                if (offset < 0) {
+                    offset += len;
+                }
+                if (offset < 0 || len - offset < size) {
+                    throw StructError("pack_into requires a buffer of at least " + size
+                            + " bytes, got " + (len - offset));
+                }
+                buf.copyFrom(res.data, 0, offset, size);
+            }
+        }
+    }
+
+    /** Get a buffer from an object that should support the buffer API. */
+    private static PyBuffer getBuffer(PyObject obj, int flags) {
+        if (obj instanceof BufferProtocol) {
+            try {
+                return ((BufferProtocol) obj).getBuffer(flags);
+            } catch (ClassCastException e) {
+                // Fall through to the error
             }
+        }
+        if ((flags & PyBUF.WRITABLE) != 0) {
+            throw Py.TypeError("argument must be read-write buffer, not " + obj.getType().fastGetName());
+        }
+        throw Py.TypeError("Struct() argument 1 must be string or read-only buffer, not "
+                + obj.getType().fastGetName());
+    }
 
-            FormatDef e = getentry(c, f);
+    /** The length in bytes of an object supporting the buffer API. */
+    private static int bufferLength(PyObject obj) {
+        if (obj instanceof PyString) {
+            PyString s = (PyString) obj;
+            byte[] b = s.getHeldBytes();
+            return b != null ? b.length : s.getString().length();
+        }
+        try (PyBuffer buf = getBuffer(obj, PyBUF.SIMPLE)) {
+            return buf.getLen();
+        }
+    }
 
-            int itemsize = e.size;
-            size = align(size, e);
-            int x = num * itemsize;
-            size += x;
-            if (x / itemsize != num || size < 0) {
-                throw StructError("total struct size too long");
+    /** Most format strings cached by {@link #plan(String)}, after which the cache is cleared. */
+    private static final int MAXCACHE = 100;
+    private static final Map<String, Plan> cache = new ConcurrentHashMap<>();
+
+    /** Return the plan for the given format, from the cache if it is there. */
+    static Plan plan(String format) {
+        Plan p = cache.get(format);
+        if (p == null) {
+            p = new Plan(format);
+            if (cache.size() >= MAXCACHE) {
+                cache.clear();
             }
+            cache.put(format, p);
         }
-        return size;
+        return p;
+    }
+
+    /** Clear the internal cache of parsed format strings. */
+    public static void _clearcache() {
+        cache.clear();
     }
 
     /**
      * Return the size of the struct (and hence of the string) corresponding to the given format.
      */
     static public int calcsize(String format) {
-        FormatDef[] f = whichtable(format);
-        return calcsize(format, f);
+        return plan(format).size;
     }
 
     /**
@@ -1035,88 +1249,20 @@ public class struct implements ClassDictInit {
      */
     static public PyString pack(PyObject[] args) {
         if (args.length < 1) {
-            Py.TypeError("illegal argument type for built-in operation");
+            throw Py.TypeError("illegal argument type for built-in operation");
         }
-
-        String format = args[0].toString();
-
-        FormatDef[] f = whichtable(format);
-        int size = calcsize(format, f);
-
-        return new PyString(pack(format, f, size, 1, args).toString());
+        return plan(args[0].toString()).pack(1, args).toPyString();
     }
 
-    // xxx - may need to consider doing a generic arg parser here
+    /**
+     * Pack the values v1, v2, ... according to the given format, and write the packed bytes into
+     * the writable buffer starting at offset.
+     */
     static public void pack_into(PyObject[] args) {
         if (args.length < 3) {
-            Py.TypeError("illegal argument type for built-in operation");
-        }
-        String format = args[0].toString();
-        FormatDef[] f = whichtable(format);
-        int size = calcsize(format, f);
-        pack_into(format, f, size, 1, args);
-    }
-
-    static void pack_into(String format, FormatDef[] f, int size, int argstart, PyObject[] args) {
-        if (args.length - argstart < 2) {
-            Py.TypeError("illegal argument type for built-in operation");
-        }
-        if (!(args[argstart] instanceof PyArray)) {
-            throw Py.TypeError("pack_into takes an array arg"); // as well as a buffer, what else?
-        }
-        PyArray buffer = (PyArray) args[argstart];
-        int offset = args[argstart + 1].asInt();
-
-        ByteStream res = pack(format, f, size, argstart + 2, args);
-        if (res.pos > buffer.__len__()) {
-            throw StructError("pack_into requires a buffer of at least " + res.pos + " bytes, got "
-                    + buffer.__len__());
-        }
-        for (int i = 0; i < res.pos; i++, offset++) {
-            char val = res.data[i];
-            buffer.set(offset, val);
+            throw Py.TypeError("illegal argument type for built-in operation");
         }
-    }
-
-    static ByteStream pack(String format, FormatDef[] f, int size, int start, PyObject[] args) {
-        ByteStream res = new ByteStream();
-
-        int i = start;
-        int len = format.length();
-        for (int j = 0; j < len; j++) {
-            char c = format.charAt(j);
-            if (j == 0 && (c == '@' || c == '<' || c == '>' || c == '=' || c == '!')) {
-                continue;
-            }
-            if (Character.isWhitespace(c)) {
-                continue;
-            }
-            int num = 1;
-            if (Character.isDigit(c)) {
-                num = Character.digit(c, 10);
-                while (++j < len && Character.isDigit((c = format.charAt(j)))) {
-                    num = num * 10 + Character.digit(c, 10);
-                }
-                if (j >= len) {
-                    break;
-                }
-            }
-
-            FormatDef e = getentry(c, f);
-
-            // Fill pad bytes with zeros
-            int nres = align(res.size(), e) - res.size();
-            while (nres-- > 0) {
-                res.writeByte(0);
-            }
-            i += e.doPack(res, num, i, args);
-        }
-
-        if (i < args.length) {
-            throw StructError("too many arguments for pack format");
-        }
-
-        return res;
+        plan(args[0].toString()).pack_into(args[1], args[2].asInt(), 3, args);
     }
 
     /**
@@ -1124,94 +1270,73 @@ public class struct implements ClassDictInit {
      * result is a tuple even if it contains exactly one item. The string must contain exactly the
      * amount of data required by the format (i.e. len(string) must equal calcsize(fmt)).
      */
+    public static PyTuple unpack(String format, PyObject source) {
+        return unpack(plan(format), source);
+    }
 
     public static PyTuple unpack(String format, String string) {
-        FormatDef[] f = whichtable(format);
-        int size = calcsize(format, f);
-        int len = string.length();
-        if (size != len) {
-            throw StructError("unpack str size does not match format");
-        }
-        return unpack(f, size, format, new ByteStream(string));
+        return unpack(format, new PyString(string));
     }
 
-    public static PyTuple unpack(String format, PyArray buffer) {
-        String string = buffer.tostring();
-        FormatDef[] f = whichtable(format);
-        int size = calcsize(format, f);
-        int len = string.length();
-        if (size != len) {
+    static PyTuple unpack(Plan plan, PyObject source) {
+        if (bufferLength(source) != plan.size) {
             throw StructError("unpack str size does not match format");
         }
-        return unpack(f, size, format, new ByteStream(string));
-    }
-
-    public static PyTuple unpack(String format, Py2kBuffer buffer) {
-        return unpack(format, buffer.toString());
-    }
-
-    public static PyTuple unpack(String format, PyByteArray bytearray) {
-        /* bytearray is added in 2.7.7 */
-        return unpack(format, bytearray.toString());
-    }
-
-    public static PyTuple unpack_from(String format, Py2kBuffer buffer) {
-        return unpack_from(format, buffer.toString(), 0);
-    }
-
-    public static PyTuple unpack_from(String format, PyByteArray bytearray) {
-        return unpack_from(format, bytearray.toString(), 0);
+        return plan.unpack(source, 0);
     }
 
-    public static PyTuple unpack_from(String format, Py2kBuffer buffer, int offset) {
-        return unpack_from(format, buffer.toString(), offset);
+    /**
+     * Unpack the buffer, containing packed C structure data, according to the format, starting at
+     * offset. Requires len(buffer[offset:]) &gt;= calcsize(fmt).
+     */
+    public static PyTuple unpack_from(PyObject[] args, String[] kwds) {
+        ArgParser ap = new ArgParser("unpack_from", args, kwds,
+                new String[] {"format", "buffer", "offset"}, 2);
+        return unpack_from(plan(ap.getString(0)), ap.getPyObject(1), ap.getInt(2, 0));
     }
 
-    public static PyTuple unpack_from(String format, PyByteArray bytearray, int offset) {
-        return unpack_from(format, bytearray.toString(), offset);
+    static PyTuple unpack_from(Plan plan, PyObject buffer, int offset) {
+        int len = bufferLength(buffer);
+        if (offset < 0) {
+            offset += len;
+        }
+        if (offset < 0 || len - offset < plan.size) {
+            throw StructError("unpack_from str size does not match format");
+        }
+        return plan.unpack(buffer, offset);
     }
 
-    public static PyTuple unpack_from(String format, String string) {
-        return unpack_from(format, string, 0);
+    /**
+     * Return an iterator yielding tuples unpacked from the buffer according to the format, one for
+     * each successive struct. The length of the buffer must be a multiple of calcsize(fmt).
+     */
+    public static PyObject iter_unpack(String format, PyObject buffer) {
+        return iter_unpack(plan(format), buffer);
     }
 
-    public static PyTuple unpack_from(String format, String string, int offset) {
-        FormatDef[] f = whichtable(format);
-        int size = calcsize(format, f);
-        int len = string.length();
-        if (size >= (len - offset + 1)) {
-            throw StructError("unpack_from str size does not match format");
+    static PyObject iter_unpack(final Plan plan, final PyObject buffer) {
+        if (plan.size == 0) {
+            throw StructError("cannot iteratively unpack with a struct of length 0");
         }
-        return unpack(f, size, format, new ByteStream(string, offset));
-    }
+        final int len = bufferLength(buffer);
+        if (len % plan.size != 0) {
+            throw StructError("iterative unpacking requires a buffer of a multiple of "
+                    + plan.size + " bytes");
+        }
+        return new PyIterator() {
 
-    static PyTuple unpack(FormatDef[] f, int size, String format, ByteStream str) {
-        PyList res = new PyList();
-        int flen = format.length();
-        for (int j = 0; j < flen; j++) {
-            char c = format.charAt(j);
-            if (j == 0 && (c == '@' || c == '<' || c == '>' || c == '=' || c == '!')) {
-                continue;
-            }
-            if (Character.isWhitespace(c)) {
-                continue;
-            }
-            int num = 1;
-            if (Character.isDigit(c)) {
-                num = Character.digit(c, 10);
-                while (++j < flen && Character.isDigit((c = format.charAt(j)))) {
-                    num = num * 10 + Character.digit(c, 10);
-                }
-                if (j > flen) {
-                    break;
+            private int offset;
+
+            @Override
+            public PyObject __iternext__() {
+                if (offset >= len) {
+                    return null;
                 }
+                PyTuple t = unpack_from(plan, buffer, offset);
+                offset += plan.size;
+                return t;
             }
-
-            FormatDef e = getentry(c, f);
-            str.skip(align(str.size(), e) - str.size());
-            e.doUnpack(str, num, res);
-        }
-        return PyTuple.fromIterable(res);
+        };
     }
 
     static PyException StructError(String explanation) {
@@ -0,0 +1,42 @@
+package org.python.modules;
+
+import junit.framework.TestCase;
+
+import org.python.core.Py;
+import org.python.core.PyObject;
+import org.python.core.PyString;
+import org.python.util.PythonInterpreter;
+
+/**
+ * Tests of packing by the struct module that the Python tests cannot observe.
+ */
+public class structTest extends TestCase {
+
+    @Override
+    protected void setUp() throws Exception {
+        // The module initialises itself within a Python frame
+        new PythonInterpreter().exec("import struct");
+    }
+
+    /** A pack that fills its exactly sized array returns a str adopting it, not a copy. */
+    public void testExactPackAdoptsArray() {
+        struct.Plan plan = struct.plan(">ihb3s");
+        PyObject[] args = {Py.newInteger(1), Py.newInteger(2), Py.newInteger(3),
+                Py.newString("abc")};
+        struct.ByteStream res = plan.pack(0, args);
+        byte[] data = res.data;
+        assertEquals(10, data.length);
+        PyString s = res.toPyString();
+        assertSame(data, s.getHeldBytes());
+        assertEquals("\0\0\0\1\0\2\3abc", s.getString());
+    }
+
+    /** Bytes written beyond the initial capacity are all kept. */
+    public void testGrow() {
+        struct.ByteStream res = new struct.ByteStream(2);
+        res.writeByte('a');
+        res.writeByte('b');
+        res.write(new byte[] {'c', 'd', 'e'}, 0, 3);
+        assertEquals("abcde", res.toPyString().getString());
+    }
+}